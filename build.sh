@@ -16,9 +16,11 @@ jar cf $LIBDIR/thinj.jar -C bin thinj || exit 1
 # Build environment script:
 cat src/scripts/env.sh | sed "s/__THINJ_HOME__/${ENV_PREFIX}THINJ_HOME/g" | sed "s#__DESTINATION__#${DESTINATION}#g" > $DESTINATION/env.sh 
 
-cat src/scripts/thinj | sed "s/__THINJ_HOME__/${ENV_PREFIX}THINJ_HOME/g" > $BINDIR/${CMD_PREFIX}thinj
+for script in thinj thinjc thinjd; do
+    cat src/scripts/$script | sed "s/__THINJ_HOME__/${ENV_PREFIX}THINJ_HOME/g" > $BINDIR/${CMD_PREFIX}$script
+done
 cp src/scripts/retrace $BINDIR/${CMD_PREFIX}retrace
 
-chmod +x $BINDIR/${CMD_PREFIX}thinj $BINDIR/${CMD_PREFIX}retrace
+chmod +x $BINDIR/${CMD_PREFIX}thinj $BINDIR/${CMD_PREFIX}thinjc $BINDIR/${CMD_PREFIX}thinjd $BINDIR/${CMD_PREFIX}retrace
 
 exit 0
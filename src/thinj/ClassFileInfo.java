@@ -0,0 +1,809 @@
+package thinj;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.bcel.classfile.CodeException;
+import org.apache.bcel.classfile.Constant;
+import org.apache.bcel.classfile.ConstantClass;
+import org.apache.bcel.classfile.ConstantCP;
+import org.apache.bcel.classfile.ConstantDouble;
+import org.apache.bcel.classfile.ConstantFieldref;
+import org.apache.bcel.classfile.ConstantFloat;
+import org.apache.bcel.classfile.ConstantInteger;
+import org.apache.bcel.classfile.ConstantInterfaceMethodref;
+import org.apache.bcel.classfile.ConstantLong;
+import org.apache.bcel.classfile.ConstantMethodref;
+import org.apache.bcel.classfile.ConstantNameAndType;
+import org.apache.bcel.classfile.ConstantPool;
+import org.apache.bcel.classfile.ConstantString;
+import org.apache.bcel.classfile.ConstantUtf8;
+import org.apache.bcel.classfile.ExceptionTable;
+import org.apache.bcel.classfile.Field;
+import org.apache.bcel.classfile.JavaClass;
+import org.apache.bcel.classfile.LineNumber;
+import org.apache.bcel.classfile.LineNumberTable;
+import org.apache.bcel.classfile.Method;
+import org.apache.bcel.classfile.Utility;
+import org.apache.bcel.generic.Type;
+
+/**
+ * This class contains the information the linker needs from a class file: The class hierarchy,
+ * the constant pool entries, the fields and the methods. An instance is either extracted from a
+ * parsed class ({@link #fromJavaClass(JavaClass)}) or read back from its binary form (
+ * {@link #read(ByteBuffer)}) as written by {@link #write(DataOutputStream)}.
+ */
+public class ClassFileInfo {
+	private final String aClassName;
+	private final String aSuperClassName;
+	private final String[] aInterfaceNames;
+	private final boolean aInterface;
+	private final int aConstantPoolLength;
+	private final List<ConstantInfo> aConstants;
+	private final List<FieldInfo> aFields;
+	private final List<MethodInfo> aMethods;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param className The name of the class in '.' - format
+	 * @param superClassName The name of the super class in '.' - format
+	 * @param interfaceNames The names of the implemented interfaces in '.' - format
+	 * @param isInterface true, if the class is an interface
+	 * @param constantPoolLength The number of elements in the constant pool
+	 * @param constants The constant pool entries used by the linker, in constant pool order
+	 * @param fields The fields of the class
+	 * @param methods The methods of the class
+	 */
+	private ClassFileInfo(String className, String superClassName, String[] interfaceNames,
+			boolean isInterface, int constantPoolLength, List<ConstantInfo> constants,
+			List<FieldInfo> fields, List<MethodInfo> methods) {
+		aClassName = className;
+		aSuperClassName = superClassName;
+		aInterfaceNames = interfaceNames;
+		aInterface = isInterface;
+		aConstantPoolLength = constantPoolLength;
+		aConstants = constants;
+		aFields = fields;
+		aMethods = methods;
+	}
+
+	public String getClassName() {
+		return aClassName;
+	}
+
+	public String getSuperClassName() {
+		return aSuperClassName;
+	}
+
+	public String[] getInterfaceNames() {
+		return aInterfaceNames;
+	}
+
+	public boolean isInterface() {
+		return aInterface;
+	}
+
+	public int getConstantPoolLength() {
+		return aConstantPoolLength;
+	}
+
+	public List<ConstantInfo> getConstants() {
+		return aConstants;
+	}
+
+	public List<FieldInfo> getFields() {
+		return aFields;
+	}
+
+	public List<MethodInfo> getMethods() {
+		return aMethods;
+	}
+
+	/**
+	 * This method extracts the information from a parsed class. If the constant pool contains an
+	 * unsupported constant type, a LinkException is thrown.
+	 * 
+	 * @param jc The parsed class
+	 * @return The extracted information
+	 */
+	public static ClassFileInfo fromJavaClass(JavaClass jc) {
+		ConstantPool cp = jc.getConstantPool();
+		Constant[] constantPool = cp.getConstantPool();
+		ArrayList<ConstantInfo> constants = new ArrayList<ConstantInfo>();
+		for (int i = 0; i < constantPool.length; i++) {
+			Constant cons = constantPool[i];
+
+			if (cons == null) {
+				// Ignore
+			} else if (cons instanceof ConstantClass) {
+				ConstantClass cc = (ConstantClass) cons;
+				constants.add(new ConstantInfo(ConstantInfo.Kind.Class, i, getName(constantPool,
+						cc.getNameIndex()), null, null, null));
+			} else if (cons instanceof ConstantUtf8) {
+			} else if (cons instanceof ConstantMethodref
+					|| cons instanceof ConstantInterfaceMethodref
+					|| cons instanceof ConstantFieldref) {
+				ConstantCP ref = (ConstantCP) cons;
+				ConstantClass cpClass = (ConstantClass) constantPool[ref.getClassIndex()];
+				ConstantNameAndType cpNameAndType = (ConstantNameAndType) constantPool[ref
+						.getNameAndTypeIndex()];
+				constants.add(new ConstantInfo(ConstantInfo.Kind.MemberReference, i, getName(
+						constantPool, cpClass.getNameIndex()), getName(constantPool,
+						cpNameAndType.getNameIndex()), getName(constantPool,
+						cpNameAndType.getSignatureIndex()), null));
+			} else if (cons instanceof ConstantNameAndType) {
+			} else if (cons instanceof ConstantInteger) {
+				constants.add(new ConstantInfo(ConstantInfo.Kind.Integer, i, null, null, null,
+						((ConstantInteger) cons).getBytes()));
+			} else if (cons instanceof ConstantString) {
+				constants.add(new ConstantInfo(ConstantInfo.Kind.String, i, null, null, null,
+						((ConstantString) cons).getBytes(cp)));
+			} else if (cons instanceof ConstantLong) {
+				constants.add(new ConstantInfo(ConstantInfo.Kind.Long, i, null, null, null,
+						((ConstantLong) cons).getBytes()));
+			} else if (cons instanceof ConstantFloat) {
+				constants.add(new ConstantInfo(ConstantInfo.Kind.Float, i, null, null, null,
+						((ConstantFloat) cons).getBytes()));
+			} else if (cons instanceof ConstantDouble) {
+				constants.add(new ConstantInfo(ConstantInfo.Kind.Double, i, null, null, null,
+						((ConstantDouble) cons).getBytes()));
+			} else {
+				throw new LinkException("Unsupported constant type: "
+						+ cons.getClass().getName());
+			}
+		}
+
+		ArrayList<FieldInfo> fields = new ArrayList<FieldInfo>();
+		for (Field field : jc.getFields()) {
+			fields.add(new FieldInfo(field.getName(), field.getSignature(), field.getType()
+					.getSize(), field.isStatic()));
+		}
+
+		ArrayList<MethodInfo> methods = new ArrayList<MethodInfo>();
+		for (Method m : jc.getMethods()) {
+			methods.add(MethodInfo.fromMethod(m));
+		}
+
+		return new ClassFileInfo(jc.getClassName(), jc.getSuperclassName(),
+				jc.getInterfaceNames(), jc.isInterface(), constantPool.length, constants, fields,
+				methods);
+	}
+
+	/**
+	 * This method looks up a name Constant from the constant pool
+	 * 
+	 * @param constantPool The pool to lookup in
+	 * @param nameIndex The index into the constant pool
+	 * @return The resolved name
+	 */
+	private static String getName(Constant[] constantPool, int nameIndex) {
+		ConstantUtf8 utfName = (ConstantUtf8) constantPool[nameIndex];
+		return utfName.getBytes();
+	}
+
+	/**
+	 * This method writes the information in binary form
+	 * 
+	 * @param out The stream to write to
+	 * @throws IOException If unable to write
+	 */
+	public void write(DataOutputStream out) throws IOException {
+		writeString(out, aClassName);
+		writeString(out, aSuperClassName);
+		writeStrings(out, aInterfaceNames);
+		out.writeBoolean(aInterface);
+		out.writeInt(aConstantPoolLength);
+
+		out.writeInt(aConstants.size());
+		for (ConstantInfo ci : aConstants) {
+			ci.write(out);
+		}
+
+		out.writeInt(aFields.size());
+		for (FieldInfo fi : aFields) {
+			writeString(out, fi.getName());
+			writeString(out, fi.getSignature());
+			out.writeInt(fi.getSize());
+			out.writeBoolean(fi.isStatic());
+		}
+
+		out.writeInt(aMethods.size());
+		for (MethodInfo mi : aMethods) {
+			mi.write(out);
+		}
+	}
+
+	/**
+	 * This method reads the information as written by {@link #write(DataOutputStream)}
+	 * 
+	 * @param in The buffer to read from. Is read from the current position.
+	 * @return The read information
+	 */
+	public static ClassFileInfo read(ByteBuffer in) {
+		String className = readString(in);
+		String superClassName = readString(in);
+		String[] interfaceNames = readStrings(in);
+		boolean isInterface = readBoolean(in);
+		int constantPoolLength = in.getInt();
+
+		int n = in.getInt();
+		ArrayList<ConstantInfo> constants = new ArrayList<ConstantInfo>(n);
+		for (int i = 0; i < n; i++) {
+			constants.add(ConstantInfo.read(in));
+		}
+
+		n = in.getInt();
+		ArrayList<FieldInfo> fields = new ArrayList<FieldInfo>(n);
+		for (int i = 0; i < n; i++) {
+			fields.add(new FieldInfo(readString(in), readString(in), in.getInt(),
+					readBoolean(in)));
+		}
+
+		n = in.getInt();
+		ArrayList<MethodInfo> methods = new ArrayList<MethodInfo>(n);
+		for (int i = 0; i < n; i++) {
+			methods.add(MethodInfo.read(in));
+		}
+
+		return new ClassFileInfo(className, superClassName, interfaceNames, isInterface,
+				constantPoolLength, constants, fields, methods);
+	}
+
+	/**
+	 * This method writes a string as its length in bytes followed by the UTF-8 bytes. null is
+	 * written as the length -1.
+	 * 
+	 * @param out The stream to write to
+	 * @param s The string to write; may be null
+	 * @throws IOException If unable to write
+	 */
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		if (s == null) {
+			out.writeInt(-1);
+		} else {
+			byte[] bytes = s.getBytes("UTF-8");
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+	}
+
+	/**
+	 * This method reads a string written by {@link #writeString(DataOutputStream, String)}
+	 * 
+	 * @param in The buffer to read from
+	 * @return The read string; may be null
+	 */
+	private static String readString(ByteBuffer in) {
+		String s = null;
+		int length = in.getInt();
+		if (length >= 0) {
+			byte[] bytes = new byte[length];
+			in.get(bytes);
+			try {
+				s = new String(bytes, "UTF-8");
+			} catch (UnsupportedEncodingException e) {
+				// UTF-8 is always supported
+				throw new RuntimeException(e);
+			}
+		}
+
+		return s;
+	}
+
+	/**
+	 * This method writes an array of strings
+	 * 
+	 * @param out The stream to write to
+	 * @param strings The strings to write
+	 * @throws IOException If unable to write
+	 */
+	private static void writeStrings(DataOutputStream out, String[] strings) throws IOException {
+		out.writeInt(strings.length);
+		for (String s : strings) {
+			writeString(out, s);
+		}
+	}
+
+	/**
+	 * This method reads an array of strings written by
+	 * {@link #writeStrings(DataOutputStream, String[])}
+	 * 
+	 * @param in The buffer to read from
+	 * @return The read strings
+	 */
+	private static String[] readStrings(ByteBuffer in) {
+		String[] strings = new String[in.getInt()];
+		for (int i = 0; i < strings.length; i++) {
+			strings[i] = readString(in);
+		}
+
+		return strings;
+	}
+
+	/**
+	 * This method reads a boolean written by {@link DataOutputStream#writeBoolean(boolean)}
+	 * 
+	 * @param in The buffer to read from
+	 * @return The read boolean
+	 */
+	private static boolean readBoolean(ByteBuffer in) {
+		return in.get() != 0;
+	}
+
+	/**
+	 * This class contains a constant pool entry used by the linker
+	 */
+	public static class ConstantInfo {
+		/**
+		 * The kinds of constant pool entries
+		 */
+		public enum Kind {
+			Class, MemberReference, Integer, Float, Long, Double, String
+		}
+
+		private final Kind aKind;
+		private final int aIndex;
+		private final String aClassName;
+		private final String aMemberName;
+		private final String aDescriptor;
+		private final Object aValue;
+
+		/**
+		 * Constructor
+		 * 
+		 * @param kind The kind of entry
+		 * @param index The index into the constant pool
+		 * @param className The referenced class - for classes and member references
+		 * @param memberName The name of the referenced member - for member references
+		 * @param descriptor The descriptor of the referenced member - for member references
+		 * @param value The value of the constant - for numbers and strings
+		 */
+		ConstantInfo(Kind kind, int index, String className, String memberName,
+				String descriptor, Object value) {
+			aKind = kind;
+			aIndex = index;
+			aClassName = className;
+			aMemberName = memberName;
+			aDescriptor = descriptor;
+			aValue = value;
+		}
+
+		public Kind getKind() {
+			return aKind;
+		}
+
+		public int getIndex() {
+			return aIndex;
+		}
+
+		public String getClassName() {
+			return aClassName;
+		}
+
+		public String getMemberName() {
+			return aMemberName;
+		}
+
+		public String getDescriptor() {
+			return aDescriptor;
+		}
+
+		public Object getValue() {
+			return aValue;
+		}
+
+		/**
+		 * This method writes the entry in binary form
+		 * 
+		 * @param out The stream to write to
+		 * @throws IOException If unable to write
+		 */
+		void write(DataOutputStream out) throws IOException {
+			out.writeByte(aKind.ordinal());
+			out.writeInt(aIndex);
+			switch (aKind) {
+			case Class:
+				writeString(out, aClassName);
+				break;
+			case MemberReference:
+				writeString(out, aClassName);
+				writeString(out, aMemberName);
+				writeString(out, aDescriptor);
+				break;
+			case Integer:
+				out.writeInt((Integer) aValue);
+				break;
+			case Float:
+				out.writeFloat((Float) aValue);
+				break;
+			case Long:
+				out.writeLong((Long) aValue);
+				break;
+			case Double:
+				out.writeDouble((Double) aValue);
+				break;
+			case String:
+				writeString(out, (String) aValue);
+				break;
+			}
+		}
+
+		/**
+		 * This method reads an entry written by {@link #write(DataOutputStream)}
+		 * 
+		 * @param in The buffer to read from
+		 * @return The read entry
+		 */
+		static ConstantInfo read(ByteBuffer in) {
+			Kind kind = Kind.values()[in.get()];
+			int index = in.getInt();
+			String className = null;
+			String memberName = null;
+			String descriptor = null;
+			Object value = null;
+			switch (kind) {
+			case Class:
+				className = readString(in);
+				break;
+			case MemberReference:
+				className = readString(in);
+				memberName = readString(in);
+				descriptor = readString(in);
+				break;
+			case Integer:
+				value = in.getInt();
+				break;
+			case Float:
+				value = in.getFloat();
+				break;
+			case Long:
+				value = in.getLong();
+				break;
+			case Double:
+				value = in.getDouble();
+				break;
+			case String:
+				value = readString(in);
+				break;
+			}
+
+			return new ConstantInfo(kind, index, className, memberName, descriptor, value);
+		}
+	}
+
+	/**
+	 * This class contains the information about a field
+	 */
+	public static class FieldInfo {
+		private final String aName;
+		private final String aSignature;
+		private final int aSize;
+		private final boolean aStatic;
+
+		/**
+		 * Constructor
+		 * 
+		 * @param name The name of the field
+		 * @param signature The signature of the field
+		 * @param size The size of the field in words
+		 * @param isStatic true, if the field is static
+		 */
+		FieldInfo(String name, String signature, int size, boolean isStatic) {
+			aName = name;
+			aSignature = signature;
+			aSize = size;
+			aStatic = isStatic;
+		}
+
+		public String getName() {
+			return aName;
+		}
+
+		public String getSignature() {
+			return aSignature;
+		}
+
+		public int getSize() {
+			return aSize;
+		}
+
+		public boolean isStatic() {
+			return aStatic;
+		}
+	}
+
+	/**
+	 * This class contains the information about a method
+	 */
+	public static class MethodInfo {
+		// Flags:
+		private static final int STATIC = 1;
+		private static final int ABSTRACT = 2;
+		private static final int NATIVE = 4;
+
+		private final String aName;
+		private final String aSignature;
+		private final int aFlags;
+		private final int aNumberOfArguments;
+
+		// Only for native methods:
+		private final String[] aArgumentTypes;
+		private final String aReturnType;
+
+		// Only for methods with code:
+		private final byte[] aCode;
+		private final int aMaxLocals;
+		// Pairs of (line number, start pc):
+		private final int[] aLineNumbers;
+		// Quadruples of (start pc, end pc, handler pc, catch type):
+		private final int[] aExceptionHandlers;
+
+		// The exceptions thrown - constant pool index and class name:
+		private final int[] aThrownIndexes;
+		private final String[] aThrownNames;
+
+		/**
+		 * Constructor
+		 * 
+		 * @param name The name of the method
+		 * @param signature The signature of the method
+		 * @param flags The flags (STATIC, ABSTRACT, NATIVE)
+		 * @param numberOfArguments The number of arguments - counting 'this', and counting long
+		 *            and double as 2
+		 * @param argumentTypes The argument types; null if not native
+		 * @param returnType The return type; null if not native
+		 * @param code The code; null if abstract or native
+		 * @param maxLocals The number of local variables
+		 * @param lineNumbers Pairs of (line number, start pc)
+		 * @param exceptionHandlers Quadruples of (start pc, end pc, handler pc, catch type)
+		 * @param thrownIndexes The constant pool indexes of the thrown exceptions
+		 * @param thrownNames The names of the thrown exceptions
+		 */
+		private MethodInfo(String name, String signature, int flags, int numberOfArguments,
+				String[] argumentTypes, String returnType, byte[] code, int maxLocals,
+				int[] lineNumbers, int[] exceptionHandlers, int[] thrownIndexes,
+				String[] thrownNames) {
+			aName = name;
+			aSignature = signature;
+			aFlags = flags;
+			aNumberOfArguments = numberOfArguments;
+			aArgumentTypes = argumentTypes;
+			aReturnType = returnType;
+			aCode = code;
+			aMaxLocals = maxLocals;
+			aLineNumbers = lineNumbers;
+			aExceptionHandlers = exceptionHandlers;
+			aThrownIndexes = thrownIndexes;
+			aThrownNames = thrownNames;
+		}
+
+		/**
+		 * This method extracts the information from a parsed method
+		 * 
+		 * @param m The parsed method
+		 * @return The extracted information
+		 */
+		static MethodInfo fromMethod(Method m) {
+			int flags = (m.isStatic() ? STATIC : 0) | (m.isAbstract() ? ABSTRACT : 0)
+					| (m.isNative() ? NATIVE : 0);
+
+			// Determine number of arguments to method - 'this' counts also as an
+			// argument:
+			int numberOfArguments = (m.isStatic() ? 0 : 1);
+			for (Type mx : m.getArgumentTypes()) {
+				// Count long / double as 2 arguments:
+				numberOfArguments += mx.getSize();
+			}
+
+			String[] argumentTypes = null;
+			String returnType = null;
+			if (m.isNative()) {
+				argumentTypes = Utility.methodSignatureArgumentTypes(m.getSignature());
+				returnType = Utility.methodSignatureReturnType(m.getSignature());
+			}
+
+			byte[] code = null;
+			int maxLocals = 0;
+			int[] lineNumbers = new int[0];
+			int[] exceptionHandlers = new int[0];
+			if (!m.isAbstract() && !m.isNative() && m.getCode() != null) {
+				code = m.getCode().getCode();
+				maxLocals = m.getCode().getMaxLocals();
+
+				LineNumberTable lnt = m.getCode().getLineNumberTable();
+				if (lnt != null) {
+					LineNumber[] lna = lnt.getLineNumberTable();
+					lineNumbers = new int[lna.length * 2];
+					for (int i = 0; i < lna.length; i++) {
+						lineNumbers[2 * i] = lna[i].getLineNumber();
+						lineNumbers[2 * i + 1] = lna[i].getStartPC();
+					}
+				}
+
+				CodeException[] cea = m.getCode().getExceptionTable();
+				if (cea != null) {
+					exceptionHandlers = new int[cea.length * 4];
+					for (int i = 0; i < cea.length; i++) {
+						exceptionHandlers[4 * i] = cea[i].getStartPC();
+						exceptionHandlers[4 * i + 1] = cea[i].getEndPC();
+						exceptionHandlers[4 * i + 2] = cea[i].getHandlerPC();
+						exceptionHandlers[4 * i + 3] = cea[i].getCatchType();
+					}
+				}
+			}
+
+			int[] thrownIndexes = new int[0];
+			String[] thrownNames = new String[0];
+			ExceptionTable table = m.getExceptionTable();
+			if (table != null) {
+				thrownIndexes = table.getExceptionIndexTable();
+				thrownNames = table.getExceptionNames();
+			}
+
+			return new MethodInfo(m.getName(), m.getSignature(), flags, numberOfArguments,
+					argumentTypes, returnType, code, maxLocals, lineNumbers, exceptionHandlers,
+					thrownIndexes, thrownNames);
+		}
+
+		public String getName() {
+			return aName;
+		}
+
+		public String getSignature() {
+			return aSignature;
+		}
+
+		public boolean isStatic() {
+			return (aFlags & STATIC) != 0;
+		}
+
+		public boolean isAbstract() {
+			return (aFlags & ABSTRACT) != 0;
+		}
+
+		public boolean isNative() {
+			return (aFlags & NATIVE) != 0;
+		}
+
+		public int getNumberOfArguments() {
+			return aNumberOfArguments;
+		}
+
+		public String[] getArgumentTypes() {
+			return aArgumentTypes;
+		}
+
+		public String getReturnType() {
+			return aReturnType;
+		}
+
+		/**
+		 * @return The code of the method; null if the method is abstract or native
+		 */
+		public byte[] getCode() {
+			return aCode;
+		}
+
+		public int getMaxLocals() {
+			return aMaxLocals;
+		}
+
+		/**
+		 * @return Pairs of (line number, start pc)
+		 */
+		public int[] getLineNumbers() {
+			return aLineNumbers;
+		}
+
+		/**
+		 * @return Quadruples of (start pc, end pc, handler pc, catch type)
+		 */
+		public int[] getExceptionHandlers() {
+			return aExceptionHandlers;
+		}
+
+		public int[] getThrownIndexes() {
+			return aThrownIndexes;
+		}
+
+		public String[] getThrownNames() {
+			return aThrownNames;
+		}
+
+		/**
+		 * This method writes the method information in binary form
+		 * 
+		 * @param out The stream to write to
+		 * @throws IOException If unable to write
+		 */
+		void write(DataOutputStream out) throws IOException {
+			writeString(out, aName);
+			writeString(out, aSignature);
+			out.writeByte(aFlags);
+			out.writeInt(aNumberOfArguments);
+			if (isNative()) {
+				writeStrings(out, aArgumentTypes);
+				writeString(out, aReturnType);
+			}
+			out.writeBoolean(aCode != null);
+			if (aCode != null) {
+				out.writeInt(aCode.length);
+				out.write(aCode);
+				out.writeInt(aMaxLocals);
+			}
+			writeInts(out, aLineNumbers);
+			writeInts(out, aExceptionHandlers);
+			writeInts(out, aThrownIndexes);
+			writeStrings(out, aThrownNames);
+		}
+
+		/**
+		 * This method reads the method information written by {@link #write(DataOutputStream)}
+		 * 
+		 * @param in The buffer to read from
+		 * @return The read method information
+		 */
+		static MethodInfo read(ByteBuffer in) {
+			String name = readString(in);
+			String signature = readString(in);
+			int flags = in.get();
+			int numberOfArguments = in.getInt();
+			String[] argumentTypes = null;
+			String returnType = null;
+			if ((flags & NATIVE) != 0) {
+				argumentTypes = readStrings(in);
+				returnType = readString(in);
+			}
+			byte[] code = null;
+			int maxLocals = 0;
+			if (readBoolean(in)) {
+				code = new byte[in.getInt()];
+				in.get(code);
+				maxLocals = in.getInt();
+			}
+			int[] lineNumbers = readInts(in);
+			int[] exceptionHandlers = readInts(in);
+			int[] thrownIndexes = readInts(in);
+			String[] thrownNames = readStrings(in);
+
+			return new MethodInfo(name, signature, flags, numberOfArguments, argumentTypes,
+					returnType, code, maxLocals, lineNumbers, exceptionHandlers, thrownIndexes,
+					thrownNames);
+		}
+
+		/**
+		 * This method writes an array of ints
+		 * 
+		 * @param out The stream to write to
+		 * @param ints The ints to write
+		 * @throws IOException If unable to write
+		 */
+		private static void writeInts(DataOutputStream out, int[] ints) throws IOException {
+			out.writeInt(ints.length);
+			for (int i : ints) {
+				out.writeInt(i);
+			}
+		}
+
+		/**
+		 * This method reads an array of ints written by
+		 * {@link #writeInts(DataOutputStream, int[])}
+		 * 
+		 * @param in The buffer to read from
+		 * @return The read ints
+		 */
+		private static int[] readInts(ByteBuffer in) {
+			int[] ints = new int[in.getInt()];
+			for (int i = 0; i < ints.length; i++) {
+				ints[i] = in.getInt();
+			}
+
+			return ints;
+		}
+	}
+}
@@ -0,0 +1,82 @@
+package thinj;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class implements a bounded cache of class file information, see {@link ClassFileInfo}.
+ * When full, the least recently used class is evicted.
+ */
+public class ClassFileInfoCache {
+	// The default maximum number of classes in the cache:
+	public static final int DEFAULT_CAPACITY = 4096;
+
+	// The cached classes in least recently used order - key is the class name in the form
+	// 'org/example/Foobar':
+	private final LinkedHashMap<String, ClassFileInfo> aClasses;
+
+	// Statistics:
+	private int aHits;
+	private int aMisses;
+	private int aEvictions;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param capacity The maximum number of classes in the cache
+	 */
+	public ClassFileInfoCache(final int capacity) {
+		aClasses = new LinkedHashMap<String, ClassFileInfo>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, ClassFileInfo> eldest) {
+				boolean remove = size() > capacity;
+				if (remove) {
+					aEvictions++;
+				}
+				return remove;
+			}
+		};
+	}
+
+	/**
+	 * This method looks up a class in the cache
+	 * 
+	 * @param className The class name in the form 'org/example/Foobar'
+	 * @return The cached information or null, if not in the cache
+	 */
+	public ClassFileInfo get(String className) {
+		ClassFileInfo info = aClasses.get(className);
+		if (info != null) {
+			aHits++;
+		} else {
+			aMisses++;
+		}
+
+		return info;
+	}
+
+	/**
+	 * This method adds a class to the cache
+	 * 
+	 * @param className The class name in the form 'org/example/Foobar'
+	 * @param info The class file information
+	 */
+	public void put(String className, ClassFileInfo info) {
+		aClasses.put(className, info);
+	}
+
+	/**
+	 * This method empties the cache
+	 */
+	public void clear() {
+		aClasses.clear();
+	}
+
+	@Override
+	public String toString() {
+		return "ClassFileInfoCache [" + aClasses.size() + " classes, " + aHits + " hits, "
+				+ aMisses + " misses, " + aEvictions + " evictions]";
+	}
+}
@@ -0,0 +1,216 @@
+package thinj;
+
+import java.io.ByteArrayInputStream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.bcel.classfile.ClassParser;
+import org.apache.bcel.util.SyntheticRepository;
+
+/**
+ * This class reads and parses class files in the background. The linker calls
+ * {@link #prefetch(String)} as soon as it sees the name of a class it will probably load, and
+ * {@link #getClassFileInfo(String)} when it actually needs the class. Only reading and parsing is
+ * done in the background; everything else - like assigning class ids - is still done by the
+ * caller, in the order the caller decides. Parsed classes are kept in a {@link ClassFileInfoCache},
+ * so a class asked for several times - like a common super class - is only parsed once. If a
+ * {@link MetadataCache} is supplied, class files found in it are not parsed at all.
+ */
+public class ClassPrefetcher {
+	// The reader to read class files with:
+	private final ClassReader aClassReader;
+
+	// The threads reading and parsing. Null if no background threads are used:
+	private final ExecutorService aExecutor;
+
+	// The classes being read or parsed - key is the class name in the form 'org/example/Foobar':
+	private final HashMap<String, Future<ClassFileInfo>> aPending;
+
+	// The names of all classes ever prefetched; each class is only prefetched once:
+	private final HashSet<String> aPrefetchedNames;
+
+	// The classes already parsed:
+	private final ClassFileInfoCache aCache;
+
+	// The persistent cache of parsed classes; null if not used:
+	private final MetadataCache aMetadataCache;
+
+	// Statistics:
+	private int aPrefetched;
+	private int aPrefetchHits;
+	private int aDirectReads;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param classReader The reader to read class files with. Shall be safe to use from several
+	 *            threads.
+	 * @param threadCount The number of background threads. If less than 1, prefetching is disabled
+	 *            and all classes are read when asked for.
+	 * @param cacheCapacity The maximum number of parsed classes to keep
+	 * @param metadataCache The persistent cache of parsed classes; may be null
+	 */
+	public ClassPrefetcher(ClassReader classReader, int threadCount, int cacheCapacity,
+			MetadataCache metadataCache) {
+		aClassReader = classReader;
+		aCache = new ClassFileInfoCache(cacheCapacity);
+		aMetadataCache = metadataCache;
+		aPending = new HashMap<String, Future<ClassFileInfo>>();
+		aPrefetchedNames = new HashSet<String>();
+
+		if (threadCount > 0) {
+			// A JavaClass fetches the default repository when created, and the repository is
+			// lazily created without any locking. So create it here before any parsing in the
+			// background:
+			SyntheticRepository.getInstance();
+
+			aExecutor = Executors.newFixedThreadPool(threadCount, new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(LinkMetrics.measured(r), "thinj-prefetch");
+					// Shall never keep the linker alive:
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		} else {
+			aExecutor = null;
+		}
+	}
+
+	/**
+	 * This method starts reading and parsing a class in the background, unless the class has been
+	 * prefetched before. For arrays, the element class is read; simple type arrays are ignored.
+	 * 
+	 * @param className The name of the class in the form 'org/example/Foobar' or
+	 *            '[Lorg/example/Foobar'
+	 */
+	public void prefetch(String className) {
+		String name = className;
+		if (name.startsWith("[")) {
+			// Array; read the element class, if any:
+			name = name.replaceFirst("^\\[+", "");
+			name = name.startsWith("L") ? name.substring(1) : null;
+		}
+
+		if (aExecutor != null && name != null && aPrefetchedNames.add(name)) {
+			final String elementName = name;
+			aPending.put(name, aExecutor.submit(new Callable<ClassFileInfo>() {
+				@Override
+				public ClassFileInfo call() throws Exception {
+					return parse(elementName);
+				}
+			}));
+			aPrefetched++;
+		}
+	}
+
+	/**
+	 * This method returns a parsed class. If the class is neither cached nor being read in the
+	 * background, the class is read by the calling thread.
+	 * 
+	 * @param className The name of the class in the form 'org/example/Foobar'
+	 * @return The parsed class or null, if the class is not found in the class path
+	 * @throws Exception If unable to read or parse the class file
+	 */
+	public ClassFileInfo getClassFileInfo(String className) throws Exception {
+		ClassFileInfo info = aCache.get(className);
+		if (info == null) {
+			info = readClassFileInfo(className);
+			if (info != null) {
+				aCache.put(className, info);
+			}
+		}
+
+		return info;
+	}
+
+	/**
+	 * This method returns a parsed class not in the cache. If the class is being read in the
+	 * background this method waits for it; otherwise the class is read by the calling thread.
+	 * 
+	 * @param className The name of the class in the form 'org/example/Foobar'
+	 * @return The parsed class or null, if the class is not found in the class path
+	 * @throws Exception If unable to read or parse the class file
+	 */
+	private ClassFileInfo readClassFileInfo(String className) throws Exception {
+		ClassFileInfo info;
+		Future<ClassFileInfo> future = aPending.remove(className);
+		if (future != null) {
+			aPrefetchHits++;
+			try {
+				info = future.get();
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof Exception) {
+					throw (Exception) e.getCause();
+				}
+				throw e;
+			}
+		} else {
+			aDirectReads++;
+			info = parse(className);
+		}
+
+		return info;
+	}
+
+	/**
+	 * This method reads and parses a class. If the class file is found in the persistent cache,
+	 * the class file is not parsed.
+	 * 
+	 * @param className The name of the class in the form 'org/example/Foobar'
+	 * @return The parsed class or null, if the class is not found in the class path
+	 * @throws Exception If unable to parse the class file
+	 */
+	private ClassFileInfo parse(String className) throws Exception {
+		ClassFileInfo info = null;
+		byte[] bytes = aClassReader.getClassBytes(className);
+		if (bytes != null) {
+			String key = null;
+			if (aMetadataCache != null) {
+				key = MetadataCache.getKey(bytes);
+				info = aMetadataCache.get(key);
+			}
+			if (info == null) {
+				info = ClassFileInfo.fromJavaClass(new ClassParser(new ByteArrayInputStream(bytes),
+						className).parse());
+				if (aMetadataCache != null) {
+					aMetadataCache.put(key, info);
+				}
+			}
+		}
+
+		return info;
+	}
+
+	/**
+	 * This method stops the background threads. Classes prefetched but never asked for are
+	 * discarded, and so are the cached classes.
+	 */
+	public void close() {
+		if (aExecutor != null) {
+			aExecutor.shutdownNow();
+		}
+		aPending.clear();
+		aCache.clear();
+	}
+
+	/**
+	 * @return The cache of parsed classes
+	 */
+	public ClassFileInfoCache getCache() {
+		return aCache;
+	}
+
+	@Override
+	public String toString() {
+		return "ClassPrefetcher [" + aPrefetched + " prefetched, " + aPrefetchHits
+				+ " prefetch hits, " + aDirectReads + " direct reads]";
+	}
+}
@@ -1,23 +1,43 @@
 package thinj;
 
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.StringTokenizer;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
-import java.util.zip.ZipEntry;
 
 import org.apache.bcel.classfile.ClassFormatException;
 
 /**
- * This class is responsible for finding a class file within a java class path.
+ * This class is responsible for finding a class file within a java class path. The class path is
+ * indexed when the reader is created, and the jar / zip files are kept open until
+ * {@link #close()} is called. Class files may be read from several threads at the same time.
  */
 public class ClassReader {
 	// The class path to search in:
 	private final File[] aClassPath;
 
+	// The jar / zip files in the class path; kept open:
+	private final LinkedList<JarFile> aJarFiles;
+
+	// Where to find each class - key is the class name in the form 'org/example/Foobar':
+	private final HashMap<String, ClassLocation> aIndex;
+
+	// Statistics:
+	private final AtomicInteger aHits;
+	private final AtomicInteger aMisses;
+	private final AtomicLong aBytesRead;
+
 	/**
 	 * Constructor
 	 * 
@@ -32,56 +52,267 @@ public class ClassReader {
 			String s = st.nextToken();
 			aClassPath[i] = new File(s);
 		}
+
+		aJarFiles = new LinkedList<JarFile>();
+		aIndex = new HashMap<String, ClassLocation>();
+		aHits = new AtomicInteger();
+		aMisses = new AtomicInteger();
+		aBytesRead = new AtomicLong();
+		for (File f : aClassPath) {
+			if (f.isFile()) {
+				indexJarFile(f);
+			} else if (f.isDirectory()) {
+				indexDirectory(f, "");
+			}
+			// else: Ignore non-existing class path elements
+		}
+	}
+
+	/**
+	 * This method adds all class files in a jar / zip file to the index. If a class is already
+	 * indexed - found earlier in the class path - the class in the jar file is ignored.
+	 * 
+	 * @param file The jar / zip file
+	 */
+	private void indexJarFile(File file) {
+		try {
+			JarFile jf = new JarFile(file);
+			aJarFiles.add(jf);
+			Enumeration<JarEntry> entries = jf.entries();
+			while (entries.hasMoreElements()) {
+				JarEntry entry = entries.nextElement();
+				String name = entry.getName();
+				if (name.endsWith(".class") && !entry.isDirectory()) {
+					addToIndex(name.substring(0, name.length() - ".class".length()),
+							new ClassLocation(jf, entry));
+				}
+			}
+		} catch (IOException e) {
+			throw new LinkException("Failed reading " + file.getAbsolutePath(), e);
+		}
+	}
+
+	/**
+	 * This method adds all class files in a directory - and its sub directories - to the index.
+	 * If a class is already indexed - found earlier in the class path - the class in the
+	 * directory is ignored.
+	 * 
+	 * @param dir The directory
+	 * @param packagePrefix The package of the classes in the directory in the form
+	 *            'org/example/'. Empty for the class path root directory.
+	 */
+	private void indexDirectory(File dir, String packagePrefix) {
+		File[] files = dir.listFiles();
+		if (files != null) {
+			for (File f : files) {
+				String name = f.getName();
+				if (f.isDirectory()) {
+					indexDirectory(f, packagePrefix + name + "/");
+				} else if (name.endsWith(".class")) {
+					addToIndex(packagePrefix + name.substring(0, name.length() - ".class".length()),
+							new ClassLocation(f));
+				}
+			}
+		}
+	}
+
+	/**
+	 * This method adds a class to the index, unless already indexed
+	 * 
+	 * @param className The class name in the form 'org/example/Foobar'
+	 * @param location Where to find the class
+	 */
+	private void addToIndex(String className, ClassLocation location) {
+		if (aIndex.get(className) == null) {
+			aIndex.put(className, location);
+		}
 	}
 
 	/**
 	 * This method will create an InputStream from which the requested class file can be
 	 * read. If unable to lookup the file in the class path (supplied in constructor),
-	 * this method will call System.exit.
+	 * a LinkException is thrown.
 	 * 
 	 * @param fileName The file name in the form 'org/example/Foobar'
 	 * @return The stream from which the class can be read.
 	 */
 	public InputStream getClassFileReader(String fileName) {
-		// Search through the class path list:
-		InputStream fis = null;
-
-		for (int i = 0; i < aClassPath.length && fis == null; i++) {
-			if (aClassPath[i].isFile()) {
-				// Jar / Zip
-				try {
-					JarFile jf = new JarFile(aClassPath[i]);
-					ZipEntry entry = jf.getJarEntry(fileName + ".class");
-					if (entry != null) {
-						fis = jf.getInputStream(entry);
-					}
-					// else: Entry does not exist in this jar; continue search
-				} catch (IOException e) {
-					System.err.println("Failed reading class '" + fileName + "' from "
-							+ aClassPath[i].getAbsolutePath());
-					System.exit(1);
+		byte[] bytes = getClassBytes(fileName);
+
+		if (bytes == null) {
+			throw new LinkException("Class not found: " + fileName, new ClassNotFoundException(
+					fileName));
+		}
+		return new ByteArrayInputStream(bytes);
+	}
+
+	/**
+	 * This method reads the contents of a class file. If unable to read an existing class file,
+	 * a LinkException is thrown.
+	 * 
+	 * @param fileName The file name in the form 'org/example/Foobar'
+	 * @return The contents of the class file or null, if the class is not in the class path
+	 */
+	public byte[] getClassBytes(String fileName) {
+		ClassLocation location = aIndex.get(fileName);
+		byte[] bytes = null;
+		if (location != null) {
+			try {
+				bytes = location.read();
+			} catch (IOException e) {
+				throw new LinkException("Failed reading class '" + fileName + "' from "
+						+ location, e);
+			}
+			aHits.incrementAndGet();
+			aBytesRead.addAndGet(bytes.length);
+		} else {
+			aMisses.incrementAndGet();
+		}
+
+		return bytes;
+	}
+
+	/**
+	 * @return The names of all classes in the class path, sorted, in the form 'org/example/Foobar'
+	 */
+	public TreeSet<String> getClassNames() {
+		return new TreeSet<String>(aIndex.keySet());
+	}
+
+	/**
+	 * This method closes the jar / zip files in the class path. No classes can be read after
+	 * this call.
+	 */
+	public void close() {
+		for (JarFile jf : aJarFiles) {
+			try {
+				jf.close();
+			} catch (IOException e) {
+				// Ignore; nothing more to read anyway
+			}
+		}
+		aJarFiles.clear();
+	}
+
+	/**
+	 * @return The number of classes found in the class path
+	 */
+	public int getHits() {
+		return aHits.get();
+	}
+
+	/**
+	 * @return The number of classes not found in the class path
+	 */
+	public int getMisses() {
+		return aMisses.get();
+	}
+
+	/**
+	 * @return The total number of bytes read from class files
+	 */
+	public long getBytesRead() {
+		return aBytesRead.get();
+	}
+
+	@Override
+	public String toString() {
+		return "ClassReader [" + aIndex.size() + " classes indexed, " + aHits + " hits, "
+				+ aMisses + " misses, " + aBytesRead + " bytes read]";
+	}
+
+	/**
+	 * This class identifies where a class file is found: Either as a file in a directory or as an
+	 * entry in a jar / zip file
+	 */
+	private static class ClassLocation {
+		private final File aFile;
+		private final JarFile aJarFile;
+		private final JarEntry aEntry;
+
+		/**
+		 * Constructor for class files in directories
+		 * 
+		 * @param file The class file
+		 */
+		ClassLocation(File file) {
+			aFile = file;
+			aJarFile = null;
+			aEntry = null;
+		}
+
+		/**
+		 * Constructor for class files in jar / zip files
+		 * 
+		 * @param jarFile The jar file
+		 * @param entry The class file entry in the jar file
+		 */
+		ClassLocation(JarFile jarFile, JarEntry entry) {
+			aFile = null;
+			aJarFile = jarFile;
+			aEntry = entry;
+		}
+
+		/**
+		 * This method reads the entire class file in one go
+		 * 
+		 * @return The contents of the class file
+		 * @throws IOException If unable to read the class file
+		 */
+		byte[] read() throws IOException {
+			InputStream is;
+			long size;
+			if (aFile != null) {
+				is = new FileInputStream(aFile);
+				size = aFile.length();
+			} else {
+				is = aJarFile.getInputStream(aEntry);
+				size = aEntry.getSize();
+			}
+
+			try {
+				byte[] bytes;
+				if (size >= 0) {
+					bytes = new byte[(int) size];
+					new DataInputStream(is).readFully(bytes);
+				} else {
+					// Size unknown in the zip directory; read until end of stream:
+					bytes = readAll(is);
 				}
-			} else if (aClassPath[i].isDirectory()) {
-				String s = aClassPath[i].getPath() + File.separator + fileName + ".class";
-				File f = new File(s);
-				if (f.exists() && f.isFile()) {
-					try {
-						fis = new FileInputStream(f);
-					} catch (FileNotFoundException e) {
-						System.err.println("File not found: " + s);
-						System.exit(1);
-					}
+				return bytes;
+			} finally {
+				is.close();
+			}
+		}
+
+		/**
+		 * This method reads a stream until end of stream
+		 * 
+		 * @param is The stream to read
+		 * @return The bytes read
+		 * @throws IOException If unable to read the stream
+		 */
+		private static byte[] readAll(InputStream is) throws IOException {
+			byte[] bytes = new byte[4096];
+			int length = 0;
+			int n;
+			while ((n = is.read(bytes, length, bytes.length - length)) > 0) {
+				length += n;
+				if (length == bytes.length) {
+					byte[] larger = new byte[bytes.length * 2];
+					System.arraycopy(bytes, 0, larger, 0, length);
+					bytes = larger;
 				}
 			}
+			byte[] result = new byte[length];
+			System.arraycopy(bytes, 0, result, 0, length);
+			return result;
 		}
 
-		if (fis == null) {
-			Exception e =  new ClassNotFoundException(fileName);
-			System.err.println("Class not found: " + fileName);
-			e.printStackTrace();
-			System.exit(1);
+		@Override
+		public String toString() {
+			return aFile != null ? aFile.getPath() : aJarFile.getName() + "!" + aEntry.getName();
 		}
-		return fis;
 	}
 
 	public static void main(String[] args) throws ClassFormatException, IOException,
@@ -106,5 +337,7 @@ public class ClassReader {
 			InputStream is = cr.getClassFileReader(s);
 			System.out.println("Found: " + s);
 		}
+		System.out.println(cr);
+		cr.close();
 	}
 }
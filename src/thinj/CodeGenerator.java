@@ -1,18 +1,27 @@
 package thinj;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.PrintStream;
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import thinj.NativeTypeRepository.NativeTypeHandler;
 import thinj.instructions.AbstractInstruction;
 import thinj.instructions.InstructionHandler;
+import thinj.instructions.InstructionList;
+import thinj.instructions.InstructionMapping;
 import thinj.linkmodel.ClassInSuite;
 import thinj.linkmodel.ClassReference;
 import thinj.linkmodel.ClassTypeEnum;
@@ -25,6 +34,7 @@ import thinj.linkmodel.MemberReference;
 import thinj.linkmodel.MemberReferenceTypeEnum;
 import thinj.linkmodel.MethodInClass;
 import thinj.linkmodel.MethodOrField;
+import thinj.optimizer.Verifier;
 
 /**
  * This class is responsible for generation of C - code for the suite
@@ -34,20 +44,62 @@ import thinj.linkmodel.MethodOrField;
  */
 public class CodeGenerator {
 	private final LinkModel aLinkModel;
-	private PrintStream aHeader;
-	private PrintStream aSuite;
-	private PrintStream aTrace;
+
+	// The instructions referenced by the code of the suite:
+	private final InstructionMapping aInstructionMapping;
 	private HashMap<Integer, ConstantPoolEntry> aConstantPools;
 	private TreeSet<String> aVmClasses;
 	private TreeSet<Member> aVmRefSet;
 
-	public CodeGenerator(LinkModel linkModel) {
+	// The number of threads rendering sections; if 0, all sections are rendered by the calling
+	// thread:
+	private final int aThreadCount;
+
+	// The number of bytes in the generated files:
+	private long aBytesEmitted;
+
+	// The verifier of the code; null if the code has not been verified:
+	private Verifier aVerifier;
+
+	// The generated files left as they were, as their contents did not change:
+	private final List<String> aUnchangedFiles;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param linkModel The link model to generate code for
+	 * @param instructionMapping Receives the instructions referenced by the code of the suite
+	 * @param threadCount The number of threads rendering the sections of the generated files. If
+	 *            0, the sections are rendered one after another by the thread generating the code.
+	 */
+	public CodeGenerator(LinkModel linkModel, InstructionMapping instructionMapping,
+			int threadCount) {
 		aLinkModel = linkModel;
+		aInstructionMapping = instructionMapping;
 		aConstantPools = new HashMap<Integer, ConstantPoolEntry>();
+		aThreadCount = threadCount;
+		aUnchangedFiles = new ArrayList<String>();
 	}
 
 	/**
-	 * This method generates all C-code based on link model and arguments
+	 * This method sets the verifier having verified the code of the suite. If set, the result of
+	 * the verification is generated, see {@link #dumpVerification(PrintStream, PrintStream)}.
+	 * 
+	 * @param verifier The verifier; null if the code has not been verified
+	 */
+	public void setVerifier(Verifier verifier) {
+		aVerifier = verifier;
+	}
+
+	/**
+	 * This method generates all C-code based on link model and arguments. The generated files are
+	 * only written if their contents change, see {@link UpdatingFileOutputStream}.<br/>
+	 * <br/>
+	 * The files are generated as a sequence of sections, each rendered into its own buffers. Most
+	 * sections only read the link model, so they are rendered concurrently; the code is split into
+	 * several sections of whole methods. The constant pools depend on the field and method
+	 * sections, so they are rendered when all other sections are done. Finally the buffers are
+	 * written to the files in order, so the files are the same no matter the number of threads.
 	 * 
 	 * @param mainClassName The name of the main class
 	 * @param outputBaseName
@@ -55,43 +107,63 @@ public class CodeGenerator {
 	 * @param vmClasses The mandatory classes referenced by the VM
 	 * @param vmRefList
 	 */
-	public void generateCode(String mainClassName, String outputBaseName, int startAddress,
-			HashSet<String> vmClasses, List<Member> vmRefList) {
+	public void generateCode(final String mainClassName, String outputBaseName,
+			final int startAddress, HashSet<String> vmClasses, List<Member> vmRefList) {
 		// To be able to produce a sorted list:
 		aVmClasses = new TreeSet<String>(vmClasses);
 		aVmRefSet = new TreeSet<Member>(vmRefList);
-		String headerFileName = outputBaseName + ".h";
-		try {
-			aHeader = new PrintStream(headerFileName);
-			aSuite = new PrintStream(outputBaseName + ".c");
-			aTrace = new PrintStream(outputBaseName + ".trace");
-		} catch (FileNotFoundException e) {
-			System.err.println("Failed to open map file: ");
-			e.printStackTrace();
-			System.exit(1);
-		}
-		sectionHeader(aSuite, "This file is autogenerated; any modifications might be lost");
-		aSuite.println();
-		aSuite.println("#include \"constantpool.h\"");
-		aSuite.println("#include \"operandstack.h\"");
-		aSuite.println("#include \"jni.h\"");
-		aSuite.println("#include \"instructions.h\"");
-		aSuite.println("#include \"" + new File(headerFileName).getName() + "\"");
+		final String headerFileName = outputBaseName + ".h";
 
 		// Find used instructions:
 		referenceInstructions();
 
-		sectionHeader(aSuite, "", "Declarations");
-		AbstractInstruction.generateDeclarations(aSuite);
+		// The field and method sections fill in the constant pool entries; create the entries
+		// before the sections are rendered concurrently:
+		for (int classId = 0; classId < aLinkModel.getTotalClassCount(); classId++) {
+			getConstantPoolEntry(classId);
+		}
+
+		final MethodInClass[] methods = aLinkModel.getAllMethods();
+		ArrayList<Section> sections = new ArrayList<Section>();
+		sections.add(new Section() {
+			@Override
+			protected void render(PrintStream suite, PrintStream header, PrintStream trace) {
+				sectionHeader(suite, "This file is autogenerated; any modifications might be lost");
+				suite.println();
+				suite.println("#include \"constantpool.h\"");
+				suite.println("#include \"operandstack.h\"");
+				suite.println("#include \"jni.h\"");
+				suite.println("#include \"instructions.h\"");
+				suite.println("#include \"" + new File(headerFileName).getName() + "\"");
+
+				sectionHeader(suite, "", "Declarations");
+				AbstractInstruction.generateDeclarations(suite);
+			}
+		});
 
 		// Dump class info to be used during 'new' - execution:
-		dumpClassInstanceInfo();
+		sections.add(new Section() {
+			@Override
+			protected void render(PrintStream suite, PrintStream header, PrintStream trace) {
+				dumpClassInstanceInfo(suite, header);
+			}
+		});
 
 		// Dump all class references:
-		dumpClassReferences();
+		sections.add(new Section() {
+			@Override
+			protected void render(PrintStream suite, PrintStream header, PrintStream trace) {
+				dumpClassReferences(suite);
+			}
+		});
 
 		// Dump ids required by VM:
-		dumpLinkIds();
+		sections.add(new Section() {
+			@Override
+			protected void render(PrintStream suite, PrintStream header, PrintStream trace) {
+				dumpLinkIds(suite, header);
+			}
+		});
 
 		// // Dump all array info:
 		// dumpArrayInfo();
@@ -99,67 +171,262 @@ public class CodeGenerator {
 		// - mangler at frasortere de referencer, som ikke er i spil
 
 		// Dump all fields:
-		dumpFields();
+		sections.add(new Section() {
+			@Override
+			protected void render(PrintStream suite, PrintStream header, PrintStream trace) {
+				dumpFields(suite, header);
+			}
+		});
 
 		// Dump all non-native method info:
-		dumpMethods();
+		sections.add(new Section() {
+			@Override
+			protected void render(PrintStream suite, PrintStream header, PrintStream trace) {
+				dumpMethods(suite, header);
+			}
+		});
+		if (aVerifier != null) {
+			sections.add(new Section() {
+				@Override
+				protected void render(PrintStream suite, PrintStream header, PrintStream trace) {
+					dumpVerification(suite, header);
+				}
+			});
+		}
+		sections.add(new Section() {
+			@Override
+			protected void render(PrintStream suite, PrintStream header, PrintStream trace) {
+				dumpExceptionHandlers(suite, methods);
+			}
+		});
+		sections.add(new Section() {
+			@Override
+			protected void render(PrintStream suite, PrintStream header, PrintStream trace) {
+				dumpTraceInfo(trace, methods);
+			}
+		});
 
 		// Dump all native method info:
-		dumpNativeMethodInfo();
+		sections.add(new Section() {
+			@Override
+			protected void render(PrintStream suite, PrintStream header, PrintStream trace) {
+				dumpNativeMethodInfo(suite);
+			}
+		});
 
 		// Dump all constant references:
-		dumpContantReferences();
+		sections.add(new Section() {
+			@Override
+			protected void render(PrintStream suite, PrintStream header, PrintStream trace) {
+				dumpContantReferences(suite);
+			}
+		});
 
 		// // Dump all class references:
 		// dumpClassReferences();
 
-		// Dump all code:
-		dumpAllCode();
+		// Dump all code into a single u1 array:
+		addCodeSections(sections, methods);
+
+		renderSections(sections);
 
 		// Dump constant pools:
-		dumpConstantPools();
+		Section constantPools = new Section() {
+			@Override
+			protected void render(PrintStream suite, PrintStream header, PrintStream trace) {
+				dumpConstantPools(suite);
+
+				// Miscellaneous:
+				sectionHeader(suite, "Startup information");
+				suite.println("const u2 startClassIndex = "
+						+ aLinkModel.getClassIdByName(ClassInSuite.getGlobalName(mainClassName))
+						+ ";");
+				suite.println("const codeIndex startAddress = "
+						+ String.format("0x%04x", startAddress) + ";");
+			}
+		};
+		constantPools.run();
+		sections.add(constantPools);
+
+		UpdatingFileOutputStream headerFile = new UpdatingFileOutputStream(headerFileName);
+		UpdatingFileOutputStream suiteFile = new UpdatingFileOutputStream(outputBaseName + ".c");
+		UpdatingFileOutputStream traceFile = new UpdatingFileOutputStream(outputBaseName
+				+ ".trace");
+		try {
+			for (Section section : sections) {
+				section.writeTo(headerFile, suiteFile, traceFile);
+			}
+		} catch (IOException e) {
+			throw new LinkException("Failed generating code: " + e.getMessage(), e);
+		}
+		closeOutput(headerFile);
+		closeOutput(suiteFile);
+		closeOutput(traceFile);
+	}
+
+	/**
+	 * This method adds the sections dumping the code of all methods into a single u1 array. The
+	 * methods are split into a number of sections, so the code can be rendered concurrently.
+	 * 
+	 * @param sections The list of sections to add to
+	 * @param methods All methods
+	 */
+	private void addCodeSections(List<Section> sections, MethodInClass[] methods) {
+		final LinkedList<MethodInClass> codeMethods = new LinkedList<MethodInClass>();
+		for (MethodInClass mic : methods) {
+			if (mic.isReferenced() && mic.getType() != MethodInClass.Type.AbstractMethod) {
+				codeMethods.add(mic);
+			}
+		}
 
-		// Miscellaneous:
-		sectionHeader(aSuite, "Startup information");
-		aSuite.println("const u2 startClassIndex = "
-				+ aLinkModel.getClassIdByName(ClassInSuite.getGlobalName(mainClassName)) + ";");
-		aSuite.println("const codeIndex startAddress = " + String.format("0x%04x", startAddress)
-				+ ";");
+		sections.add(new Section() {
+			@Override
+			protected void render(PrintStream suite, PrintStream header, PrintStream trace) {
+				sectionHeader(suite, "Byte Code");
+				suite.println("const u1 code[] = {");
+			}
+		});
 
-		aHeader.close();
-		aSuite.close();
-		aTrace.close();
+		// A few sections per thread evens out the differences in method sizes:
+		int methodsPerSection = Math.max(1, codeMethods.size() / (Math.max(1, aThreadCount) * 4));
+		int codeSize = 0;
+		ArrayList<MethodInClass> sectionMethods = new ArrayList<MethodInClass>();
+		for (MethodInClass mic : codeMethods) {
+			sectionMethods.add(mic);
+			codeSize += mic.getCode().length;
+			if (sectionMethods.size() == methodsPerSection || mic == codeMethods.getLast()) {
+				final MethodInClass[] chunk = sectionMethods
+						.toArray(new MethodInClass[sectionMethods.size()]);
+				sections.add(new Section() {
+					@Override
+					protected void render(PrintStream suite, PrintStream header, PrintStream trace) {
+						for (MethodInClass mic : chunk) {
+							dumpCode(suite, mic);
+						}
+					}
+				});
+				sectionMethods.clear();
+			}
+		}
+
+		final int totalCodeSize = codeSize;
+		sections.add(new Section() {
+			@Override
+			protected void render(PrintStream suite, PrintStream header, PrintStream trace) {
+				suite.println("};");
+				suite.println("const u2 codeSize = " + totalCodeSize + ";");
+			}
+		});
+	}
+
+	/**
+	 * This method renders a number of sections on a thread pool of {@link #aThreadCount} threads
+	 * and waits for all of them to finish. If rendering of a section fails, the failure is rethrown
+	 * as a LinkException.
+	 * 
+	 * @param sections The sections to render
+	 */
+	private void renderSections(List<Section> sections) {
+		if (aThreadCount <= 0) {
+			for (Section section : sections) {
+				section.run();
+			}
+			return;
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(aThreadCount, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(LinkMetrics.measured(r), "thinj-codegen");
+				// Shall never keep the linker alive:
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		try {
+			LinkedList<Future<?>> futures = new LinkedList<Future<?>>();
+			for (Section section : sections) {
+				futures.add(executor.submit(section));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			throw new LinkException("Interrupted while generating code", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof LinkException) {
+				throw (LinkException) e.getCause();
+			}
+			throw new LinkException("Failed generating code: " + e.getCause(), e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * @return The number of bytes in the generated files; 0 until {@link #generateCode} is done
+	 */
+	public long getBytesEmitted() {
+		return aBytesEmitted;
+	}
+
+	/**
+	 * @return The names of the generated files not written, as their contents did not change;
+	 *         empty until {@link #generateCode} is done
+	 */
+	public List<String> getUnchangedFiles() {
+		return aUnchangedFiles;
+	}
+
+	/**
+	 * This method closes a generated file. If unable to write the file, a LinkException is thrown.
+	 * 
+	 * @param file The generated file
+	 */
+	private void closeOutput(UpdatingFileOutputStream file) {
+		aBytesEmitted += file.size();
+		try {
+			file.close();
+		} catch (IOException e) {
+			throw new LinkException("Failed writing: " + file.getFile().getPath() + ": "
+					+ e.getMessage(), e);
+		}
+		if (!file.isWritten()) {
+			aUnchangedFiles.add(file.getFile().getPath());
+		}
 	}
 
 	/**
 	 * This method dumps the array of constant pool
+	 * 
+	 * @param suite The stream to receive the generated code
 	 */
-	private void dumpConstantPools() {
-		sectionHeader(aSuite, "Constant Pools");
-		aSuite.println("const constantPool const allConstantPools[] = {");
+	private void dumpConstantPools(PrintStream suite) {
+		sectionHeader(suite, "Constant Pools");
+		suite.println("const constantPool const allConstantPools[] = {");
 		for (int classId = 0; classId < aLinkModel.getTotalClassCount(); classId++) {
 			ConstantPoolEntry cp = aConstantPools.get(classId);
-			aSuite.println("    // " + classId + ": "
+			suite.println("    // " + classId + ": "
 					+ aLinkModel.getClassById(classId).getClassName());
 			// Method references:
 			String s = cp.getMethodReferencesLength() == 0 ? "NULL" : cp.getMethodReferences();
-			aSuite.print("    {" + s + ", " + cp.getMethodReferencesLength());
+			suite.print("    {" + s + ", " + cp.getMethodReferencesLength());
 
 			// Method instances:
 			s = cp.getNumberOfMethods() == 0 ? "NULL" : cp.getMethodsInClass();
-			aSuite.print(", " + s + ", " + cp.getNumberOfMethods());
+			suite.print(", " + s + ", " + cp.getNumberOfMethods());
 
 			// Field references:
 			s = cp.getFieldReferencesLength() == 0 ? "NULL" : cp.getFieldReferences();
-			aSuite.print(", " + s + ", " + cp.getFieldReferencesLength());
+			suite.print(", " + s + ", " + cp.getFieldReferencesLength());
 
 			// Field instances:
 			s = cp.getNumberOfFields() == 0 ? "NULL" : cp.getFieldsInClass();
-			aSuite.print(", " + s + ", " + cp.getNumberOfFields());
+			suite.print(", " + s + ", " + cp.getNumberOfFields());
 
-			aSuite.println("},");
+			suite.println("},");
 		}
-		aSuite.println("};");
+		suite.println("};");
 	}
 
 	/**
@@ -170,11 +437,10 @@ public class CodeGenerator {
 		MethodInClass[] methods = aLinkModel.getAllMethods();
 		for (MethodInClass mic : methods) {
 			if (mic.isReferenced()) {
-				mic.getCode();
-				AbstractInstruction.disassemble(0, mic.getCode(), new InstructionHandler() {
+				mic.getInstructions().handle(0, new InstructionHandler() {
 					@Override
 					public void handle(int address, AbstractInstruction instruction) {
-						instruction.referenced();
+						aInstructionMapping.referenced(instruction);
 					}
 				});
 			}
@@ -190,6 +456,20 @@ public class CodeGenerator {
 		sectionHeaderLn(ps, "", s);
 	}
 
+	/**
+	 * This method appends a comments section to both the code and the declarations. A line feed is
+	 * appended to the code only - twice, as has always been done.
+	 * 
+	 * @param suite The stream receiving the generated code
+	 * @param header The stream receiving the generated declarations
+	 * @param s The comment to add
+	 */
+	private void sectionHeaders(PrintStream suite, PrintStream header, String s) {
+		sectionHeader(suite, s);
+		sectionHeader(header, "", s);
+		suite.println();
+	}
+
 	/**
 	 * This method appends a comments section to the output. each line in the section is prefixed by
 	 * 'prefix'. A line feed is appended
@@ -199,7 +479,7 @@ public class CodeGenerator {
 	 */
 	private void sectionHeaderLn(PrintStream ps, String prefix, String s) {
 		sectionHeader(ps, prefix, s);
-		aSuite.println();
+		ps.println();
 	}
 
 	/**
@@ -241,14 +521,16 @@ public class CodeGenerator {
 
 	/**
 	 * This method generates code for information about class instances.
+	 * 
+	 * @param suite The stream to receive the generated code
+	 * @param header The stream to receive the generated declarations
 	 */
-	private void dumpClassInstanceInfo() {
-		sectionHeader(aSuite, "Class Instance Information");
-		sectionHeader(aHeader, "Class Instance Information");
+	private void dumpClassInstanceInfo(PrintStream suite, PrintStream header) {
+		sectionHeaders(suite, header, "Class Instance Information");
 
 		ClassInSuite[] classes = aLinkModel.getAllClasses();
 
-		aSuite.println("const classInstanceInfoDef const allClassInstanceInfo[] = {");
+		suite.println("const classInstanceInfoDef const allClassInstanceInfo[] = {");
 		ClassInSuite javaLangString = null;
 		ClassInSuite javaLangClass = null;
 		int count = 0;
@@ -289,11 +571,11 @@ public class CodeGenerator {
 				}
 
 				if (!aVmClasses.contains(cis.getClassName())) {
-					aHeader.println("#define " + generateClassIdMacro(cis.getClassName()) + " "
+					header.println("#define " + generateClassIdMacro(cis.getClassName()) + " "
 							+ cis.getClassId());
 				}
 
-				aSuite.println(String.format("    {%4d,%4d,%4d,%4d, %-16s%4d, %-16s}, // %d:%s",
+				suite.println(String.format("    {%4d,%4d,%4d,%4d, %-16s%4d, %-16s}, // %d:%s",
 						superClassId, instanceSize, interfaceCount,
 						cis.getImplementedInterfaces().length,
 						String.format("%s,", cis.getClassType().getClassTypeName()),
@@ -320,102 +602,104 @@ public class CodeGenerator {
 				// Tables.add(implInter);
 			}
 		}
-		aSuite.println("};");
-		aSuite.println("const u2 numberOfAllClassInstanceInfo = " + count + ";");
+		suite.println("};");
+		suite.println("const u2 numberOfAllClassInstanceInfo = " + count + ";");
 /*
-		sectionHeader(aSuite, "Special java classes");
+		sectionHeader(suite, "Special java classes");
 		if (javaLangString != null) {
-			aSuite.println("const u2 javaLangStringClassIndex = " + javaLangString.getClassId()
+			suite.println("const u2 javaLangStringClassIndex = " + javaLangString.getClassId()
 					+ ";");
 		} else {
-			aSuite.println("const u2 javaLangStringClassIndex = 0; // Dummy value");
+			suite.println("const u2 javaLangStringClassIndex = 0; // Dummy value");
 		}
 
 		if (javaLangClass != null) {
-			aSuite.println("const u2 javaLangClassClassIndex = " + javaLangClass.getClassId() + ";");
+			suite.println("const u2 javaLangClassClassIndex = " + javaLangClass.getClassId() + ";");
 		} else {
-			aSuite.println("const u2 javaLangClassClassIndex = 0; // Dummy value");
+			suite.println("const u2 javaLangClassClassIndex = 0; // Dummy value");
 		}
 */
-		sectionHeader(aSuite, "Implemented interfaces");
+		sectionHeader(suite, "Implemented interfaces");
 		// The interfaces implemented by the misc. classes:
-		aSuite.println("const u2 const implementedInterfaces[] = {");
+		suite.println("const u2 const implementedInterfaces[] = {");
 		for (String s : implementedInterfaces) {
-			aSuite.println("    " + s);
+			suite.println("    " + s);
 		}
-		aSuite.println("};");
+		suite.println("};");
 
 	}
 
-	private void dumpLinkIds() {
-		sectionHeader(aSuite, "Class referenced by VM");
-		sectionHeader(aHeader, "Class referenced by VM");
+	private void dumpLinkIds(PrintStream suite, PrintStream header) {
+		sectionHeaders(suite, header, "Class referenced by VM");
 		// Dump mandatory class ids:
 		for (String className : aVmClasses) {
 			ClassInSuite cis = aLinkModel.getClassByName(className);
 			if (cis.isReferenced()) {
 				if (aVmClasses.contains(cis.getClassName())) {
-					aSuite.println("const u2 " + generateClassIdMacro(cis.getClassName()) + " = "
+					suite.println("const u2 " + generateClassIdMacro(cis.getClassName()) + " = "
 							+ cis.getClassId() + ";");
 
-					aHeader.println("extern const u2 " + generateClassIdMacro(cis.getClassName()) + ";");
+					header.println("extern const u2 " + generateClassIdMacro(cis.getClassName()) + ";");
 				}
 			} else {
-				NewLinker.exit("Mandatory class is not referenced: " + className, 1);
+				throw new LinkException("Mandatory class is not referenced: " + className);
 			}
 		}
 
-		sectionHeader(aSuite, "Link Ids referenced by VM");
-		sectionHeader(aHeader, "Link Ids referenced by VM");
+		sectionHeaders(suite, header, "Link Ids referenced by VM");
 		for (Member member : aVmRefSet) {
 			int classId = aLinkModel.getClassIdByName(member.getClassName());
-			MethodOrField mof = aLinkModel.getMethodOrField(classId, member.getSignature().getName(),
-					member.getSignature().getDescriptor());
-			aSuite.println("const u2 " + generateMemberLinkIdMacro(member) + " = " + mof.getLinkId()
+			MethodOrField mof = aLinkModel.getMethodOrField(classId, member.getSignature());
+			suite.println("const u2 " + generateMemberLinkIdMacro(member) + " = " + mof.getLinkId()
 					+ ";");
-			aHeader.println("extern const u2 " + generateMemberLinkIdMacro(member) + ";");
+			header.println("extern const u2 " + generateMemberLinkIdMacro(member) + ";");
 		}
 
 	}
 
 	/**
 	 * This method dumps all constant references
+	 * 
+	 * @param suite The stream to receive the generated code
 	 */
-	private void dumpContantReferences() {
-		dumpContantReferences("Integer", aLinkModel.getAllIntegerConstantReferences());
-		dumpContantReferences("Long", aLinkModel.getAllLongConstantReferences());
-		dumpContantReferences("Float", aLinkModel.getAllFloatConstantReferences());
-		dumpContantReferences("Double", aLinkModel.getAllDoubleConstantReferences());
-		dumpStringContantReferences();
+	private void dumpContantReferences(PrintStream suite) {
+		dumpContantReferences(suite, "Integer", aLinkModel.getAllIntegerConstantReferences());
+		dumpContantReferences(suite, "Long", aLinkModel.getAllLongConstantReferences());
+		dumpContantReferences(suite, "Float", aLinkModel.getAllFloatConstantReferences());
+		dumpContantReferences(suite, "Double", aLinkModel.getAllDoubleConstantReferences());
+		dumpStringContantReferences(suite);
 	}
 
 	/**
 	 * This method dumps all integer constant references
 	 * 
 	 * @param <T>
+	 * @param suite The stream to receive the generated code
 	 */
-	private <T> void dumpContantReferences(String type,
+	private <T> void dumpContantReferences(PrintStream suite, String type,
 			List<ConstantReference<T>> constantReferences) {
-		sectionHeader(aSuite, type + " Constant References");
+		sectionHeader(suite, type + " Constant References");
 
-		aSuite.println("const u2 numberOfAll" + type + "ConstantReferences = "
+		suite.println("const u2 numberOfAll" + type + "ConstantReferences = "
 				+ constantReferences.size() + ";");
 
 		String lowerCaseType = type.substring(0, 1).toLowerCase() + type.substring(1);
-		aSuite.println("const " + lowerCaseType + "ConstantReference const all" + type
+		suite.println("const " + lowerCaseType + "ConstantReference const all" + type
 				+ "ConstantReferences[] = {");
 		for (ConstantReference<T> ref : constantReferences) {
-			aSuite.println("    {" + ref.getClassId() + ", " + ref.getConstantPoolIndex() + ", "
+			suite.println("    {" + ref.getClassId() + ", " + ref.getConstantPoolIndex() + ", "
 					+ ref.getValue() + "}, ");
 		}
-		aSuite.println("};");
+		suite.println("};");
 	}
 
 	/**
 	 * This method dumps all used class references
+	 * 
+	 * @param suite The stream to receive the generated code
 	 */
-	private void dumpClassReferences() {
-		sectionHeader(aSuite, "Class References");
+	private void dumpClassReferences(PrintStream suite) {
+		sectionHeader(suite, "Class References");
 
 		// Sort class references:
 		ClassReference[] classReferences = aLinkModel.getAllClassReferences();
@@ -435,23 +719,23 @@ public class CodeGenerator {
 		}
 
 		int count = 0;
-		aSuite.println("const classReference const allClassReferences[] = {");
+		suite.println("const classReference const allClassReferences[] = {");
 		int prevClassId = -1;
 		for (ClassReference ref : ts) {
 			if (ref.isReferenced()) {
 				count++;
 				if (prevClassId != ref.getClassId()) {
-					aSuite.println("    // Class Id: " + ref.getClassId());
+					suite.println("    // Class Id: " + ref.getClassId());
 					prevClassId = ref.getClassId();
 				}
-				aSuite.println("    {" + ref.getClassId() + ", " + ref.getConstantPoolIndex()
+				suite.println("    {" + ref.getClassId() + ", " + ref.getConstantPoolIndex()
 						+ ", " + ref.getTargetClassId() + "}, // \"" + ref.getClassName() + "\"");
 			}
 		}
 
-		aSuite.println("};");
+		suite.println("};");
 
-		aSuite.println("const u2 numberOfAllClassReferences = " + count + ";");
+		suite.println("const u2 numberOfAllClassReferences = " + count + ";");
 	}
 
 	// /**
@@ -476,27 +760,32 @@ public class CodeGenerator {
 
 	/**
 	 * This method dumps all string constant references
+	 * 
+	 * @param suite The stream to receive the generated code
 	 */
-	private void dumpStringContantReferences() {
-		sectionHeader(aSuite, "String Constant References");
+	private void dumpStringContantReferences(PrintStream suite) {
+		sectionHeader(suite, "String Constant References");
 
 		List<ConstantReference<String>> references = aLinkModel.getAllStringConstantReferences();
 
-		aSuite.println("const u2 numberOfAllStringConstantReferences = " + references.size() + ";");
+		suite.println("const u2 numberOfAllStringConstantReferences = " + references.size() + ";");
 
-		aSuite.println("const stringConstantReference const allStringConstantReferences[] = {");
+		suite.println("const stringConstantReference const allStringConstantReferences[] = {");
 		for (ConstantReference<String> ref : references) {
-			aSuite.println("    {" + ref.getClassId() + ", " + ref.getConstantPoolIndex() + ", \""
+			suite.println("    {" + ref.getClassId() + ", " + ref.getConstantPoolIndex() + ", \""
 					+ ref.getValue() + "\"}, ");
 		}
-		aSuite.println("};");
+		suite.println("};");
 	}
 
 	/**
 	 * This method generates code for field references and field properties
+	 * 
+	 * @param suite The stream to receive the generated code
+	 * @param header The stream to receive the generated declarations
 	 */
-	private void dumpFields() {
-		sectionHeader(aSuite, "Field references");
+	private void dumpFields(PrintStream suite, PrintStream header) {
+		sectionHeader(suite, "Field references");
 
 		// MemberReference[] fieldRefs = aLinkModel.getAllFieldReferences();
 		// aSuite.println("const u2 numberOfAllFieldReferences = " + fieldRefs.length + ";");
@@ -521,18 +810,18 @@ public class CodeGenerator {
 			ConstantPoolEntry cp = getConstantPoolEntry(referencingClassId);
 			cp.setFieldReferencesLength(fieldRefs.length);
 			if (fieldRefs.length > 0) {
-				aSuite.println("const memberReference const " + cp.getFieldReferences() + "[] = {");
+				suite.println("const memberReference const " + cp.getFieldReferences() + "[] = {");
 				for (MemberReference ref : fieldRefs) {
-					aSuite.println("    {" + +ref.getReferencedClassId() + ", " + ref.getLinkId()
+					suite.println("    {" + +ref.getReferencedClassId() + ", " + ref.getLinkId()
 							+ "}, // " + ref.getConstantPoolIndex() + ": "
 							+ ref.getReferencedClassName() + "#" + ref.getSignature().format());
 				}
-				aSuite.println("};");
-				aSuite.println();
+				suite.println("};");
+				suite.println();
 			}
 		}
 
-		sectionHeader(aSuite, "Field properties");
+		sectionHeader(suite, "Field properties");
 
 		// Size of all static memory:
 		int staticSize = 0;
@@ -544,24 +833,24 @@ public class CodeGenerator {
 			FieldInClass[] fields = aLinkModel.getClassFields(classId);
 			cp.setNumberOfFields(fields.length);
 			if (fields.length > 0) {
-				aSuite.println("const fieldInClass const " + cp.getFieldsInClass() + "[] = {");
+				suite.println("const fieldInClass const " + cp.getFieldsInClass() + "[] = {");
 				for (FieldInClass fic : fields) {
 					if (!fic.isReferenced()) {
-						NewLinker.exit("Unreferenced field: " + fic, 1);
+						throw new LinkException("Unreferenced field: " + fic);
 					}
 
 					// Dump field info:
-					generateMemberMapping(fic);
+					generateMemberMapping(header, fic);
 
-					aSuite.println("   {" + fic.getLinkId() + ", " + fic.getAddress() + ", "
+					suite.println("   {" + fic.getLinkId() + ", " + fic.getAddress() + ", "
 							+ fic.getSize() + "}, // " + fic.getLinkId() + "-"
 							+ fic.getMember().format());
 					if (fic.isStatic()) {
 						staticSize += fic.getSize();
 					}
 				}
-				aSuite.println("};");
-				aSuite.println();
+				suite.println("};");
+				suite.println();
 			}
 		}
 
@@ -589,16 +878,19 @@ public class CodeGenerator {
 		// aSuite.println("};");
 		// aSuite.println("const u2 numberOfAllFields = " + count + ";");
 
-		sectionHeader(aSuite, "Static Memory");
-		aSuite.println("const int staticMemorySize = " + staticSize + ";");
-		aSuite.println("stackable staticMemory[" + staticSize + "];");
+		sectionHeader(suite, "Static Memory");
+		suite.println("const int staticMemorySize = " + staticSize + ";");
+		suite.println("stackable staticMemory[" + staticSize + "];");
 	}
 
 	/**
 	 * This method generate code for method references and method properties
+	 * 
+	 * @param suite The stream to receive the generated code
+	 * @param header The stream to receive the generated declarations
 	 */
-	private void dumpMethods() {
-		sectionHeader(aSuite, "Method References");
+	private void dumpMethods(PrintStream suite, PrintStream header) {
+		sectionHeader(suite, "Method References");
 
 		for (int referencingClassId = 0; referencingClassId < aLinkModel.getTotalClassCount(); referencingClassId++) {
 			// Optimized refs:
@@ -607,20 +899,19 @@ public class CodeGenerator {
 			ConstantPoolEntry cp = getConstantPoolEntry(referencingClassId);
 			cp.setMethodReferencesLength(methodRefs.length);
 			if (methodRefs.length > 0) {
-				aSuite.println("const memberReference const " + cp.getMethodReferences() + "[] = {");
+				suite.println("const memberReference const " + cp.getMethodReferences() + "[] = {");
 				for (MemberReference ref : methodRefs) {
 					int argCount = aLinkModel.getArgumentCount(ref.getSignature());
-					aSuite.println("    {" + ref.getReferencedClassId() + ", " + ref.getLinkId()
+					suite.println("    {" + ref.getReferencedClassId() + ", " + ref.getLinkId()
 							+ ", " + argCount + "}, // " + ref.getConstantPoolIndex() + ": "
 							+ ref.getReferencedClassName() + "#" + ref.getSignature().format());
 				}
-				aSuite.println("};");
-				aSuite.println();
+				suite.println("};");
+				suite.println();
 			}
 		}
 
-		sectionHeader(aSuite, "Method Attributes");
-		sectionHeader(aHeader, "Method Attributes");
+		sectionHeaders(suite, header, "Method Attributes");
 		for (int classId = 0; classId < aLinkModel.getTotalClassCount(); classId++) {
 			ConstantPoolEntry cp = aConstantPools.get(classId);
 
@@ -628,33 +919,69 @@ public class CodeGenerator {
 			MethodInClass[] methods = aLinkModel.getClassMethods(classId);
 			cp.setNumberOfMethods(methods.length);
 			if (methods.length > 0) {
-				aSuite.println("const methodInClass const " + cp.getMethodsInClass() + "[] = {");
+				suite.println("const methodInClass const " + cp.getMethodsInClass() + "[] = {");
 				for (MethodInClass mic : methods) {
 					if (!mic.isReferenced()) {
-						NewLinker.exit("Unreferenced method: " + mic, 1);
+						throw new LinkException("Unreferenced method: " + mic);
 					}
 
 					int nativeIndex = (mic.getType() == MethodInClass.Type.NativeMethod ? 1 + mic
 							.getNativeIndex() : 0);
 					// Dump method info:
 
-					generateMemberMapping(mic);
+					generateMemberMapping(header, mic);
 
-					aSuite.println("    {" + classId + ", " + mic.getLinkId() + ", "
+					suite.println("    {" + classId + ", " + mic.getLinkId() + ", "
 							+ String.format("0x%04x", mic.getCodeOffset()) + ", "
 							+ mic.getCode().length + ", " + mic.getNumberOfLocalVariables() + ", "
 							+ mic.getNumberOfArguments() + ", " + nativeIndex + "}, // "
 							+ mic.getLinkId() + "-" + mic.getMember().format());
 				}
-				aSuite.println("};");
-				aSuite.println();
+				suite.println("};");
+				suite.println();
 			}
 		}
+	}
 
-		MethodInClass[] methods = aLinkModel.getAllMethods();
-		dumpExceptionHandlers(methods);
+	/**
+	 * This method generates the result of the verification of the code: SUITE_VERIFIED is 1, if
+	 * all methods are verified. If so, SUITE_MAX_STACK is the largest stack height of all methods,
+	 * and 'allMaxStack' holds the maximum stack height of each method, indexed by class id and
+	 * then by the index of the method in the method attributes of the class, see
+	 * {@link #dumpMethods(PrintStream, PrintStream)}. Methods without code have a stack height of
+	 * 0.
+	 * 
+	 * @param suite The stream to receive the generated code
+	 * @param header The stream to receive the generated declarations
+	 */
+	private void dumpVerification(PrintStream suite, PrintStream header) {
+		sectionHeaders(suite, header, "Verification");
+		header.println("#define SUITE_VERIFIED " + (aVerifier.isVerified() ? 1 : 0));
+		if (!aVerifier.isVerified()) {
+			return;
+		}
 
-		dumpTraceInfo(methods);
+		header.println("#define SUITE_MAX_STACK " + aVerifier.getMaxStack());
+		header.println("extern const u2* const allMaxStack[];");
+		for (int classId = 0; classId < aLinkModel.getTotalClassCount(); classId++) {
+			MethodInClass[] methods = aLinkModel.getClassMethods(classId);
+			if (methods.length > 0) {
+				suite.println("const u2 const allMaxStack" + classId + "[] = {");
+				for (MethodInClass mic : methods) {
+					suite.println("    " + Math.max(0, mic.getMaxStack()) + ", // "
+							+ mic.getLinkId() + "-" + mic.getMember().format());
+				}
+				suite.println("};");
+			}
+		}
+		suite.println("const u2* const allMaxStack[] = {");
+		for (int classId = 0; classId < aLinkModel.getTotalClassCount(); classId++) {
+			suite.println("    "
+					+ (aLinkModel.getClassMethods(classId).length > 0 ? "allMaxStack" + classId
+							: "NULL") + ",");
+		}
+		suite.println("};");
+		suite.println();
 	}
 
 	/**
@@ -675,15 +1002,16 @@ public class CodeGenerator {
 	/**
 	 * This method dumps stack trace info in a separate file
 	 * 
+	 * @param trace The stream to receive the stack trace info
 	 * @param methods All methods
 	 */
-	private void dumpTraceInfo(MethodInClass[] methods) {
+	private void dumpTraceInfo(PrintStream trace, MethodInClass[] methods) {
 		// Extract stack trace info (line number table):
-		aTrace.println(":: PC SourceLine Method");
+		trace.println(":: PC SourceLine Method");
 		for (MethodInClass mic : methods) {
 			if (mic.isReferenced() && mic.getType() != MethodInClass.Type.AbstractMethod) {
 				for (MethodInClass.LineNumber ln : mic.getLineNumberTable()) {
-					aTrace.println(ln.getStartPC() + "  " + ln.getLineNumber() + "  "
+					trace.println(ln.getStartPC() + "  " + ln.getLineNumber() + "  "
 							+ mic.getMember().format());
 				}
 			}
@@ -693,11 +1021,12 @@ public class CodeGenerator {
 	/**
 	 * This method generates '#define's thus enabling references to class methods from native code
 	 * 
+	 * @param header The stream to receive the generated declarations
 	 * @param mic The method to generate references for
 	 */
-	private void generateMemberMapping(MethodOrField mic) {
+	private void generateMemberMapping(PrintStream header, MethodOrField mic) {
 		if (!aVmRefSet.contains(mic.getMember())) {
-			aHeader.println("#define " + generateMemberLinkIdMacro(mic.getMember()) + " "
+			header.println("#define " + generateMemberLinkIdMacro(mic.getMember()) + " "
 					+ mic.getLinkId());
 		}
 	}
@@ -726,10 +1055,10 @@ public class CodeGenerator {
 		return s.replaceAll("[#/<>()\\[;$]", "_");
 	}
 
-	private void dumpExceptionHandlers(MethodInClass[] methods) {
+	private void dumpExceptionHandlers(PrintStream suite, MethodInClass[] methods) {
 		int count = 0;
-		sectionHeader(aSuite, "Exception Handlers");
-		aSuite.println("const exceptionHandler const allExceptionHandersInAllClasses[] = {");
+		sectionHeader(suite, "Exception Handlers");
+		suite.println("const exceptionHandler const allExceptionHandersInAllClasses[] = {");
 		for (MethodInClass mic : methods) {
 			if (mic.isReferenced() /* && mic.getType() != MethodInClass.Type.AbstractMethod */) {
 				List<ExceptionHandler> ehl = mic.getExceptionHandlers();
@@ -751,7 +1080,7 @@ public class CodeGenerator {
 						exClassId = 0;
 					}
 
-					aSuite.println("    {"
+					suite.println("    {"
 							+ aLinkModel.getClassIdByName(mic.getMember().getClassName()) + ", "
 							+ exClassId + ", " + String.format("0x%04x", handler.getStartPC())
 							+ ", " + String.format("0x%04x", handler.getEndPC()) + ", "
@@ -760,12 +1089,12 @@ public class CodeGenerator {
 				}
 			}
 		}
-		aSuite.println("};");
-		aSuite.println("const u2 numberOfAllExceptionHandersInAllClasses = " + count + ";");
+		suite.println("};");
+		suite.println("const u2 numberOfAllExceptionHandersInAllClasses = " + count + ";");
 	}
 
-	private void dumpNativeMethodInfo() {
-		sectionHeader(aSuite, "Native Method Encapsulations");
+	private void dumpNativeMethodInfo(PrintStream suite) {
+		sectionHeader(suite, "Native Method Encapsulations");
 		MethodInClass[] methods = aLinkModel.getAllMethods();
 		LinkedList<String> nativeTableEntries = new LinkedList<String>();
 		for (MethodInClass mic : methods) {
@@ -778,7 +1107,7 @@ public class CodeGenerator {
 				String returnType = mic.getReturnType();
 
 				// JNIEXPORT jint JNICALL Java_thinj_rt_Object_hashCode(JNIEnv *, jobject);
-				aSuite.println("// " + nativeIndex + ": " + nativeMethodName);
+				suite.println("// " + nativeIndex + ": " + nativeMethodName);
 				NativeTypeHandler returntypeHandler = NativeTypeRepository.getHandler(returnType);
 
 				StringBuilder prototypeArgs = new StringBuilder("JNIEnv *");
@@ -816,11 +1145,11 @@ public class CodeGenerator {
 				StringBuilder forward = new StringBuilder("JNIEXPORT "
 						+ returntypeHandler.getParameterType() + " JNICALL " + nativeMethodName);
 				forward.append("(").append(prototypeArgs).append(");");
-				aSuite.println(forward);
+				suite.println(forward);
 
 				nativeTableEntries.add("native" + nativeIndex);
-				aSuite.println("void native" + nativeIndex + "(void) {");
-				aSuite.println(assignments);
+				suite.println("void native" + nativeIndex + "(void) {");
+				suite.println(assignments);
 				if (mic.isStatic()) {
 					// TODO According to
 					// http://java.sun.com/developer/onlineTraining/Programming/JDCBook/jniexamp.html#gen
@@ -828,77 +1157,121 @@ public class CodeGenerator {
 					// a little more about jclass...
 					//aSuite.println("    jclass thisOrClass = operandStackPopObjectRef();");
 					int classId = aLinkModel.getClassIdByName(mic.getMember().getClassName());
-					aSuite.println("    jclass thisOrClass = getJavaLangClass(" + classId + ");");
+					suite.println("    jclass thisOrClass = getJavaLangClass(" + classId + ");");
 					//aSuite.println("    jclass thisOrClass = NULL;");
 				} else {
-					aSuite.println("    jobject thisOrClass = operandStackPopObjectRef();");
+					suite.println("    jobject thisOrClass = operandStackPopObjectRef();");
 				}
 				String returnVarName = "retval";
-				aSuite.println("    " + returntypeHandler.getAssignReturnTypeCode(returnVarName)
+				suite.println("    " + returntypeHandler.getAssignReturnTypeCode(returnVarName)
 						+ nativeMethodName + "(&context, thisOrClass" + argList + ");");
 				// Push return value to stack:
-				aSuite.println("    " + returntypeHandler.getReturnTypePushCode(returnVarName));
-				aSuite.println("}");
+				suite.println("    " + returntypeHandler.getReturnTypePushCode(returnVarName));
+				suite.println("}");
 			}
 		}
 
 		// Then the table to look up in:
-		sectionHeader(aSuite, "Native Method Jump Table");
-		aSuite.println("const nativeJumpTableEntry const nativeJumpTable[] = {");
+		sectionHeader(suite, "Native Method Jump Table");
+		suite.println("const nativeJumpTableEntry const nativeJumpTable[] = {");
 		for (String tableEntry : nativeTableEntries) {
-			aSuite.println("    " + tableEntry + ",");
+			suite.println("    " + tableEntry + ",");
 		}
-		aSuite.println("};");
-		aSuite.println("const u2 nativeJumpTableSize = " + nativeTableEntries.size() + ";");
+		suite.println("};");
+		suite.println("const u2 nativeJumpTableSize = " + nativeTableEntries.size() + ";");
 
 	}
 
-	/**
-	 * This method dumps all code into a single u1 array.
-	 */
-	private void dumpAllCode() {
-		sectionHeader(aSuite, "Byte Code");
-
-		aSuite.println("const u1 code[] = {");
-		int codeSize = 0;
-		for (MethodInClass mic : aLinkModel.getAllMethods()) {
-			if (mic.isReferenced() && mic.getType() != MethodInClass.Type.AbstractMethod) {
-				dumpCode(mic);
-				codeSize += mic.getCode().length;
-			}
-		}
-		aSuite.println("};");
-		aSuite.println("const u2 codeSize = " + codeSize + ";");
-	}
-
 	/**
 	 * This method dumps code for a single method.
 	 * 
+	 * @param suite The stream to receive the generated code
 	 * @param mic The method for which the code shall be dumped
 	 */
-	private void dumpCode(final MethodInClass mic) {
+	private void dumpCode(PrintStream suite, MethodInClass mic) {
 		byte[] ba = mic.getCode();
 		if (ba.length > 0) {
 			int addressOffset = mic.getCodeOffset();
 
 			ClassInSuite cis = aLinkModel.getClassByName(mic.getMember().getClassName());
-			sectionHeader(aSuite, "    ", "(" + cis.getClassId() + ") " + mic.getMember().format());
+			sectionHeader(suite, "    ", "(" + cis.getClassId() + ") " + mic.getMember().format());
+
+			// The source lines starting at each address - key is the address:
+			HashMap<Integer, List<Integer>> lineNumbers = new HashMap<Integer, List<Integer>>();
+			for (MethodInClass.LineNumber ln : mic.getLineNumberTable()) {
+				List<Integer> lines = lineNumbers.get(ln.getStartPC());
+				if (lines == null) {
+					lines = new LinkedList<Integer>();
+					lineNumbers.put(ln.getStartPC(), lines);
+				}
+				lines.add(ln.getLineNumber());
+			}
 
-			AbstractInstruction.disassemble(addressOffset, ba, new InstructionHandler() {
-				@Override
-				public void handle(int address, AbstractInstruction instruction) {
-					for (MethodInClass.LineNumber ln : mic.getLineNumberTable()) {
-						if (address == ln.getStartPC()) {
-							aSuite.println();
-							aSuite.println("    // " + mic.getMember().format() + ":"
-									+ ln.getLineNumber());
-						}
+			InstructionList instructions = mic.getInstructions();
+			StringBuilder sb = new StringBuilder();
+			for (int i = 0; i < instructions.size(); i++) {
+				int address = addressOffset + instructions.getAddress(i);
+				List<Integer> lines = lineNumbers.get(address);
+				if (lines != null) {
+					for (int line : lines) {
+						suite.println();
+						suite.println("    // " + mic.getMember().format() + ":" + line);
 					}
-
-					aSuite.print("    /* " + String.format("%04x", address) + " */      ");
-					instruction.generateCode(aSuite);
 				}
-			});
+
+				sb.setLength(0);
+				sb.append("    /* ");
+				AbstractInstruction.appendHex(sb, address, 4);
+				sb.append(" */      ");
+				instructions.generateCode(i, sb);
+				suite.println(sb);
+			}
+		}
+	}
+
+	/**
+	 * This class is a section of the generated files. A section is rendered into its own buffers -
+	 * one for each generated file - so sections can be rendered concurrently and written to the
+	 * files in order afterwards.
+	 */
+	private static abstract class Section implements Runnable {
+		private final ByteArrayOutputStream aSuite = new ByteArrayOutputStream();
+		private final ByteArrayOutputStream aHeader = new ByteArrayOutputStream();
+		private final ByteArrayOutputStream aTrace = new ByteArrayOutputStream();
+
+		@Override
+		public void run() {
+			PrintStream suite = new PrintStream(aSuite);
+			PrintStream header = new PrintStream(aHeader);
+			PrintStream trace = new PrintStream(aTrace);
+			render(suite, header, trace);
+			suite.flush();
+			header.flush();
+			trace.flush();
+		}
+
+		/**
+		 * This method renders the section
+		 * 
+		 * @param suite The stream to receive the generated code
+		 * @param header The stream to receive the generated declarations
+		 * @param trace The stream to receive the stack trace info
+		 */
+		protected abstract void render(PrintStream suite, PrintStream header, PrintStream trace);
+
+		/**
+		 * This method appends the rendered section to the generated files
+		 * 
+		 * @param header The header file
+		 * @param suite The code file
+		 * @param trace The stack trace info file
+		 * @throws IOException If unable to write to a file
+		 */
+		public void writeTo(ByteArrayOutputStream header, ByteArrayOutputStream suite,
+				ByteArrayOutputStream trace) throws IOException {
+			aHeader.writeTo(header);
+			aSuite.writeTo(suite);
+			aTrace.writeTo(trace);
 		}
 	}
 
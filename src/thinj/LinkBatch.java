@@ -0,0 +1,250 @@
+package thinj;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * This class links a batch of programs against the same class path, e.g. the programs of the
+ * regression suite or the variants of a product. Each job names a main class, an output name and
+ * optionally a dependency file; all other options are shared by the jobs.<br/>
+ * <br/>
+ * The class files are parsed once for all jobs: The jobs share a {@link MetadataCache}, so a class
+ * file parsed by one job is looked up by the others. The cache is saved by the caller, when all
+ * jobs are done, see {@link NewLinker#link}. The jobs are linked in parallel by a number
+ * of threads, each job with a link model of its own. The scanning of the code is not shared, as
+ * the references found are bound to the class ids of each link.<br/>
+ * <br/>
+ * The output of jobs linked at the same time is interleaved.
+ */
+public class LinkBatch {
+	// The options shared by all jobs:
+	private final Properties aOptions;
+
+	// The cache of parsed class files shared by all jobs:
+	private final MetadataCache aMetadataCache;
+
+	// The number of jobs linked at the same time:
+	private final int aThreadCount;
+
+	// The jobs:
+	private final List<Job> aJobs;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param options The options shared by all jobs, see {@link NewLinker#link}
+	 * @param metadataCache The cache of parsed class files; if null, a cache kept in memory is
+	 *            shared by the jobs
+	 */
+	public LinkBatch(Properties options, MetadataCache metadataCache) {
+		aOptions = options;
+		aMetadataCache = metadataCache != null ? metadataCache : new MetadataCache(null);
+
+		// Example:
+		// -Dbatch.threads=4
+		// Optional; the number of jobs linked at the same time. Default is the number of available
+		// processors. Unless given, the prefetch and code generator threads of each job default to
+		// the processors left per job
+		aThreadCount = Math.max(1, NewLinker.getInteger(options, "batch.threads", Runtime
+				.getRuntime().availableProcessors()));
+		aJobs = new ArrayList<Job>();
+	}
+
+	/**
+	 * This method reads the jobs from a file. Each line is a job:
+	 * 
+	 * <pre>
+	 * &lt;main class&gt; &lt;output name&gt; [&lt;dependency file&gt;]
+	 * </pre>
+	 * 
+	 * Everything after a '#' is a comment. Relative file names are resolved against the option
+	 * 'user.dir' - the working directory of the linker or, if linked by {@link LinkDaemon}, of
+	 * the client.
+	 * 
+	 * @param file The file to read
+	 * @throws LinkException If unable to read the file, or if a job is malformed
+	 */
+	public void readJobs(File file) throws LinkException {
+		try {
+			BufferedReader br = new BufferedReader(new FileReader(file));
+			try {
+				String line;
+				while ((line = br.readLine()) != null) {
+					line = line.replaceAll("#.*$", "").trim();
+					if (line.length() > 0) {
+						String[] fields = line.split("[ \t]+");
+						if (fields.length < 2 || fields.length > 3) {
+							throw new LinkException("Wrong format of job: " + line);
+						}
+						aJobs.add(new Job(fields[0], resolve(fields[1]), fields.length == 3
+								? resolve(fields[2]) : ""));
+					}
+				}
+			} finally {
+				br.close();
+			}
+		} catch (IOException e) {
+			throw new LinkException("Failed reading batch file: " + file.getPath() + ": "
+					+ e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * @param fileName A file name of a job
+	 * @return The file name, resolved against the option 'user.dir'
+	 */
+	private String resolve(String fileName) {
+		String workingDirectory = aOptions.getProperty("user.dir");
+		File file = new File(fileName);
+		return file.isAbsolute() || workingDirectory == null ? fileName : new File(
+				workingDirectory, fileName).getPath();
+	}
+
+	/**
+	 * This method links all jobs. A failed job does not stop the others.
+	 * 
+	 * @return The number of jobs failed
+	 * @throws LinkException If interrupted while waiting for the jobs
+	 */
+	public int run() throws LinkException {
+		long start = System.nanoTime();
+		ExecutorService executor = Executors.newFixedThreadPool(aThreadCount, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(LinkMetrics.measured(r), "thinj-batch");
+				// Shall never keep the linker alive:
+				t.setDaemon(true);
+				return t;
+			}
+		});
+
+		ArrayList<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+		for (final Job job : aJobs) {
+			futures.add(executor.submit(new Callable<Boolean>() {
+				@Override
+				public Boolean call() {
+					return link(job);
+				}
+			}));
+		}
+
+		int failed = 0;
+		try {
+			for (int i = 0; i < aJobs.size(); i++) {
+				if (!futures.get(i).get()) {
+					System.err.println("Failed: " + aJobs.get(i));
+					failed++;
+				}
+			}
+		} catch (InterruptedException e) {
+			throw new LinkException("Interrupted while linking batch", e);
+		} catch (ExecutionException e) {
+			// link() catches all but errors:
+			throw new LinkException("Failed linking batch: " + e.getCause(), e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+
+		System.out.println(String.format("Batch: %d jobs linked by %d threads; %d failed; %.3f ms",
+				aJobs.size(), aThreadCount, failed, (System.nanoTime() - start) / 1e6));
+		return failed;
+	}
+
+	/**
+	 * This method links a single job
+	 * 
+	 * @param job The job
+	 * @return true, if the job was linked
+	 */
+	private boolean link(Job job) {
+		System.out.println("Linking: " + job);
+
+		// The options of the job take precedence over the shared options:
+		Properties options = new Properties(aOptions);
+		options.setProperty("out", job.getOutputName());
+		options.setProperty("dependencies", job.getDependencyFile());
+		String metrics = aOptions.getProperty("metrics");
+		if (metrics != null && !metrics.equals("stderr")) {
+			// A report for each job:
+			options.setProperty("metrics", job.getOutputName() + ".metrics.json");
+		}
+		int threadsPerJob = Math.max(1, Runtime.getRuntime().availableProcessors()
+				/ aThreadCount);
+		for (String name : new String[] { "prefetch.threads", "codegen.threads" }) {
+			if (aOptions.getProperty(name) == null) {
+				options.setProperty(name, Integer.toString(threadsPerJob));
+			}
+		}
+
+		try {
+			new NewLinker(NewLinker.createConfiguration(options, job.getMainClassName(),
+					aMetadataCache));
+			return true;
+		} catch (LinkException e) {
+			System.err.println(job + ": " + e.getMessage());
+			return false;
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+			return false;
+		}
+	}
+
+	/**
+	 * This class holds a single job of the batch
+	 */
+	private static class Job {
+		private final String aMainClassName;
+		private final String aOutputName;
+		private final String aDependencyFile;
+
+		/**
+		 * Constructor
+		 * 
+		 * @param mainClassName The main class of the program
+		 * @param outputName The base name of the generated files
+		 * @param dependencyFile The dependency file; "" if none
+		 */
+		public Job(String mainClassName, String outputName, String dependencyFile) {
+			aMainClassName = mainClassName;
+			aOutputName = outputName;
+			aDependencyFile = dependencyFile;
+		}
+
+		/**
+		 * @return The main class of the program
+		 */
+		public String getMainClassName() {
+			return aMainClassName;
+		}
+
+		/**
+		 * @return The base name of the generated files
+		 */
+		public String getOutputName() {
+			return aOutputName;
+		}
+
+		/**
+		 * @return The dependency file; "" if none
+		 */
+		public String getDependencyFile() {
+			return aDependencyFile;
+		}
+
+		@Override
+		public String toString() {
+			return aMainClassName + " -> " + aOutputName;
+		}
+	}
+}
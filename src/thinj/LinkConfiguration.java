@@ -0,0 +1,324 @@
+package thinj;
+
+/**
+ * This class holds the configuration of a single link: Where to find the class files, which
+ * program to link, where to put the generated files, and the optional settings of the linker.
+ * The mandatory values are given to the constructor; all other values have defaults, which may be
+ * changed by the setters.<br/>
+ * <br/>
+ * A configuration is read by the link, but never changed by it, so it may be reused for several
+ * links. See {@link NewLinker#NewLinker(LinkConfiguration)}.
+ */
+public class LinkConfiguration {
+	// The classes referenced by the thinj VM:
+	// @formatter:off
+	public static final String[] DEFAULT_VM_CLASS_REFERENCES = new String[] { 
+		ArrayIndexOutOfBoundsException.class.getName(),
+		ArithmeticException.class.getName(),
+		Class.class.getName(), 
+		ClassCastException.class.getName(),
+		IllegalMonitorStateException.class.getName(),
+		NegativeArraySizeException.class.getName(),
+		NullPointerException.class.getName(), 
+		OutOfMemoryError.class.getName(),
+		Object.class.getName(),
+		Object.class.getName() + "$Monitor",
+		Object.class.getName() + "$WaitElement",
+//		IllegalArgumentException.class.getName(),
+//		IllegalThreadStateException.class.getName(),
+		String.class.getName(), 
+		Thread.class.getName(), 
+	};
+
+	// The class members referenced by the thinj VM:
+	public static final String[] DEFAULT_VM_MEMBER_REFERENCES = new String[] { 
+        "java.lang.ArithmeticException            <init>         (Ljava/lang/String;)V",
+        "java.lang.ArrayIndexOutOfBoundsException <init>         (I)V",
+        "java.lang.Class                          aClassId       I",
+        "java.lang.Class                          aAllClasses    [Ljava/lang/Class;",
+        "java.lang.ClassCastException             <init>         ()V",				        
+        "java.lang.IllegalMonitorStateException   <init>         (Ljava/lang/String;)V",
+//      "java.lang.IllegalArgumentException       <init>         (Ljava/lang/String;)V",
+//      "java.lang.IllegalThreadStateException    <init>         (Ljava/lang/String;)V",
+        "java.lang.NullPointerException           <init>         ()V",
+        
+        "java.lang.Object                         aMonitor       Ljava/lang/Object$Monitor;",
+        "java.lang.Object$Monitor                 aWaitSet       Ljava/lang/Object$WaitElement;",
+        "java.lang.Object$Monitor                 aOwner         Ljava/lang/Thread;",
+        "java.lang.Object$Monitor                 aLockCount     I",
+        "java.lang.Object$WaitElement             aWaiting       Ljava/lang/Thread;",
+        "java.lang.Object$WaitElement             aNext          Ljava/lang/Object$WaitElement;",				        
+        
+        "java.lang.OutOfMemoryError               <init>         ()V",
+        "java.lang.OutOfMemoryError               getInstance    ()Ljava/lang/OutOfMemoryError;",
+        "java.lang.NegativeArraySizeException     <init>         ()V",
+        "java.lang.String                         value          [C",
+
+        "java.lang.Thread                         aAllThreads    Ljava/lang/Thread;",
+        "java.lang.Thread                         aBlockingObject  Ljava/lang/Object;",				        
+		"java.lang.Thread                         aContext       [B",
+        "java.lang.Thread                         aCurrentThread Ljava/lang/Thread;",
+        "java.lang.Thread                         aNextThread    Ljava/lang/Thread;",
+		"java.lang.Thread                         aStack         [B",
+        "java.lang.Thread                         aState         I",
+        "java.lang.Thread                         runFromNative  ()V",
+//      "java.lang.Throwable                      aCause         Ljava/lang/String;",
+//      "java.lang.Throwable                      aStackTrace    [I",
+	};
+	// @formatter:on
+
+	private final String aClassPath;
+	private final String aOutputBaseName;
+	private final String aMainClassName;
+	private String[] aRequiredReferences;
+	private String[] aVmClassReferences;
+	private String[] aVmMemberReferences;
+	private boolean aRapidTypeAnalysis;
+	private int aPrefetchThreads;
+	private int aClassCacheCapacity;
+	private int aCodeGeneratorThreads;
+	private MetadataCache aMetadataCache;
+	private boolean aIncremental;
+	private String aMetricsReport;
+	private String[] aOptimizationPasses;
+	private boolean aVerifyCode;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param classPath The class path in which the referenced classes, methods etc. are loaded.
+	 *            Only the referenced items will be included in the final suite.
+	 * @param outputBaseName The base name of the generated .c, .h and .trace files
+	 * @param mainClassName The class containing the main - method
+	 */
+	public LinkConfiguration(String classPath, String outputBaseName, String mainClassName) {
+		aClassPath = classPath;
+		aOutputBaseName = outputBaseName;
+		aMainClassName = mainClassName;
+		aRequiredReferences = new String[0];
+		aVmClassReferences = DEFAULT_VM_CLASS_REFERENCES;
+		aVmMemberReferences = DEFAULT_VM_MEMBER_REFERENCES;
+		aRapidTypeAnalysis = false;
+		aPrefetchThreads = Runtime.getRuntime().availableProcessors();
+		aClassCacheCapacity = ClassFileInfoCache.DEFAULT_CAPACITY;
+		aCodeGeneratorThreads = Runtime.getRuntime().availableProcessors();
+		aMetadataCache = null;
+		aIncremental = false;
+		aMetricsReport = null;
+		aOptimizationPasses = new String[0];
+		aVerifyCode = false;
+	}
+
+	/**
+	 * @return The class path in which the referenced classes, methods etc. are loaded
+	 */
+	public String getClassPath() {
+		return aClassPath;
+	}
+
+	/**
+	 * @return The base name of the generated .c, .h and .trace files
+	 */
+	public String getOutputBaseName() {
+		return aOutputBaseName;
+	}
+
+	/**
+	 * @return The class containing the main - method
+	 */
+	public String getMainClassName() {
+		return aMainClassName;
+	}
+
+	/**
+	 * @return The methods and fields required by native code, in the form
+	 *         '&lt;class name&gt; &lt;member name&gt; &lt;signature&gt;'
+	 */
+	public String[] getRequiredReferences() {
+		return aRequiredReferences;
+	}
+
+	/**
+	 * @param requiredReferences The methods and fields required by native code, in the form
+	 *            '&lt;class name&gt; &lt;member name&gt; &lt;signature&gt;'. Default is none.
+	 */
+	public void setRequiredReferences(String[] requiredReferences) {
+		aRequiredReferences = requiredReferences;
+	}
+
+	/**
+	 * @return The classes referenced by the VM
+	 */
+	public String[] getVmClassReferences() {
+		return aVmClassReferences;
+	}
+
+	/**
+	 * @param vmClassReferences The classes referenced by the VM. This will lead to generation of
+	 *            link constants (link ids). Default is {@link #DEFAULT_VM_CLASS_REFERENCES}.
+	 */
+	public void setVmClassReferences(String[] vmClassReferences) {
+		aVmClassReferences = vmClassReferences;
+	}
+
+	/**
+	 * @return The class members referenced by the VM
+	 */
+	public String[] getVmMemberReferences() {
+		return aVmMemberReferences;
+	}
+
+	/**
+	 * @param vmMemberReferences The class members referenced by the VM. This will lead to
+	 *            generation of link constants (link ids). Default is
+	 *            {@link #DEFAULT_VM_MEMBER_REFERENCES}.
+	 */
+	public void setVmMemberReferences(String[] vmMemberReferences) {
+		aVmMemberReferences = vmMemberReferences;
+	}
+
+	/**
+	 * @return true, if Rapid Type Analysis is used
+	 */
+	public boolean isRapidTypeAnalysis() {
+		return aRapidTypeAnalysis;
+	}
+
+	/**
+	 * @param rapidTypeAnalysis If true, an overriding method is only included if its class - or a
+	 *            sub class - is instantiated by 'new' or 'anewarray', is referenced by the VM or has
+	 *            a required constructor. If false, all overriding methods in loaded classes are
+	 *            included. Default is false.
+	 */
+	public void setRapidTypeAnalysis(boolean rapidTypeAnalysis) {
+		aRapidTypeAnalysis = rapidTypeAnalysis;
+	}
+
+	/**
+	 * @return The number of threads reading and parsing class files in the background
+	 */
+	public int getPrefetchThreads() {
+		return aPrefetchThreads;
+	}
+
+	/**
+	 * @param prefetchThreads The number of threads reading and parsing class files in the
+	 *            background. If 0, all class files are read when needed. Default is the number of
+	 *            available processors.
+	 */
+	public void setPrefetchThreads(int prefetchThreads) {
+		aPrefetchThreads = prefetchThreads;
+	}
+
+	/**
+	 * @return The maximum number of parsed class files kept in memory
+	 */
+	public int getClassCacheCapacity() {
+		return aClassCacheCapacity;
+	}
+
+	/**
+	 * @param classCacheCapacity The maximum number of parsed class files kept in memory. Default is
+	 *            {@link ClassFileInfoCache#DEFAULT_CAPACITY}.
+	 */
+	public void setClassCacheCapacity(int classCacheCapacity) {
+		aClassCacheCapacity = classCacheCapacity;
+	}
+
+	/**
+	 * @return The number of threads rendering the generated files
+	 */
+	public int getCodeGeneratorThreads() {
+		return aCodeGeneratorThreads;
+	}
+
+	/**
+	 * @param codeGeneratorThreads The number of threads rendering the generated files. If 0, the
+	 *            files are rendered by the calling thread. Default is the number of available
+	 *            processors.
+	 */
+	public void setCodeGeneratorThreads(int codeGeneratorThreads) {
+		aCodeGeneratorThreads = codeGeneratorThreads;
+	}
+
+	/**
+	 * @return The cache of parsed class files; null if class files are always parsed
+	 */
+	public MetadataCache getMetadataCache() {
+		return aMetadataCache;
+	}
+
+	/**
+	 * @param metadataCache The cache of parsed class files, which may be shared by several links;
+	 *            null if class files shall always be parsed. Default is null.
+	 */
+	public void setMetadataCache(MetadataCache metadataCache) {
+		aMetadataCache = metadataCache;
+	}
+
+	/**
+	 * @return true, if an unchanged link is skipped
+	 */
+	public boolean isIncremental() {
+		return aIncremental;
+	}
+
+	/**
+	 * @param incremental If true, a snapshot of the link is kept next to the generated files, and
+	 *            if neither the configuration, the class files read nor the generated files have
+	 *            changed since the previous link, the link is skipped. See {@link LinkSnapshot}.
+	 *            Default is false.
+	 */
+	public void setIncremental(boolean incremental) {
+		aIncremental = incremental;
+	}
+
+	/**
+	 * @return Where to report the metrics of each phase; null if not reported
+	 */
+	public String getMetricsReport() {
+		return aMetricsReport;
+	}
+
+	/**
+	 * @param metricsReport Where to report the metrics of each phase, see {@link LinkMetrics}:
+	 *            'stderr' prints a table to stderr; any other value is the name of a JSON file to
+	 *            write. If null, the metrics are not reported. Default is null.
+	 */
+	public void setMetricsReport(String metricsReport) {
+		aMetricsReport = metricsReport;
+	}
+
+	/**
+	 * @return The names of the optimization passes run over the code, in the order they are run
+	 */
+	public String[] getOptimizationPasses() {
+		return aOptimizationPasses;
+	}
+
+	/**
+	 * @param optimizationPasses The names of the optimization passes run over the code of the
+	 *            referenced methods, in the order they are run, see
+	 *            {@link thinj.optimizer.PassManager#createPass(String)}. Default is none.
+	 */
+	public void setOptimizationPasses(String[] optimizationPasses) {
+		aOptimizationPasses = optimizationPasses;
+	}
+
+	/**
+	 * @return true, if the code of the referenced methods is verified at link time
+	 */
+	public boolean isVerifyCode() {
+		return aVerifyCode;
+	}
+
+	/**
+	 * @param verifyCode If true, the code of the referenced methods is verified after the
+	 *            optimization passes, and the generated files tell whether the suite is verified
+	 *            along with the maximum stack height of each method, see
+	 *            {@link thinj.optimizer.Verifier}. Default is false.
+	 */
+	public void setVerifyCode(boolean verifyCode) {
+		aVerifyCode = verifyCode;
+	}
+}
@@ -0,0 +1,451 @@
+package thinj;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.LinkedList;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class implements a resident linker: A long-lived process serving link jobs sent by the
+ * thin client script 'thinjc'. Each job saves the JVM start up and runs JIT compiled code, and the
+ * class files parsed by earlier jobs - e.g. the runtime classes - are looked up in a metadata
+ * cache shared by all jobs, see {@link MetadataCache}.<br/>
+ * <br/>
+ * The daemon listens on a port on the loopback interface, as the JDK has no Unix domain sockets
+ * before Java 16, and a named pipe has a single reader and no way back to each client. Any local
+ * user may connect to the port, so a job is only served, if it starts by a secret token: The
+ * daemon writes a new random token to a file readable by its owner only, when started, and
+ * 'thinjc' reads the token from the file. A job is sent as lines of text:
+ * 
+ * <pre>
+ * &lt;token&gt;
+ * &lt;working directory of the client&gt;
+ * { -D&lt;option&gt;=&lt;value&gt; | &lt;argument&gt; }*
+ * &lt;empty line&gt;
+ * </pre>
+ * 
+ * The options and arguments are those of {@link NewLinker#main(String[])}; relative file names
+ * are resolved against the working directory of the client. The output of the link is sent
+ * back line by line, prefixed by '1 ' for stdout and '2 ' for stderr, and the last line is
+ * 'x &lt;exit value&gt;'.<br/>
+ * <br/>
+ * Jobs are linked concurrently. System.out and System.err are replaced by streams sending the
+ * output of each thread to the client of the job, which the thread - or the thread which started
+ * it - is linking.
+ */
+public class LinkDaemon {
+	// The default port:
+	public static final int DEFAULT_PORT = 7787;
+
+	// The options holding file names, which are resolved against the working directory of the
+	// client:
+	private static final String[] FILE_OPTIONS = new String[] { "out", "dependencies", "metrics",
+			"batch" };
+
+	// The number of random bytes in a token:
+	private static final int TOKEN_LENGTH = 32;
+
+	// The cache of parsed class files shared by all jobs:
+	private final MetadataCache aMetadataCache;
+
+	// The token a job shall start by:
+	private final byte[] aToken;
+
+	// The stdout of the daemon itself:
+	private final PrintStream aLog;
+
+	// The stdout and stderr of the links; installed as System.out and System.err by serve():
+	private final ThreadOutputStream aOut;
+	private final ThreadOutputStream aErr;
+
+	// The number of jobs linked:
+	private final AtomicInteger aJobCount;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param metadataCache The cache of parsed class files shared by all jobs
+	 * @param token The token a job shall start by
+	 * @param log The stream to log the jobs to
+	 * @throws IOException If the platform does not support UTF-8
+	 */
+	public LinkDaemon(MetadataCache metadataCache, String token, PrintStream log)
+			throws IOException {
+		aMetadataCache = metadataCache;
+		aToken = token.getBytes("UTF-8");
+		aLog = log;
+		aOut = new ThreadOutputStream(System.out);
+		aErr = new ThreadOutputStream(System.err);
+		aJobCount = new AtomicInteger();
+	}
+
+	public static void main(String[] args) throws IOException {
+		// Example:
+		// java -cp ~/workspace/thinj/bin:$CLASSPATH -Dport=7787 \\
+		// -Dtoken=/home/hammer/.thinjd-7787.token \\
+		// -Dmetadata.cache=/home/hammer/workspace/thinjvm/thinj.cache thinj.LinkDaemon
+		String usage = "usage: java [-Dport=<port>] [-Dtoken=<file>] [-Dmetadata.cache=<file>] "
+				+ "LinkDaemon";
+		if (args.length != 0) {
+			System.err.println(usage);
+			System.exit(1);
+		}
+
+		// Optional; the port on the loopback interface to serve jobs on
+		int port = Integer.getInteger("port", DEFAULT_PORT);
+
+		// Optional; a file keeping the parsed class files between runs of the daemon. Is saved
+		// after each job. If missing, the parsed class files are kept in memory only
+		String metadataCacheFile = System.getProperty("metadata.cache");
+
+		// Optional; the file the token of the daemon is written to. Default is
+		// ~/.thinjd-<port>.token
+		String tokenFile = System.getProperty("token", new File(System.getProperty("user.home"),
+				".thinjd-" + port + ".token").getPath());
+
+		ServerSocket serverSocket = new ServerSocket(port, 50, InetAddress.getByName(null));
+		String token = createToken(new File(tokenFile));
+		LinkDaemon daemon = new LinkDaemon(new MetadataCache(metadataCacheFile != null ? new File(
+				metadataCacheFile) : null), token, System.out);
+		System.out.println("Serving link jobs on " + serverSocket.getLocalSocketAddress()
+				+ "; token in " + tokenFile);
+		daemon.serve(serverSocket);
+	}
+
+	/**
+	 * This method creates a new random token and writes it to a file readable by the owner only.
+	 * The file is written next to the token file and then moved, so the token is never readable by
+	 * others - not even if the token file exists with other permissions.
+	 * 
+	 * @param file The token file
+	 * @return The token
+	 * @throws IOException If unable to write the token file
+	 */
+	private static String createToken(File file) throws IOException {
+		byte[] random = new byte[TOKEN_LENGTH];
+		new SecureRandom().nextBytes(random);
+		StringBuilder sb = new StringBuilder(2 * TOKEN_LENGTH);
+		for (byte b : random) {
+			sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+			sb.append(Character.forDigit(b & 0xf, 16));
+		}
+		String token = sb.toString();
+
+		File dir = file.getAbsoluteFile().getParentFile();
+		Path tmp;
+		try {
+			tmp = Files.createTempFile(dir.toPath(), file.getName(), ".tmp", PosixFilePermissions
+					.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+		} catch (UnsupportedOperationException e) {
+			// Not a POSIX file system; the temporary file is only accessible by its owner anyway:
+			tmp = Files.createTempFile(dir.toPath(), file.getName(), ".tmp");
+		}
+		try {
+			Files.write(tmp, (token + "\n").getBytes("UTF-8"));
+			Files.move(tmp, file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+		return token;
+	}
+
+	/**
+	 * This method serves jobs until the daemon is killed. Each connection is handled by a thread
+	 * of its own. System.out and System.err are replaced by the streams of the links.
+	 * 
+	 * @param serverSocket The socket to accept connections on
+	 * @throws IOException If unable to accept a connection
+	 */
+	public void serve(ServerSocket serverSocket) throws IOException {
+		System.setOut(new PrintStream(aOut, true));
+		System.setErr(new PrintStream(aErr, true));
+		ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "thinj-job");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		while (true) {
+			final Socket socket = serverSocket.accept();
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						handle(socket);
+					} catch (IOException e) {
+						aLog.println("Failed serving job: " + e.getMessage());
+					} finally {
+						try {
+							socket.close();
+						} catch (IOException e) {
+							// Ignore; the client has gone anyway
+						}
+					}
+				}
+			});
+		}
+	}
+
+	/**
+	 * This method reads a job from a client, links it and sends the output back
+	 * 
+	 * @param socket The connection to the client
+	 * @throws IOException If unable to talk to the client
+	 */
+	private void handle(Socket socket) throws IOException {
+		BufferedReader br = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+				"UTF-8"));
+		String token = br.readLine();
+		if (token == null || !MessageDigest.isEqual(aToken, token.getBytes("UTF-8"))) {
+			throw new IOException("Wrong token from " + socket.getRemoteSocketAddress());
+		}
+		String workingDirectory = br.readLine();
+		Properties options = new Properties();
+		LinkedList<String> arguments = new LinkedList<String>();
+		String line;
+		while ((line = br.readLine()) != null && line.length() > 0) {
+			if (line.startsWith("-D")) {
+				int separator = line.indexOf('=');
+				if (separator < 0) {
+					options.setProperty(line.substring(2), "");
+				} else {
+					options.setProperty(line.substring(2, separator), line
+							.substring(separator + 1));
+				}
+			} else {
+				arguments.add(line);
+			}
+		}
+		if (workingDirectory == null || line == null) {
+			throw new IOException("Incomplete job");
+		}
+		resolveFileNames(options, new File(workingDirectory));
+
+		OutputStream out = socket.getOutputStream();
+		int exitValue = link(options, arguments.toArray(new String[arguments.size()]),
+				new LinePrefixStream(out, "1 "), new LinePrefixStream(out, "2 "));
+		out.write(("x " + exitValue + "\n").getBytes("UTF-8"));
+		out.flush();
+	}
+
+	/**
+	 * This method links a single job. Other jobs may be linked at the same time.
+	 * 
+	 * @param options The options of the job
+	 * @param args The arguments of the job
+	 * @param out Receives stdout of the link
+	 * @param err Receives stderr of the link
+	 * @return The exit value of the link
+	 */
+	private int link(Properties options, String[] args, LinePrefixStream out,
+			LinePrefixStream err) {
+		long start = System.nanoTime();
+		int exitValue = 0;
+		// Inherited by the threads started by the link:
+		aOut.set(out);
+		aErr.set(err);
+		try {
+			NewLinker.link(options, args, aMetadataCache);
+		} catch (LinkException e) {
+			System.err.println(e.getMessage());
+			exitValue = 1;
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+			exitValue = 1;
+		} finally {
+			aOut.remove();
+			aErr.remove();
+			out.flushLine();
+			err.flushLine();
+		}
+
+		aLog.println(String.format("Job %d: %s -> %s: exit value %d; %.1f ms; %s", aJobCount
+				.incrementAndGet(), args.length > 0 ? args[0] : "?", options.getProperty("out"),
+				exitValue, (System.nanoTime() - start) / 1e6, aMetadataCache));
+		return exitValue;
+	}
+
+	/**
+	 * This method resolves the file names of a job against the working directory of the client.
+	 * The file names in a batch file are resolved by {@link LinkBatch} against the option
+	 * 'user.dir', which is set to the working directory of the client.
+	 * 
+	 * @param options The options of the job. Is updated.
+	 * @param workingDirectory The working directory of the client
+	 */
+	private static void resolveFileNames(Properties options, File workingDirectory) {
+		options.setProperty("user.dir", workingDirectory.getPath());
+		String classPath = options.getProperty("mycp");
+		if (classPath != null) {
+			StringBuilder sb = new StringBuilder();
+			for (String element : classPath.split(File.pathSeparator)) {
+				if (element.length() > 0) {
+					if (sb.length() > 0) {
+						sb.append(File.pathSeparator);
+					}
+					sb.append(resolve(element, workingDirectory));
+				}
+			}
+			options.setProperty("mycp", sb.toString());
+		}
+		for (String name : FILE_OPTIONS) {
+			String value = options.getProperty(name);
+			if (value != null && value.length() > 0 && !value.equals("stderr")) {
+				options.setProperty(name, resolve(value, workingDirectory));
+			}
+		}
+	}
+
+	/**
+	 * @param fileName A file name
+	 * @param workingDirectory The directory relative file names are relative to
+	 * @return The file name, made absolute
+	 */
+	private static String resolve(String fileName, File workingDirectory) {
+		File file = new File(fileName);
+		return file.isAbsolute() ? fileName : new File(workingDirectory, fileName).getPath();
+	}
+
+	/**
+	 * This class implements a stream writing to the stream of the current thread. A thread
+	 * started by a link inherits the stream of the link; threads not linking write to the
+	 * default stream.
+	 */
+	private static class ThreadOutputStream extends OutputStream {
+		// The stream of threads not linking:
+		private final OutputStream aDefault;
+
+		// The stream of the current thread:
+		private final InheritableThreadLocal<OutputStream> aCurrent;
+
+		/**
+		 * Constructor
+		 * 
+		 * @param defaultStream The stream of threads not linking
+		 */
+		public ThreadOutputStream(OutputStream defaultStream) {
+			aDefault = defaultStream;
+			aCurrent = new InheritableThreadLocal<OutputStream>();
+		}
+
+		/**
+		 * @param out The stream of the current thread and the threads it starts
+		 */
+		public void set(OutputStream out) {
+			aCurrent.set(out);
+		}
+
+		/**
+		 * This method makes the current thread write to the default stream again
+		 */
+		public void remove() {
+			aCurrent.remove();
+		}
+
+		/**
+		 * @return The stream of the current thread
+		 */
+		private OutputStream current() {
+			OutputStream out = aCurrent.get();
+			return out != null ? out : aDefault;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			current().write(b);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			current().write(b, off, len);
+		}
+
+		@Override
+		public void flush() throws IOException {
+			current().flush();
+		}
+	}
+
+	/**
+	 * This class implements a stream sending the output of a job to the client. Each line is
+	 * prefixed by the stream it was written to, so the client can tell stdout and stderr apart.
+	 */
+	private static class LinePrefixStream extends OutputStream {
+		// The connection to the client; shared by stdout and stderr:
+		private final OutputStream aOut;
+
+		// The prefix of each line:
+		private final byte[] aPrefix;
+
+		// The current line:
+		private final ByteArrayOutputStream aLine;
+
+		/**
+		 * Constructor
+		 * 
+		 * @param out The connection to the client
+		 * @param prefix The prefix of each line
+		 * @throws IOException If the platform does not support UTF-8
+		 */
+		public LinePrefixStream(OutputStream out, String prefix) throws IOException {
+			aOut = out;
+			aPrefix = prefix.getBytes("UTF-8");
+			aLine = new ByteArrayOutputStream();
+		}
+
+		@Override
+		public synchronized void write(int b) throws IOException {
+			if (b == '\n') {
+				sendLine();
+			} else if (b != '\r') {
+				aLine.write(b);
+			}
+		}
+
+		/**
+		 * This method sends the current line to the client, if anything has been written to it
+		 */
+		public synchronized void flushLine() {
+			if (aLine.size() > 0) {
+				sendLine();
+			}
+		}
+
+		/**
+		 * This method sends the current line to the client
+		 */
+		private void sendLine() {
+			try {
+				synchronized (aOut) {
+					aOut.write(aPrefix);
+					aLine.writeTo(aOut);
+					aOut.write('\n');
+				}
+			} catch (IOException e) {
+				// The client has gone; the link goes on, so the daemon stays consistent
+			}
+			aLine.reset();
+		}
+	}
+}
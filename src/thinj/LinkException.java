@@ -0,0 +1,31 @@
+package thinj;
+
+/**
+ * This exception reports a failed link: A class or member which cannot be found or resolved, a
+ * class file which cannot be read, a malformed option or dependency etc. The linker never exits
+ * the JVM; the command line linker, see {@link NewLinker#main(String[])}, prints the message and
+ * exits with the exit value 1, while long-lived callers like {@link LinkDaemon} and
+ * {@link LinkBatch} report the failed link and go on.
+ */
+public class LinkException extends RuntimeException {
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param message Describes why the link failed
+	 */
+	public LinkException(String message) {
+		super(message);
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param message Describes why the link failed
+	 * @param cause The exception causing the link to fail
+	 */
+	public LinkException(String message, Throwable cause) {
+		super(message, cause);
+	}
+}
@@ -0,0 +1,350 @@
+package thinj;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class records metrics for each phase of a link: The wall time, the CPU time, the bytes
+ * allocated and the number of items handled, like classes loaded or bytes emitted. The metrics
+ * can be reported as text or written to a JSON file.<br/>
+ * <br/>
+ * CPU time and allocated bytes are for the whole process, so the work done by background threads
+ * is included. Threads started by the linker shall run their work through
+ * {@link #measured(Runnable)}, so their allocations are counted after they have finished. If the
+ * JVM cannot measure CPU time or allocated bytes, -1 is reported.
+ */
+public class LinkMetrics {
+	// The bytes allocated by each thread run through measured() that has finished - key is the
+	// thread id:
+	private static final ConcurrentHashMap<Long, Long> aFinishedThreads = new ConcurrentHashMap<Long, Long>();
+
+	// The main class of the link:
+	private final String aMainClassName;
+
+	// The base name of the generated files:
+	private final String aOutputBaseName;
+
+	// The phases done:
+	private final List<Phase> aPhases;
+
+	// The counts of the current phase - key is the name of the item counted:
+	private LinkedHashMap<String, Long> aCounts;
+
+	// The time, CPU time and allocated bytes when the current phase started:
+	private long aPhaseStart;
+	private long aPhaseStartCpuTime;
+	private long aPhaseStartAllocatedBytes;
+
+	/**
+	 * Constructor. The first phase starts now.
+	 * 
+	 * @param mainClassName The main class of the link
+	 * @param outputBaseName The base name of the generated files
+	 */
+	public LinkMetrics(String mainClassName, String outputBaseName) {
+		aMainClassName = mainClassName;
+		aOutputBaseName = outputBaseName;
+		aPhases = new ArrayList<Phase>();
+		aCounts = new LinkedHashMap<String, Long>();
+		aPhaseStart = System.nanoTime();
+		aPhaseStartCpuTime = getProcessCpuTime();
+		aPhaseStartAllocatedBytes = getAllocatedBytes();
+	}
+
+	/**
+	 * This method adds to a count of the current phase
+	 * 
+	 * @param name The name of the item counted, e.g. 'classesLoaded'
+	 * @param delta The number to add
+	 */
+	public void count(String name, long delta) {
+		Long count = aCounts.get(name);
+		aCounts.put(name, count == null ? delta : count + delta);
+	}
+
+	/**
+	 * This method ends the current phase and starts the next one
+	 * 
+	 * @param name The name of the phase ended
+	 */
+	public void phaseDone(String name) {
+		long now = System.nanoTime();
+		long cpuTime = getProcessCpuTime();
+		long allocatedBytes = getAllocatedBytes();
+		aPhases.add(new Phase(name, now - aPhaseStart, difference(cpuTime, aPhaseStartCpuTime),
+				difference(allocatedBytes, aPhaseStartAllocatedBytes), aCounts));
+
+		aCounts = new LinkedHashMap<String, Long>();
+		aPhaseStart = now;
+		aPhaseStartCpuTime = cpuTime;
+		aPhaseStartAllocatedBytes = allocatedBytes;
+	}
+
+	/**
+	 * @return The phases done, in the order they were done
+	 */
+	public List<Phase> getPhases() {
+		return aPhases;
+	}
+
+	/**
+	 * This method prints the metrics as a table
+	 * 
+	 * @param out The stream to print to
+	 */
+	public void report(PrintStream out) {
+		out.println("Link metrics for " + aMainClassName + " (" + aOutputBaseName + "):");
+		out.println(String.format("    %-18s %10s %10s %12s  %s", "phase", "wall ms", "cpu ms",
+				"alloc. KB", "counts"));
+		for (Phase phase : aPhases) {
+			StringBuilder counts = new StringBuilder();
+			for (Map.Entry<String, Long> entry : phase.getCounts().entrySet()) {
+				counts.append(entry.getKey()).append('=').append(entry.getValue()).append(' ');
+			}
+			out.println(String.format("    %-18s %10.1f %10.1f %12d  %s", phase.getName(), phase
+					.getWallTime() / 1e6, phase.getCpuTime() / 1e6,
+					phase.getAllocatedBytes() / 1024, counts.toString()).trim());
+		}
+	}
+
+	/**
+	 * This method writes the metrics to a JSON file like:
+	 * 
+	 * <pre>
+	 * {
+	 *   "mainClass": "org.example.Main",
+	 *   "output": "generated",
+	 *   "phases": [
+	 *     {"name": "reachability", "wallNanos": 469596000, "cpuNanos": 812300000,
+	 *      "allocatedBytes": 129365112, "counts": {"classesLoaded": 120, ...}},
+	 *     ...
+	 *   ]
+	 * }
+	 * </pre>
+	 * 
+	 * @param file The file to write
+	 * @throws IOException If unable to write the file
+	 */
+	public void writeJson(File file) throws IOException {
+		PrintWriter pw = new PrintWriter(file, "UTF-8");
+		try {
+			pw.println("{");
+			pw.println("  \"mainClass\": " + quote(aMainClassName) + ",");
+			pw.println("  \"output\": " + quote(aOutputBaseName) + ",");
+			pw.println("  \"phases\": [");
+			for (Iterator<Phase> it = aPhases.iterator(); it.hasNext();) {
+				Phase phase = it.next();
+				StringBuilder sb = new StringBuilder();
+				sb.append("    {\"name\": ").append(quote(phase.getName()));
+				sb.append(", \"wallNanos\": ").append(phase.getWallTime());
+				sb.append(", \"cpuNanos\": ").append(phase.getCpuTime());
+				sb.append(", \"allocatedBytes\": ").append(phase.getAllocatedBytes());
+				sb.append(", \"counts\": {");
+				for (Iterator<Map.Entry<String, Long>> counts = phase.getCounts().entrySet()
+						.iterator(); counts.hasNext();) {
+					Map.Entry<String, Long> entry = counts.next();
+					sb.append(quote(entry.getKey())).append(": ").append(entry.getValue());
+					if (counts.hasNext()) {
+						sb.append(", ");
+					}
+				}
+				sb.append("}}");
+				if (it.hasNext()) {
+					sb.append(',');
+				}
+				pw.println(sb);
+			}
+			pw.println("  ]");
+			pw.println("}");
+		} finally {
+			pw.close();
+		}
+		if (pw.checkError()) {
+			throw new IOException("Failed writing " + file.getPath());
+		}
+	}
+
+	/**
+	 * This method wraps the work of a thread started by the linker, so the bytes allocated by the
+	 * thread are counted after the thread has finished
+	 * 
+	 * @param r The work of the thread
+	 * @return The wrapped work
+	 */
+	public static Runnable measured(final Runnable r) {
+		return new Runnable() {
+			@Override
+			public void run() {
+				try {
+					r.run();
+				} finally {
+					long id = Thread.currentThread().getId();
+					long bytes = getThreadAllocatedBytes(new long[] { id })[0];
+					if (bytes >= 0) {
+						aFinishedThreads.put(id, bytes);
+					}
+				}
+			}
+		};
+	}
+
+	/**
+	 * @return The CPU time used by the process in nanoseconds, or -1 if not supported
+	 */
+	private static long getProcessCpuTime() {
+		OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+		if (os instanceof com.sun.management.OperatingSystemMXBean) {
+			return ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime();
+		}
+		return -1;
+	}
+
+	/**
+	 * @return The bytes allocated by all threads alive and all threads run through
+	 *         {@link #measured(Runnable)}, or -1 if not supported
+	 */
+	private static long getAllocatedBytes() {
+		long[] ids = ManagementFactory.getThreadMXBean().getAllThreadIds();
+		long[] allocated = getThreadAllocatedBytes(ids);
+		if (allocated.length > 0 && allocated[0] < 0) {
+			return -1;
+		}
+
+		long total = 0;
+		for (long bytes : aFinishedThreads.values()) {
+			total += bytes;
+		}
+		for (int i = 0; i < ids.length; i++) {
+			// A thread finished, but not yet gone, is counted once:
+			if (allocated[i] > 0 && !aFinishedThreads.containsKey(ids[i])) {
+				total += allocated[i];
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * @param ids The ids of some threads
+	 * @return The bytes allocated by each thread, -1 for each thread if not supported
+	 */
+	private static long[] getThreadAllocatedBytes(long[] ids) {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (threads instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean sunThreads = (com.sun.management.ThreadMXBean) threads;
+			if (sunThreads.isThreadAllocatedMemorySupported()
+					&& sunThreads.isThreadAllocatedMemoryEnabled()) {
+				return sunThreads.getThreadAllocatedBytes(ids);
+			}
+		}
+
+		long[] unsupported = new long[ids.length];
+		for (int i = 0; i < unsupported.length; i++) {
+			unsupported[i] = -1;
+		}
+		return unsupported;
+	}
+
+	/**
+	 * @param end The value at the end of a phase; -1 if not supported
+	 * @param start The value at the start of a phase; -1 if not supported
+	 * @return The difference, or -1 if not supported
+	 */
+	private static long difference(long end, long start) {
+		return end < 0 || start < 0 ? -1 : end - start;
+	}
+
+	/**
+	 * This method quotes a string as a JSON string
+	 * 
+	 * @param s The string to quote
+	 * @return The quoted string
+	 */
+	private static String quote(String s) {
+		StringBuilder sb = new StringBuilder("\"");
+		for (char c : s.toCharArray()) {
+			if (c == '"' || c == '\\') {
+				sb.append('\\').append(c);
+			} else if (c < 0x20) {
+				sb.append(String.format("\\u%04x", (int) c));
+			} else {
+				sb.append(c);
+			}
+		}
+		return sb.append('"').toString();
+	}
+
+	/**
+	 * This class holds the metrics of a single phase
+	 */
+	public static class Phase {
+		private final String aName;
+		private final long aWallTime;
+		private final long aCpuTime;
+		private final long aAllocatedBytes;
+		private final Map<String, Long> aCounts;
+
+		/**
+		 * Constructor
+		 * 
+		 * @param name The name of the phase
+		 * @param wallTime The wall time in nanoseconds
+		 * @param cpuTime The CPU time of the process in nanoseconds; -1 if unknown
+		 * @param allocatedBytes The bytes allocated by the process; -1 if unknown
+		 * @param counts The items handled - key is the name of the item counted
+		 */
+		public Phase(String name, long wallTime, long cpuTime, long allocatedBytes,
+				Map<String, Long> counts) {
+			aName = name;
+			aWallTime = wallTime;
+			aCpuTime = cpuTime;
+			aAllocatedBytes = allocatedBytes;
+			aCounts = counts;
+		}
+
+		/**
+		 * @return The name of the phase
+		 */
+		public String getName() {
+			return aName;
+		}
+
+		/**
+		 * @return The wall time in nanoseconds
+		 */
+		public long getWallTime() {
+			return aWallTime;
+		}
+
+		/**
+		 * @return The CPU time of the process in nanoseconds; -1 if unknown
+		 */
+		public long getCpuTime() {
+			return aCpuTime;
+		}
+
+		/**
+		 * @return The bytes allocated by the process; -1 if unknown
+		 */
+		public long getAllocatedBytes() {
+			return aAllocatedBytes;
+		}
+
+		/**
+		 * @return The items handled - key is the name of the item counted
+		 */
+		public Map<String, Long> getCounts() {
+			return aCounts;
+		}
+	}
+}
@@ -0,0 +1,207 @@
+package thinj;
+
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UnsupportedEncodingException;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * This class records what a link was made from: The configuration, the contents of each class
+ * file read and the contents of the generated files. When linking again with the same snapshot
+ * file, {@link #findChanges(ClassReader, String[])} tells if anything has changed since. If
+ * nothing has, the generated files are up to date and the link can be skipped.<br/>
+ * <br/>
+ * The snapshot file is a text file with a line for each item:
+ * 
+ * <pre>
+ * thinj link snapshot &lt;version&gt;
+ * configuration &lt;hash&gt;
+ * class &lt;hash&gt; &lt;class name&gt;
+ * output &lt;hash&gt; &lt;file name&gt;
+ * </pre>
+ */
+public class LinkSnapshot {
+	// Shall be changed whenever the linker changes the generated files for the same input:
+	private static final String HEADER = "thinj link snapshot 1";
+
+	// The snapshot file:
+	private final File aFile;
+
+	// The hash of the configuration of this link:
+	private final String aConfigurationKey;
+
+	// The class files read by this link - key is the class name in the form 'org/example/Foobar'
+	// and value is the hash of the class file:
+	private final TreeMap<String, String> aClassFiles;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param file The snapshot file. Need not exist.
+	 * @param configuration Anything but the class files which affects the generated files; like
+	 *            the class path, the main class and the required references
+	 */
+	public LinkSnapshot(File file, String configuration) {
+		aFile = file;
+		aConfigurationKey = MetadataCache.getKey(getBytes(configuration));
+		aClassFiles = new TreeMap<String, String>();
+	}
+
+	/**
+	 * This method compares this link with the previous link recorded in the snapshot file
+	 * 
+	 * @param classReader The reader to read the current class files with
+	 * @param outputFileNames The names of the generated files
+	 * @return A description of each change found. If empty, the generated files are up to date.
+	 */
+	public List<String> findChanges(ClassReader classReader, String[] outputFileNames) {
+		LinkedList<String> changes = new LinkedList<String>();
+		if (!aFile.isFile()) {
+			changes.add("no previous link");
+			return changes;
+		}
+
+		TreeMap<String, String> classFiles = new TreeMap<String, String>();
+		TreeMap<String, String> outputFiles = new TreeMap<String, String>();
+		String configurationKey = null;
+		try {
+			BufferedReader br = new BufferedReader(new FileReader(aFile));
+			try {
+				if (!HEADER.equals(br.readLine())) {
+					changes.add("snapshot from another version of the linker");
+					return changes;
+				}
+				String line;
+				while ((line = br.readLine()) != null) {
+					String[] fields = line.split(" ", 3);
+					if (fields[0].equals("configuration") && fields.length == 2) {
+						configurationKey = fields[1];
+					} else if (fields[0].equals("class") && fields.length == 3) {
+						classFiles.put(fields[2], fields[1]);
+					} else if (fields[0].equals("output") && fields.length == 3) {
+						outputFiles.put(fields[2], fields[1]);
+					} else {
+						changes.add("unreadable snapshot: " + line);
+						return changes;
+					}
+				}
+			} finally {
+				br.close();
+			}
+		} catch (IOException e) {
+			changes.add("unreadable snapshot: " + e.getMessage());
+			return changes;
+		}
+
+		if (!aConfigurationKey.equals(configurationKey)) {
+			changes.add("configuration changed");
+		}
+
+		for (Map.Entry<String, String> entry : classFiles.entrySet()) {
+			byte[] bytes = classReader.getClassBytes(entry.getKey());
+			if (bytes == null) {
+				changes.add("class removed: " + entry.getKey());
+			} else if (!MetadataCache.getKey(bytes).equals(entry.getValue())) {
+				changes.add("class changed: " + entry.getKey());
+			}
+		}
+
+		for (String fileName : outputFileNames) {
+			String key = getFileKey(new File(fileName));
+			if (key == null || !key.equals(outputFiles.get(fileName))) {
+				changes.add("output changed: " + fileName);
+			}
+		}
+
+		return changes;
+	}
+
+	/**
+	 * This method records a class file read by this link
+	 * 
+	 * @param className The class name in the form 'org/example/Foobar'
+	 * @param bytes The contents of the class file
+	 */
+	public void addClassFile(String className, byte[] bytes) {
+		aClassFiles.put(className, MetadataCache.getKey(bytes));
+	}
+
+	/**
+	 * This method writes the snapshot file. Shall be called when the generated files have been
+	 * written.
+	 * 
+	 * @param outputFileNames The names of the generated files
+	 * @throws IOException If unable to read a generated file or write the snapshot file
+	 */
+	public void save(String[] outputFileNames) throws IOException {
+		PrintWriter pw = new PrintWriter(aFile);
+		try {
+			pw.println(HEADER);
+			pw.println("configuration " + aConfigurationKey);
+			for (Map.Entry<String, String> entry : aClassFiles.entrySet()) {
+				pw.println("class " + entry.getValue() + " " + entry.getKey());
+			}
+			for (String fileName : outputFileNames) {
+				String key = getFileKey(new File(fileName));
+				if (key == null) {
+					throw new IOException("Missing generated file: " + fileName);
+				}
+				pw.println("output " + key + " " + fileName);
+			}
+		} finally {
+			pw.close();
+		}
+		if (pw.checkError()) {
+			throw new IOException("Failed writing " + aFile.getPath());
+		}
+	}
+
+	/**
+	 * This method computes the hash of the contents of a file
+	 * 
+	 * @param file The file
+	 * @return The hash or null, if the file does not exist or cannot be read
+	 */
+	private static String getFileKey(File file) {
+		String key = null;
+		if (file.isFile()) {
+			try {
+				byte[] bytes = new byte[(int) file.length()];
+				DataInputStream dis = new DataInputStream(new FileInputStream(file));
+				try {
+					dis.readFully(bytes);
+				} finally {
+					dis.close();
+				}
+				key = MetadataCache.getKey(bytes);
+			} catch (IOException e) {
+				// Treated as a missing file
+			}
+		}
+
+		return key;
+	}
+
+	/**
+	 * This method encodes a string in UTF-8
+	 * 
+	 * @param s The string to encode
+	 * @return The encoded string
+	 */
+	private static byte[] getBytes(String s) {
+		try {
+			return s.getBytes("UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			// UTF-8 is always supported
+			throw new RuntimeException(e);
+		}
+	}
+}
@@ -0,0 +1,328 @@
+package thinj;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class implements a persistent cache of class file information, see {@link ClassFileInfo}.
+ * The information is keyed by a hash of the class file contents, so a class file which has
+ * changed - or moved to another class path element - is never mistaken for the cached one. On a
+ * cache hit the class file is still read, but not parsed.<br/>
+ * <br/>
+ * The cache file is memory mapped when the cache is created, and entries are decoded when asked
+ * for. Entries added during the link are written by {@link #save()}. The file format is:
+ * 
+ * <pre>
+ * magic (int), version (int)
+ * { hash (40 hex digits), payload length (int), payload (see ClassFileInfo.write()) }*
+ * </pre>
+ * 
+ * The cache may be used from several threads at the same time, and the cache file may be shared
+ * by several links running at the same time. A cache without a file is kept in memory only, e.g.
+ * by a {@link LinkDaemon} serving many links.
+ */
+public class MetadataCache {
+	private static final int MAGIC = 0x74686a6d;
+	// Shall be incremented whenever the format of ClassFileInfo.write() changes:
+	private static final int VERSION = 1;
+	private static final int HEADER_LENGTH = 8;
+	private static final int HASH_LENGTH = 40;
+
+	// The cache file; null if the cache is kept in memory only:
+	private final File aFile;
+
+	// The mapped cache file; null if no valid cache file exists:
+	private final ByteBuffer aMapped;
+
+	// The number of bytes in the mapped file holding complete entries:
+	private final int aValidLength;
+
+	// The position of the payload of each mapped entry - key is the hash:
+	private final HashMap<String, Integer> aOffsets;
+
+	// The entries added since the cache file was mapped - key is the hash:
+	private final LinkedHashMap<String, ClassFileInfo> aNewEntries;
+
+	// Statistics:
+	private final AtomicInteger aHits;
+	private final AtomicInteger aMisses;
+
+	/**
+	 * Constructor. If the cache file exists, it is mapped and indexed. A cache file of another
+	 * version is ignored, and replaced when {@link #save()} is called.
+	 * 
+	 * @param file The cache file. Need not exist. If null, the cache is kept in memory only.
+	 */
+	public MetadataCache(File file) {
+		aFile = file;
+		aOffsets = new HashMap<String, Integer>();
+		aNewEntries = new LinkedHashMap<String, ClassFileInfo>();
+		aHits = new AtomicInteger();
+		aMisses = new AtomicInteger();
+
+		ByteBuffer mapped = null;
+		if (file != null) {
+			try {
+				mapped = map(file);
+			} catch (IOException e) {
+				System.err.println("Ignoring unreadable metadata cache: " + file.getPath());
+			}
+		}
+
+		aMapped = mapped;
+		aValidLength = mapped != null ? index(mapped, aOffsets) : 0;
+	}
+
+	/**
+	 * This method maps a cache file
+	 * 
+	 * @param file The cache file
+	 * @return The mapped file, or null if the file does not exist or is not a cache file of this
+	 *         version
+	 * @throws IOException If unable to read the file
+	 */
+	private static ByteBuffer map(File file) throws IOException {
+		if (!file.isFile() || file.length() < HEADER_LENGTH) {
+			return null;
+		}
+
+		ByteBuffer mapped;
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		} finally {
+			// The mapping stays valid after closing the file:
+			raf.close();
+		}
+
+		if (mapped.getInt(0) != MAGIC || mapped.getInt(4) != VERSION) {
+			mapped = null;
+		}
+		return mapped;
+	}
+
+	/**
+	 * This method indexes the entries in a mapped cache file. An incomplete entry at the end of
+	 * the file is ignored.
+	 * 
+	 * @param mapped The mapped cache file
+	 * @param offsets Receives the position of the payload of each entry - key is the hash
+	 * @return The number of bytes holding complete entries - including the header
+	 */
+	private static int index(ByteBuffer mapped, Map<String, Integer> offsets) {
+		char[] hash = new char[HASH_LENGTH];
+		int position = HEADER_LENGTH;
+		while (position + HASH_LENGTH + 4 <= mapped.limit()) {
+			mapped.position(position);
+			for (int i = 0; i < HASH_LENGTH; i++) {
+				hash[i] = (char) mapped.get();
+			}
+			int length = mapped.getInt();
+			int payload = mapped.position();
+			if (length < 0 || payload + length > mapped.limit()) {
+				break;
+			}
+			offsets.put(new String(hash), payload);
+			position = payload + length;
+		}
+
+		return position;
+	}
+
+	/**
+	 * This method computes the key identifying the contents of a class file
+	 * 
+	 * @param classBytes The contents of the class file
+	 * @return The key
+	 */
+	public static String getKey(byte[] classBytes) {
+		MessageDigest md;
+		try {
+			md = MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			// SHA-1 is always supported
+			throw new RuntimeException(e);
+		}
+
+		StringBuilder sb = new StringBuilder(HASH_LENGTH);
+		for (byte b : md.digest(classBytes)) {
+			sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+			sb.append(Character.forDigit(b & 0xf, 16));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * This method looks up the information about a class file
+	 * 
+	 * @param key The key of the class file, see {@link #getKey(byte[])}
+	 * @return The cached information or null, if not in the cache
+	 */
+	public ClassFileInfo get(String key) {
+		ClassFileInfo info = null;
+		Integer offset = aOffsets.get(key);
+		if (offset != null) {
+			ByteBuffer bb = aMapped.duplicate();
+			bb.position(offset);
+			info = ClassFileInfo.read(bb);
+		} else {
+			synchronized (this) {
+				info = aNewEntries.get(key);
+			}
+		}
+
+		if (info != null) {
+			aHits.incrementAndGet();
+		} else {
+			aMisses.incrementAndGet();
+		}
+		return info;
+	}
+
+	/**
+	 * This method adds the information about a class file to the cache. It is written to the
+	 * cache file by {@link #save()}.
+	 * 
+	 * @param key The key of the class file, see {@link #getKey(byte[])}
+	 * @param info The information about the class file
+	 */
+	public synchronized void put(String key, ClassFileInfo info) {
+		if (!aOffsets.containsKey(key)) {
+			aNewEntries.put(key, info);
+		}
+	}
+
+	/**
+	 * This method writes the cache file, if any entries have been added. Links sharing the cache
+	 * file may save at the same time, so the writers are serialized by a lock on a file next to
+	 * the cache file, and the entries saved by other links since the cache file was mapped are
+	 * kept. The file is written to a temporary file and then atomically moved to the cache file,
+	 * so readers never see a partly written cache file. Entries already in the cache file are not
+	 * written again, so calling this method more than once is harmless.
+	 * 
+	 * @throws IOException If unable to write the cache file
+	 */
+	public synchronized void save() throws IOException {
+		if (aNewEntries.isEmpty() || aFile == null) {
+			return;
+		}
+
+		File dir = aFile.getAbsoluteFile().getParentFile();
+		RandomAccessFile lockFile = new RandomAccessFile(new File(dir, aFile.getName() + ".lock"),
+				"rw");
+		try {
+			FileLock lock = lockFile.getChannel().lock();
+			try {
+				save(dir);
+			} finally {
+				lock.release();
+			}
+		} finally {
+			lockFile.close();
+		}
+	}
+
+	/**
+	 * This method merges the cache file as it is now with the entries known by this cache, and
+	 * writes the result. The caller holds the lock on the cache file.
+	 * 
+	 * @param dir The directory holding the cache file
+	 * @throws IOException If unable to write the cache file
+	 */
+	private void save(File dir) throws IOException {
+		// The cache file may have been replaced by another link since it was mapped:
+		ByteBuffer current = null;
+		try {
+			current = map(aFile);
+		} catch (IOException e) {
+			System.err.println("Replacing unreadable metadata cache: " + aFile.getPath());
+		}
+		HashMap<String, Integer> currentOffsets = new HashMap<String, Integer>();
+		int currentLength = current != null ? index(current, currentOffsets) : 0;
+
+		// The entries mapped by this cache, which are no longer in the cache file:
+		LinkedHashMap<String, Integer> lost = new LinkedHashMap<String, Integer>();
+		for (Map.Entry<String, Integer> entry : aOffsets.entrySet()) {
+			if (!currentOffsets.containsKey(entry.getKey())) {
+				lost.put(entry.getKey(), entry.getValue());
+			}
+		}
+		LinkedHashMap<String, ClassFileInfo> added = new LinkedHashMap<String, ClassFileInfo>();
+		for (Map.Entry<String, ClassFileInfo> entry : aNewEntries.entrySet()) {
+			if (!currentOffsets.containsKey(entry.getKey())) {
+				added.put(entry.getKey(), entry.getValue());
+			}
+		}
+		if (lost.isEmpty() && added.isEmpty()) {
+			return;
+		}
+
+		File tmp = File.createTempFile(aFile.getName(), ".tmp", dir);
+		try {
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+					new FileOutputStream(tmp)));
+			try {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				if (current != null) {
+					// Copy the entries in the cache file as they are:
+					byte[] existing = new byte[currentLength - HEADER_LENGTH];
+					ByteBuffer bb = current.duplicate();
+					bb.position(HEADER_LENGTH);
+					bb.get(existing);
+					out.write(existing);
+				}
+
+				for (Map.Entry<String, Integer> entry : lost.entrySet()) {
+					// The payload length precedes the payload:
+					ByteBuffer bb = aMapped.duplicate();
+					bb.position(entry.getValue() - 4);
+					byte[] payload = new byte[bb.getInt()];
+					bb.get(payload);
+					out.writeBytes(entry.getKey());
+					out.writeInt(payload.length);
+					out.write(payload);
+				}
+
+				ByteArrayOutputStream payload = new ByteArrayOutputStream();
+				for (Map.Entry<String, ClassFileInfo> entry : added.entrySet()) {
+					payload.reset();
+					entry.getValue().write(new DataOutputStream(payload));
+					out.writeBytes(entry.getKey());
+					out.writeInt(payload.size());
+					payload.writeTo(out);
+				}
+			} finally {
+				out.close();
+			}
+
+			Files.move(tmp.toPath(), aFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			// Only left behind if the move failed:
+			tmp.delete();
+		}
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "MetadataCache [" + aOffsets.size() + " entries read, " + aHits + " hits, "
+				+ aMisses + " misses, " + aNewEntries.size() + " entries added]";
+	}
+}
@@ -1,42 +1,27 @@
 package thinj;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
-import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Properties;
 import java.util.StringTokenizer;
+import java.util.TreeSet;
 
 import org.apache.bcel.classfile.ClassFormatException;
-import org.apache.bcel.classfile.ClassParser;
-import org.apache.bcel.classfile.CodeException;
-import org.apache.bcel.classfile.Constant;
-import org.apache.bcel.classfile.ConstantClass;
-import org.apache.bcel.classfile.ConstantDouble;
-import org.apache.bcel.classfile.ConstantFieldref;
-import org.apache.bcel.classfile.ConstantFloat;
-import org.apache.bcel.classfile.ConstantInteger;
-import org.apache.bcel.classfile.ConstantInterfaceMethodref;
-import org.apache.bcel.classfile.ConstantLong;
-import org.apache.bcel.classfile.ConstantMethodref;
-import org.apache.bcel.classfile.ConstantNameAndType;
-import org.apache.bcel.classfile.ConstantPool;
-import org.apache.bcel.classfile.ConstantString;
-import org.apache.bcel.classfile.ConstantUtf8;
-import org.apache.bcel.classfile.ExceptionTable;
-import org.apache.bcel.classfile.Field;
-import org.apache.bcel.classfile.JavaClass;
-import org.apache.bcel.classfile.LineNumber;
-import org.apache.bcel.classfile.LineNumberTable;
-import org.apache.bcel.classfile.Method;
-import org.apache.bcel.classfile.Utility;
-import org.apache.bcel.generic.Type;
 
+import thinj.ClassFileInfo.ConstantInfo;
+import thinj.ClassFileInfo.FieldInfo;
+import thinj.ClassFileInfo.MethodInfo;
 import thinj.instructions.AbstractInstruction;
 import thinj.instructions.InstructionHandler;
+import thinj.instructions.InstructionMapping;
 import thinj.linkmodel.ClassInSuite;
 import thinj.linkmodel.ClassReference;
 import thinj.linkmodel.ClassTypeEnum;
@@ -46,7 +31,9 @@ import thinj.linkmodel.Member;
 import thinj.linkmodel.MemberReference;
 import thinj.linkmodel.MethodInClass;
 import thinj.linkmodel.MethodOrField;
-import thinj.linkmodel.Signature;
+import thinj.optimizer.PassManager;
+import thinj.optimizer.PassStatistics;
+import thinj.optimizer.Verifier;
 
 // // For JVM instructions, see:
 // http://www.daimi.au.dk/dOvs/jvmspec/ref-ifne.html
@@ -54,65 +41,295 @@ import thinj.linkmodel.Signature;
 public class NewLinker {
 	private LinkModel aLinkModel;
 
+	// The instructions referenced by the code of the suite:
+	private final InstructionMapping aInstructionMapping;
+
 	// The one and only method executing our program:
 	private MethodInClass aInitMethod;
 
 	private ClassReader aClassReader;
+	private ClassPrefetcher aClassPrefetcher;
+	private MetadataCache aMetadataCache;
+
+	// The names of all class files read, in the form 'org/example/Foobar':
+	private final TreeSet<String> aClassFileNames;
 	private int aClassId;
 	private final String aOutputBaseName;
 
+	// The classes and members waiting to be handled. Handled in FIFO order:
+	private final LinkedList<WorkItem> aWorkList;
+
+	// The methods with code not yet scanned for dependencies; a method is scanned when first
+	// referenced, see scanMethod(). Value is the methods of the class of the method (key):
+	private final HashMap<MethodInClass, UnscannedMethods> aUnscannedMethods;
+
+	// The item currently being handled; null if none:
+	private WorkItem aCurrentWorkItem;
+
+	// The methods which might override referenced methods. Handled by handleDecendants:
+	private final LinkedList<WorkItem> aOverrideWorkList;
+
+	// Statistics for the work lists:
+	private int aWorkItemsProcessed;
+	private int aMaxWorkListDepth;
+	private int aOverridesChecked;
+
+	// true, if only overrides in instantiated classes shall be included (Rapid Type Analysis):
+	private final boolean aRapidTypeAnalysis;
+
+	// RTA: The classes instantiated, and the classes and interfaces they extend or implement:
+	private final HashSet<String> aLiveTypes;
+
+	// RTA: Override candidates found in classes not (yet) live - key is the class name:
+	private final HashMap<String, List<WorkItem>> aDeferredOverrides;
+
+	private static final String USAGE = "usage: java -Dmycp=<class path> -Dout=<file> "
+			+ "NewLinker <main class>\n"
+			+ "       java -Dmycp=<class path> -Dbatch=<file> NewLinker";
+
+	// The time, CPU time, allocations and item counts of each phase done:
+	private final LinkMetrics aMetrics;
+
+	// The time spent reading and parsing class files - or waiting for the background threads to
+	// do so. Part of the phases reading classes:
+	private long aClassReadTime;
+
+	// true, if the statistics of the link shall be printed; only if the metrics are reported:
+	private final boolean aPrintStatistics;
+
 	/**
-	 * Constructor. When constructor returns the suite has been generated.
+	 * Constructor. When constructor returns the suite has been generated. Each instance is a link
+	 * of its own, with a link model and instruction mapping of its own, so several programs may be
+	 * linked at the same time.
 	 * 
-	 * @param classPath The class path in which the references classes, methods etc. are loaded.
-	 *            Only the referenced items will be included in the final suite.
-	 * @param requiredReferences An array of required methods and field.
-	 * @param mainClassName The class containing the main - method. Note that the main-method shall
-	 *            have no args.
-	 * @param vmClassReferences Classes referenced by the VM. This will lead to generation of link
-	 *            constants (link ids)
-	 * @param vmMemberReferences Class member referenced by the VM. This will lead to generation of
-	 *            link constants (link ids)
-	 * @throws IOException If any common I/O errors occur
-	 * @throws ClassNotFoundException If unable to load a referenced class
+	 * @param configuration The class path, the program, the generated files and the settings of
+	 *            the link
+	 * @throws LinkException If the link fails, e.g. if unable to load a referenced class
 	 */
-	public NewLinker(String classPath, String outputBaseName, String[] requiredReferences,
-			String[] vmClassReferences, String[] vmMemberReferences, String mainClassName)
-			throws IOException, ClassNotFoundException {
+	public NewLinker(LinkConfiguration configuration) throws LinkException {
+		String classPath = configuration.getClassPath();
+		String outputBaseName = configuration.getOutputBaseName();
+		String mainClassName = configuration.getMainClassName();
+		String[] requiredReferences = configuration.getRequiredReferences();
+		String[] vmClassReferences = configuration.getVmClassReferences();
+		String[] vmMemberReferences = configuration.getVmMemberReferences();
+		boolean rapidTypeAnalysis = configuration.isRapidTypeAnalysis();
 		aOutputBaseName = outputBaseName;
-		aLinkModel = LinkModel.getInstance();
+		aRapidTypeAnalysis = rapidTypeAnalysis;
+		aLiveTypes = new HashSet<String>();
+		aDeferredOverrides = new HashMap<String, List<WorkItem>>();
+		aMetrics = new LinkMetrics(mainClassName, outputBaseName);
+		aPrintStatistics = configuration.getMetricsReport() != null;
+		aLinkModel = new LinkModel();
+		aInstructionMapping = new InstructionMapping();
 		aClassReader = new ClassReader(classPath);
+		aMetadataCache = configuration.getMetadataCache();
+		aClassPrefetcher = new ClassPrefetcher(aClassReader, configuration.getPrefetchThreads(),
+				configuration.getClassCacheCapacity(), aMetadataCache);
 		aClassId = 0;
-
-		// Create synthetic classes as the first:
-		createSyntheticClasses();
-
-		// Build a list of the classes referenced from the VM:
-		HashSet<String> vmClasses = new HashSet<String>();
-		// Load mandatory classes referenced by VM:
-		for (String className : vmClassReferences) {
-			ClassInSuite cl = loadClass(ClassInSuite.getGlobalName(className));
-			vmClasses.add(cl.getClassName());
+		aWorkList = new LinkedList<WorkItem>();
+		aOverrideWorkList = new LinkedList<WorkItem>();
+		aUnscannedMethods = new HashMap<MethodInClass, UnscannedMethods>();
+		aClassFileNames = new TreeSet<String>();
+
+		String[] outputFileNames = new String[] { outputBaseName + ".c", outputBaseName + ".h",
+				outputBaseName + ".trace" };
+		LinkSnapshot snapshot = null;
+		if (configuration.isIncremental()) {
+			snapshot = new LinkSnapshot(new File(outputBaseName + ".snapshot"), classPath + "\n"
+					+ outputBaseName + "\n" + mainClassName + "\n" + rapidTypeAnalysis + "\n"
+					+ Arrays.toString(requiredReferences) + "\n"
+					+ Arrays.toString(vmClassReferences) + "\n"
+					+ Arrays.toString(vmMemberReferences) + "\n"
+					+ Arrays.toString(configuration.getOptimizationPasses()) + "\n"
+					+ configuration.isVerifyCode());
+			List<String> changes = snapshot.findChanges(aClassReader, outputFileNames);
+			if (changes.isEmpty()) {
+				System.out.println("Up to date: " + outputBaseName);
+				aClassPrefetcher.close();
+				aClassReader.close();
+				return;
+			}
+			for (String change : changes) {
+				System.out.println("Relinking; " + change);
+			}
 		}
 
-		// 'Main' is our starting point:
-		handleReference(mainClassName, "main", "([Ljava/lang/String;)V");
-
-		// Reference the required references:
-		includeReferences(requiredReferences);
-		List<Member> vmRefList = includeReferences(vmMemberReferences);
+		// Build a list of the classes referenced from the VM:
+		HashSet<String> vmClasses;
+		List<Member> vmRefList;
+		try {
+			// Start reading the classes known to be needed:
+			for (String className : vmClassReferences) {
+				aClassPrefetcher.prefetch(ClassInSuite.getGlobalName(className));
+			}
+			aClassPrefetcher.prefetch(ClassInSuite.getGlobalName(mainClassName));
+
+			// Create synthetic classes as the first:
+			createSyntheticClasses();
+
+			vmClasses = new HashSet<String>();
+			// Load mandatory classes referenced by VM:
+			for (String className : vmClassReferences) {
+				ClassInSuite cl = loadClass(ClassInSuite.getGlobalName(className));
+				vmClasses.add(cl.getClassName());
+				// The VM might instantiate the class:
+				addLiveType(cl.getClassName());
+				processWorkList();
+			}
 
-		handleDecendants();
+			// 'Main' is our starting point:
+			handleReference(mainClassName, "main", "([Ljava/lang/String;)V", "main method");
+
+			// Reference the required references:
+			includeReferences(requiredReferences);
+			vmRefList = includeReferences(vmMemberReferences);
+			int referenceCount = aLinkModel.getReferenceCount();
+			aMetrics.count("referencesCreated", referenceCount);
+			long classReadTime = aClassReadTime;
+			aMetrics.count("classReadingNanos", classReadTime);
+			phaseDone("reachability");
+
+			handleDecendants();
+			aMetrics.count("referencesCreated", aLinkModel.getReferenceCount() - referenceCount);
+			aMetrics.count("classReadingNanos", aClassReadTime - classReadTime);
+			aMetrics.count("workItemsProcessed", aWorkItemsProcessed);
+			aMetrics.count("maxWorkListDepth", aMaxWorkListDepth);
+			aMetrics.count("overridesChecked", aOverridesChecked);
+			phaseDone("handleDecendants");
+			if (aRapidTypeAnalysis) {
+				reportRapidTypeAnalysis();
+			}
+			if (aPrintStatistics) {
+				System.out.println("Reachability: " + aWorkItemsProcessed
+						+ " work items processed; max. work list depth: " + aMaxWorkListDepth
+						+ "; " + aOverridesChecked + " overrides checked");
+				// All classes loaded:
+				System.out.println(aClassReader);
+				System.out.println(aClassPrefetcher);
+				System.out.println(aClassPrefetcher.getCache());
+			}
+			aClassPrefetcher.close();
+			if (snapshot != null) {
+				for (String name : aClassFileNames) {
+					snapshot.addClassFile(name, aClassReader.getClassBytes(name));
+				}
+			}
+			aClassReader.close();
+			if (aMetadataCache != null && aPrintStatistics) {
+				// Saved by link(), when all links sharing the cache are done:
+				System.out.println(aMetadataCache);
+			}
+		} catch (RuntimeException e) {
+			// Leave no threads nor open files behind when the JVM goes on:
+			aClassPrefetcher.close();
+			aClassReader.close();
+			throw e;
+		}
+		phaseDone("closeClassPath");
 
 		StaticClassLoader classLoader = new StaticClassLoader(aLinkModel);
 		aInitMethod = classLoader.createInitCode(ClassInSuite.getGlobalName(mainClassName));
+		phaseDone("createInitCode");
+
+		if (configuration.getOptimizationPasses().length > 0) {
+			// Before link(), as the passes change the size of the code:
+			PassManager passManager = new PassManager(aLinkModel, configuration
+					.getOptimizationPasses());
+			passManager.run();
+			for (PassStatistics statistics : passManager.getStatistics()) {
+				System.out.println(statistics);
+				aMetrics.count(statistics.getName() + ".bytesSaved", statistics.getBytesSaved());
+				aMetrics.count(statistics.getName() + ".instructionsSaved", statistics
+						.getInstructionsSaved());
+			}
+			aMetrics.count("methodsOptimized", passManager.getMethodsChanged());
+			aMetrics.count("methodsNotOptimized", passManager.getMethodsSkipped());
+			phaseDone("optimizationPasses");
+		}
+
+		Verifier verifier = null;
+		if (configuration.isVerifyCode()) {
+			// After the passes, so the code generated is verified, and before link(), as the
+			// addresses of the code are relative to each method until then:
+			verifier = new Verifier(aLinkModel);
+			verifier.run();
+			for (String failure : verifier.getFailures()) {
+				System.err.println("Not verified: " + failure);
+			}
+			System.out.println("Verifier: " + verifier.getMethodsVerified() + " methods verified; "
+					+ verifier.getFailures().size() + " not verified; max stack "
+					+ verifier.getMaxStack());
+			aMetrics.count("methodsVerified", verifier.getMethodsVerified());
+			aMetrics.count("methodsNotVerified", verifier.getFailures().size());
+			phaseDone("verify");
+		}
 
 		aLinkModel.link();
+		phaseDone("link");
 		aLinkModel.optimize();
+		aMetrics.count("referencesKept", aLinkModel.getReferenceCount());
+		phaseDone("optimize");
 
-		CodeGenerator cg = new CodeGenerator(aLinkModel);
+		CodeGenerator cg = new CodeGenerator(aLinkModel, aInstructionMapping, configuration
+				.getCodeGeneratorThreads());
+		cg.setVerifier(verifier);
 		cg.generateCode(mainClassName, aOutputBaseName, aInitMethod.getCodeOffset(), vmClasses,
 				vmRefList);
+		aMetrics.count("bytesEmitted", cg.getBytesEmitted());
+		phaseDone("generateCode");
+		if (aPrintStatistics) {
+			for (String fileName : cg.getUnchangedFiles()) {
+				System.out.println("Unchanged: " + fileName);
+			}
+		}
+
+		if (snapshot != null) {
+			try {
+				snapshot.save(outputFileNames);
+			} catch (IOException e) {
+				// Not fatal; the next link will just be a full link:
+				System.err.println("Failed writing link snapshot: " + e.getMessage());
+			}
+		}
+
+		if (aPrintStatistics) {
+			for (LinkMetrics.Phase phase : aMetrics.getPhases()) {
+				System.out.println(String.format("Phase %s: %.3f ms", phase.getName(), phase
+						.getWallTime() / 1e6));
+			}
+			System.out.println(String.format("Class reading: %.3f ms (part of reachability and "
+					+ "handleDecendants)", aClassReadTime / 1e6));
+			reportMetrics(configuration.getMetricsReport());
+		}
+	}
+
+	/**
+	 * This method reports the metrics of each phase. Failing to write the report is not fatal.
+	 * 
+	 * @param metricsReport 'stderr' prints a table to stderr; any other value is the name of a
+	 *            JSON file to write
+	 */
+	private void reportMetrics(String metricsReport) {
+		if (metricsReport.equals("stderr")) {
+			aMetrics.report(System.err);
+		} else {
+			try {
+				aMetrics.writeJson(new File(metricsReport));
+			} catch (IOException e) {
+				System.err.println("Failed writing metrics: " + metricsReport + ": "
+						+ e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * This method ends the current phase of the link and starts the next one
+	 * 
+	 * @param phase The name of the phase ended
+	 */
+	private void phaseDone(String phase) {
+		aMetrics.phaseDone(phase);
 	}
 
 	/**
@@ -127,8 +344,12 @@ public class NewLinker {
 		for (String ref : references) {
 			Member m = toMember(ref);
 			members.add(m);
+			if (m.getSignature().getName().equals("<init>")) {
+				// The class is instantiated outside java code:
+				addLiveType(m.getClassName());
+			}
 			handleReference(m.getClassName(), m.getSignature().getName(), m.getSignature()
-					.getDescriptor());
+					.getDescriptor(), "required reference");
 		}
 
 		return members;
@@ -141,15 +362,15 @@ public class NewLinker {
 	 * @param ref The member reference
 	 * @return The corresponding Member instance
 	 */
-	public static Member toMember(String ref) {
+	public Member toMember(String ref) {
 		StringTokenizer st = new StringTokenizer(ref, " ");
 		if (st.countTokens() != 3) {
-			NewLinker.exit("Wrong format of dependency: " + ref, 1);
+			throw new LinkException("Wrong format of dependency: " + ref);
 		}
 		String clName = ClassInSuite.getGlobalName(st.nextToken());
 		String memberName = st.nextToken();
 		String signature = st.nextToken();
-		return new Member(clName, memberName, signature);
+		return aLinkModel.createMember(clName, memberName, signature);
 	}
 
 	/**
@@ -157,68 +378,193 @@ public class NewLinker {
 	 * non-final method 'm', which then is overload by another method 'f' in 'B', then we cannot
 	 * rely on an explicit reference to B.f. However, if 'A.f' is referenced, 'B.f' shall be handled
 	 * as a referenced method as well. Example: If 'Object.equals(Object)' is overloaded, then the
-	 * overloaded method shall be included in the final suite as well.
-	 * 
-	 * @throws ClassNotFoundException
-	 * @throws IOException
-	 * @throws ClassFormatException
+	 * overloaded method shall be included in the final suite as well.<br/>
+	 * <br/>
+	 * The candidates - (sub class, referenced method) pairs - are added to the override work list
+	 * as methods are referenced and classes are loaded, see
+	 * {@link #addOverrideCandidates(MethodInClass)} and {@link #addOverrideCandidates(ClassInSuite)}
+	 * . This method handles the candidates until no more are found.
 	 */
-	private void handleDecendants() throws ClassFormatException, IOException,
-			ClassNotFoundException {
-		// Repeat until no references has been added
-		boolean referenceAdded;
-		do {
-			referenceAdded = false;
-			// Only interested in referenced classes:
-			List<ClassInSuite> referencedClasses = getReferencedClasses();
-			for (ClassInSuite cis : referencedClasses) {
-				List<MethodInClass> referencedMethods = getReferencedMethods(cis);
-
-				// Get all classes extending 'cis' (only one level down):
-				List<ClassInSuite> extendingClasses = aLinkModel.getAllClassesExtending(cis
-						.getClassId());
-				// Get all classes implementing 'cis':
-				List<ClassInSuite> implementingClasses = aLinkModel.getAllClassesImplementing(cis
-						.getClassId());
-				List<ClassInSuite> subClasses = new LinkedList<ClassInSuite>(extendingClasses);
-				subClasses.addAll(implementingClasses);
-
-				// Iterate over all combinations of (sub classes, referencedMethods):
-				for (MethodInClass mic : referencedMethods) {
-					for (ClassInSuite extCis : subClasses) {
-						MethodInClass extMic = (MethodInClass) aLinkModel.getMethodOrFieldInClass(
-								extCis.getClassId(), mic.getMember().getSignature().getName(), mic
-										.getMember().getSignature().getDescriptor());
-						if (extMic != null && !extMic.isReferenced()
-								&& extMic.getType() != MethodInClass.Type.Constructor) {
-							handleReference(extCis.getClassName(), extMic.getMember()
-									.getSignature().getName(), extMic.getMember().getSignature()
-									.getDescriptor());
-							referenceAdded = true;
-						}
+	private void handleDecendants() {
+		while (!aOverrideWorkList.isEmpty()) {
+			WorkItem item = aOverrideWorkList.removeFirst();
+			aOverridesChecked++;
+
+			ClassInSuite extCis = aLinkModel.getClassByName(item.getClassName());
+			MethodInClass extMic = (MethodInClass) aLinkModel.getMethodOrFieldInClass(
+					extCis.getClassId(), item.getMemberName(), item.getDescriptor());
+			if (extMic != null && !extMic.isReferenced()
+					&& extMic.getType() != MethodInClass.Type.Constructor) {
+				if (aRapidTypeAnalysis && !aLiveTypes.contains(extCis.getClassName())) {
+					// No instances of the class yet; wait and see:
+					List<WorkItem> deferred = aDeferredOverrides.get(extCis.getClassName());
+					if (deferred == null) {
+						deferred = new LinkedList<WorkItem>();
+						aDeferredOverrides.put(extCis.getClassName(), deferred);
 					}
+					deferred.add(item);
+				} else {
+					handleReference(extCis.getClassName(), item.getMemberName(),
+							item.getDescriptor(), item.getReason());
+				}
+			}
+		}
+	}
+
+	/**
+	 * This method marks a class - and all classes and interfaces it extends or implements - as
+	 * live, i.e. instances of it may exist at runtime. Override candidates deferred for any of the
+	 * classes are moved back to the override work list. The classes extended or implemented by a
+	 * class not loaded yet are marked when the class is loaded.
+	 * 
+	 * @param className The name of the live class. Shall be in '/' - format.
+	 */
+	private void addLiveType(String className) {
+		LinkedList<String> pending = new LinkedList<String>();
+		pending.add(className);
+		while (!pending.isEmpty()) {
+			String name = pending.removeFirst();
+			if (aLiveTypes.add(name)) {
+				List<WorkItem> deferred = aDeferredOverrides.remove(name);
+				if (deferred != null) {
+					aOverrideWorkList.addAll(deferred);
+				}
+
+				ClassInSuite cis = aLinkModel.getClassByName(name);
+				if (cis != null) {
+					pending.addAll(getSuperTypeNames(cis));
+				}
+				// else: Not loaded yet; continued in loadClass
+			}
+			// else: Already live - and so are its super types
+		}
+	}
+
+	/**
+	 * This method returns the names of the super class and the interfaces implemented by a class
+	 * 
+	 * @param cis The class
+	 * @return The names of the super class (if any) and the implemented interfaces
+	 */
+	private List<String> getSuperTypeNames(ClassInSuite cis) {
+		LinkedList<String> superTypes = new LinkedList<String>();
+		if (cis.getSuperClassName() != null) {
+			superTypes.add(cis.getSuperClassName());
+		}
+		superTypes.addAll(Arrays.asList(cis.getImplementedInterfaces()));
+
+		return superTypes;
+	}
+
+	/**
+	 * This method prints a summary of the methods left out by the Rapid Type Analysis: The
+	 * overriding methods deferred but never included, the methods they reference and the methods
+	 * overriding those - as far as they are found in the loaded classes. Classes which would only
+	 * have been loaded because of the left out methods are not known, so the summary is a lower
+	 * bound of the savings compared to the conservative linking.
+	 */
+	private void reportRapidTypeAnalysis() {
+		LinkedList<MethodInClass> pending = new LinkedList<MethodInClass>();
+		for (List<WorkItem> deferred : aDeferredOverrides.values()) {
+			for (WorkItem item : deferred) {
+				addIfNotReferenced(pending, item.getClassName(), item.getMemberName(),
+						item.getDescriptor());
+			}
+		}
+
+		HashSet<MethodInClass> excluded = new HashSet<MethodInClass>();
+		int excludedBytes = 0;
+		while (!pending.isEmpty()) {
+			MethodInClass mic = pending.removeFirst();
+			if (excluded.add(mic)) {
+				if (mic.getCode() != null) {
+					excludedBytes += mic.getCode().length;
+				}
+				for (MemberReference ref : mic.getMemberReferences()) {
+					addIfNotReferenced(pending, ClassInSuite.getGlobalName(ref
+							.getReferencedClassName()), ref.getSignature().getName(), ref
+							.getSignature().getDescriptor());
+				}
+				for (ClassInSuite extCis : aLinkModel.getDirectSubTypes(mic.getMember()
+						.getClassName())) {
+					addIfNotReferenced(pending, extCis.getClassName(), mic.getMember()
+							.getSignature().getName(), mic.getMember().getSignature()
+							.getDescriptor());
 				}
 			}
-		} while (referenceAdded);
+		}
+
+		System.out.println("RTA: " + excluded.size() + " methods (" + excludedBytes
+				+ " bytes of code) left out compared to conservative linking (lower bound)");
 	}
 
 	/**
-	 * This method builds and returns a list containing all referenced classes
+	 * This method adds a method to 'methods', if the method is declared by a loaded class, is not
+	 * a constructor and is not referenced
 	 * 
-	 * @return A list containing all referenced classes
+	 * @param methods The list to add to
+	 * @param className The class declaring the method
+	 * @param memberName The name of the method
+	 * @param descriptor The descriptor of the method
 	 */
-	private List<ClassInSuite> getReferencedClasses() {
-		LinkedList<ClassInSuite> l = new LinkedList<ClassInSuite>();
+	private void addIfNotReferenced(List<MethodInClass> methods, String className,
+			String memberName, String descriptor) {
+		ClassInSuite cis = aLinkModel.getClassByName(className);
+		if (cis != null) {
+			MethodOrField mof = aLinkModel.getMethodOrFieldInClass(cis.getClassId(), memberName,
+					descriptor);
+			if (mof instanceof MethodInClass && !mof.isReferenced()
+					&& ((MethodInClass) mof).getType() != MethodInClass.Type.Constructor) {
+				methods.add((MethodInClass) mof);
+			}
+		}
+	}
 
-		ClassInSuite[] allClasses = aLinkModel.getAllClasses();
-		for (ClassInSuite cis : allClasses) {
-			// Only interested in referenced classes:
-			if (cis.isReferenced()) {
-				l.add(cis);
+	/**
+	 * This method adds the override candidates for a newly referenced method: The classes directly
+	 * extending or implementing the class defining the method. If the method is defined by an
+	 * interface, the classes directly extending the classes implementing the interface are added
+	 * as well.
+	 * 
+	 * @param mic The newly referenced method
+	 */
+	private void addOverrideCandidates(MethodInClass mic) {
+		ClassInSuite cis = aLinkModel.getClassByName(mic.getMember().getClassName());
+		for (ClassInSuite extCis : aLinkModel.getDirectSubTypes(cis.getClassName())) {
+			aOverrideWorkList.add(WorkItem.forOverride(extCis.getClassName(), mic));
+		}
+		for (ClassInSuite implCis : aLinkModel.getAllClassesImplementing(cis.getClassId())) {
+			for (ClassInSuite extCis : aLinkModel.getDirectSubTypes(implCis.getClassName())) {
+				aOverrideWorkList.add(WorkItem.forOverride(extCis.getClassName(), mic));
 			}
 		}
+	}
+
+	/**
+	 * This method adds the override candidates for a newly loaded class: The class itself for each
+	 * referenced method in its super class and implemented interfaces, and the already loaded
+	 * classes extending the class for each referenced method in the interfaces implemented by the
+	 * class.
+	 * 
+	 * @param cis The newly loaded class
+	 */
+	private void addOverrideCandidates(ClassInSuite cis) {
+		for (String superTypeName : getSuperTypeNames(cis)) {
+			ClassInSuite superCis = aLinkModel.getClassByName(superTypeName);
+			if (superCis != null) {
+				for (MethodInClass mic : getReferencedMethods(superCis)) {
+					aOverrideWorkList.add(WorkItem.forOverride(cis.getClassName(), mic));
+				}
+			}
+			// else: Not loaded yet; any override is found when the super type's methods are
+			// referenced
+		}
 
-		return l;
+		for (MethodInClass mic : getReferencedMethods(cis)) {
+			for (ClassInSuite extCis : aLinkModel.getDirectSubTypes(cis.getClassName())) {
+				aOverrideWorkList.add(WorkItem.forOverride(extCis.getClassName(), mic));
+			}
+		}
 	}
 
 	/**
@@ -245,13 +591,16 @@ public class NewLinker {
 		String[] allInterfaces = cis.getImplementedInterfaces();
 		for (String interfaceName : allInterfaces) {
 			ClassInSuite intf = aLinkModel.getClassByName(interfaceName);
-			// Get all methods from interface:
-			MethodInClass[] intfMethods = aLinkModel.getMethods(intf.getClassId());
-			for (MethodInClass mic : intfMethods) {
-				if (mic.isReferenced()) {
-					referencedMethods.add(mic);
+			if (intf != null) {
+				// Get all methods from interface:
+				MethodInClass[] intfMethods = aLinkModel.getMethods(intf.getClassId());
+				for (MethodInClass mic : intfMethods) {
+					if (mic.isReferenced()) {
+						referencedMethods.add(mic);
+					}
 				}
 			}
+			// else: Interface not loaded yet, so none of its methods are referenced
 		}
 
 		return referencedMethods;
@@ -261,16 +610,54 @@ public class NewLinker {
 	 * This method handles a reference to a member. 'handles' means that when this method returns
 	 * the class has been added to the link model; the referenced member has been marked as a
 	 * dependency; and if the class or method hasn't been referenced before its dependencies are
-	 * handled in the same manner (using recursion).
+	 * handled in the same manner (using the work list).
 	 * 
 	 * @param referencedClass The class to reference to
 	 * @param memberName The name of the member to reference
 	 * @param signature The signature of the referenced member
+	 * @param reason Why the member is referenced
+	 */
+	private void handleReference(String referencedClass, String memberName, String signature,
+			String reason) {
+		aWorkList.add(WorkItem.forMember(referencedClass, memberName, signature, reason));
+		processWorkList();
+	}
+
+	/**
+	 * This method handles the items on the work list until the list is empty. Handling an item may
+	 * add new items to the list, but each class is loaded once and each member is scanned once, so
+	 * the amount of work is linear in the size of the program - and the stack depth is bounded by
+	 * the depth of the class hierarchy, see {@link #loadClass(String)}.
 	 */
-	private void handleReference(String referencedClass, String memberName, String signature) {
-		// System.out.println("handleRef: " + referencedClass + ", " + memberName + ", " +
-		// signature);
-		referencedClass = ClassInSuite.getGlobalName(referencedClass);
+	private void processWorkList() {
+		while (!aWorkList.isEmpty()) {
+			if (aWorkList.size() > aMaxWorkListDepth) {
+				aMaxWorkListDepth = aWorkList.size();
+			}
+			aCurrentWorkItem = aWorkList.removeFirst();
+			aWorkItemsProcessed++;
+
+			if (aCurrentWorkItem.getKind() == WorkItem.Kind.Class) {
+				loadClass(aCurrentWorkItem.getClassName());
+			} else {
+				referenceMember(aCurrentWorkItem);
+			}
+		}
+		aCurrentWorkItem = null;
+	}
+
+	/**
+	 * This method handles a work item referencing a member: The class is loaded; the member is
+	 * marked as referenced; and if the member is a method not referenced before, it is scanned and
+	 * everything it depends on is added to the work list.
+	 * 
+	 * @param item The work item identifying the member
+	 */
+	private void referenceMember(WorkItem item) {
+		// System.out.println("handleRef: " + item);
+		String referencedClass = ClassInSuite.getGlobalName(item.getClassName());
+		String memberName = item.getMemberName();
+		String signature = item.getDescriptor();
 		ClassInSuite cl = aLinkModel.getClassByName(referencedClass);
 		if (cl == null) {
 			// Class not loaded; load it:
@@ -280,27 +667,38 @@ public class NewLinker {
 		// synthetic classes):
 		cl.referenced();
 
+		// The member is looked up in the super classes and the implemented interfaces as well:
+		loadSuperClasses(cl);
+
 		// Establish reference to target and scan instructions, if target is a method:
 		MethodOrField mof = aLinkModel.getMethodOrField(cl.getClassId(), memberName, signature);
 		if (mof == null) {
-			System.err.println("Unresolved reference: " + cl.getClassName() + "#" + memberName
-					+ signature);
-			System.exit(1);
+			throw new LinkException("Unresolved reference: " + cl.getClassName() + "#"
+					+ memberName + signature + " (" + item.getReason() + ")");
 		}
 		if (!mof.isReferenced()) {
-			// Avoid endless recursion:
+			if (mof instanceof MethodInClass) {
+				// The dependencies shall be known, when the method is marked as referenced:
+				scanMethod((MethodInClass) mof);
+			}
+			// Avoid endless loops:
 			mof.referenced();
 			if (mof instanceof MethodInClass) {
 				MethodInClass mic = (MethodInClass) mof;
+				addOverrideCandidates(mic);
+				for (ClassReference cref : mic.getAllInstantiatedClasses()) {
+					addLiveType(ClassInSuite.getGlobalName(cref.getClassName()));
+				}
+
 				// Handle all class references in method code (method=mic):
 				for (ClassReference cref : mic.getAllClassDependencies()) {
 					cref.referenced();
-					loadClass(cref.getClassName());
+					aWorkList.add(WorkItem.forClass(cref.getClassName(), mic));
 				}
 
 				// Handle all simple array references in method code (method=mic):
 				for (ClassTypeEnum type : mic.getAllSimpleArrayDependencies()) {
-					loadClass(type.getSignature());
+					aWorkList.add(WorkItem.forClass(type.getSignature(), mic));
 				}
 
 				// Handle all member references in method code (method=mic):
@@ -308,8 +706,8 @@ public class NewLinker {
 				for (MemberReference ref : refs) {
 					// Mark reference as necessary:
 					ref.referenced();
-					handleReference(ref.getReferencedClassName(), ref.getSignature().getName(), ref
-							.getSignature().getDescriptor());
+					aWorkList.add(WorkItem.forMember(ref.getReferencedClassName(), ref
+							.getSignature().getName(), ref.getSignature().getDescriptor(), mic));
 				}
 			}
 			// else field: no code etc. to traverse
@@ -318,8 +716,10 @@ public class NewLinker {
 	}
 
 	/**
-	 * This method loads a class into the link model. If unable to load, this method will call
-	 * System.exit(1); so any return is a successful return.
+	 * This method loads a class into the link model. If unable to load, a LinkException is thrown,
+	 * so any return is a successful return. The implemented interfaces are loaded as well, as
+	 * looking up a member walks the interfaces; the class initialisation code is added to the work
+	 * list, see {@link #processWorkList()}.
 	 * 
 	 * @param referencedClass The name of the class to load. Shall be in '/' - format.
 	 * @return The loaded class
@@ -332,12 +732,18 @@ public class NewLinker {
 			if (referencedClass.startsWith("[")) {
 				classInSuite = loadArray(referencedClass);
 			} else {
-				JavaClass jc = readClassFromFile(referencedClass);
-				JavaClass superClass = readClassFromFile(jc.getSuperclassName());
-				JavaClass[] allInterfaces = readClassesFromFiles(jc.getInterfaceNames());				
+				ClassFileInfo jc = readClassFromFile(referencedClass);
+				// Read the super types in the background, while reading the others:
+				aClassPrefetcher.prefetch(ClassInSuite.getGlobalName(jc.getSuperClassName()));
+				for (String name : jc.getInterfaceNames()) {
+					aClassPrefetcher.prefetch(ClassInSuite.getGlobalName(name));
+				}
+				ClassFileInfo superClass = readClassFromFile(jc.getSuperClassName());
+				ClassFileInfo[] allInterfaces = readClassesFromFiles(jc.getInterfaceNames());				
 				
 				boolean isJavaLangObject = referencedClass.equals("java/lang/Object");
 				// Register the class in our model:
+				aMetrics.count("classesLoaded", 1);
 				classInSuite = aLinkModel.createClassInSuite(jc.getClassName(), aClassId++,
 						isJavaLangObject ? null : superClass.getClassName(),
 						jc.isInterface() ? ClassTypeEnum.InterfaceType : ClassTypeEnum.ClassType);
@@ -346,24 +752,23 @@ public class NewLinker {
 				classInSuite.referenced();
 
 				// Load all implemented interfaces:
-				for (JavaClass interfaceClass : allInterfaces) {
+				for (ClassFileInfo interfaceClass : allInterfaces) {
 					String intfName = ClassInSuite.getGlobalName(interfaceClass.getClassName());
 					// Strange... it seems that getAllInterfaces() also return the name of the
 					// interface it self... Avoid self-referencing:
 					if (!intfName.equals(referencedClass)) {
-						classInSuite.addImplementedInterface(intfName);
+						aLinkModel.addImplementedInterface(classInSuite, intfName);
 						loadClass(intfName);
 					}
 				}
 
 				// NB!!! ConstantPool contains constants for entire class !!!
-				loadConstantPool(jc.getConstantPool(), classInSuite.getClassId());
+				loadConstantPool(jc, classInSuite.getClassId());
 
 				// Collect fields:
-				for (int i = 0; i < jc.getFields().length; i++) {
-					Field field = jc.getFields()[i];
+				for (FieldInfo field : jc.getFields()) {
 					aLinkModel.createFieldInClass(jc.getClassName(), field.getName(),
-							field.getSignature(), field.getType().getSize(), field.isStatic());
+							field.getSignature(), field.getSize(), field.isStatic());
 				}
 
 				loadMethods(classInSuite.getClassId(), isJavaLangObject, jc);
@@ -375,8 +780,17 @@ public class NewLinker {
 						// System.out.println("clinit ref: " + referencedClass + "." +
 						// mic.getMember().getSignature().getName() + "#" +
 						// mic.getMember().getSignature().getDescriptor());
-						handleReference(referencedClass, mic.getMember().getSignature().getName(),
-								mic.getMember().getSignature().getDescriptor());
+						aWorkList.add(WorkItem.forMember(referencedClass, mic.getMember()
+								.getSignature().getName(), mic.getMember().getSignature()
+								.getDescriptor(), "class initialisation"));
+					}
+				}
+
+				addOverrideCandidates(classInSuite);
+				if (aLiveTypes.contains(classInSuite.getClassName())) {
+					// Instantiated before loaded; the super types are live as well:
+					for (String superTypeName : getSuperTypeNames(classInSuite)) {
+						addLiveType(superTypeName);
 					}
 				}
 			}
@@ -385,34 +799,59 @@ public class NewLinker {
 	}
 
 	/**
-	 * This method reads an array JavaClass from some .class files
+	 * This method loads the super classes of a class not loaded yet - and hence their implemented
+	 * interfaces, see {@link #loadClass(String)}
+	 * 
+	 * @param cis The class
+	 */
+	private void loadSuperClasses(ClassInSuite cis) {
+		String superClassName = cis.getSuperClassName();
+		while (superClassName != null) {
+			superClassName = loadClass(ClassInSuite.getGlobalName(superClassName))
+					.getSuperClassName();
+		}
+	}
+
+	/**
+	 * This method reads an array of ClassFileInfo from some .class files
 	 * 
 	 * @param interfaceNames The names of the classes
-	 * @return The read JavaClass'es. If unable to read, this method exits.
+	 * @return The read ClassFileInfo's. If unable to read, a LinkException is thrown.
 	 */
-	private JavaClass[] readClassesFromFiles(String[] interfaceNames) {
-		LinkedList<JavaClass> l = new LinkedList<JavaClass>();
+	private ClassFileInfo[] readClassesFromFiles(String[] interfaceNames) {
+		LinkedList<ClassFileInfo> l = new LinkedList<ClassFileInfo>();
 		for (String name : interfaceNames) {
 			l.add(readClassFromFile(name));
 		}
 
-		return l.toArray(new JavaClass[l.size()]);
+		return l.toArray(new ClassFileInfo[l.size()]);
 	}
 
 	/**
-	 * This method reads a JavaClass from a .class file
+	 * This method reads a ClassFileInfo from a .class file. The class might already have been read
+	 * in the background, see {@link ClassPrefetcher}, or be found in the metadata cache, see
+	 * {@link MetadataCache}.
 	 * 
 	 * @param referencedClass The name of the class
-	 * @return The read JavaClass. If unable to read, this method exits.
+	 * @return The read ClassFileInfo. If unable to read, a LinkException is thrown.
 	 */
-	private JavaClass readClassFromFile(String referencedClass) {
-		InputStream is = aClassReader.getClassFileReader(ClassInSuite
-				.getGlobalName(referencedClass));
-		JavaClass jc = null;
+	private ClassFileInfo readClassFromFile(String referencedClass) {
+		String context = aCurrentWorkItem != null ? " (while handling " + aCurrentWorkItem + ")"
+				: "";
+		ClassFileInfo jc = null;
+		String className = ClassInSuite.getGlobalName(referencedClass);
+		aClassFileNames.add(className);
+		long start = System.nanoTime();
 		try {
-			jc = new ClassParser(is, referencedClass).parse();
+			jc = aClassPrefetcher.getClassFileInfo(className);
+		} catch (LinkException e) {
+			throw e;
 		} catch (Exception e) {
-			exit("Failed loading class: " + referencedClass, 1);
+			throw new LinkException("Failed loading class: " + referencedClass + context, e);
+		}
+		aClassReadTime += System.nanoTime() - start;
+		if (jc == null) {
+			throw new LinkException("Class not found: " + referencedClass + context);
 		}
 		return jc;
 	}
@@ -445,9 +884,8 @@ public class NewLinker {
 				// Skip leading 'L':
 				elementClass = loadClass(elementClassName.substring(1));
 			} else {
-				System.err.println("Unexpected array name: " + referencedClass + "--"
+				throw new LinkException("Unexpected array name: " + referencedClass + "--"
 						+ elementClassName);
-				System.exit(1);
 			}
 
 			cis = aLinkModel.createObjectArrayClassInSuite(elementClass.getClassName(), aClassId++);
@@ -458,73 +896,82 @@ public class NewLinker {
 	}
 
 	/**
-	 * This method loads all methods in the class. They are *not* noted as referenced. The
-	 * instruction list in each method is scanned and any referenced are handled (recursion).
+	 * This method loads all methods in the class. They are *not* noted as referenced. The methods
+	 * with code are not scanned for references until referenced, see
+	 * {@link #scanMethod(MethodInClass)}.
 	 * 
 	 * @param classId The id of the embracing class
 	 * @param isJavaLangObject true if the embracing class is java.lang.Object
-	 * @param jc The bcel - representation of the loaded class
-	 * @throws IOException
-	 * @throws ClassNotFoundException
+	 * @param jc The thinJ - representation of the loaded class file
 	 */
-	private void loadMethods(int classId, boolean isJavaLangObject, JavaClass jc) {
-		int constantPoolLength = jc.getConstantPool().getLength();
-		for (int i = 0; i < jc.getMethods().length; i++) {
-			Method m = jc.getMethods()[i];
-
+	private void loadMethods(int classId, boolean isJavaLangObject, ClassFileInfo jc) {
+		UnscannedMethods unscanned = new UnscannedMethods(classId, jc.getConstantPoolLength());
+		for (MethodInfo m : jc.getMethods()) {
+			byte[] code = m.getCode();
 			if (isJavaLangObject && m.getName().equals("<init>")) {
-				// Patch java.lang.Object default constructor - no call to any super class:
-				// m.getCode().setCode(toByteArray(new int[] { 0xB1 }));
-				m.getCode().setCode(new byte[] { (byte) 0xB1 });
-			}
-			// Determine number of arguments to method - 'this' counts also as an
-			// argument:
-			int numberOfArguments = (m.isStatic() ? 0 : 1);
-			for (Type mx : m.getArgumentTypes()) {
-				// Count long / double as 2 arguments:
-				numberOfArguments += mx.getSize();
+				// Patch java.lang.Object default constructor - no call to any super class. The
+				// cached ClassFileInfo is left untouched:
+				code = new byte[] { (byte) 0xB1 };
 			}
+			int numberOfArguments = m.getNumberOfArguments();
 
 			// Find number of local variables in method:
-			if (!m.isAbstract() && !m.isNative()) {
+			if (!m.isAbstract() && !m.isNative() && code != null) {
 				// System.err.println(new InstructionList(m.getCode().getCode()));
-				int maxIndex = m.getCode().getMaxLocals();
+				int maxIndex = m.getMaxLocals();
 
+				// The code is not copied until the method is scanned:
 				MethodInClass mic = aLinkModel.createMethodInClass(jc.getClassName(), m.getName(),
-						m.getSignature(), m.getCode().getCode(), maxIndex, numberOfArguments,
-						m.isStatic());
+						m.getSignature(), code, maxIndex, numberOfArguments, m.isStatic());
 				// System.err.println("micmic: " + jc.getClassName() + "." + m.getName() + "(("
 				// + m.getSignature());
-				// Add line number information:
-				LineNumberTable lnt = m.getCode().getLineNumberTable();
-				for (LineNumber ln : lnt.getLineNumberTable()) {
-					mic.appendLineNumber(ln.getLineNumber(), ln.getStartPC());
-				}
-
-				// Load exceptions:
-				loadExceptions(m, classId, mic);
-
-				// Scan instructions and register any references in mic:
-				// InstructionList il = new InstructionList(m.getCode().getCode());
-				// scanInstructions(jc.getConstantPool(), il, mic, classId);
-				constantPoolLength = scanCode(mic, classId, constantPoolLength);
+				unscanned.add(mic, m);
+				aUnscannedMethods.put(mic, unscanned);
 			} else if (m.isAbstract()) {
 				// Create abstract method entry in model:
 				aLinkModel.createAbstractMethodInClass(jc.getClassName(), m.getName(),
 						m.getSignature(), numberOfArguments);
 			} else if (m.isNative()) {
-				String[] argTypes = Utility.methodSignatureArgumentTypes(m.getSignature());
-				String returnType = Utility.methodSignatureReturnType(m.getSignature());
 				aLinkModel.createNativeMethodInClass(jc.getClassName(), m.getName(),
-						m.getSignature(), m.isStatic(), argTypes, returnType);
+						m.getSignature(), m.isStatic(), m.getArgumentTypes(), m.getReturnType());
 			} else {
-				System.err.println("?? unknown message type..." + jc.getClassName() + "#"
+				throw new LinkException("?? unknown message type..." + jc.getClassName() + "#"
 						+ m.getName());
-				System.exit(1);
 			}
 		}
 	}
 
+	/**
+	 * This method scans a method for references when it is first referenced: The line numbers and
+	 * exception handlers are added, and the references in the code are registered in the method.
+	 * Methods without code and methods already scanned are ignored.
+	 * 
+	 * @param mic The method
+	 */
+	private void scanMethod(MethodInClass mic) {
+		UnscannedMethods unscanned = aUnscannedMethods.remove(mic);
+		if (unscanned == null) {
+			return;
+		}
+		MethodInfo m = unscanned.getMethodInfo(mic);
+		int classId = unscanned.getClassId();
+
+		// The code is changed in place when linking; leave the class file information untouched:
+		mic.setCode(mic.getCode().clone());
+
+		// Add line number information:
+		int[] lineNumbers = m.getLineNumbers();
+		for (int i = 0; i < lineNumbers.length; i += 2) {
+			mic.appendLineNumber(lineNumbers[i], lineNumbers[i + 1]);
+		}
+
+		// Load exceptions:
+		loadExceptions(m, classId, mic);
+
+		// Scan instructions and register any references in mic:
+		scanCode(mic, classId, unscanned.getConstantPoolBase(mic));
+	}
+
 	/**
 	 * This method loads exceptions and handlers for the supplied method. Nothing is marked as
 	 * 'referenced'.
@@ -533,85 +980,72 @@ public class NewLinker {
 	 * @param classId The id of the class defining the method
 	 * @param mic thinJ representation of the method
 	 */
-	private void loadExceptions(Method m, int classId, MethodInClass mic) {
+	private void loadExceptions(MethodInfo m, int classId, MethodInClass mic) {
 		// Get the exceptions thrown by the method:
-		ExceptionTable table = m.getExceptionTable();
-		if (table != null) {
-			// Register the dependencies of the thrown exceptions:
-			// System.out.println("classId: " + classId + "; method = " + m);
-			for (int i = 0; i < table.getExceptionIndexTable().length; i++) {
-				// Register dependency:
-				String name = ClassInSuite.getGlobalName(table.getExceptionNames()[i]);
-				ClassReference classReference = aLinkModel.createClassReference(classId,
-						table.getExceptionIndexTable()[i], name);
-
-				mic.addClassDependency(classReference);
-			}
-
-			// System.out.println("#excep: " + table.getNumberOfExceptions());
-			// System.exit(1);
-		}
-
-		if (m.getCode() != null && m.getCode().getExceptionTable() != null
-				&& m.getCode().getExceptionTable().length > 0) {
-			// System.out.println("classId: " + classId + "; method = " + m);
-			// Register exception handlers:
-			for (int i = 0; i < m.getCode().getExceptionTable().length; i++) {
-				CodeException codex = m.getCode().getExceptionTable()[i];
-				// System.err.println("classId = " + classId + ", cpIx = " + codex.getCatchType());
-				if (codex.getCatchType() != 0) {
-					ClassReference cref = aLinkModel.getClassReference(classId,
-							codex.getCatchType());
-					mic.addClassDependency(cref);
-				}
-				ExceptionHandler handler = new ExceptionHandler(classId, codex.getStartPC(),
-						codex.getEndPC(), codex.getHandlerPC(), codex.getCatchType());
-				mic.addExceptionHandler(handler);
-				// System.out.println("my codex: " + handler + "; cpIx = " + codex.getCatchType());
+		int[] thrownIndexes = m.getThrownIndexes();
+		// Register the dependencies of the thrown exceptions:
+		// System.out.println("classId: " + classId + "; method = " + m);
+		for (int i = 0; i < thrownIndexes.length; i++) {
+			// Register dependency:
+			String name = ClassInSuite.getGlobalName(m.getThrownNames()[i]);
+			ClassReference classReference = aLinkModel.createClassReference(classId,
+					thrownIndexes[i], name);
+
+			mic.addClassDependency(classReference);
+		}
+
+		// Register exception handlers - quadruples of (start pc, end pc, handler pc, catch type):
+		int[] handlers = m.getExceptionHandlers();
+		for (int i = 0; i < handlers.length; i += 4) {
+			int catchType = handlers[i + 3];
+			// System.err.println("classId = " + classId + ", cpIx = " + catchType);
+			if (catchType != 0) {
+				ClassReference cref = aLinkModel.getClassReference(classId, catchType);
+				mic.addClassDependency(cref);
 			}
+			ExceptionHandler handler = new ExceptionHandler(classId, handlers[i],
+					handlers[i + 1], handlers[i + 2], catchType);
+			mic.addExceptionHandler(handler);
+			// System.out.println("my codex: " + handler + "; cpIx = " + catchType);
 		}
 	}
 
 	/**
-	 * This method scans an instruction list looking for references. If any found; these are handled
-	 * using the {@link #handleReference(String, String, String)} method. So we are indeed
-	 * recursing. <br/>
+	 * This method scans an instruction list looking for references. If any found; these are
+	 * registered in 'mic' and handled when the method is referenced, see
+	 * {@link #referenceMember(WorkItem)}. <br/>
 	 * <br/>
 	 * Note! {@link #loadClass(String)} shall under no circumstances be called from this method!
 	 * 
 	 * @param mic The method in which the references shall be registered
 	 * @param classId The classId of the class containing the instructions being scanned
-	 * @param constantPoolLength The number of elements in the constant pool
-	 * @return The new constant pool length after scanning the code. Some extra elements might be
-	 *         added during the scan
+	 * @param constantPoolLength The number of elements in the constant pool before scanning the
+	 *            code. Some extra elements might be added during the scan
 	 */
-	private int scanCode(final MethodInClass mic, final int classId, int constantPoolLength) {
+	private void scanCode(final MethodInClass mic, final int classId, int constantPoolLength) {
 		final IntInABox cpl = new IntInABox(constantPoolLength);
-		AbstractInstruction.disassemble(0, mic.getCode(), new InstructionHandler() {
+		aMetrics.count("methodsScanned", 1);
+		aMetrics.count("instructionsDecoded", mic.getInstructions().size());
+		mic.getInstructions().handle(0, new InstructionHandler() {
 			@Override
 			public void handle(int address, AbstractInstruction instruction) {
 				instruction.registerDependencies(aLinkModel, classId, mic, cpl);
 			}
 		});
-
-		return cpl.getValue();
 	}
 
 	/**
 	 * This method loads all classes that are not explicitly referenced.
-	 * 
-	 * @throws ClassFormatException
-	 * @throws IOException
-	 * @throws ClassNotFoundException
 	 */
-	private void createSyntheticClasses() throws ClassFormatException, IOException,
-			ClassNotFoundException {
+	private void createSyntheticClasses() {
 		// Always java.lang.Object as the first class:
 		loadClass(ClassInSuite.getGlobalName(Object.class.getName()));
+		processWorkList();
 		aClassId = ClassTypeEnum.values().length + 4;
 		// loadClass("java/lang/Class");
 		// loadClass(ClassInSuite.getGlobalName(Class.class.getName()));
-		handleReference(ClassInSuite.getGlobalName(Class.class.getName()), "aClassId", "I");
+		handleReference(ClassInSuite.getGlobalName(Class.class.getName()), "aClassId", "I",
+				"referenced by the VM");
 
 		// If the simple type arrays are not referenced from java - classes, they are not included.
 		// However, if native methods use these types, they cannot be found at runtime => it is
@@ -629,160 +1063,152 @@ public class NewLinker {
 		loadClass("[L" + ClassInSuite.getGlobalName(Object.class.getName()));
 		// More assistance to Class[]:
 		loadClass("[L" + ClassInSuite.getGlobalName(Class.class.getName()));
+		processWorkList();
 	}
 
 	/**
 	 * This method loads the constant pool for the entire class
 	 * 
-	 * @param cp The constant pool to load
+	 * @param jc The class containing the constant pool
 	 * @param classId The id of the class containing the constant pool
-	 * @throws ClassNotFoundException
-	 * @throws IOException
-	 * @throws ClassFormatException
 	 */
-	private void loadConstantPool(ConstantPool cp, int classId) {
-		Constant[] constantPool = cp.getConstantPool();
-		for (int i = 0; i < constantPool.length; i++) {
-			Constant cons = constantPool[i];
-
-			if (cons == null) {
-				// Ignore
-			} else if (cons instanceof ConstantClass) {
-				ConstantClass cc = (ConstantClass) cons;
-				String className = getName(constantPool, cc.getNameIndex());
+	private void loadConstantPool(ClassFileInfo jc, int classId) {
+		for (ConstantInfo cons : jc.getConstants()) {
+			int i = cons.getIndex();
+			switch (cons.getKind()) {
+			case Class:
+				String className = cons.getClassName();
 				if (className.endsWith(";")) {
 					className = className.substring(0, className.length() - 1);
 				}
 				aLinkModel.createClassReference(classId, i, className);
-			} else if (cons instanceof ConstantUtf8) {
-				// ConstantUtf8 c8 = (ConstantUtf8) cons;
-				// System.out.println("8utf: " + c8);
-			} else if (cons instanceof ConstantMethodref) {
-				// Is added during scan of instructions
-				ConstantMethodref ref = (ConstantMethodref) cons;
-				addMethodReference(ref.getClassIndex(), ref.getNameAndTypeIndex(), i, constantPool,
-						classId);
-			} else if (cons instanceof ConstantNameAndType) {
-			} else if (cons instanceof ConstantInterfaceMethodref) {
-				// Is added during scan of instructions
-				ConstantInterfaceMethodref ref = (ConstantInterfaceMethodref) cons;
-				addMethodReference(ref.getClassIndex(), ref.getNameAndTypeIndex(), i, constantPool,
-						classId);
-			} else if (cons instanceof ConstantFieldref) {
-				// Is added during scan of instructions
-				addFieldReference((ConstantFieldref) cons, i, constantPool, classId);
-			} else if (cons instanceof ConstantInteger) {
-				aLinkModel.createIntegerConstantReference(classId, i,
-						((ConstantInteger) cons).getBytes());
-			} else if (cons instanceof ConstantString) {
-				ConstantString cs = (ConstantString) cons;
-				aLinkModel.createStringConstantReference(classId, i, cs.getBytes(cp));
+				// The class will probably be loaded; start reading it in the background:
+				aClassPrefetcher.prefetch(className);
+				break;
+			case MemberReference:
+				// Method, interface method or field; is added during scan of instructions
+				aLinkModel.createMemberReference(cons.getClassName(),
+						aLinkModel.createSignature(cons.getMemberName(), cons.getDescriptor()),
+						classId, i);
+				break;
+			case Integer:
+				aLinkModel.createIntegerConstantReference(classId, i, (Integer) cons.getValue());
+				break;
+			case String:
+				aLinkModel.createStringConstantReference(classId, i, (String) cons.getValue());
 				// A string constant requires that java/lang/string is present:
 				loadClass("java/lang/String");
-			} else if (cons instanceof ConstantLong) {
-				ConstantLong cs = (ConstantLong) cons;
-				aLinkModel.createLongConstantReference(classId, i, cs.getBytes());
-			} else if (cons instanceof ConstantFloat) {
-				aLinkModel.createFloatConstantReference(classId, i,
-						((ConstantFloat) cons).getBytes());
-			} else if (cons instanceof ConstantDouble) {
-				aLinkModel.createDoubleConstantReference(classId, i,
-						((ConstantDouble) cons).getBytes());
-			} else {
-				System.err.println("Unsupported constant type: " + cons.getClass().getName());
-				System.exit(1);
+				break;
+			case Long:
+				aLinkModel.createLongConstantReference(classId, i, (Long) cons.getValue());
+				break;
+			case Float:
+				aLinkModel.createFloatConstantReference(classId, i, (Float) cons.getValue());
+				break;
+			case Double:
+				aLinkModel.createDoubleConstantReference(classId, i, (Double) cons.getValue());
+				break;
 			}
 		}
 	}
 
-	// ----------------------------------------------//
-	/**
-	 * This method adds a reference to a method to the link model.
-	 * 
-	 * @param classIndex The index into the constant pool where the containing class is defined
-	 * @param nameAndTypeIndex The name and signature of the referenced field
-	 * @param index The index into the constant pool of class identified by classId
-	 * @param constantPool The constant pool to extract the textual reference from
-	 * @param classId The id identifying the class
-	 */
-	private void addMethodReference(int classIndex, int nameAndTypeIndex, int index,
-			Constant[] constantPool, int classId) {
-		addMethodOrFieldReference(classIndex, nameAndTypeIndex, index, constantPool, classId);
-	}
-
-	/**
-	 * This method adds a reference to a field to the link model.
-	 * 
-	 * @param ref The constant pool containing the reference
-	 * @param index The index into the constant pool of class identified by classId
-	 * @param constantPool The constant pool to extract the textual reference from
-	 * @param classId The id identifying the class
-	 */
-	private void addFieldReference(ConstantFieldref ref, int index, Constant[] constantPool,
-			int classId) {
-		addMethodOrFieldReference(ref.getClassIndex(), ref.getNameAndTypeIndex(), index,
-				constantPool, classId);
+	public static void main(String[] args) {
+		try {
+			link(System.getProperties(), args, null);
+		} catch (LinkException e) {
+			System.err.println(e.getMessage());
+			if (e.getCause() != null) {
+				e.getCause().printStackTrace();
+			}
+			System.exit(1);
+		}
 	}
 
 	/**
-	 * This method adds a reference to a field or method to the link model.
+	 * This method links a program - or a batch of programs. The options are the system
+	 * properties, when run from the command line, or the options of a link job sent to
+	 * {@link LinkDaemon}.
 	 * 
-	 * @param cpClassIndex The index into the constant pool where the containing class is defined
-	 * @param cpNameAndTypeIndex The name and signature of the referenced field
-	 * @param index The index into the constant pool of class identified by classId
-	 * @param constantPool The constant pool to extract the textual reference from
-	 * @param classId The id identifying the class
+	 * @param options The options, see the examples below and in
+	 *            {@link #createConfiguration(Properties, String, MetadataCache)}
+	 * @param args The arguments: The main class; none for a batch
+	 * @param metadataCache The cache of parsed class files, shared with other links; if null, the
+	 *            cache file given by the option 'metadata.cache' is used. The cache is saved when
+	 *            the program - or all programs of a batch - have been linked
+	 * @throws LinkException If the link fails - or, for a batch, if any job fails
 	 */
-	private void addMethodOrFieldReference(int cpClassIndex, int cpNameAndTypeIndex, int index,
-			Constant[] constantPool, int classId) {
-		ConstantClass cpClass = (ConstantClass) constantPool[cpClassIndex];
-		ConstantNameAndType cpNameAndType = (ConstantNameAndType) constantPool[cpNameAndTypeIndex];
-		String className = getName(constantPool, cpClass.getNameIndex());
+	public static void link(Properties options, String[] args, MetadataCache metadataCache)
+			throws LinkException {
+		// Example:
+		// java -cp ~/workspace/thinj/bin:$CLASSPATH -Dmycp=bin:/tools/bcel/5.2/bcel-5.2.jar \\
+		// thinj.ClassReader thinj/regression/AllTests thinj/regression/gc/GC \\
+		// org/apache/bcel/classfile/ClassParser
 
-		ConstantUtf8 cpMethodName = (ConstantUtf8) constantPool[cpNameAndType.getNameIndex()];
-		String memberName = cpMethodName.getBytes();
+		// Example:
+		// -Dbatch=/home/hammer/workspace/thinjregression/regression.batch
+		// Optional; links several programs against the same class path, see LinkBatch. Each line
+		// of the file is a job: <main class> <output name> [<dependency file>]
+		// The main class, -Dout and -Ddependencies are then given by the jobs
+		String batchFile = options.getProperty("batch");
+		if (batchFile != null ? args.length != 0 : args.length != 1) {
+			throw new LinkException(USAGE);
+		}
 
-		ConstantUtf8 cpSignature = (ConstantUtf8) constantPool[cpNameAndType.getSignatureIndex()];
-		String memberSignature = cpSignature.getBytes();
+		// Example:
+		// -Dmetadata.cache=/home/hammer/workspace/thinjvm/thinj.cache
+		// Optional; a file keeping the parsed class files between links. Class files are looked up
+		// by the hash of their contents, so changed class files are parsed again. The file is
+		// created if missing
+		String metadataCacheFile = options.getProperty("metadata.cache");
+		if (metadataCache == null && metadataCacheFile != null) {
+			metadataCache = new MetadataCache(new File(metadataCacheFile));
+		}
 
-		aLinkModel.createMemberReference(className, new Signature(memberName, memberSignature),
-				classId, index);
+		try {
+			if (batchFile != null) {
+				LinkBatch batch = new LinkBatch(options, metadataCache);
+				batch.readJobs(new File(batchFile));
+				// A failed job does not stop the others:
+				int failed = batch.run();
+				if (failed > 0) {
+					throw new LinkException("Batch failed: " + failed + " jobs failed");
+				}
+			} else {
+				new NewLinker(createConfiguration(options, args[0], metadataCache));
+			}
+		} finally {
+			// Once for all jobs of a batch; the entries added by a failed link are still valid:
+			if (metadataCache != null) {
+				try {
+					metadataCache.save();
+				} catch (IOException e) {
+					// Not fatal; the next link will just parse the class files again:
+					System.err.println("Failed writing metadata cache: " + e.getMessage());
+				}
+			}
+		}
+		System.out.println("Done.");
 	}
 
-	// ----------------------------------------------//
-
 	/**
-	 * This method looks up a name Constant from the constant pool
+	 * This method creates the configuration of a single link from options
 	 * 
-	 * @param constantPool The pool to lookup in
-	 * @param nameIndex The index into the constant pool
-	 * @return The resolved name
+	 * @param options The options, see the examples below
+	 * @param mainClass The main class of the program
+	 * @param metadataCache The cache of parsed class files, shared with other links; null if
+	 *            class files shall always be parsed. The cache is not saved by the link
+	 * @return The configuration
+	 * @throws LinkException If a mandatory option is missing, or if unable to read the dependency
+	 *             file
 	 */
-	private String getName(Constant[] constantPool, int nameIndex) {
-		ConstantUtf8 utfName = (ConstantUtf8) constantPool[nameIndex];
-		return utfName.getBytes();
-	}
-
-	public static void main(String[] args) {
-		// Example:
-		// java -cp ~/workspace/thinj/bin:$CLASSPATH -Dmycp=bin:/tools/bcel/5.2/bcel-5.2.jar \\
-		// thinj.ClassReader thinj/regression/AllTests thinj/regression/gc/GC \\
-		// org/apache/bcel/classfile/ClassParser
-
-		String usage = "usage: java -Dmycp=<class path> -Dout=<file> NewLinker <main class>";
-		if (args.length != 1) {
-			System.err.println(usage);
-			System.exit(1);
-		}
-		String mainClass = args[0];
-
+	static LinkConfiguration createConfiguration(Properties options, String mainClass,
+			MetadataCache metadataCache) throws LinkException {
 		// Example:
 		// -Dmycp=/home/hammer/workspace/thinjrt/bin/thinjrt.jar:/home/hammer/workspace/thinj/bin:/tools/j2sdk/1.6.0_20/jre/lib/rt.jar
 		// Mandatory; contains class path to search in when resolving class names into class files
-		String classPath = System.getProperty("mycp");
+		String classPath = options.getProperty("mycp");
 		if (classPath == null) {
-			System.err.println(usage);
-			System.exit(1);
+			throw new LinkException(USAGE);
 		}
 
 		// Example:
@@ -793,12 +1219,73 @@ public class NewLinker {
 		// resolve
 		// classes, methods and fields in the java code (to be used when calling from native c code
 		// to java)
-		String outFile = System.getProperty("out");
+		String outFile = options.getProperty("out");
 		if (outFile == null) {
-			System.err.println(usage);
-			System.exit(1);
+			throw new LinkException(USAGE);
 		}
 
+		// Example:
+		// -Drta=true
+		// Optional; if true, overriding methods are only included from classes that are
+		// instantiated (Rapid Type Analysis). This gives a smaller suite, but any class instantiated
+		// by native code shall then be listed in the dependency file with its constructor
+		boolean rapidTypeAnalysis = Boolean.parseBoolean(options.getProperty("rta"));
+
+		// Example:
+		// -Dprefetch.threads=4
+		// Optional; the number of threads reading and parsing class files in the background. 0
+		// disables the background reading. Default is the number of available processors
+		int prefetchThreads = getInteger(options, "prefetch.threads", Runtime.getRuntime()
+				.availableProcessors());
+
+		// Example:
+		// -Dclass.cache.size=1000
+		// Optional; the maximum number of parsed class files kept in memory while linking
+		int classCacheCapacity = getInteger(options, "class.cache.size",
+				ClassFileInfoCache.DEFAULT_CAPACITY);
+
+		// Example:
+		// -Dcodegen.threads=4
+		// Optional; the number of threads rendering the generated files. 0 renders the files in
+		// the main thread. Default is the number of available processors. The generated files are
+		// the same for any number of threads
+		int codeGeneratorThreads = getInteger(options, "codegen.threads", Runtime.getRuntime()
+				.availableProcessors());
+
+		// Example:
+		// -Dincremental=true
+		// Optional; if true, the link is skipped when neither the class files read, the options
+		// nor the generated files have changed since the previous link. A snapshot of the link is
+		// kept in <out>.snapshot
+		boolean incremental = Boolean.parseBoolean(options.getProperty("incremental"));
+
+		// Example:
+		// -Dmetrics=/home/hammer/workspace/thinjvm/link-metrics.json
+		// Optional; reports the wall time, CPU time, allocated bytes and item counts of each phase
+		// of the link. 'stderr' prints a table to stderr; any other value is the name of a JSON
+		// file to write the report to. The statistics of the phases, the class reading and the
+		// caches are then printed to stdout as well; they are not printed without this option
+		String metricsReport = options.getProperty("metrics");
+
+		// Example:
+		// -Dpasses=peephole,unreachable
+		// Optional; the optimization passes run over the code of the referenced methods, separated
+		// by commas, in the order they are run. The passes are:
+		// unreachable: Removes code that cannot be reached
+		// peephole: Rewrites short sequences of instructions into cheaper ones, e.g. goto chains
+		// Default is none
+		String passes = options.getProperty("passes", "").trim();
+		String[] optimizationPasses = passes.length() > 0 ? passes.split("[ \t]*,[ \t]*")
+				: new String[0];
+
+		// Example:
+		// -Dverify=true
+		// Optional; if true, the code of the referenced methods is verified after the optimization
+		// passes. If all methods are verified, the generated header defines SUITE_VERIFIED as 1,
+		// and the maximum stack height of each method is generated, so the VM can be built
+		// without the run time checks of the stack and the operands
+		boolean verifyCode = Boolean.parseBoolean(options.getProperty("verify"));
+
 		// Example:
 		// -Ddependencies=/home/hammer/workspace/thinj/src/thinj/regression/regression.dep
 		// Optional; lists the java methods and fields that are mandatory as seen from native c
@@ -812,7 +1299,7 @@ public class NewLinker {
 		// - example:
 		// thinj.regression.nativetest.ReverseNativeInstanceTest#bar#()V
 		LinkedList<String> requiredReferences = new LinkedList<String>();
-		String dependsFile = System.getProperty("dependencies");
+		String dependsFile = options.getProperty("dependencies");
 		if (dependsFile != null && dependsFile.length() > 0) {
 			try {
 				BufferedReader bis = new BufferedReader(new FileReader(dependsFile));
@@ -827,92 +1314,45 @@ public class NewLinker {
 						}
 					}
 				} while (line != null);
+				bis.close();
 			} catch (FileNotFoundException e) {
-				System.err.println("failed to open dependency file: " + dependsFile);
-				System.exit(1);
+				throw new LinkException("failed to open dependency file: " + dependsFile, e);
 			} catch (IOException e) {
-				System.err.println("Error while reading dependency file: " + dependsFile);
-				e.printStackTrace();
-				System.exit(1);
+				throw new LinkException("Error while reading dependency file: " + dependsFile, e);
 			}
 		}
 		// else: Ignore
 
 		// requiredReferences.add("java/lang.Thread runFromNative ()V");
 		// requiredReferences.add("java.lang.Thread getNextReadyThread ()Ljava/lang/Thread;");
-		try {
-			new NewLinker(classPath, outFile, requiredReferences.toArray(new String[0]),
-// @formatter:off
-					new String[] { 
-						ArrayIndexOutOfBoundsException.class.getName(),
-						ArithmeticException.class.getName(),
-						Class.class.getName(), 
-						ClassCastException.class.getName(),
-						IllegalMonitorStateException.class.getName(),
-						NegativeArraySizeException.class.getName(),
-						NullPointerException.class.getName(), 
-						OutOfMemoryError.class.getName(),
-						Object.class.getName(),
-						Object.class.getName() + "$Monitor",
-						Object.class.getName() + "$WaitElement",
-//						IllegalArgumentException.class.getName(),
-//						IllegalThreadStateException.class.getName(),
-						String.class.getName(), 
-						Thread.class.getName(), 
-				    },
-					new String[] { 
-				        "java.lang.ArithmeticException            <init>         (Ljava/lang/String;)V",
-				        "java.lang.ArrayIndexOutOfBoundsException <init>         (I)V",
-				        "java.lang.Class                          aClassId       I",
-				        "java.lang.Class                          aAllClasses    [Ljava/lang/Class;",
-				        "java.lang.ClassCastException             <init>         ()V",				        
-				        "java.lang.IllegalMonitorStateException   <init>         (Ljava/lang/String;)V",
-//				        "java.lang.IllegalArgumentException       <init>         (Ljava/lang/String;)V",
-//				        "java.lang.IllegalThreadStateException    <init>         (Ljava/lang/String;)V",
-				        "java.lang.NullPointerException           <init>         ()V",
-				        
-				        "java.lang.Object                         aMonitor       Ljava/lang/Object$Monitor;",
-				        "java.lang.Object$Monitor                 aWaitSet       Ljava/lang/Object$WaitElement;",
-				        "java.lang.Object$Monitor                 aOwner         Ljava/lang/Thread;",
-				        "java.lang.Object$Monitor                 aLockCount     I",
-				        "java.lang.Object$WaitElement             aWaiting       Ljava/lang/Thread;",
-				        "java.lang.Object$WaitElement             aNext          Ljava/lang/Object$WaitElement;",				        
-				        
-				        "java.lang.OutOfMemoryError               <init>         ()V",
-				        "java.lang.OutOfMemoryError               getInstance    ()Ljava/lang/OutOfMemoryError;",
-				        "java.lang.NegativeArraySizeException     <init>         ()V",
-				        "java.lang.String                         value          [C",
-
-				        "java.lang.Thread                         aAllThreads    Ljava/lang/Thread;",
-				        "java.lang.Thread                         aBlockingObject  Ljava/lang/Object;",				        
-						"java.lang.Thread                         aContext       [B",
-				        "java.lang.Thread                         aCurrentThread Ljava/lang/Thread;",
-				        "java.lang.Thread                         aNextThread    Ljava/lang/Thread;",
-						"java.lang.Thread                         aStack         [B",
-				        "java.lang.Thread                         aState         I",
-				        "java.lang.Thread                         runFromNative  ()V",
-//				        "java.lang.Throwable                      aCause         Ljava/lang/String;",
-//				        "java.lang.Throwable                      aStackTrace    [I",
-			        }, 
-					// @formatter:on
-					mainClass);
-		} catch (Exception e) {
-			System.err.println("Failed linking for " + args[0]);
-			e.printStackTrace();
-		}
-		System.out.println("Done.");
+		LinkConfiguration configuration = new LinkConfiguration(classPath, outFile, mainClass);
+		configuration.setRequiredReferences(requiredReferences.toArray(new String[0]));
+		configuration.setRapidTypeAnalysis(rapidTypeAnalysis);
+		configuration.setPrefetchThreads(prefetchThreads);
+		configuration.setClassCacheCapacity(classCacheCapacity);
+		configuration.setCodeGeneratorThreads(codeGeneratorThreads);
+		configuration.setMetadataCache(metadataCache);
+		configuration.setIncremental(incremental);
+		configuration.setMetricsReport(metricsReport);
+		configuration.setOptimizationPasses(optimizationPasses);
+		configuration.setVerifyCode(verifyCode);
+		return configuration;
 	}
 
 	/**
-	 * This method makes an error - exit from thinj
+	 * This method reads an integer option
 	 * 
-	 * @param message The message to display
-	 * @param exitValue The exit - value
+	 * @param options The options
+	 * @param name The name of the option
+	 * @param defaultValue The value if the option is missing or not an integer
+	 * @return The value of the option
 	 */
-	public static void exit(String message, int exitValue) {
-		System.err.println(message);
-		new Exception().printStackTrace(System.err);
-		System.exit(exitValue);
-
+	static int getInteger(Properties options, String name, int defaultValue) {
+		String value = options.getProperty(name);
+		try {
+			return value != null ? Integer.decode(value) : defaultValue;
+		} catch (NumberFormatException e) {
+			return defaultValue;
+		}
 	}
 }
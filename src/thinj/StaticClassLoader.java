@@ -1,8 +1,12 @@
 package thinj;
 
+import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.TreeMap;
 
 import thinj.instructions.AbstractInstruction;
@@ -15,7 +19,11 @@ import thinj.linkmodel.MethodOrField;
 
 /**
  * This class contains methods for static class loading, including check of cyclic dependencies in
- * the <clinit> - methods, which will cause the resulting program to fail.
+ * the <clinit> - methods, which will cause the resulting program to fail.<br/>
+ * <br/>
+ * The dependencies are found by traversing the static call graph from each <clinit> - method;
+ * each static method is traversed once. The class load order is then found by Tarjan's algorithm
+ * for strongly connected components: A component with more than one class is a cyclic dependency.
  * 
  * @author hammer
  * 
@@ -30,6 +38,22 @@ public class StaticClassLoader {
 	// The list of name of classes in the order they shall be class loaded:
 	private LinkedHashSet<String> aClassLoadList;
 
+	// The methods already traversed by traverseCallTree() - key is '<class>.<method><descriptor>':
+	private final HashSet<String> aTraversedMethods;
+
+	// The next index to assign to a node when searching for strongly connected components:
+	private int aNextNodeIndex;
+
+	// The nodes visited, but not yet assigned to a strongly connected component:
+	private final LinkedList<TreeNode> aComponentStack;
+
+	// The cyclic dependencies found; each is a strongly connected component of more than one node:
+	private final List<List<TreeNode>> aCycles;
+
+	// The next free constant pool index of each class - key is the class id. Is populated by the
+	// first call to getNextAvailableConstantPoolIndex():
+	private HashMap<Integer, Integer> aNextConstantPoolIndex;
+
 	/**
 	 * Constructor
 	 * 
@@ -39,6 +63,9 @@ public class StaticClassLoader {
 		aLinkModel = linkModel;
 		aRootNode = new TreeNode("<root>");
 		aClassLoadList = new LinkedHashSet<String>();
+		aTraversedMethods = new HashSet<String>();
+		aComponentStack = new LinkedList<TreeNode>();
+		aCycles = new ArrayList<List<TreeNode>>();
 	}
 
 	/**
@@ -61,7 +88,8 @@ public class StaticClassLoader {
 	 * This method first build the dependency tree then generate the class load list by calling the
 	 * method {@link #generateClassLoadList(TreeNode)}. All dependencies are kept in the
 	 * {@link #aRootNode}, and the Children in a TreeNode just points to elements that are kept in
-	 * the {@link #aRootNode}.
+	 * the {@link #aRootNode}. If any cyclic dependencies are found, they are reported by a
+	 * LinkException.
 	 */
 	private void buildClassInitDependencyTree() {
 		for (MethodInClass mic : aLinkModel.getAllMethods()) {
@@ -81,45 +109,139 @@ public class StaticClassLoader {
 		}
 
 		// Then the rest:
-		generateClassLoadList(aRootNode);
+		for (TreeNode node : aRootNode.getChildren().values()) {
+			generateClassLoadList(node);
+		}
+
+		if (!aCycles.isEmpty()) {
+			// When a cyclic dependency is detected it is not possible to execute the total class
+			// init. Abort linking:
+			StringBuilder sb = new StringBuilder();
+			for (List<TreeNode> component : aCycles) {
+				if (sb.length() > 0) {
+					sb.append('\n');
+				}
+				sb.append("Cyclic <clinit> dependency: ");
+				String separator = "";
+				for (TreeNode node : getCyclePath(component)) {
+					sb.append(separator).append(node.getClassName());
+					separator = " -> ";
+				}
+			}
+			throw new LinkException(sb.toString());
+		}
 	}
 
 	/**
-	 * This method generates the class load list. If a cyclic dependcy is detected this method will
-	 * call System.exit
+	 * This method generates the class load list by searching for the strongly connected components
+	 * reachable from a node (Tarjan's algorithm). The components are found in reverse topological
+	 * order, so each class is added to the class load list after the classes it depends on. A
+	 * component of more than one class is a cyclic dependency; it is added to {@link #aCycles} in
+	 * stead of the class load list.
 	 * 
 	 * @param node The node for which the class load list shall be generated. If a node has already
 	 *            been handled, this is a no-op.
 	 */
 	private void generateClassLoadList(TreeNode node) {
-		if (!aClassLoadList.contains(node.getClassName())) {
-			if (node.isVisited()) {
-				// When a cyclic dependency is detected it is not possible to execute the total
-				// class init. Abort linking:
-				System.err.println("Cyclic <clinit> dependency: " + node.getClassName());
-				System.exit(1);
+		if (node.getIndex() >= 0) {
+			return;
+		}
+
+		node.setIndex(aNextNodeIndex);
+		node.setLowLink(aNextNodeIndex);
+		aNextNodeIndex++;
+		aComponentStack.addFirst(node);
+		node.setOnStack(true);
+
+		for (TreeNode child : node.getChildren().values()) {
+			TreeNode dependency = getNode(child.getClassName());
+			if (dependency.getIndex() < 0) {
+				generateClassLoadList(dependency);
+				node.setLowLink(Math.min(node.getLowLink(), dependency.getLowLink()));
+			} else if (dependency.isOnStack()) {
+				node.setLowLink(Math.min(node.getLowLink(), dependency.getIndex()));
+			}
+		}
+
+		if (node.getLowLink() == node.getIndex()) {
+			// 'node' is the root of a strongly connected component:
+			LinkedList<TreeNode> component = new LinkedList<TreeNode>();
+			TreeNode member;
+			do {
+				member = aComponentStack.removeFirst();
+				member.setOnStack(false);
+				component.addFirst(member);
+			} while (member != node);
+
+			if (component.size() == 1) {
+				aClassLoadList.add(node.getClassName());
 			} else {
-				for (TreeNode child : node.getChildren().values()) {
-					node.setVisited(true);
-					generateClassLoadList(getNode(child.getClassName()));
-					node.setVisited(false);
+				aCycles.add(component);
+			}
+		}
+	}
+
+	/**
+	 * This method finds a cycle through all - or some of - the classes in a cyclic dependency. The
+	 * cycle starts and ends in the class with the lowest name.
+	 * 
+	 * @param component The strongly connected component containing the cycle
+	 * @return The nodes on the cycle; the first node is repeated at the end
+	 */
+	private List<TreeNode> getCyclePath(List<TreeNode> component) {
+		HashSet<TreeNode> members = new HashSet<TreeNode>(component);
+		TreeNode start = component.get(0);
+		for (TreeNode node : component) {
+			if (node.getClassName().compareTo(start.getClassName()) < 0) {
+				start = node;
+			}
+		}
+
+		// Breadth first search from 'start' back to 'start' within the component - key is a node
+		// and value is the node it was reached from:
+		HashMap<TreeNode, TreeNode> reachedFrom = new HashMap<TreeNode, TreeNode>();
+		LinkedList<TreeNode> queue = new LinkedList<TreeNode>();
+		queue.add(start);
+		TreeNode last = null;
+		while (last == null && !queue.isEmpty()) {
+			TreeNode node = queue.removeFirst();
+			for (TreeNode child : node.getChildren().values()) {
+				TreeNode dependency = getNode(child.getClassName());
+				if (dependency == start) {
+					last = node;
+					break;
 				}
-				if (node != aRootNode) {
-					aClassLoadList.add(node.getClassName());
+				if (members.contains(dependency) && !reachedFrom.containsKey(dependency)) {
+					reachedFrom.put(dependency, node);
+					queue.addLast(dependency);
 				}
 			}
 		}
+
+		LinkedList<TreeNode> path = new LinkedList<TreeNode>();
+		path.add(start);
+		for (TreeNode node = last; node != start; node = reachedFrom.get(node)) {
+			path.addFirst(node);
+		}
+		path.addFirst(start);
+
+		return path;
 	}
 
 	/**
 	 * This method traverses the call graph and calculates the dependencies for the method
-	 * identified by the arguments.
+	 * identified by the arguments. The dependencies of a method do not depend on where it is
+	 * called from, so a method already traversed is not traversed again.
 	 * 
 	 * @param className The class visited
 	 * @param methodName The name of the method
 	 * @param descriptor The descriptor of the method
 	 */
 	private void traverseCallTree(String className, String methodName, String descriptor) {
+		if (!aTraversedMethods.add(className + "." + methodName + descriptor)) {
+			return;
+		}
+
 		// Generate class init code sequence:
 		ClassInSuite mainClass = aLinkModel.getClassByName(className);
 		MethodInClass mainMethod = (MethodInClass) aLinkModel.getMethodOrField(mainClass
@@ -131,7 +253,7 @@ public class StaticClassLoader {
 			// Avoid self -references:
 			ClassInSuite classReferenced = aLinkModel.getClassByName(mref.getReferencedClassName());
 			MethodOrField mof = aLinkModel.getMethodOrField(classReferenced.getClassId(), mref
-					.getSignature().getName(), mref.getSignature().getDescriptor());
+					.getSignature());
 			if (!mref.getReferencedClassName().equals(className)) {
 				node.add(getNode(mref.getReferencedClassName()));
 			}
@@ -165,18 +287,32 @@ public class StaticClassLoader {
 
 		ClassInSuite mainClass = aLinkModel.getClassByName(mainClassName);
 
+		// The <clinit> - methods - key is the class name:
+		HashMap<String, List<MethodInClass>> classInitMethods = new HashMap<String, List<MethodInClass>>();
+		for (MethodInClass mic : aLinkModel.getAllMethods()) {
+			if (mic.getType() == MethodInClass.Type.ClassInitCode) {
+				List<MethodInClass> methods = classInitMethods.get(mic.getMember().getClassName());
+				if (methods == null) {
+					methods = new LinkedList<MethodInClass>();
+					classInitMethods.put(mic.getMember().getClassName(), methods);
+				}
+				methods.add(mic);
+			}
+		}
+
 		for (String className : aClassLoadList) {
 			// Generate class init code sequence:
-			for (MethodInClass mic : aLinkModel.getAllMethods()) {
-				if (mic.getType() == MethodInClass.Type.ClassInitCode
-						&& mic.getMember().getClassName().equals(className)) {
+			List<MethodInClass> methods = classInitMethods.get(className);
+			if (methods != null) {
+				for (MethodInClass mic : methods) {
 					// Invoke static all <clinit> - methods:
 					appendInvokeStatic(mic.getMember(), initCode, mainClass.getClassId());
 				}
 			}
 		}
 
-		Member mainMember = new Member(mainClassName, "main", "([Ljava/lang/String;)V");
+		Member mainMember = aLinkModel.createMember(mainClassName, "main",
+				"([Ljava/lang/String;)V");
 
 		// Invoke static the main() - method:
 		appendInvokeStatic(mainMember, initCode, mainClass.getClassId());
@@ -220,22 +356,30 @@ public class StaticClassLoader {
 	}
 
 	/**
-	 * This method finds a free constant pool index for class index 'referencingClassId'
+	 * This method finds a free constant pool index for class index 'referencingClassId'. The first
+	 * call finds the highest constant pool index used by member references in each class; after
+	 * that a counter is kept for each class.
 	 * 
 	 * @param referencingClassId The class wherein a free constant pool index shall be generated
 	 * 
 	 * @return a free constant pool index
 	 */
 	private int getNextAvailableConstantPoolIndex(int referencingClassId) {
-		int firstFreeConstantPoolIndex = 0;
-		for (MemberReference ref : aLinkModel.getAllMethodOrFieldReferences()) {
-			if (ref.getClassId() == referencingClassId) {
-				if (ref.getConstantPoolIndex() > firstFreeConstantPoolIndex) {
-					firstFreeConstantPoolIndex = ref.getConstantPoolIndex();
+		if (aNextConstantPoolIndex == null) {
+			aNextConstantPoolIndex = new HashMap<Integer, Integer>();
+			for (MemberReference ref : aLinkModel.getAllMethodOrFieldReferences()) {
+				Integer next = aNextConstantPoolIndex.get(ref.getClassId());
+				if (next == null || ref.getConstantPoolIndex() >= next) {
+					aNextConstantPoolIndex.put(ref.getClassId(), ref.getConstantPoolIndex() + 1);
 				}
 			}
 		}
-		firstFreeConstantPoolIndex++;
+
+		Integer firstFreeConstantPoolIndex = aNextConstantPoolIndex.get(referencingClassId);
+		if (firstFreeConstantPoolIndex == null) {
+			firstFreeConstantPoolIndex = 1;
+		}
+		aNextConstantPoolIndex.put(referencingClassId, firstFreeConstantPoolIndex + 1);
 		return firstFreeConstantPoolIndex;
 	}
 
@@ -250,7 +394,9 @@ public class StaticClassLoader {
 	private static class TreeNode {
 		private String aClassName;
 		private TreeMap<String, TreeNode> aChildren;
-		private boolean aVisited;
+		private int aIndex;
+		private int aLowLink;
+		private boolean aOnStack;
 
 		/**
 		 * Constructor
@@ -265,7 +411,7 @@ public class StaticClassLoader {
 					return o1.compareTo(o2);
 				}
 			});
-			setVisited(false);
+			aIndex = -1;
 		}
 
 		/**
@@ -298,22 +444,51 @@ public class StaticClassLoader {
 		}
 
 		/**
-		 * This method shall be used when detecting cyclic dependency: Set it before descending into
-		 * this node, and clear it when leaving the node again.
+		 * This method returns the order in which this node was visited when searching for strongly
+		 * connected components
 		 * 
-		 * @param visited true, if the node has been visited during
+		 * @return The index of this node, or -1 if not visited yet
 		 */
-		public void setVisited(boolean visited) {
-			aVisited = visited;
+		public int getIndex() {
+			return aIndex;
 		}
 
 		/**
-		 * This method returns the visited flag
+		 * @param index The order in which this node was visited
+		 */
+		public void setIndex(int index) {
+			aIndex = index;
+		}
+
+		/**
+		 * This method returns the lowest index of the nodes known to be reachable from this node and
+		 * still on the component stack
 		 * 
-		 * @return The visited flag
+		 * @return The low link of this node
+		 */
+		public int getLowLink() {
+			return aLowLink;
+		}
+
+		/**
+		 * @param lowLink The low link of this node
+		 */
+		public void setLowLink(int lowLink) {
+			aLowLink = lowLink;
+		}
+
+		/**
+		 * @return true, if this node is on the component stack
+		 */
+		public boolean isOnStack() {
+			return aOnStack;
+		}
+
+		/**
+		 * @param onStack true, if this node is on the component stack
 		 */
-		public boolean isVisited() {
-			return aVisited;
+		public void setOnStack(boolean onStack) {
+			aOnStack = onStack;
 		}
 	}
 }
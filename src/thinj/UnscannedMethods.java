@@ -0,0 +1,119 @@
+package thinj;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import thinj.ClassFileInfo.MethodInfo;
+import thinj.instructions.AbstractInstruction;
+import thinj.instructions.InstructionList;
+import thinj.linkmodel.MethodInClass;
+
+/**
+ * This class holds the methods with code of a loaded class, until they are scanned for
+ * dependencies. A method is only scanned when it is first referenced, so the methods never
+ * referenced cost no scanning, and create no references nor exception handlers.<br/>
+ * <br/>
+ * Scanning some instructions - 'anewarray' - extends the constant pool of the class. The
+ * extension of each method starts where the extension of the previous method in the class ends,
+ * just as if all methods were scanned in order when the class is loaded, so the constant pool
+ * indexes do not depend on the order in which the methods are referenced.
+ */
+class UnscannedMethods {
+	// The opcode of the instructions extending the constant pool:
+	private static final int EXTENDING_OPCODE = AbstractInstruction
+			.getOpcode(AbstractInstruction.I_anewarray.class);
+
+	// The id of the class:
+	private final int aClassId;
+
+	// The number of elements in the constant pool of the class file:
+	private final int aConstantPoolLength;
+
+	// The methods with code, in the order of the class file:
+	private final ArrayList<MethodInClass> aMethods;
+
+	// The class file information of each method - key is the method:
+	private final HashMap<MethodInClass, MethodInfo> aMethodInfos;
+
+	// The constant pool length before scanning each method, as indexed in aMethods; null until
+	// needed:
+	private int[] aConstantPoolBases;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param classId The id of the class
+	 * @param constantPoolLength The number of elements in the constant pool of the class file
+	 */
+	public UnscannedMethods(int classId, int constantPoolLength) {
+		aClassId = classId;
+		aConstantPoolLength = constantPoolLength;
+		aMethods = new ArrayList<MethodInClass>();
+		aMethodInfos = new HashMap<MethodInClass, MethodInfo>();
+	}
+
+	/**
+	 * This method adds a method with code. Shall be called in the order of the class file.
+	 * 
+	 * @param mic The method. Its code is the code of the class file, which is not yet decoded.
+	 * @param m The class file information of the method
+	 */
+	public void add(MethodInClass mic, MethodInfo m) {
+		aMethods.add(mic);
+		aMethodInfos.put(mic, m);
+	}
+
+	/**
+	 * @return The id of the class
+	 */
+	public int getClassId() {
+		return aClassId;
+	}
+
+	/**
+	 * @param mic A method of the class
+	 * @return The class file information of the method
+	 */
+	public MethodInfo getMethodInfo(MethodInClass mic) {
+		return aMethodInfos.get(mic);
+	}
+
+	/**
+	 * This method returns the constant pool length to scan a method from: The length of the
+	 * constant pool of the class file, extended by the scan of all previous methods in the class.
+	 * The extensions are only counted, if the code of the method might extend the constant pool.
+	 * 
+	 * @param mic A method of the class
+	 * @return The constant pool length before scanning the method
+	 */
+	public int getConstantPoolBase(MethodInClass mic) {
+		if (!mightExtend(mic.getCode())) {
+			// Any value will do; the scan will not use it:
+			return aConstantPoolLength;
+		}
+		if (aConstantPoolBases == null) {
+			aConstantPoolBases = new int[aMethods.size()];
+			int constantPoolLength = aConstantPoolLength;
+			for (int i = 0; i < aConstantPoolBases.length; i++) {
+				aConstantPoolBases[i] = constantPoolLength;
+				constantPoolLength += InstructionList.count(aMethods.get(i).getCode(),
+						EXTENDING_OPCODE);
+			}
+		}
+		return aConstantPoolBases[aMethods.indexOf(mic)];
+	}
+
+	/**
+	 * @param code Some code
+	 * @return false, if the code has no instruction extending the constant pool; true, if it
+	 *         might have
+	 */
+	private static boolean mightExtend(byte[] code) {
+		for (byte b : code) {
+			if ((b & 0xff) == EXTENDING_OPCODE) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
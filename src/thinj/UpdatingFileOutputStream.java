@@ -0,0 +1,104 @@
+package thinj;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * This class implements an output stream for a generated file. The contents are collected in
+ * memory, and when the stream is closed the file is only written if the contents differ from the
+ * existing file. This way an unchanged file keeps its time stamp, and tools like make will not
+ * rebuild anything depending on it.
+ */
+public class UpdatingFileOutputStream extends ByteArrayOutputStream {
+	// The file to write:
+	private final File aFile;
+
+	// true, if the file was written when closed:
+	private boolean aWritten;
+
+	// true, if closed:
+	private boolean aClosed;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param fileName The name of the file to write
+	 */
+	public UpdatingFileOutputStream(String fileName) {
+		super(64 * 1024);
+		aFile = new File(fileName);
+	}
+
+	/**
+	 * This method writes the file, unless the file exists with the same contents
+	 * 
+	 * @throws IOException If unable to read the existing file or write the new file
+	 */
+	@Override
+	public void close() throws IOException {
+		if (aClosed) {
+			return;
+		}
+		aClosed = true;
+
+		byte[] contents = toByteArray();
+		if (!hasContents(contents)) {
+			// Written in as few system calls as possible:
+			FileChannel channel = new FileOutputStream(aFile).getChannel();
+			try {
+				ByteBuffer buffer = ByteBuffer.wrap(contents);
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+			} finally {
+				channel.close();
+			}
+			aWritten = true;
+		}
+	}
+
+	/**
+	 * This method checks if the file already has some contents
+	 * 
+	 * @param contents The contents to compare with
+	 * @return true, if the file exists with the contents 'contents'
+	 * @throws IOException If unable to read the existing file
+	 */
+	private boolean hasContents(byte[] contents) throws IOException {
+		boolean same = false;
+		if (aFile.isFile() && aFile.length() == contents.length) {
+			byte[] existing = new byte[contents.length];
+			DataInputStream dis = new DataInputStream(new FileInputStream(aFile));
+			try {
+				dis.readFully(existing);
+			} finally {
+				dis.close();
+			}
+			same = Arrays.equals(existing, contents);
+		}
+
+		return same;
+	}
+
+	/**
+	 * @return true, if the file was written when the stream was closed; false, if the file was
+	 *         left untouched
+	 */
+	public boolean isWritten() {
+		return aWritten;
+	}
+
+	/**
+	 * @return The file being written
+	 */
+	public File getFile() {
+		return aFile;
+	}
+}
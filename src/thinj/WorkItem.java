@@ -0,0 +1,152 @@
+package thinj;
+
+import thinj.linkmodel.Member;
+import thinj.linkmodel.MethodInClass;
+
+/**
+ * This class implements an item on the work list used by the linker when finding the reachable
+ * classes, methods and fields. An item is either a class to load, a member (method or field) to
+ * reference or a method that might override a referenced method. Each item records why it is
+ * needed.
+ */
+class WorkItem {
+	/**
+	 * The kinds of work items
+	 */
+	enum Kind {
+		// Load a class:
+		Class,
+		// Reference a method or field:
+		Member,
+		// Reference a method, if it overrides a referenced method:
+		Override
+	}
+
+	private final Kind aKind;
+	private final String aClassName;
+	private final String aMemberName;
+	private final String aDescriptor;
+
+	// Why the item is needed, if not referenced from a method:
+	private final String aReason;
+
+	// The method referencing the item, if any. For overrides: The overridden method:
+	private final MethodInClass aReferencedFrom;
+
+	/**
+	 * Constructor
+	 *
+	 * @param kind The kind of the item
+	 * @param className The name of the class to load, or the class containing the member
+	 * @param memberName The name of the member; null for classes
+	 * @param descriptor The descriptor of the member; null for classes
+	 * @param reason Why the item is needed; only used if 'referencedFrom' is null
+	 * @param referencedFrom The method referencing the item; may be null
+	 */
+	private WorkItem(Kind kind, String className, String memberName, String descriptor,
+			String reason, MethodInClass referencedFrom) {
+		aKind = kind;
+		aClassName = className;
+		aMemberName = memberName;
+		aDescriptor = descriptor;
+		aReason = reason;
+		aReferencedFrom = referencedFrom;
+	}
+
+	/**
+	 * This method creates an item for loading a class referenced from a method
+	 *
+	 * @param className The name of the class to load
+	 * @param referencedFrom The method referencing the class
+	 * @return The created item
+	 */
+	static WorkItem forClass(String className, MethodInClass referencedFrom) {
+		return new WorkItem(Kind.Class, className, null, null, null, referencedFrom);
+	}
+
+	/**
+	 * This method creates an item for referencing a member
+	 *
+	 * @param className The class containing the member
+	 * @param memberName The name of the member
+	 * @param descriptor The descriptor of the member
+	 * @param reason Why the member is needed
+	 * @return The created item
+	 */
+	static WorkItem forMember(String className, String memberName, String descriptor,
+			String reason) {
+		return new WorkItem(Kind.Member, className, memberName, descriptor, reason, null);
+	}
+
+	/**
+	 * This method creates an item for referencing a member referenced from a method
+	 *
+	 * @param className The class containing the member
+	 * @param memberName The name of the member
+	 * @param descriptor The descriptor of the member
+	 * @param referencedFrom The method referencing the member
+	 * @return The created item
+	 */
+	static WorkItem forMember(String className, String memberName, String descriptor,
+			MethodInClass referencedFrom) {
+		return new WorkItem(Kind.Member, className, memberName, descriptor, null, referencedFrom);
+	}
+
+	/**
+	 * This method creates an item for referencing the method in a class overriding a referenced
+	 * method, if the class defines such a method
+	 *
+	 * @param className The class which might override the method
+	 * @param overridden The referenced method
+	 * @return The created item
+	 */
+	static WorkItem forOverride(String className, MethodInClass overridden) {
+		Member m = overridden.getMember();
+		return new WorkItem(Kind.Override, className, m.getSignature().getName(), m.getSignature()
+				.getDescriptor(), null, overridden);
+	}
+
+	public Kind getKind() {
+		return aKind;
+	}
+
+	public String getClassName() {
+		return aClassName;
+	}
+
+	public String getMemberName() {
+		return aMemberName;
+	}
+
+	public String getDescriptor() {
+		return aDescriptor;
+	}
+
+	/**
+	 * This method describes why the item is needed
+	 *
+	 * @return A description of why the item is needed
+	 */
+	public String getReason() {
+		String reason;
+		if (aReferencedFrom != null) {
+			Member m = aReferencedFrom.getMember();
+			reason = (aKind == Kind.Override ? "overrides " : "referenced from ")
+					+ m.getClassName() + "#" + m.getSignature().getName()
+					+ m.getSignature().getDescriptor();
+		} else {
+			reason = aReason;
+		}
+
+		return reason;
+	}
+
+	@Override
+	public String toString() {
+		String s = aClassName;
+		if (aKind != Kind.Class) {
+			s += "#" + aMemberName + aDescriptor;
+		}
+		return s + " (" + getReason() + ")";
+	}
+}
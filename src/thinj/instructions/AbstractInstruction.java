@@ -1,48 +1,71 @@
 package thinj.instructions;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.EOFException;
-import java.io.IOException;
 import java.io.PrintStream;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map.Entry;
-import java.util.TreeMap;
 
 import thinj.IntInABox;
+import thinj.LinkException;
 import thinj.linkmodel.ClassReference;
 import thinj.linkmodel.ClassTypeEnum;
+import thinj.linkmodel.ConstantPoolReference;
 import thinj.linkmodel.ConstantReference;
 import thinj.linkmodel.LinkModel;
 import thinj.linkmodel.MemberReference;
 import thinj.linkmodel.MethodInClass;
-import thinj.linkmodel.Signature;
 
+/**
+ * This class is the base of all instructions. There is a single, shared instance - a flyweight -
+ * for each opcode, found in a 256-entry opcode table. Before use, the instance is bound to the
+ * code of a method and the offset of the instruction within that code, see
+ * {@link #at(byte[], int)}. Decoding code therefore allocates nothing per instruction. Each thread
+ * binds instances of its own, so programs may be linked in parallel.<br/>
+ * <br/>
+ * Note! An instance is only bound until the next call of {@link #at(byte[], int)} for the same
+ * opcode in the same thread, so it shall not be kept.
+ */
 public abstract class AbstractInstruction {
 	public static final String BYTECODE_PREFIX = "c_";
 	// private static final String C_FUNCTION_PREFIX = "f_";
 
 	// registered instructions:
 	protected static HashMap<Integer, Class<? extends AbstractInstruction>> aInstructions = new HashMap<Integer, Class<? extends AbstractInstruction>>();
-	private final int aSize;
-	protected byte[] aCode;
 
-	// Referenced instructions - key is the VM SPEC'ed opcode; value is the translate
-	// opcode. This is used for renumbering of opcodes and elimination of
-	// unused instructions:
-	private static HashMap<Integer, Integer> aInstructionCodeMapping;
-	private static TreeMap<Integer, Integer> aReverseInstructionMapping;
+	// The opcode table: The shared instance of each registered instruction - index is the opcode:
+	private static final AbstractInstruction[] aOpcodeTable = new AbstractInstruction[256];
 
-	// Generator for instruction codes - this is used for renumbering of opcodes and elimination of
-	// unused instructions:
-	private static int aInstructionCodeGenerator;
+	// The instances bound by at() - a copy of the opcode table for each thread:
+	private static final ThreadLocal<AbstractInstruction[]> aBoundInstructions = new ThreadLocal<AbstractInstruction[]>() {
+		@Override
+		protected AbstractInstruction[] initialValue() {
+			AbstractInstruction[] table = new AbstractInstruction[aOpcodeTable.length];
+			for (int opcode = 0; opcode < table.length; opcode++) {
+				if (aOpcodeTable[opcode] != null) {
+					try {
+						table[opcode] = aOpcodeTable[opcode].getClass().getDeclaredConstructor()
+								.newInstance();
+					} catch (ReflectiveOperationException e) {
+						// Cannot happen; the opcode table was built the same way
+						throw new RuntimeException(e);
+					}
+				}
+			}
+			return table;
+		}
+	};
 
-	static {
-		aInstructionCodeMapping = new HashMap<Integer, Integer>();
-		aReverseInstructionMapping = new TreeMap<Integer, Integer>();
-		aInstructionCodeGenerator = 0;
+	// The opcode of each registered instruction - key is the class defining the instruction:
+	private static final HashMap<Class<? extends AbstractInstruction>, Integer> aOpcodes = new HashMap<Class<? extends AbstractInstruction>, Integer>();
 
+	private final int aSize;
+	private final String aShortForm;
+
+	// The code this instance is bound to, and the offset of the opcode within the code:
+	protected byte[] aCode;
+	protected int aOffset;
+
+	static {
 		aInstructions.put(0x00, I_nop.class);
 		aInstructions.put(0x01, I_aconst_null.class);
 		aInstructions.put(0x02, I_iconst_m1.class);
@@ -199,10 +222,24 @@ public abstract class AbstractInstruction {
 		aInstructions.put(0xc6, I_ifnull.class);
 		aInstructions.put(0xc7, I_ifnonnull.class);
 
+		// Build the opcode table:
+		for (Entry<Integer, Class<? extends AbstractInstruction>> entry : aInstructions.entrySet()) {
+			try {
+				aOpcodeTable[entry.getKey()] = entry.getValue().newInstance();
+			} catch (InstantiationException e) {
+				e.printStackTrace();
+				System.exit(1);
+			} catch (IllegalAccessException e) {
+				e.printStackTrace();
+				System.exit(1);
+			}
+			aOpcodes.put(entry.getValue(), entry.getKey());
+		}
 	}
 
 	public AbstractInstruction(int size) {
 		aSize = size;
+		aShortForm = getClass().getName().replaceAll("^.*I_", "");
 	}
 
 	/**
@@ -241,7 +278,7 @@ public abstract class AbstractInstruction {
 	protected MemberReference createMemberReference(LinkModel linkModel, String referencedClass,
 			String memberName, String signature, int referencingClassId, IntInABox constantPoolIndex) {
 		return linkModel.createMemberReference(referencedClass,
-				new Signature(memberName, signature), referencingClassId,
+				linkModel.createSignature(memberName, signature), referencingClassId,
 				constantPoolIndex.increment());
 	}
 
@@ -249,49 +286,68 @@ public abstract class AbstractInstruction {
 	 * This method returns the opcode for an instruction identified by the defining class
 	 * 
 	 * @param clazz Identifies the instruction to lookup
-	 * @return The corresponding opcode. In case of error this method will call System.exit()
+	 * @return The corresponding opcode. In case of error a LinkException is thrown
 	 */
 	public static int getOpcode(Class<? extends AbstractInstruction> clazz) {
-		Integer res = null;
-		for (Entry<Integer, Class<? extends AbstractInstruction>> entry : aInstructions.entrySet()) {
-			if (entry.getValue() == clazz) {
-				res = entry.getKey();
-				break;
-			}
-		}
-
+		Integer res = aOpcodes.get(clazz);
 		if (res == null) {
-			System.err.println("No instruction matches class: " + clazz.getName());
-			System.exit(1);
+			throw new LinkException("No instruction matches class: " + clazz.getName());
 		}
 
 		return res;
 	}
 
-	public static AbstractInstruction readFrom(ByteArrayInputStream in) throws IOException {
-		int opcode = in.read();
-		if (opcode < 0) {
-			throw new EOFException();
-		}
+	/**
+	 * This method returns the length of an instruction
+	 * 
+	 * @param opcode The opcode of the instruction
+	 * @return The number of bytes in the instruction - including the opcode. 0 is returned if no
+	 *         instruction is defined for 'opcode'.
+	 */
+	public static int getLength(int opcode) {
+		AbstractInstruction ins = aOpcodeTable[opcode & 0xff];
+		return ins != null ? ins.aSize : 0;
+	}
 
-		AbstractInstruction ins = lookup(opcode);
-		if (ins == null) {
-			throw new IOException("No instruction defined for opcode: "
-					+ String.format("0x%02x", opcode));
-		}
-		ins.aCode = new byte[ins.aSize];
-		ins.aCode[0] = (byte) opcode;
-		for (int i = 1; i < ins.aSize; i++) {
-			int code = in.read();
-			if (code < 0) {
-				throw new EOFException();
-			}
-			ins.aCode[i] = (byte) code;
+	/**
+	 * This method returns the instruction at an offset within some code. The returned instance is
+	 * shared by all calls in the current thread; see the class comment.
+	 * 
+	 * @param code The code containing the instruction
+	 * @param offset The offset of the opcode within 'code'
+	 * @return The instruction bound to 'code' and 'offset'. null is returned if no instruction is
+	 *         defined for the opcode.
+	 */
+	public static AbstractInstruction at(byte[] code, int offset) {
+		AbstractInstruction ins = aBoundInstructions.get()[code[offset] & 0xff];
+		if (ins != null) {
+			ins.aCode = code;
+			ins.aOffset = offset;
 		}
-
 		return ins;
 	}
 
+	/**
+	 * @return The opcode of this instruction
+	 */
+	public int getOpcode() {
+		return aCode[aOffset] & 0xff;
+	}
+
+	/**
+	 * @return The offset of this instruction within the code it is bound to
+	 */
+	public int getOffset() {
+		return aOffset;
+	}
+
+	/**
+	 * @return The number of bytes in this instruction - including the opcode
+	 */
+	public int getSize() {
+		return aSize;
+	}
+
 	/**
 	 * This method returns the Constant Pool reference positioned at position 'offset' within this
 	 * instruction
@@ -300,9 +356,9 @@ public abstract class AbstractInstruction {
 	 * @return The two-byte value as an int
 	 */
 	protected int getReference(int offset) {
-		int res = ((int) aCode[offset]) & 0xff;
+		int res = ((int) aCode[aOffset + offset]) & 0xff;
 		res *= 256;
-		res += ((int) aCode[offset + 1]) & 0xff;
+		res += ((int) aCode[aOffset + offset + 1]) & 0xff;
 		return res;
 	}
 
@@ -314,24 +370,69 @@ public abstract class AbstractInstruction {
 	 * @return The one-byte value as an int
 	 */
 	protected int getOneByteReference(int offset) {
-		int res = ((int) aCode[offset]) & 0xff;
+		int res = ((int) aCode[aOffset + offset]) & 0xff;
 		return res;
 	}
 
+	/**
+	 * This method changes a two-byte Constant Pool reference within this instruction, in the code
+	 * this instruction is bound to
+	 * 
+	 * @param offset The offset where the most significant byte of the reference is placed
+	 * @param reference The new reference
+	 */
+	protected void setReference(int offset, int reference) {
+		aCode[aOffset + offset] = (byte) (reference >> 8);
+		aCode[aOffset + offset + 1] = (byte) (reference & 0xff);
+	}
+
 	/**
 	 * This method generates C-code for this instruction and print to the supplied stream
 	 * 
 	 * @param out The stream to receive the generated code
 	 */
 	public void generateCode(PrintStream out) {
-		out.print(BYTECODE_PREFIX + getShortForm() + "(");
-		for (int i = 1; i < aCode.length; i++) {
+		StringBuilder sb = new StringBuilder();
+		generateCode(aCode, aOffset, sb);
+		out.println(sb);
+	}
+
+	/**
+	 * This method generates C-code for the instruction at an offset within some code. No shared
+	 * instance is bound to the code, so unlike {@link #generateCode(PrintStream)} this method can
+	 * be called from several threads at once.
+	 * 
+	 * @param code The code containing the instruction
+	 * @param offset The offset of the opcode within 'code'
+	 * @param out The buffer to receive the generated code. No line feed is appended.
+	 */
+	public static void generateCode(byte[] code, int offset, StringBuilder out) {
+		AbstractInstruction ins = aOpcodeTable[code[offset] & 0xff];
+		out.append(BYTECODE_PREFIX).append(ins.aShortForm).append('(');
+		for (int i = 1; i < ins.aSize; i++) {
 			if (i > 1) {
-				out.print(", ");
+				out.append(", ");
 			}
-			out.print(String.format("0x%02x", aCode[i]));
+			out.append("0x");
+			appendHex(out, code[offset + i] & 0xff, 2);
 		}
-		out.println(")");
+		out.append(')');
+	}
+
+	/**
+	 * This method appends a value in lower case hexadecimal, like String.format("%0<n>x", value)
+	 * but without parsing a format for each value
+	 * 
+	 * @param out The buffer to append to
+	 * @param value The value to append; shall not be negative
+	 * @param digits The minimum number of digits; the value is padded with leading zeros
+	 */
+	public static void appendHex(StringBuilder out, int value, int digits) {
+		String hex = Integer.toHexString(value);
+		for (int i = hex.length(); i < digits; i++) {
+			out.append('0');
+		}
+		out.append(hex);
 	}
 
 	/**
@@ -428,7 +529,7 @@ public abstract class AbstractInstruction {
 	 * @return
 	 */
 	public String getShortForm() {
-		return getClass().getName().replaceAll("^.*I_", "");
+		return aShortForm;
 	}
 
 	/**
@@ -441,82 +542,29 @@ public abstract class AbstractInstruction {
 	 * @param handler The call back handler
 	 */
 	public static void disassemble(int address, byte[] code, InstructionHandler handler) {
-		ByteArrayInputStream bais = new ByteArrayInputStream(code);
-		while (bais.available() > 0) {
-			try {
-				int addr = address + code.length - bais.available();
-
-				AbstractInstruction ins = AbstractInstruction.readFrom(bais);
-				handler.handle(addr, ins);
-			} catch (IOException e) {
-				System.err.println("Uncaught exception");
-				e.printStackTrace();
-				System.exit(1);
-			}
-		}
-	}
-
-	/**
-	 * This method changes all instructions that references a member. After this method the
-	 * instructions will refer to the optimised set of member. Then indexing can be used instead of
-	 * searching in the set of member references
-	 * 
-	 * @param classId The id of the class containing the code
-	 * @param code The code to transform
-	 * @return The code using the optimised member references only.
-	 */
-	public static byte[] renumberMemberReferences(int classId, byte[] code) {
-		ByteArrayInputStream bais = new ByteArrayInputStream(code);
-		ByteArrayOutputStream baos = new ByteArrayOutputStream();
-		while (bais.available() > 0) {
-			try {
-				AbstractInstruction ins = AbstractInstruction.readFrom(bais);
-				// System.out.println("ins: " + ins.getClass());
-				ins.renumberReference(classId, baos);
-			} catch (IOException e) {
-				System.err.println("Uncaught exception");
-				e.printStackTrace();
-				System.exit(1);
-			}
-		}
-
-		return baos.toByteArray();
+		InstructionList.decode(code).handle(address, handler);
 	}
 
 	/**
-	 * If this instruction references any member the reference shall be changed to the optimised
-	 * reference from LinkModel
+	 * If this instruction references any member the reference shall be changed - in place - to
+	 * the optimised reference from LinkModel. See
+	 * {@link InstructionList#renumberMemberReferences(LinkModel, int)}.
 	 * 
+	 * @param linkModel The link model holding the optimised references
 	 * @param classId The class containing the code
-	 * @param baos The stream to write the new instruction to
-	 * @throws IOException
 	 */
-	protected void renumberReference(int classId, ByteArrayOutputStream baos) throws IOException {
-		baos.write(aCode);
+	protected void renumberReference(LinkModel linkModel, int classId) {
 	}
 
 	/**
-	 * This method converts an opcode to a new instance of the corresponding AbstractInstruction
+	 * This method converts an opcode to the shared instance of the corresponding
+	 * AbstractInstruction. The instance is not bound to any code.
 	 * 
 	 * @param opcode The opcode to convert
 	 * @return null is returned if no match
 	 */
 	public static AbstractInstruction lookup(int opcode) {
-		Class<? extends AbstractInstruction> cl = aInstructions.get(opcode);
-		AbstractInstruction ins = null;
-		if (cl != null) {
-			try {
-				ins = cl.newInstance();
-			} catch (InstantiationException e) {
-				e.printStackTrace();
-				System.exit(1);
-			} catch (IllegalAccessException e) {
-				e.printStackTrace();
-				System.exit(1);
-			}
-		}
-
-		return ins;
+		return aOpcodeTable[opcode & 0xff];
 	}
 
 	public static class I_nop extends AbstractInstruction {
@@ -619,63 +667,21 @@ public abstract class AbstractInstruction {
 				MethodInClass mic, IntInABox constantPoolLength) {
 			super.registerDependencies(linkModel, referencingClassId, mic, constantPoolLength);
 			// If the referenced item is a class ref this shall be marked as a dependency:
-			int cpIx = getLDCReference();
-			boolean found = false;
-
-			if (!found) {
-				ClassReference[] crefa = linkModel.getAllClassReferences();
-				for (ClassReference classRef : crefa) {
-					if (classRef.getClassId() == referencingClassId
-							&& classRef.getConstantPoolIndex() == cpIx) {
-						mic.addClassDependency(classRef);
-						found = true;
-					}
-				}
+			List<ConstantPoolReference> refs = linkModel.getLoadableReferences(
+					referencingClassId, getLDCReference());
+			if (refs == null) {
+				// Unknown constant pool entry; nothing to depend on
+				return;
 			}
 
-			if (!found) {
-				found = findConstantReference(linkModel.getAllStringConstantReferences(),
-						referencingClassId, cpIx, mic);
-			}
-			if (!found) {
-				found = findConstantReference(linkModel.getAllDoubleConstantReferences(),
-						referencingClassId, cpIx, mic);
-			}
-			if (!found) {
-				found = findConstantReference(linkModel.getAllFloatConstantReferences(),
-						referencingClassId, cpIx, mic);
-			}
-			if (!found) {
-				found = findConstantReference(linkModel.getAllIntegerConstantReferences(),
-						referencingClassId, cpIx, mic);
-			}
-			if (!found) {
-				found = findConstantReference(linkModel.getAllLongConstantReferences(),
-						referencingClassId, cpIx, mic);
-			}
-		}
-
-		/**
-		 * This method searches for a constant reference in the list of constant references and if
-		 * found, the constant reference is added as a dependency to the method
-		 * 
-		 * @param list The list to search in
-		 * @param referencingClassId The class referencing
-		 * @param cpIx The constant pool index
-		 * @param mic The method
-		 * @return true, if found; false if not
-		 */
-		private <T> boolean findConstantReference(List<ConstantReference<T>> list,
-				int referencingClassId, int cpIx, MethodInClass mic) {
-			boolean found = false;
-			for (ConstantReference<T> cref : list) {
-				if (cref.getClassId() == referencingClassId && cref.getConstantPoolIndex() == cpIx) {
-					mic.addConstantReference(cref);
-					found = true;
+			for (int i = 0; i < refs.size(); i++) {
+				ConstantPoolReference ref = refs.get(i);
+				if (ref instanceof ClassReference) {
+					mic.addClassDependency((ClassReference) ref);
+				} else if (ref instanceof ConstantReference<?>) {
+					mic.addConstantReference((ConstantReference<?>) ref);
 				}
 			}
-
-			return found;
 		}
 	}
 
@@ -1254,13 +1260,11 @@ public abstract class AbstractInstruction {
 		}
 
 		@Override
-		protected void renumberReference(int referencingClassId, ByteArrayOutputStream baos) {
+		protected void renumberReference(LinkModel linkModel, int referencingClassId) {
 			int constantPoolIndex = getReference(1);
-			MemberReference mref = LinkModel.getInstance().getOptimizedReference(
-					referencingClassId, constantPoolIndex);
-			baos.write(aCode[0]);
-			baos.write(mref.getConstantPoolIndex() >> 8);
-			baos.write(mref.getConstantPoolIndex() & 0xff);
+			MemberReference mref = linkModel.getOptimizedReference(referencingClassId,
+					constantPoolIndex);
+			setReference(1, mref.getConstantPoolIndex());
 		}
 	}
 
@@ -1292,16 +1296,11 @@ public abstract class AbstractInstruction {
 		}
 
 		@Override
-		protected void renumberReference(int referencingClassId, ByteArrayOutputStream baos) {
+		protected void renumberReference(LinkModel linkModel, int referencingClassId) {
 			int constantPoolIndex = getReference(1);
-			MemberReference mref = LinkModel.getInstance().getOptimizedReference(
-					referencingClassId, constantPoolIndex);
-			baos.write(aCode[0]);
-			baos.write(mref.getConstantPoolIndex() >> 8);
-			baos.write(mref.getConstantPoolIndex() & 0xff);
-			for (int i = 3; i < aCode.length; i++) {
-				baos.write(aCode[i]);
-			}
+			MemberReference mref = linkModel.getOptimizedReference(referencingClassId,
+					constantPoolIndex);
+			setReference(1, mref.getConstantPoolIndex());
 		}
 	}
 
@@ -1348,6 +1347,7 @@ public abstract class AbstractInstruction {
 			ClassReference classReference = linkModel.getClassReference(referencingClassId,
 					getReference(1));
 			mic.addClassDependency(classReference);
+			mic.addInstantiatedClass(classReference);
 		}
 	}
 
@@ -1363,11 +1363,10 @@ public abstract class AbstractInstruction {
 		 * @return The array type
 		 */
 		private ClassTypeEnum getType() {
-			ClassTypeEnum type = ClassTypeEnum.resolveByArrayType(aCode[1]);
+			ClassTypeEnum type = ClassTypeEnum.resolveByArrayType(aCode[aOffset + 1]);
 			if (type == null || type == ClassTypeEnum.InterfaceType
 					|| type == ClassTypeEnum.ClassType) {
-				System.err.println("Illegal array type value: " + aCode[1]);
-				System.exit(1);
+				throw new LinkException("Illegal array type value: " + aCode[aOffset + 1]);
 			}
 			return type;
 		}
@@ -1398,6 +1397,7 @@ public abstract class AbstractInstruction {
 			classReference = linkModel.createClassReference(referencingClassId,
 					constantPoolLength.increment(), "[L" + classReference.getClassName());
 			mic.addClassDependency(classReference);
+			mic.addInstantiatedClass(classReference);
 		}
 	}
 
@@ -1498,15 +1498,4 @@ public abstract class AbstractInstruction {
 			super(1);
 		}
 	}
-
-	/**
-	 * This method registers that this type of instruction shall be included in the suite
-	 */
-	public void referenced() {
-		if (!aInstructionCodeMapping.containsKey((int) aCode[0] & 0xff)) {
-			int newOpcode = aInstructionCodeGenerator++;
-			aInstructionCodeMapping.put((int) aCode[0] & 0xff, newOpcode);
-			aReverseInstructionMapping.put(newOpcode, (int) aCode[0] & 0xff);
-		}
-	}
 }
\ No newline at end of file
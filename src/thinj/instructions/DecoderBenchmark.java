@@ -0,0 +1,153 @@
+package thinj.instructions;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+
+import org.apache.bcel.classfile.ClassParser;
+import org.apache.bcel.classfile.Method;
+
+import thinj.ClassReader;
+
+/**
+ * This class measures the throughput of the byte code decoder. The code of all methods in a set
+ * of classes is decoded repeatedly by two decoders:
+ * <ul>
+ * <li>'allocating': The decoder used before the opcode table: A new instruction instance - created
+ * by reflection - and a new byte[] for each instruction</li>
+ * <li>'table': {@link InstructionList#decode(byte[])} visiting each instruction through the
+ * opcode table</li>
+ * </ul>
+ */
+public class DecoderBenchmark {
+	// The sum of the opcodes seen by the last round; keeps the work from being optimised away:
+	private static long aChecksum;
+
+	public static void main(String[] args) throws Exception {
+		// Example:
+		// java -cp ~/workspace/thinj/bin:$CLASSPATH -Dmycp=/tools/bcel/5.2/bcel-5.2.jar \\
+		// -Diterations=50 thinj.instructions.DecoderBenchmark
+		String usage = "usage: java -Dmycp=<class path> [-Diterations=<n>] DecoderBenchmark "
+				+ "[<class>]*";
+		String classPath = System.getProperty("mycp");
+		if (classPath == null) {
+			System.err.println(usage);
+			System.exit(1);
+		}
+		int iterations = Integer.getInteger("iterations", 20);
+
+		ClassReader cr = new ClassReader(classPath);
+		Collection<String> classNames = args.length > 0 ? Arrays.asList(args) : cr
+				.getClassNames();
+		ArrayList<byte[]> allCode = new ArrayList<byte[]>();
+		long codeBytes = 0;
+		for (String className : classNames) {
+			byte[] bytes = cr.getClassBytes(className);
+			if (bytes == null) {
+				System.err.println("Class not found: " + className);
+				System.exit(1);
+			}
+			for (Method m : new ClassParser(new ByteArrayInputStream(bytes), className).parse()
+					.getMethods()) {
+				if (m.getCode() != null && isSupported(m.getCode().getCode())) {
+					allCode.add(m.getCode().getCode());
+					codeBytes += m.getCode().getCode().length;
+				}
+			}
+		}
+		cr.close();
+		System.out.println(allCode.size() + " methods; " + codeBytes + " bytes of code");
+
+		// Warm up:
+		for (int i = 0; i < 5; i++) {
+			decodeAllocating(allCode);
+			decodeTable(allCode);
+		}
+
+		long start = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			decodeAllocating(allCode);
+		}
+		report("allocating", codeBytes * iterations, System.nanoTime() - start);
+
+		start = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			decodeTable(allCode);
+		}
+		report("table", codeBytes * iterations, System.nanoTime() - start);
+	}
+
+	/**
+	 * This method checks that all instructions in some code are implemented by thinJ. Methods with
+	 * unsupported instructions are left out of the benchmark.
+	 * 
+	 * @param code The code to check
+	 * @return true, if all instructions are implemented
+	 */
+	private static boolean isSupported(byte[] code) {
+		int offset = 0;
+		while (offset < code.length) {
+			int length = AbstractInstruction.getLength(code[offset]);
+			if (length == 0) {
+				return false;
+			}
+			offset += length;
+		}
+		return offset == code.length;
+	}
+
+	/**
+	 * This method decodes code as done before the opcode table existed
+	 * 
+	 * @param allCode The code to decode
+	 * @throws Exception If unable to create an instruction
+	 */
+	private static void decodeAllocating(ArrayList<byte[]> allCode) throws Exception {
+		long count = 0;
+		for (byte[] code : allCode) {
+			ByteArrayInputStream bais = new ByteArrayInputStream(code);
+			while (bais.available() > 0) {
+				int opcode = bais.read();
+				AbstractInstruction ins = AbstractInstruction.aInstructions.get(opcode)
+						.getDeclaredConstructor().newInstance();
+				ins.aCode = new byte[ins.getSize()];
+				ins.aCode[0] = (byte) opcode;
+				for (int i = 1; i < ins.aCode.length; i++) {
+					ins.aCode[i] = (byte) bais.read();
+				}
+				count += opcode;
+			}
+		}
+		aChecksum = count;
+	}
+
+	/**
+	 * This method decodes code using the opcode table
+	 * 
+	 * @param allCode The code to decode
+	 */
+	private static void decodeTable(ArrayList<byte[]> allCode) {
+		long count = 0;
+		for (byte[] code : allCode) {
+			InstructionList il = InstructionList.decode(code);
+			for (int i = 0; i < il.size(); i++) {
+				count += il.get(i).getOpcode();
+			}
+		}
+		aChecksum = count;
+	}
+
+	/**
+	 * This method prints the throughput of a decoder
+	 * 
+	 * @param name The name of the decoder
+	 * @param bytes The number of bytes decoded
+	 * @param nanos The time spent decoding
+	 */
+	private static void report(String name, long bytes, long nanos) {
+		double seconds = nanos / 1e9;
+		System.out.println(String.format("%-10s %8.1f MB/s (%d bytes in %.3f s; checksum %d)",
+				name, bytes / seconds / 1e6, bytes, seconds, aChecksum));
+	}
+}
@@ -5,7 +5,8 @@ public interface InstructionHandler {
 	 * This method shall handle the instruction
 	 * 
 	 * @param address The address in the code where the instruction 'ins' was found
-	 * @param instruction The instruction at address 'addr'
+	 * @param instruction The instruction at address 'addr'. The instance is shared and only valid
+	 *            during the call, see {@link AbstractInstruction}.
 	 */
 	void handle(int address, AbstractInstruction instruction);
 }
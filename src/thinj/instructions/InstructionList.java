@@ -0,0 +1,146 @@
+package thinj.instructions;
+
+import thinj.LinkException;
+import thinj.linkmodel.LinkModel;
+
+/**
+ * This class holds the decoded code of a method: The code itself and the offset of each
+ * instruction in it. The code is decoded once; after that all passes over the code - scanning for
+ * dependencies, marking used instructions, renumbering member references and generating code -
+ * walk the offsets. The instructions are handed out as views of the code, see
+ * {@link AbstractInstruction#at(byte[], int)}.
+ */
+public class InstructionList {
+	// The code; instructions changed are changed in this array:
+	private final byte[] aCode;
+
+	// The offset of each instruction within the code:
+	private final int[] aOffsets;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param code The code
+	 * @param offsets The offset of each instruction within the code
+	 */
+	private InstructionList(byte[] code, int[] offsets) {
+		aCode = code;
+		aOffsets = offsets;
+	}
+
+	/**
+	 * This method decodes all instructions in some code. If the code contains an unknown or
+	 * truncated instruction, a LinkException is thrown.
+	 * 
+	 * @param code The code to decode. Is not copied.
+	 * @return The decoded instructions
+	 */
+	public static InstructionList decode(byte[] code) {
+		int[] offsets = new int[code.length];
+		int count = 0;
+		int offset = 0;
+		while (offset < code.length) {
+			int length = AbstractInstruction.getLength(code[offset]);
+			if (length == 0) {
+				throw new LinkException("No instruction defined for opcode: "
+						+ String.format("0x%02x", code[offset]) + " at offset " + offset);
+			}
+			if (offset + length > code.length) {
+				throw new LinkException("Truncated instruction at offset " + offset);
+			}
+			offsets[count++] = offset;
+			offset += length;
+		}
+
+		int[] trimmed = new int[count];
+		System.arraycopy(offsets, 0, trimmed, 0, count);
+		return new InstructionList(code, trimmed);
+	}
+
+	/**
+	 * This method counts the instructions with an opcode in some code, without decoding the code.
+	 * Counting stops at an unknown instruction.
+	 * 
+	 * @param code The code
+	 * @param opcode The opcode to count
+	 * @return The number of instructions with the opcode
+	 */
+	public static int count(byte[] code, int opcode) {
+		int count = 0;
+		int offset = 0;
+		while (offset < code.length) {
+			int length = AbstractInstruction.getLength(code[offset]);
+			if (length == 0) {
+				break;
+			}
+			if ((code[offset] & 0xff) == opcode) {
+				count++;
+			}
+			offset += length;
+		}
+		return count;
+	}
+
+	/**
+	 * @return The number of instructions
+	 */
+	public int size() {
+		return aOffsets.length;
+	}
+
+	/**
+	 * This method returns an instruction. The returned instance is shared, see
+	 * {@link AbstractInstruction}.
+	 * 
+	 * @param index The index of the instruction
+	 * @return The instruction
+	 */
+	public AbstractInstruction get(int index) {
+		return AbstractInstruction.at(aCode, aOffsets[index]);
+	}
+
+	/**
+	 * @param index The index of the instruction
+	 * @return The address of the instruction, relative to the start of the code
+	 */
+	public int getAddress(int index) {
+		return aOffsets[index];
+	}
+
+	/**
+	 * This method generates C-code for an instruction. Can be called from several threads at once,
+	 * see {@link AbstractInstruction#generateCode(byte[], int, StringBuilder)}.
+	 * 
+	 * @param index The index of the instruction
+	 * @param out The buffer to receive the generated code. No line feed is appended.
+	 */
+	public void generateCode(int index, StringBuilder out) {
+		AbstractInstruction.generateCode(aCode, aOffsets[index], out);
+	}
+
+	/**
+	 * This method calls 'handler' for each instruction, in order
+	 * 
+	 * @param address The address of the first instruction
+	 * @param handler The call back handler
+	 */
+	public void handle(int address, InstructionHandler handler) {
+		for (int offset : aOffsets) {
+			handler.handle(address + offset, AbstractInstruction.at(aCode, offset));
+		}
+	}
+
+	/**
+	 * This method changes all instructions that references a member, so they refer to the
+	 * optimised set of member references. The instructions are changed in place - in the code
+	 * supplied to {@link #decode(byte[])}; the size of the code does not change.
+	 * 
+	 * @param linkModel The link model holding the optimised references
+	 * @param classId The id of the class containing the code
+	 */
+	public void renumberMemberReferences(LinkModel linkModel, int classId) {
+		for (int offset : aOffsets) {
+			AbstractInstruction.at(aCode, offset).renumberReference(linkModel, classId);
+		}
+	}
+}
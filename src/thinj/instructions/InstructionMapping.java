@@ -0,0 +1,52 @@
+package thinj.instructions;
+
+import java.util.HashMap;
+import java.util.TreeMap;
+
+/**
+ * This class maps the opcodes of the instructions referenced by the code of a suite to new,
+ * consecutive opcodes. This is used for renumbering of opcodes and elimination of unused
+ * instructions. Each link has a mapping of its own, so programs may be linked in parallel.
+ */
+public class InstructionMapping {
+	// Referenced instructions - key is the VM SPEC'ed opcode; value is the translated opcode:
+	private final HashMap<Integer, Integer> aInstructionCodeMapping;
+
+	// The reverse mapping - key is the translated opcode; value is the VM SPEC'ed opcode:
+	private final TreeMap<Integer, Integer> aReverseInstructionMapping;
+
+	// Generator for translated opcodes:
+	private int aInstructionCodeGenerator;
+
+	/**
+	 * Constructor. No instructions are referenced.
+	 */
+	public InstructionMapping() {
+		aInstructionCodeMapping = new HashMap<Integer, Integer>();
+		aReverseInstructionMapping = new TreeMap<Integer, Integer>();
+		aInstructionCodeGenerator = 0;
+	}
+
+	/**
+	 * This method registers that this type of instruction shall be included in the suite
+	 * 
+	 * @param instruction The referenced instruction
+	 */
+	public synchronized void referenced(AbstractInstruction instruction) {
+		int opcode = instruction.getOpcode();
+		if (!aInstructionCodeMapping.containsKey(opcode)) {
+			int newOpcode = aInstructionCodeGenerator++;
+			aInstructionCodeMapping.put(opcode, newOpcode);
+			aReverseInstructionMapping.put(newOpcode, opcode);
+		}
+	}
+
+	/**
+	 * @param opcode The VM SPEC'ed opcode of an instruction
+	 * @return The translated opcode, or -1 if the instruction is not referenced
+	 */
+	public synchronized int getTranslatedOpcode(int opcode) {
+		Integer newOpcode = aInstructionCodeMapping.get(opcode);
+		return newOpcode != null ? newOpcode : -1;
+	}
+}
@@ -0,0 +1,66 @@
+package thinj.linkmodel;
+
+import java.util.ArrayList;
+
+/**
+ * This class maps a class id to an item. Class ids are small and dense - and renumbered without
+ * holes by the link model - so the items are kept in an array indexed directly by the class id,
+ * and no key object is allocated by a lookup.
+ * 
+ * @param <T> The type of the items in the table
+ */
+class ClassIdTable<T> {
+	// The items indexed by class id; null for ids not registered:
+	private final ArrayList<T> aItems;
+
+	/**
+	 * Constructor
+	 */
+	ClassIdTable() {
+		aItems = new ArrayList<T>();
+	}
+
+	/**
+	 * This method returns the item registered for a class id
+	 * 
+	 * @param classId The class id
+	 * @return The registered item or null, if no match
+	 */
+	T get(int classId) {
+		return classId >= 0 && classId < aItems.size() ? aItems.get(classId) : null;
+	}
+
+	/**
+	 * This method registers an item for a class id. Any item already registered for the class id
+	 * is replaced.
+	 * 
+	 * @param classId The class id
+	 * @param item The item to register
+	 */
+	void put(int classId, T item) {
+		while (aItems.size() <= classId) {
+			aItems.add(null);
+		}
+		aItems.set(classId, item);
+	}
+
+	/**
+	 * This method registers an item for a class id, unless an item is already registered for the
+	 * class id
+	 * 
+	 * @param classId The class id
+	 * @param item The item to register
+	 */
+	void putIfAbsent(int classId, T item) {
+		if (get(classId) == null) {
+			put(classId, item);
+		}
+	}
+
+	/**
+	 * This method removes all items from the table
+	 */
+	void clear() {
+		aItems.clear();
+	}
+}
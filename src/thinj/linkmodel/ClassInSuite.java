@@ -98,7 +98,8 @@ public class ClassInSuite {
 	 * @return The slash'ed version of the class name
 	 */
 	public static String getGlobalName(String className) {
-		return className.replace(".", "/");
+		// replace(char, char) returns the string itself, if there is nothing to replace:
+		return className.replace('.', '/');
 	}
 
 	/**
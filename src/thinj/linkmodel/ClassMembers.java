@@ -0,0 +1,55 @@
+package thinj.linkmodel;
+
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * This class contains the members declared by a single class. The members are kept in the order
+ * they were added, and they can be looked up by signature.
+ */
+class ClassMembers {
+	// The members in the order they were added:
+	private final LinkedList<MethodOrField> aMembers;
+
+	// The members identified by signature - key is the key of the signature, see
+	// Signature#getKey():
+	private final LongHashMap<MethodOrField> aSignatureMap;
+
+	/**
+	 * Constructor
+	 */
+	ClassMembers() {
+		aMembers = new LinkedList<MethodOrField>();
+		aSignatureMap = new LongHashMap<MethodOrField>();
+	}
+
+	/**
+	 * This method adds a member. If a member with the same signature has already been added, the
+	 * first one is still the one returned by {@link #get(long)}.
+	 *
+	 * @param mof The member to add
+	 */
+	void add(MethodOrField mof) {
+		aMembers.add(mof);
+		aSignatureMap.putIfAbsent(mof.getMember().getSignature().getKey(), mof);
+	}
+
+	/**
+	 * This method returns the member identified by a signature
+	 *
+	 * @param signatureKey The key of the signature of the member, see Signature#getKey()
+	 * @return The member or null, if no match
+	 */
+	MethodOrField get(long signatureKey) {
+		return aSignatureMap.get(signatureKey);
+	}
+
+	/**
+	 * This method returns all members in the order they were added
+	 *
+	 * @return All members in the order they were added
+	 */
+	List<MethodOrField> getAll() {
+		return aMembers;
+	}
+}
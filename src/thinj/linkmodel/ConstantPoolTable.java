@@ -0,0 +1,79 @@
+package thinj.linkmodel;
+
+import java.util.ArrayList;
+
+/**
+ * This class maps a (class id, constant pool index) pair to an item. Constant pool indexes are
+ * small and dense, so each class has its own array indexed directly by the constant pool index.
+ *
+ * @param <T> The type of the items in the table
+ */
+class ConstantPoolTable<T> {
+	// Key is the class id; value is the items in that class indexed by constant pool index:
+	private final ClassIdTable<ArrayList<T>> aClasses;
+
+	/**
+	 * Constructor
+	 */
+	ConstantPoolTable() {
+		aClasses = new ClassIdTable<ArrayList<T>>();
+	}
+
+	/**
+	 * This method returns the item registered for (classId, constantPoolIndex)
+	 *
+	 * @param classId The id of the referencing class
+	 * @param constantPoolIndex The index into the constant pool of the referencing class
+	 * @return The registered item or null, if no match
+	 */
+	T get(int classId, int constantPoolIndex) {
+		T item = null;
+		ArrayList<T> items = aClasses.get(classId);
+		if (items != null && constantPoolIndex >= 0 && constantPoolIndex < items.size()) {
+			item = items.get(constantPoolIndex);
+		}
+
+		return item;
+	}
+
+	/**
+	 * This method registers an item for (classId, constantPoolIndex). Any item already registered
+	 * for the same pair is replaced.
+	 *
+	 * @param classId The id of the referencing class
+	 * @param constantPoolIndex The index into the constant pool of the referencing class
+	 * @param item The item to register
+	 */
+	void put(int classId, int constantPoolIndex, T item) {
+		ArrayList<T> items = aClasses.get(classId);
+		if (items == null) {
+			items = new ArrayList<T>();
+			aClasses.put(classId, items);
+		}
+		while (items.size() <= constantPoolIndex) {
+			items.add(null);
+		}
+		items.set(constantPoolIndex, item);
+	}
+
+	/**
+	 * This method registers an item for (classId, constantPoolIndex), unless an item is already
+	 * registered for the same pair.
+	 *
+	 * @param classId The id of the referencing class
+	 * @param constantPoolIndex The index into the constant pool of the referencing class
+	 * @param item The item to register
+	 */
+	void putIfAbsent(int classId, int constantPoolIndex, T item) {
+		if (get(classId, constantPoolIndex) == null) {
+			put(classId, constantPoolIndex, item);
+		}
+	}
+
+	/**
+	 * This method removes all items from the table
+	 */
+	void clear() {
+		aClasses.clear();
+	}
+}
@@ -1,5 +1,7 @@
 package thinj.linkmodel;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -8,12 +10,11 @@ import java.util.List;
 import java.util.TreeMap;
 import java.util.TreeSet;
 
-import thinj.NewLinker;
-import thinj.instructions.AbstractInstruction;
+import thinj.LinkException;
 
 public class LinkModel {
-	// Singleton instance:
-	private static LinkModel aInstance;
+	// The interned names and descriptors of the members and references:
+	private final SymbolTable aSymbols;
 
 	// All class members:
 	private final LinkedList<MethodOrField> aMembers;
@@ -44,17 +45,57 @@ public class LinkModel {
 
 	// Collection of all signatures - to be used when building inheritance tables. The signatures
 	// are not related to specific classes, this means that e.g. any <init>#()V has the
-	// same signature no matter the containing class:
-	private final HashMap<Signature, Integer> aSignatureMap;
+	// same signature no matter the containing class. The key is the key of the signature, see
+	// Signature#getKey():
+	private final LongHashMap<Integer> aSignatureMap;
 
 	// Id generator for instance methods:
 	private int aInstanceMethodIdGenerator = 0;
 
-	// This maps from un-optimized member reference to optimized member reference. Is allocated and
-	// populated in the optimize - method:
-	private TreeMap<MemberReference, MemberReference> aMemberReferenceTranslationMap;
+	// The optimised member references of each class - indexed by (MemberReferenceTypeEnum ordinal,
+	// referencing class id, constant pool index). Is allocated and populated in the optimize -
+	// method:
+	private MemberReference[][][] aOptimizedReferences;
 
-	private LinkModel() {
+	// The members of each class - key is the class id:
+	private final ClassIdTable<ClassMembers> aClassMembers;
+
+	// Collection of all classes - key is the class id:
+	private final ClassIdTable<ClassInSuite> aClassIdMap;
+
+	// Index of member references - key is (referencing class id, constant pool index):
+	private final ConstantPoolTable<MemberReference> aMemberReferenceTable;
+
+	// Index of class references - key is (referencing class id, constant pool index):
+	private final ConstantPoolTable<ClassReference> aClassReferenceTable;
+
+	// Index of the items loadable by the ldc - instructions, i.e. class references and constant
+	// references - key is (referencing class id, constant pool index). A class constant may have
+	// several class references, e.g. when the class is also thrown by a method:
+	private final ConstantPoolTable<List<ConstantPoolReference>> aConstantTable;
+
+	// The first method registered for each signature; used for looking up argument counts. The key
+	// is the key of the signature:
+	private final LongHashMap<MethodInClass> aArgumentCountMap;
+
+	// Index of the optimised member references - key is (referencing class id, constant pool
+	// index) of the un-optimized reference. Is populated in the optimize - method:
+	private final ConstantPoolTable<MemberReference> aOptimizedReferenceTable;
+
+	// The class hierarchy - key is the name of a class; value is the classes directly extending
+	// it:
+	private final HashMap<String, List<ClassInSuite>> aSubClassMap;
+
+	// The class hierarchy - key is the name of an interface; value is the classes directly
+	// implementing it:
+	private final HashMap<String, List<ClassInSuite>> aImplementerMap;
+
+	/**
+	 * Constructor. Each link has a model of its own, so several programs may be linked by the
+	 * same JVM - even at the same time.
+	 */
+	public LinkModel() {
+		aSymbols = new SymbolTable();
 		aMembers = new LinkedList<MethodOrField>();
 		aMemberReferences = new LinkedList<MemberReference>();
 		aClassReferences = new LinkedList<ClassReference>();
@@ -64,17 +105,52 @@ public class LinkModel {
 		aStringConstantReferences = new LinkedList<ConstantReference<String>>();
 		aLongConstantReferences = new LinkedList<ConstantReference<Long>>();
 		aClasses = new TreeMap<String, ClassInSuite>();
-		aSignatureMap = new HashMap<Signature, Integer>();
+		aSignatureMap = new LongHashMap<Integer>();
+		aClassMembers = new ClassIdTable<ClassMembers>();
+		aClassIdMap = new ClassIdTable<ClassInSuite>();
+		aMemberReferenceTable = new ConstantPoolTable<MemberReference>();
+		aClassReferenceTable = new ConstantPoolTable<ClassReference>();
+		aConstantTable = new ConstantPoolTable<List<ConstantPoolReference>>();
+		aArgumentCountMap = new LongHashMap<MethodInClass>();
+		aOptimizedReferenceTable = new ConstantPoolTable<MemberReference>();
+		aSubClassMap = new HashMap<String, List<ClassInSuite>>();
+		aImplementerMap = new HashMap<String, List<ClassInSuite>>();
 	}
 
 	/**
-	 * @return The one and only instance
+	 * This method creates a signature. The name and the descriptor are interned in the symbol
+	 * table of this model, so equal signatures share the same strings and are compared by their
+	 * symbols.
+	 * 
+	 * @param name The name of the member
+	 * @param descriptor The descriptor of the member
+	 * @return The created signature
 	 */
-	public static LinkModel getInstance() {
-		if (aInstance == null) {
-			aInstance = new LinkModel();
-		}
-		return aInstance;
+	public Signature createSignature(String name, String descriptor) {
+		return new Signature(aSymbols, name, descriptor);
+	}
+
+	/**
+	 * This method creates a member, which is not added to the model - e.g. a member referenced by
+	 * the VM
+	 * 
+	 * @param className The name of the containing class
+	 * @param name The name of the member
+	 * @param descriptor The descriptor of the member
+	 * @return The created member
+	 */
+	public Member createMember(String className, String name, String descriptor) {
+		return new Member(aSymbols, className, name, descriptor);
+	}
+
+	/**
+	 * This method interns the global name of a class, see {@link ClassInSuite#getGlobalName}
+	 * 
+	 * @param className The name of the class
+	 * @return The interned global name of the class
+	 */
+	private String internClassName(String className) {
+		return aSymbols.getString(aSymbols.intern(ClassInSuite.getGlobalName(className)));
 	}
 
 	/**
@@ -91,9 +167,9 @@ public class LinkModel {
 	 */
 	public MethodInClass createMethodInClass(String className, String name, String descriptor,
 			byte[] code, int numberOfLocalVariables, int numberOfArguments, boolean isStatic) {
-		MethodInClass mic = new MethodInClass(new Member(className, name, descriptor), code,
-				numberOfLocalVariables, numberOfArguments, isStatic);
-		aMembers.add(mic);
+		MethodInClass mic = new MethodInClass(new Member(aSymbols, className, name, descriptor),
+				code, numberOfLocalVariables, numberOfArguments, isStatic);
+		addMember(mic);
 
 		addSignature(mic.getMember().getSignature());
 
@@ -111,9 +187,9 @@ public class LinkModel {
 	 */
 	public MethodInClass createAbstractMethodInClass(String className, String name,
 			String descriptor, int numberOfArguments) {
-		MethodInClass mic = new MethodInClass(new Member(className, name, descriptor),
+		MethodInClass mic = new MethodInClass(new Member(aSymbols, className, name, descriptor),
 				numberOfArguments);
-		aMembers.add(mic);
+		addMember(mic);
 
 		addSignature(mic.getMember().getSignature());
 
@@ -132,13 +208,45 @@ public class LinkModel {
 	 */
 	public void createNativeMethodInClass(String className, String name, String descriptor,
 			boolean isStatic, String[] argTypes, String returnType) {
-		MethodInClass mic = new MethodInClass(new Member(className, name, descriptor), argTypes,
-				isStatic, returnType);
-		aMembers.add(mic);
+		MethodInClass mic = new MethodInClass(new Member(aSymbols, className, name, descriptor),
+				argTypes, isStatic, returnType);
+		addMember(mic);
 
 		addSignature(mic.getMember().getSignature());
 	}
 
+	/**
+	 * This method adds a member to the collection of all members and to the indexes used for
+	 * looking up members
+	 * 
+	 * @param mof The member to add
+	 */
+	private void addMember(MethodOrField mof) {
+		aMembers.add(mof);
+		indexMember(mof);
+	}
+
+	/**
+	 * This method adds a member to the indexes used for looking up members. The class containing
+	 * the member shall have been added.
+	 * 
+	 * @param mof The member to index
+	 */
+	private void indexMember(MethodOrField mof) {
+		int classId = getClassIdByName(mof.getMember().getClassName());
+		ClassMembers members = aClassMembers.get(classId);
+		if (members == null) {
+			members = new ClassMembers();
+			aClassMembers.put(classId, members);
+		}
+		members.add(mof);
+
+		if (mof instanceof MethodInClass) {
+			aArgumentCountMap.putIfAbsent(mof.getMember().getSignature().getKey(),
+					(MethodInClass) mof);
+		}
+	}
+
 	/**
 	 * This method registers a signature (with no class) to the collection of signatures
 	 * 
@@ -146,8 +254,8 @@ public class LinkModel {
 	 */
 	private void addSignature(Signature signature) {
 		// Build inheritance tables:
-		if (aSignatureMap.get(signature) == null) {
-			aSignatureMap.put(signature, aInstanceMethodIdGenerator++);
+		if (aSignatureMap.putIfAbsent(signature.getKey(), aInstanceMethodIdGenerator)) {
+			aInstanceMethodIdGenerator++;
 		}
 		// else: Already there; avoid holes in the ids.
 	}
@@ -163,8 +271,9 @@ public class LinkModel {
 	 */
 	public FieldInClass createFieldInClass(String className, String name, String descriptor,
 			int size, boolean isStatic) {
-		FieldInClass fic = new FieldInClass(new Member(className, name, descriptor), size, isStatic);
-		aMembers.add(fic);
+		FieldInClass fic = new FieldInClass(new Member(aSymbols, className, name, descriptor),
+				size, isStatic);
+		addMember(fic);
 
 		addSignature(fic.getMember().getSignature());
 
@@ -180,7 +289,7 @@ public class LinkModel {
 	public ArrayClassInSuite createArrayClassInSuite(ClassTypeEnum classType) {
 		ArrayClassInSuite ac = new ArrayClassInSuite(classType);
 		if (aClasses.get(ac.getClassName()) == null) {
-			aClasses.put(ac.getClassName(), ac);
+			addClass(ac);
 		}
 
 		return ac;
@@ -195,7 +304,7 @@ public class LinkModel {
 	public ClassInSuite createObjectArrayClassInSuite(String elementClassName, int classId) {
 		ClassInSuite cis = new ClassInSuite("[L" + elementClassName, classId,
 				Object.class.getName(), ClassTypeEnum.ReferenceArray);
-		aClasses.put(cis.getClassName(), cis);
+		addClass(cis);
 		return cis;
 	}
 
@@ -213,11 +322,54 @@ public class LinkModel {
 			ClassTypeEnum classType) {
 		ClassInSuite cis = new ClassInSuite(className, classId, superClassName, classType);
 		// Note! cis.getClassName() might be != from className
-		aClasses.put(cis.getClassName(), cis);
+		addClass(cis);
 
 		return cis;
 	}
 
+	/**
+	 * This method adds a class to the collection of classes, to the class id index and to the
+	 * class hierarchy
+	 * 
+	 * @param cis The class to add
+	 */
+	private void addClass(ClassInSuite cis) {
+		aClasses.put(cis.getClassName(), cis);
+		aClassIdMap.put(cis.getClassId(), cis);
+		if (cis.getSuperClassName() != null) {
+			addToHierarchy(aSubClassMap, cis.getSuperClassName(), cis);
+		}
+		// else: java.lang.Object; no super class
+	}
+
+	/**
+	 * This method registers that a class implements an interface
+	 * 
+	 * @param cis The implementing class
+	 * @param interfaceName The name of the implemented interface
+	 */
+	public void addImplementedInterface(ClassInSuite cis, String interfaceName) {
+		cis.addImplementedInterface(interfaceName);
+		addToHierarchy(aImplementerMap, ClassInSuite.getGlobalName(interfaceName), cis);
+	}
+
+	/**
+	 * This method adds a class to one of the maps making up the class hierarchy
+	 * 
+	 * @param map The map to add to
+	 * @param superTypeName The name of the super class or the implemented interface
+	 * @param cis The class extending or implementing 'superTypeName'
+	 */
+	private static void addToHierarchy(HashMap<String, List<ClassInSuite>> map,
+			String superTypeName, ClassInSuite cis) {
+		List<ClassInSuite> subTypes = map.get(superTypeName);
+		if (subTypes == null) {
+			subTypes = new LinkedList<ClassInSuite>();
+			map.put(superTypeName, subTypes);
+		}
+		subTypes.add(cis);
+	}
+
 	/**
 	 * This method creates a reference to a member in the model.
 	 * 
@@ -229,12 +381,13 @@ public class LinkModel {
 	 */
 	public MemberReference createMemberReference(String referencedClassName, Signature signature,
 			int referencingClassId, int constantPoolIndex) {
-		MemberReference ref = new MemberReference(referencedClassName, signature,
-				referencingClassId, constantPoolIndex);
+		MemberReference ref = new MemberReference(internClassName(referencedClassName),
+				signature, referencingClassId, constantPoolIndex);
 
 		addSignature(signature);
 
 		aMemberReferences.add(ref);
+		aMemberReferenceTable.put(referencingClassId, constantPoolIndex, ref);
 		return ref;
 	}
 
@@ -250,6 +403,7 @@ public class LinkModel {
 				value);
 
 		aDoubleConstantReferences.add(ref);
+		addLoadableReference(classId, constantPoolIndex, ref);
 	}
 
 	/**
@@ -264,6 +418,7 @@ public class LinkModel {
 				value);
 
 		aFloatConstantReferences.add(ref);
+		addLoadableReference(classId, constantPoolIndex, ref);
 	}
 
 	/**
@@ -278,6 +433,7 @@ public class LinkModel {
 				value);
 
 		aIntegerConstantReferences.add(ref);
+		addLoadableReference(classId, constantPoolIndex, ref);
 	}
 
 	/**
@@ -292,6 +448,7 @@ public class LinkModel {
 		ConstantReference<Long> ref = new ConstantReference<Long>(classId, constantPoolIndex, value);
 
 		aLongConstantReferences.add(ref);
+		addLoadableReference(classId, constantPoolIndex, ref);
 	}
 
 	/**
@@ -306,6 +463,7 @@ public class LinkModel {
 				value);
 
 		aStringConstantReferences.add(ref);
+		addLoadableReference(classId, constantPoolIndex, ref);
 	}
 
 	/**
@@ -317,8 +475,11 @@ public class LinkModel {
 	 * @return The created reference
 	 */
 	public ClassReference createClassReference(int classId, int constantPoolIndex, String className) {
-		ClassReference ref = new ClassReference(className, classId, constantPoolIndex);
+		ClassReference ref = new ClassReference(aSymbols.getString(aSymbols.intern(className)),
+				classId, constantPoolIndex);
 		aClassReferences.add(ref);
+		aClassReferenceTable.putIfAbsent(classId, constantPoolIndex, ref);
+		addLoadableReference(classId, constantPoolIndex, ref);
 		// System.err.println("ref: " + classId + "; " + className + "; ");
 		// new Exception().printStackTrace();
 		return ref;
@@ -468,42 +629,6 @@ public class LinkModel {
 		return ts.toArray(new MemberReference[ts.size()]);
 	}
 
-	/**
-	 * This method returns all unique references to methods or fields referenced by the class
-	 * identified by 'referencingClassId'. The return value will be sorted in ascending order of
-	 * (constant pool index)
-	 * 
-	 * @param referencingClassId Identifies the referencing class
-	 * @param type The type of requested MemberReferences
-	 * @return MemberReference[] all unique references to methods or fields for class identified by
-	 *         'referencingClassId'
-	 */
-	private MemberReference[] getAllReferences(int referencingClassId, MemberReferenceTypeEnum type) {
-		TreeSet<MemberReference> ts = new TreeSet<MemberReference>(
-				new Comparator<MemberReference>() {
-					@Override
-					public int compare(MemberReference o1, MemberReference o2) {
-						int diff = o1.getClassId() - o2.getClassId();
-						if (diff == 0) {
-							diff = o1.getConstantPoolIndex() - o2.getConstantPoolIndex();
-						}
-						return diff;
-					}
-				});
-
-		for (MemberReference ref : aMemberReferences) {
-			// Do only add selected references:
-			boolean typeOk = (ref.getSignature().isMethod() && type == MemberReferenceTypeEnum.METHOD)
-					|| (!ref.getSignature().isMethod() && type == MemberReferenceTypeEnum.FIELD);
-
-			if (typeOk && ref.getClassId() == referencingClassId) {
-				ts.add(ref);
-			}
-		}
-
-		return ts.toArray(new MemberReference[ts.size()]);
-	}
-
 	/**
 	 * This method returns all references to static or instance fields
 	 * 
@@ -559,13 +684,9 @@ public class LinkModel {
 				return o1.getLinkId() - o2.getLinkId();
 			}
 		});
-		for (MethodOrField mof : aMembers) {
+		for (MethodOrField mof : getClassMembers(classId)) {
 			if (mof instanceof MethodInClass) {
-				MethodInClass mic = (MethodInClass) mof;
-				int methodClassId = getClassIdByName(mic.getMember().getClassName());
-				if (methodClassId == classId) {
-					ts.add(mic);
-				}
+				ts.add((MethodInClass) mof);
 			}
 		}
 		return ts.toArray(new MethodInClass[ts.size()]);
@@ -584,18 +705,31 @@ public class LinkModel {
 				return o1.getLinkId() - o2.getLinkId();
 			}
 		});
-		for (MethodOrField mof : aMembers) {
+		for (MethodOrField mof : getClassMembers(classId)) {
 			if (mof instanceof FieldInClass) {
-				FieldInClass fic = (FieldInClass) mof;
-				int fieldClassId = getClassIdByName(fic.getMember().getClassName());
-				if (fieldClassId == classId) {
-					ts.add(fic);
-				}
+				ts.add((FieldInClass) mof);
 			}
 		}
 		return ts.toArray(new FieldInClass[ts.size()]);
 	}
 
+	/**
+	 * This method returns the members declared by the class identified by 'classId'
+	 * 
+	 * @param classId identifies the class
+	 * @return All members in the order they were created. An empty list is returned if the class
+	 *         is unknown or has no members.
+	 */
+	private List<MethodOrField> getClassMembers(int classId) {
+		List<MethodOrField> members = new LinkedList<MethodOrField>();
+		ClassMembers cm = aClassMembers.get(classId);
+		if (cm != null) {
+			members = cm.getAll();
+		}
+
+		return members;
+	}
+
 	/**
 	 * This method returns the referenced member from a class. If not found in the indicated class,
 	 * the search will continue up in the super class(es).
@@ -606,30 +740,65 @@ public class LinkModel {
 	 * @return The referenced method or field or null, if no match
 	 */
 	public MethodOrField getMethodOrField(int classId, String memberName, String signature) {
+		long signatureKey = lookupSignatureKey(memberName, signature);
+		return signatureKey >= 0 ? getMethodOrField(classId, signatureKey) : null;
+	}
+
+	/**
+	 * This method returns the referenced member from a class. If not found in the indicated class,
+	 * the search will continue up in the super class(es).
+	 * 
+	 * @param classId The id of the class wherein the member shall be looked up
+	 * @param signature The signature of the member
+	 * @return The referenced method or field or null, if no match
+	 */
+	public MethodOrField getMethodOrField(int classId, Signature signature) {
+		return getMethodOrField(classId, signature.getKey());
+	}
+
+	/**
+	 * This method returns the referenced member from a class. If not found in the indicated class,
+	 * the search will continue up in the super class(es).
+	 * 
+	 * @param classId The id of the class wherein the member shall be looked up
+	 * @param signatureKey The key of the signature of the member
+	 * @return The referenced method or field or null, if no match
+	 */
+	private MethodOrField getMethodOrField(int classId, long signatureKey) {
 		ClassInSuite cis = getClassById(classId);
-		MethodOrField retval = getMethodOrFieldInClass(classId, memberName, signature);
+		MethodOrField retval = getMethodOrFieldInClass(classId, signatureKey);
 
 		if (retval == null && classId != 0) {
 			// If no hit, try in super class:
-			// System.out.println(classId + "super: " + getSuperClassById(classId) + "; " +
-			// memberName
-			// + ";" + signature);
-			retval = getMethodOrField(getSuperClassById(classId).getClassId(), memberName,
-					signature);
+			retval = getMethodOrField(getSuperClassById(classId).getClassId(), signatureKey);
 		}
 
 		if (retval == null && classId != 0) {
 			// Try interfaces:
 			String[] interfaceNames = cis.getImplementedInterfaces();
 			for (int i = 0; i < interfaceNames.length && retval == null; i++) {
-				retval = getMethodOrField(getClassIdByName(interfaceNames[i]), memberName,
-						signature);
+				retval = getMethodOrField(getClassIdByName(interfaceNames[i]), signatureKey);
 			}
 		}
 
 		return retval;
 	}
 
+	/**
+	 * This method looks up the key of a signature without interning the name or the descriptor
+	 * 
+	 * @param memberName The name of the member
+	 * @param signature The descriptor of the member
+	 * @return The key of the signature or -1, if the name or the descriptor is unknown to the
+	 *         model - and hence no member matches
+	 */
+	private long lookupSignatureKey(String memberName, String signature) {
+		int nameSymbol = aSymbols.lookup(memberName);
+		int descriptorSymbol = aSymbols.lookup(signature);
+		return nameSymbol >= 0 && descriptorSymbol >= 0 ? SymbolTable.pack(nameSymbol,
+				descriptorSymbol) : -1;
+	}
+
 	/**
 	 * This method returns the referenced member from a class. If not found in the indicated class,
 	 * null is returned.
@@ -641,14 +810,23 @@ public class LinkModel {
 	 * @return The referenced method or field or null, if no match
 	 */
 	public MethodOrField getMethodOrFieldInClass(int classId, String memberName, String signature) {
+		long signatureKey = lookupSignatureKey(memberName, signature);
+		return signatureKey >= 0 ? getMethodOrFieldInClass(classId, signatureKey) : null;
+	}
+
+	/**
+	 * This method returns the referenced member from a class. If not found in the indicated class,
+	 * null is returned.
+	 * 
+	 * @param classId The id of the class wherein the member shall be looked up
+	 * @param signatureKey The key of the signature of the member
+	 * @return The referenced method or field or null, if no match
+	 */
+	private MethodOrField getMethodOrFieldInClass(int classId, long signatureKey) {
 		MethodOrField retval = null;
-		for (MethodOrField mof : aMembers) {
-			if (memberName.equals(mof.getMember().getSignature().getName())
-					&& getClassIdByName(mof.getMember().getClassName()) == classId
-					&& signature.equals(mof.getMember().getSignature().getDescriptor())) {
-				retval = mof;
-				break;
-			}
+		ClassMembers cm = aClassMembers.get(classId);
+		if (cm != null) {
+			retval = cm.get(signatureKey);
 		}
 
 		return retval;
@@ -680,10 +858,10 @@ public class LinkModel {
 	public FieldInClass[] getInstanceFields(int classId) {
 		LinkedList<FieldInClass> l = new LinkedList<FieldInClass>();
 
-		for (MethodOrField mof : aMembers) {
+		for (MethodOrField mof : getClassMembers(classId)) {
 			if (mof instanceof FieldInClass) {
 				FieldInClass fic = (FieldInClass) mof;
-				if (!fic.isStatic() && getClassIdByName(fic.getMember().getClassName()) == classId) {
+				if (!fic.isStatic()) {
 					l.add(fic);
 				}
 			}
@@ -700,12 +878,9 @@ public class LinkModel {
 	public MethodInClass[] getMethods(int classId) {
 		LinkedList<MethodInClass> l = new LinkedList<MethodInClass>();
 
-		for (MethodOrField mof : aMembers) {
+		for (MethodOrField mof : getClassMembers(classId)) {
 			if (mof instanceof MethodInClass) {
-				MethodInClass mic = (MethodInClass) mof;
-				if (getClassIdByName(mic.getMember().getClassName()) == classId) {
-					l.add(mic);
-				}
+				l.add((MethodInClass) mof);
 			}
 		}
 		return l.toArray(new MethodInClass[l.size()]);
@@ -718,19 +893,10 @@ public class LinkModel {
 	 * @return The number of arguments corresponding to the given signature
 	 */
 	public int getArgumentCount(Signature signature) {
-		MethodInClass matchMic = null;
-		for (MethodOrField mof : aMembers) {
-			if (mof instanceof MethodInClass) {
-				MethodInClass mic = (MethodInClass) mof;
-				if (mic.getMember().getSignature().equals(signature)) {
-					matchMic = mic;
-					break;
-				}
-			}
-		}
+		MethodInClass matchMic = aArgumentCountMap.get(signature.getKey());
 		if (matchMic == null) {
-			NewLinker.exit("Internal error: Failed to find matching method for signature: "
-					+ signature, 1);
+			throw new LinkException(
+					"Internal error: Failed to find matching method for signature: " + signature);
 		}
 
 		return matchMic.getNumberOfArguments();
@@ -752,7 +918,7 @@ public class LinkModel {
 		// Set addresses of all code and all fields:
 		for (MethodOrField mof : aMembers) {
 			if (mof.isReferenced()) {
-				int linkId = aSignatureMap.get(mof.getMember().getSignature());
+				int linkId = aSignatureMap.get(mof.getMember().getSignature().getKey());
 				mof.setLinkId(linkId);
 				if (mof instanceof MethodInClass) {
 					MethodInClass mic = (MethodInClass) mof;
@@ -812,7 +978,7 @@ public class LinkModel {
 			if (ref.isReferenced()) {
 				// Only for instance methods, not static method nor instance fields:
 				ref.setReferencedClassId(getClassIdByName(ref.getReferencedClassName()));
-				int linkId = aSignatureMap.get(ref.getSignature());
+				int linkId = aSignatureMap.get(ref.getSignature().getKey());
 				ref.setLinkId(linkId);
 			}
 		}
@@ -872,12 +1038,8 @@ public class LinkModel {
 	public int getClassIdByName(String className) {
 		ClassInSuite cis = getClassByName(className);
 		if (cis == null) {
-			System.err.println("Internal error: Failed to look up class: " + className);
-			for (String name : aClasses.keySet()) {
-				System.err.println("names: " + name);
-			}
-			new Exception().printStackTrace();
-			System.exit(1);
+			throw new LinkException("Internal error: Failed to look up class: " + className
+					+ "; classes: " + aClasses.keySet());
 		}
 		return cis.getClassId();
 	}
@@ -889,16 +1051,9 @@ public class LinkModel {
 	 * @return The class identified by the supplied id
 	 */
 	public ClassInSuite getClassById(int classId) {
-		ClassInSuite hit = null;
-		for (ClassInSuite cis : aClasses.values()) {
-			if (cis.getClassId() == classId) {
-				hit = cis;
-				break;
-			}
-		}
+		ClassInSuite hit = aClassIdMap.get(classId);
 		if (hit == null) {
-			System.err.println("Internal error: Failed to look up class: " + classId);
-			System.exit(1);
+			throw new LinkException("Internal error: Failed to look up class: " + classId);
 		}
 
 		return hit;
@@ -909,41 +1064,60 @@ public class LinkModel {
 	 * one level of inheritance; so if 'A' extends 'B' and 'B' extends 'C', then
 	 * getAllClassesExtending(C.classId) will only return (B).
 	 * 
-	 * @param superClassId Identifies the super class. If no match, this method will cause an exit
-	 *            of this program.
+	 * @param superClassId Identifies the super class. If no match, a LinkException is thrown.
 	 * @return A list of sub classes to the class identified by 'classId'. An empty array is
 	 *         returned if no sub classes are found.
 	 */
 	public List<ClassInSuite> getAllClassesExtending(int superClassId) {
 		ClassInSuite superClass = getClassById(superClassId);
 
-		LinkedList<ClassInSuite> l = new LinkedList<ClassInSuite>();
-		for (ClassInSuite cis : aClasses.values()) {
-			if (cis.isExtending(superClass)) {
-				l.add(cis);
-			}
-		}
-
-		return l;
+		return getSubTypes(aSubClassMap, superClass.getClassName());
 	}
 
 	/**
 	 * This method returns all classes that directly implements the class (interface) identified by
 	 * 'classId'.
 	 * 
-	 * @param interfaceClassId Identifies the interface class. If no match, this method will cause
-	 *            an exit of this program.
+	 * @param interfaceClassId Identifies the interface class. If no match, a LinkException is
+	 *            thrown.
 	 * @return A list of sub classes to the class identified by 'classId'. An empty array is
 	 *         returned if no sub classes are found.
 	 */
 	public List<ClassInSuite> getAllClassesImplementing(int interfaceClassId) {
 		ClassInSuite superClass = getClassById(interfaceClassId);
 
+		return getSubTypes(aImplementerMap, superClass.getClassName());
+	}
+
+	/**
+	 * This method returns all classes directly extending or implementing the class identified by
+	 * 'className'. The class need not be loaded.
+	 * 
+	 * @param className The name of the class or interface. Shall be in '/' - format.
+	 * @return The classes directly extending or implementing the class, in the order they were
+	 *         loaded. An empty list is returned if no sub classes are found.
+	 */
+	public List<ClassInSuite> getDirectSubTypes(String className) {
+		List<ClassInSuite> l = getSubTypes(aSubClassMap, className);
+		l.addAll(getSubTypes(aImplementerMap, className));
+
+		return l;
+	}
+
+	/**
+	 * This method looks up the classes extending or implementing a class in one of the maps making
+	 * up the class hierarchy
+	 * 
+	 * @param map The map to look in
+	 * @param superTypeName The name of the super class or the implemented interface
+	 * @return A new list containing the found classes
+	 */
+	private static List<ClassInSuite> getSubTypes(HashMap<String, List<ClassInSuite>> map,
+			String superTypeName) {
 		LinkedList<ClassInSuite> l = new LinkedList<ClassInSuite>();
-		for (ClassInSuite cis : aClasses.values()) {
-			if (cis.isImplementing(superClass)) {
-				l.add(cis);
-			}
+		List<ClassInSuite> subTypes = map.get(superTypeName);
+		if (subTypes != null) {
+			l.addAll(subTypes);
 		}
 
 		return l;
@@ -966,23 +1140,19 @@ public class LinkModel {
 	 * 
 	 * @param referencingClassId The id of the class containing the reference
 	 * @param constantPoolIndex The index into the constant pool of the referencing class
-	 * @return Always the matching class name is returned. If unable to find a match, and error is
-	 *         raised and System.exit() is called.
+	 * @return Always the matching class name is returned. If unable to find a match, a
+	 *         LinkException is thrown.
 	 */
 	public String getClassNameByReference(int referencingClassId, int constantPoolIndex) {
 		String className = null;
-		for (ClassReference cRef : aClassReferences) {
-			if (cRef.getClassId() == referencingClassId
-					&& cRef.getConstantPoolIndex() == constantPoolIndex) {
-				className = cRef.getClassName();
-				break;
-			}
+		ClassReference cRef = aClassReferenceTable.get(referencingClassId, constantPoolIndex);
+		if (cRef != null) {
+			className = cRef.getClassName();
 		}
 
 		if (className == null) {
-			System.err.println("Unable to resolve reference: " + referencingClassId + "."
+			throw new LinkException("Unable to resolve reference: " + referencingClassId + "."
 					+ constantPoolIndex);
-			System.exit(1);
 		}
 		return className;
 	}
@@ -992,21 +1162,14 @@ public class LinkModel {
 	 * 
 	 * @param referencingClassId The id of the class referencing the member
 	 * @param constantPoolIndex The constant pool index of the referencing class
-	 * @return The found reference. If unable to find, the program terminates with error.
+	 * @return The found reference. If unable to find, a LinkException is thrown.
 	 */
 	public MemberReference getMemberReference(int referencingClassId, int constantPoolIndex) {
-		MemberReference res = null;
-		for (MemberReference mref : aMemberReferences) {
-			if (mref.getClassId() == referencingClassId
-					&& mref.getConstantPoolIndex() == constantPoolIndex) {
-				res = mref;
-			}
-		}
+		MemberReference res = aMemberReferenceTable.get(referencingClassId, constantPoolIndex);
 
 		if (res == null) {
-			System.err.println("Unable to resolve member reference: " + referencingClassId + "."
-					+ constantPoolIndex);
-			System.exit(1);
+			throw new LinkException("Unable to resolve member reference: " + referencingClassId
+					+ "." + constantPoolIndex);
 		}
 
 		return res;
@@ -1017,28 +1180,65 @@ public class LinkModel {
 	 * 
 	 * @param referencingClassId The id of the class referencing the target class
 	 * @param constantPoolIndex The constant pool index of the referencing class
-	 * @return The found reference. If unable to find, the program terminates with error.
+	 * @return The found reference. If unable to find, a LinkException is thrown.
 	 */
 	public ClassReference getClassReference(int referencingClassId, int constantPoolIndex) {
-		ClassReference ref = null;
-		for (ClassReference cref : aClassReferences) {
-			if (cref.getClassId() == referencingClassId
-					&& cref.getConstantPoolIndex() == constantPoolIndex) {
-				ref = cref;
-				break;
-			}
-		}
+		ClassReference ref = aClassReferenceTable.get(referencingClassId, constantPoolIndex);
 
 		if (ref == null) {
-			System.err.println("Unable to resolve class reference: " + referencingClassId + "."
-					+ constantPoolIndex);
-			new Exception().printStackTrace();
-			System.exit(1);
+			throw new LinkException("Unable to resolve class reference: " + referencingClassId
+					+ "." + constantPoolIndex);
 		}
 
 		return ref;
 	}
 
+	/**
+	 * This method finds the class reference or constant reference loaded by an ldc - instruction
+	 * 
+	 * @param referencingClassId The id of the class containing the ldc - instruction
+	 * @param constantPoolIndex The constant pool index of the referencing class
+	 * @return The found reference ({@link ClassReference} or {@link ConstantReference}) or null, if
+	 *         no match. If there are several, the first one created is returned.
+	 */
+	public ConstantPoolReference getLoadableReference(int referencingClassId,
+			int constantPoolIndex) {
+		List<ConstantPoolReference> refs = aConstantTable.get(referencingClassId,
+				constantPoolIndex);
+		return refs != null ? refs.get(0) : null;
+	}
+
+	/**
+	 * This method finds all class references or constant references loaded by an ldc -
+	 * instruction
+	 * 
+	 * @param referencingClassId The id of the class containing the ldc - instruction
+	 * @param constantPoolIndex The constant pool index of the referencing class
+	 * @return The found references ({@link ClassReference} or {@link ConstantReference}) in the
+	 *         order they were created or null, if no match
+	 */
+	public List<ConstantPoolReference> getLoadableReferences(int referencingClassId,
+			int constantPoolIndex) {
+		return aConstantTable.get(referencingClassId, constantPoolIndex);
+	}
+
+	/**
+	 * This method adds a reference to the index of items loadable by the ldc - instructions
+	 * 
+	 * @param classId The class id of the referencing class
+	 * @param constantPoolIndex The index into to constant pool of the referencing class
+	 * @param ref The class reference or constant reference
+	 */
+	private void addLoadableReference(int classId, int constantPoolIndex,
+			ConstantPoolReference ref) {
+		List<ConstantPoolReference> refs = aConstantTable.get(classId, constantPoolIndex);
+		if (refs == null) {
+			refs = new ArrayList<ConstantPoolReference>(1);
+			aConstantTable.put(classId, constantPoolIndex, refs);
+		}
+		refs.add(ref);
+	}
+
 	/**
 	 * This method cleans up the model and optimises the different references etc.
 	 */
@@ -1059,6 +1259,7 @@ public class LinkModel {
 
 		removeUnreferencedItems();
 		renumberAllClassIds();
+		rebuildIndexes();
 		optimizeMemberReferences();
 
 //		System.out.println("after rfcl cpix tgcl");
@@ -1078,37 +1279,48 @@ public class LinkModel {
 	 * array indexing in stead of searching.
 	 */
 	private void optimizeMemberReferences() {
-		aMemberReferenceTranslationMap = new TreeMap<MemberReference, MemberReference>(
-				new Comparator<MemberReference>() {
-					@Override
-					public int compare(MemberReference o1, MemberReference o2) {
-						// Identified by:
-						// ref.getClassId()
-						// ref.getConstantPoolIndex()
-						int diff = o1.getClassId() - o2.getClassId();
-						if (diff == 0) {
-							diff = o1.getConstantPoolIndex() - o2.getConstantPoolIndex();
-						}
-						return diff;
-					}
-				});
-		// For each class find set of unique method references:
-		for (int referencingClassId = 0; referencingClassId < getTotalClassCount(); referencingClassId++) {
-			MemberReference[] allRefs = getAllReferences(referencingClassId,
-					MemberReferenceTypeEnum.METHOD);
-			optimizeMemberReferencesForClass(referencingClassId, allRefs);
-
-			allRefs = getAllReferences(referencingClassId, MemberReferenceTypeEnum.FIELD);
-			optimizeMemberReferencesForClass(referencingClassId, allRefs);
+		int classCount = getTotalClassCount();
+		int typeCount = MemberReferenceTypeEnum.values().length;
+
+		// Bucket all references by (type, referencing class) in one pass; first count the
+		// references in each bucket, then place them. The references keep their order within each
+		// bucket:
+		int[] bucketStart = new int[typeCount * classCount + 1];
+		for (MemberReference ref : aMemberReferences) {
+			int bucket = getBucket(ref, classCount);
+			if (bucket >= 0) {
+				bucketStart[bucket + 1]++;
+			}
+		}
+		for (int bucket = 0; bucket < typeCount * classCount; bucket++) {
+			bucketStart[bucket + 1] += bucketStart[bucket];
+		}
+		MemberReference[] bucketed = new MemberReference[bucketStart[typeCount * classCount]];
+		int[] bucketEnd = new int[typeCount * classCount];
+		System.arraycopy(bucketStart, 0, bucketEnd, 0, bucketEnd.length);
+		for (MemberReference ref : aMemberReferences) {
+			int bucket = getBucket(ref, classCount);
+			if (bucket >= 0) {
+				bucketed[bucketEnd[bucket]++] = ref;
+			}
 		}
 
-		// for (MemberReference mr : aMemberReferenceTranslationMap.keySet()) {
-		// MemberReference un = aMemberReferenceTranslationMap.get(mr);
-		// System.out.println("" + mr.getClassId() + "." + mr.getConstantPoolIndex() + ":"
-		// + mr.getReferencedClassId() + "." + mr.getLinkId() + "->" + un.getClassId()
-		// + "." + un.getConstantPoolIndex() + ":" + un.getReferencedClassId() + "."
-		// + un.getLinkId());
-		// }
+		// For each class find set of unique method and field references:
+		aOptimizedReferences = new MemberReference[typeCount][classCount][];
+		Comparator<MemberReference> byConstantPoolIndex = new Comparator<MemberReference>() {
+			@Override
+			public int compare(MemberReference o1, MemberReference o2) {
+				return o1.getConstantPoolIndex() - o2.getConstantPoolIndex();
+			}
+		};
+		for (int type = 0; type < typeCount; type++) {
+			for (int referencingClassId = 0; referencingClassId < classCount; referencingClassId++) {
+				int bucket = type * classCount + referencingClassId;
+				Arrays.sort(bucketed, bucketStart[bucket], bucketEnd[bucket], byConstantPoolIndex);
+				aOptimizedReferences[type][referencingClassId] = optimizeMemberReferencesForClass(
+						referencingClassId, bucketed, bucketStart[bucket], bucketEnd[bucket]);
+			}
+		}
 
 		for (MethodInClass mic : getAllMethods()) {
 			if (mic.isReferenced() && mic.getType() != MethodInClass.Type.AbstractMethod) {
@@ -1117,38 +1329,64 @@ public class LinkModel {
 		}
 	}
 
-	private void optimizeMemberReferencesForClass(int referencingClassId, MemberReference[] allRefs) {
-		// Set of unique references (well, use a map so we can 'get()' them again):
-		TreeMap<MemberReference, MemberReference> uniqueCollection = new TreeMap<MemberReference, MemberReference>(
-				new Comparator<MemberReference>() {
-					@Override
-					public int compare(MemberReference o1, MemberReference o2) {
-						// 'Unique' references are identified by:
-						// getClassId(), getReferencedClassId(), getLinkId()
-						// If diff is zero, the two member references refer to the same member:
-						int diff = o1.getReferencedClassId() - o2.getReferencedClassId();
-						if (diff == 0) {
-							diff = o1.getLinkId() - o2.getLinkId();
-						}
-						return diff;
-					}
-				});
+	/**
+	 * This method finds the bucket of a member reference, when bucketing by (type, referencing
+	 * class id)
+	 * 
+	 * @param ref The member reference
+	 * @param classCount The number of classes
+	 * @return The bucket or -1, if the referencing class id is out of range
+	 */
+	private static int getBucket(MemberReference ref, int classCount) {
+		int bucket = -1;
+		if (ref.getClassId() >= 0 && ref.getClassId() < classCount) {
+			MemberReferenceTypeEnum type = ref.getSignature().isMethod() ? MemberReferenceTypeEnum.METHOD
+					: MemberReferenceTypeEnum.FIELD;
+			bucket = type.ordinal() * classCount + ref.getClassId();
+		}
+		return bucket;
+	}
 
-		int newConstantpoolIndex = 0;
+	/**
+	 * This method builds the unique member references of a single class and type
+	 * 
+	 * @param referencingClassId The class using the references
+	 * @param refs The references; the references used by the class are found in [start; end[
+	 *            sorted by constant pool index
+	 * @param start The first reference used by the class
+	 * @param end The reference after the last reference used by the class
+	 * @return The unique references. At position 'n' the MemberReference with constant pool index
+	 *         'n' is situated.
+	 */
+	private MemberReference[] optimizeMemberReferencesForClass(int referencingClassId,
+			MemberReference[] refs, int start, int end) {
+		// 'Unique' references are identified by (getReferencedClassId(), getLinkId()) - packed into
+		// a long:
+		HashMap<Long, MemberReference> uniqueCollection = new HashMap<Long, MemberReference>();
+		ArrayList<MemberReference> uniqueRefs = new ArrayList<MemberReference>();
 
 		// Build collection of unique references:
-		for (MemberReference ref : allRefs) {
-			MemberReference uniqueRef = uniqueCollection.get(ref);
+		for (int i = start; i < end; i++) {
+			MemberReference ref = refs[i];
+			if (i > start && ref.getConstantPoolIndex() == refs[i - 1].getConstantPoolIndex()) {
+				// Same constant pool entry registered twice; the first one is used:
+				continue;
+			}
+			Long key = Long.valueOf(((long) ref.getReferencedClassId() << 32)
+					| (ref.getLinkId() & 0xffffffffL));
+			MemberReference uniqueRef = uniqueCollection.get(key);
 			if (uniqueRef == null) {
 				uniqueRef = new MemberReference(ref.getReferencedClassName(), ref.getSignature(),
-						referencingClassId, newConstantpoolIndex);
+						referencingClassId, uniqueRefs.size());
 				uniqueRef.setLinkId(ref.getLinkId());
 				uniqueRef.setReferencedClassId(ref.getReferencedClassId());
-				uniqueCollection.put(uniqueRef, uniqueRef);
-				newConstantpoolIndex++;
+				uniqueCollection.put(key, uniqueRef);
+				uniqueRefs.add(uniqueRef);
 			}
-			aMemberReferenceTranslationMap.put(ref, uniqueRef);
+			aOptimizedReferenceTable.put(ref.getClassId(), ref.getConstantPoolIndex(), uniqueRef);
 		}
+
+		return uniqueRefs.toArray(new MemberReference[uniqueRefs.size()]);
 	}
 
 	/**
@@ -1157,11 +1395,9 @@ public class LinkModel {
 	 * @param mic The method for which the code shall be renumbered
 	 */
 	private void renumberReferentialInstructions(final MethodInClass mic) {
-		byte[] ba = mic.getCode();
-		if (ba.length > 0) {
+		if (mic.getCode().length > 0) {
 			ClassInSuite cis = getClassByName(mic.getMember().getClassName());
-			ba = AbstractInstruction.renumberMemberReferences(cis.getClassId(), ba);
-			mic.setCode(ba);
+			mic.getInstructions().renumberMemberReferences(this, cis.getClassId());
 		}
 	}
 
@@ -1176,25 +1412,7 @@ public class LinkModel {
 	 */
 	public MemberReference[] getOptimizedReferences(int referencingClassId,
 			MemberReferenceTypeEnum type) {
-		// Return values sorted by increasing constant pool reference:
-		TreeSet<MemberReference> set = new TreeSet<MemberReference>(
-				new Comparator<MemberReference>() {
-					@Override
-					public int compare(MemberReference o1, MemberReference o2) {
-						int diff = o1.getConstantPoolIndex() - o2.getConstantPoolIndex();
-						return diff;
-					}
-				});
-		// Hrmmm... this is candidate for optimization ;-|
-		for (MemberReference mr : aMemberReferenceTranslationMap.values()) {
-			boolean typeOk = (mr.getSignature().isMethod() && type == MemberReferenceTypeEnum.METHOD)
-					|| (!mr.getSignature().isMethod() && type == MemberReferenceTypeEnum.FIELD);
-			if (mr.getClassId() == referencingClassId && typeOk) {
-				set.add(mr);
-			}
-		}
-
-		return set.toArray(new MemberReference[set.size()]);
+		return aOptimizedReferences[type.ordinal()][referencingClassId].clone();
 	}
 
 	/**
@@ -1255,6 +1473,52 @@ public class LinkModel {
 //		}
 	}
 
+	/**
+	 * This method rebuilds all indexes from the collections of members, classes and references. To
+	 * be used when items have been removed or class ids have been renumbered.
+	 */
+	private void rebuildIndexes() {
+		aClassIdMap.clear();
+		for (ClassInSuite cis : aClasses.values()) {
+			aClassIdMap.putIfAbsent(cis.getClassId(), cis);
+		}
+
+		aClassMembers.clear();
+		aArgumentCountMap.clear();
+		for (MethodOrField mof : aMembers) {
+			indexMember(mof);
+		}
+
+		aMemberReferenceTable.clear();
+		for (MemberReference ref : aMemberReferences) {
+			aMemberReferenceTable.put(ref.getClassId(), ref.getConstantPoolIndex(), ref);
+		}
+
+		aClassReferenceTable.clear();
+		aConstantTable.clear();
+		for (ClassReference ref : aClassReferences) {
+			aClassReferenceTable.putIfAbsent(ref.getClassId(), ref.getConstantPoolIndex(), ref);
+			addLoadableReference(ref.getClassId(), ref.getConstantPoolIndex(), ref);
+		}
+		indexConstantReferences(aStringConstantReferences);
+		indexConstantReferences(aDoubleConstantReferences);
+		indexConstantReferences(aFloatConstantReferences);
+		indexConstantReferences(aIntegerConstantReferences);
+		indexConstantReferences(aLongConstantReferences);
+	}
+
+	/**
+	 * This method adds the supplied constant references to the index of items loadable by the ldc
+	 * - instructions
+	 * 
+	 * @param constantReferences The constant references to index
+	 */
+	private <T> void indexConstantReferences(List<ConstantReference<T>> constantReferences) {
+		for (ConstantReference<T> ref : constantReferences) {
+			addLoadableReference(ref.getClassId(), ref.getConstantPoolIndex(), ref);
+		}
+	}
+
 	/**
 	 * This method removes all unreferenced items.
 	 */
@@ -1324,6 +1588,17 @@ public class LinkModel {
 		}
 	}
 
+	/**
+	 * @return The number of member, class and constant references. After {@link #optimize()} only
+	 *         the references kept are counted.
+	 */
+	public int getReferenceCount() {
+		return aMemberReferences.size() + aClassReferences.size()
+				+ aIntegerConstantReferences.size() + aFloatConstantReferences.size()
+				+ aDoubleConstantReferences.size() + aStringConstantReferences.size()
+				+ aLongConstantReferences.size();
+	}
+
 	/**
 	 * @return the number of referenced classes (only valid after {@link #removeUnreferencedItems()}
 	 *         has been called
@@ -1340,23 +1615,13 @@ public class LinkModel {
 	 * @return
 	 */
 	public MemberReference getOptimizedReference(int referencingClassId, int constantPoolIndex) {
-		MemberReference retval = null;
-		for (MemberReference mr : aMemberReferenceTranslationMap.keySet()) {
-//			if (referencingClassId == 9 && constantPoolIndex == 6) {
-//				if (mr.getClassId() == 9) {
-//					System.out.println("mr = " + mr.format());
-//				}
-//			}
-			if (mr.getClassId() == referencingClassId
-					&& mr.getConstantPoolIndex() == constantPoolIndex) {
-				retval = aMemberReferenceTranslationMap.get(mr);
-			}
-		}
+		MemberReference retval = aOptimizedReferenceTable.get(referencingClassId,
+				constantPoolIndex);
 
 		if (retval == null) {
-			retval = new MemberReference("nn", new Signature("nn", "I"), 8, 9);
-			// NewLinker.exit("Cannot translate reference: " + referencingClassId + "."
-			// + constantPoolIndex, 1);
+			retval = new MemberReference("nn", createSignature("nn", "I"), 8, 9);
+			// throw new LinkException("Cannot translate reference: " + referencingClassId
+			// + "." + constantPoolIndex);
 			System.err.println("Cannot translate reference: " + referencingClassId + "."
 					+ constantPoolIndex);
 			new Exception().printStackTrace();
@@ -0,0 +1,121 @@
+package thinj.linkmodel;
+
+/**
+ * This class implements a map from long keys to values, e.g. from the packed symbols of a
+ * signature, see {@link SymbolTable}. The keys are kept as primitives, so no key object is
+ * allocated by a lookup. Uses open addressing; entries cannot be removed, but the map can be
+ * cleared.
+ * 
+ * @param <V> The type of the values
+ */
+class LongHashMap<V> {
+	// The initial number of slots; a power of 2:
+	private static final int INITIAL_CAPACITY = 64;
+
+	// The keys; a slot is free, if its value is null:
+	private long[] aKeys;
+
+	// The values:
+	private Object[] aValues;
+
+	// The number of entries:
+	private int aSize;
+
+	/**
+	 * Constructor
+	 */
+	LongHashMap() {
+		clear();
+	}
+
+	/**
+	 * This method returns the value of a key
+	 * 
+	 * @param key The key
+	 * @return The value or null, if no match
+	 */
+	@SuppressWarnings("unchecked")
+	V get(long key) {
+		int mask = aKeys.length - 1;
+		for (int slot = hash(key) & mask; aValues[slot] != null; slot = (slot + 1) & mask) {
+			if (aKeys[slot] == key) {
+				return (V) aValues[slot];
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * This method adds a value, if the key is not already present
+	 * 
+	 * @param key The key
+	 * @param value The value; not null
+	 * @return true, if the value was added; false, if the key was already present
+	 */
+	boolean putIfAbsent(long key, V value) {
+		int mask = aKeys.length - 1;
+		int slot = hash(key) & mask;
+		while (aValues[slot] != null) {
+			if (aKeys[slot] == key) {
+				return false;
+			}
+			slot = (slot + 1) & mask;
+		}
+		aKeys[slot] = key;
+		aValues[slot] = value;
+		aSize++;
+		if (2 * aSize > aKeys.length) {
+			grow();
+		}
+		return true;
+	}
+
+	/**
+	 * @return The number of entries
+	 */
+	int size() {
+		return aSize;
+	}
+
+	/**
+	 * This method removes all entries
+	 */
+	void clear() {
+		aKeys = new long[INITIAL_CAPACITY];
+		aValues = new Object[INITIAL_CAPACITY];
+		aSize = 0;
+	}
+
+	/**
+	 * This method doubles the number of slots and re-inserts all entries
+	 */
+	private void grow() {
+		long[] keys = aKeys;
+		Object[] values = aValues;
+		aKeys = new long[keys.length * 2];
+		aValues = new Object[values.length * 2];
+		int mask = aKeys.length - 1;
+		for (int i = 0; i < keys.length; i++) {
+			if (values[i] != null) {
+				int slot = hash(keys[i]) & mask;
+				while (aValues[slot] != null) {
+					slot = (slot + 1) & mask;
+				}
+				aKeys[slot] = keys[i];
+				aValues[slot] = values[i];
+			}
+		}
+	}
+
+	/**
+	 * This method spreads the bits of a key, as the low bits of a packed key are the symbol of a
+	 * descriptor only
+	 * 
+	 * @param key The key
+	 * @return The hash of the key
+	 */
+	private static int hash(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+}
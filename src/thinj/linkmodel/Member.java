@@ -10,16 +10,25 @@ public class Member implements Comparable<Member> {
 	private final String aClassName;
 	private final Signature aSignature;
 
+	// The symbols of the class name, the name and the descriptor packed into a long; identifies
+	// the member within the link model:
+	private final long aKey;
+
 	/**
-	 * Constructor
+	 * Constructor. Members are usually created by the link model, see
+	 * {@link LinkModel#createMember(String, String, String)}; a member created with another symbol
+	 * table never equals the members of the model.
 	 * 
+	 * @param symbols The symbol table of the link model
 	 * @param className The name of the class containing the member
 	 * @param memberName The name of the member
 	 * @param descriptor The descriptor of the member
 	 */
-	public Member(String className, String memberName, String descriptor) {
-		aClassName = ClassInSuite.getGlobalName(className);	
-		aSignature = new Signature(memberName, descriptor);
+	public Member(SymbolTable symbols, String className, String memberName, String descriptor) {
+		int classSymbol = symbols.intern(ClassInSuite.getGlobalName(className));
+		aClassName = symbols.getString(classSymbol);
+		aSignature = new Signature(symbols, memberName, descriptor);
+		aKey = SymbolTable.pack(classSymbol, 0, 0) | aSignature.getKey();
 	}
 
 	public String getClassName() {
@@ -58,11 +67,7 @@ public class Member implements Comparable<Member> {
 
 	@Override
 	public int hashCode() {
-		final int prime = 31;
-		int result = 1;
-		result = prime * result + ((aClassName == null) ? 0 : aClassName.hashCode());
-		result = prime * result + ((aSignature == null) ? 0 : aSignature.hashCode());
-		return result;
+		return (int) (aKey ^ (aKey >>> 32));
 	}
 
 	@Override
@@ -74,16 +79,6 @@ public class Member implements Comparable<Member> {
 		if (getClass() != obj.getClass())
 			return false;
 		Member other = (Member) obj;
-		if (aClassName == null) {
-			if (other.aClassName != null)
-				return false;
-		} else if (!aClassName.equals(other.aClassName))
-			return false;
-		if (aSignature == null) {
-			if (other.aSignature != null)
-				return false;
-		} else if (!aSignature.equals(other.aSignature))
-			return false;
-		return true;
+		return aKey == other.aKey;
 	}
 }
@@ -15,13 +15,14 @@ public class MemberReference extends ConstantPoolReference {
 	/**
 	 * Constructor
 	 * 
+	 * @param referencedClassName The interned global name of the referenced class
 	 * @param classId The id of the referencing class
 	 * @param constantPoolIndex The index into the constant pool of the referencing class
 	 */
-	public MemberReference(String referencedClassName, Signature signature, int classId,
+	MemberReference(String referencedClassName, Signature signature, int classId,
 			int constantPoolIndex) {
 		super(classId, constantPoolIndex);
-		aReferencedClassName = ClassInSuite.getGlobalName(referencedClassName);
+		aReferencedClassName = referencedClassName;
 		aSignature = signature;
 	}
 
@@ -1,9 +1,11 @@
 package thinj.linkmodel;
 
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 
+import thinj.instructions.InstructionList;
+
 /**
  * This class represents a method in a class
  * 
@@ -14,6 +16,8 @@ public class MethodInClass extends MethodOrField {
 	private final int aNumberofLocalVariables;
 	private final int aNumberOfArguments;
 	private byte[] aCode;
+	// The decoded code; null until asked for:
+	private InstructionList aInstructions;
 	private final Type aType;
 	private int aCodeOffset;
 	private final LinkedList<LineNumber> aLineNumbers;
@@ -21,10 +25,13 @@ public class MethodInClass extends MethodOrField {
 	private int aNativeIndex;
 	private final String[] aArgTypes;
 	private final String aReturnType;
-	private final HashSet<ClassReference> aClassDepencies;
-	private final HashSet<ClassTypeEnum> aSimpleArrayDependencies;
+	private final LinkedHashSet<ClassReference> aClassDepencies;
+	private final LinkedHashSet<ClassTypeEnum> aSimpleArrayDependencies;
+	private final LinkedHashSet<ClassReference> aInstantiatedClasses;
 	private final LinkedList<ExceptionHandler> aExceptionHandlers;
 	private LinkedList<ConstantReference<?>> aConstantReferences;
+	// The maximum height of the operand stack proven by the verifier; -1 if not verified:
+	private int aMaxStack;
 
 	/**
 	 * Constructor.
@@ -82,10 +89,12 @@ public class MethodInClass extends MethodOrField {
 		aReferences = new LinkedList<MemberReference>();
 		aNativeIndex = 0;
 		aArgTypes = argTypes;
-		aClassDepencies = new HashSet<ClassReference>();
-		aSimpleArrayDependencies = new HashSet<ClassTypeEnum>();
+		aClassDepencies = new LinkedHashSet<ClassReference>();
+		aSimpleArrayDependencies = new LinkedHashSet<ClassTypeEnum>();
+		aInstantiatedClasses = new LinkedHashSet<ClassReference>();
 		aExceptionHandlers = new LinkedList<ExceptionHandler>();
 		aConstantReferences = new LinkedList<ConstantReference<?>>();
+		aMaxStack = -1;
 	}
 
 	/**
@@ -101,6 +110,20 @@ public class MethodInClass extends MethodOrField {
 		return aCode;
 	}
 
+	/**
+	 * This method returns the decoded code. The code is decoded the first time this method is
+	 * called; after that the same instructions are returned. Instructions changed are changed in
+	 * the code returned by {@link #getCode()}.
+	 * 
+	 * @return The decoded code
+	 */
+	public InstructionList getInstructions() {
+		if (aInstructions == null) {
+			aInstructions = InstructionList.decode(aCode);
+		}
+		return aInstructions;
+	}
+
 	public int getNumberOfArguments() {
 		return aNumberOfArguments;
 	}
@@ -109,6 +132,24 @@ public class MethodInClass extends MethodOrField {
 		return aNumberofLocalVariables;
 	}
 
+	/**
+	 * @return The maximum height of the operand stack, in words; -1 if the code has not been
+	 *         verified
+	 */
+	public int getMaxStack() {
+		return aMaxStack;
+	}
+
+	/**
+	 * This method records the maximum height of the operand stack - to be used when the code has
+	 * been verified, see {@link thinj.optimizer.Verifier}
+	 * 
+	 * @param maxStack The maximum height of the operand stack, in words
+	 */
+	public void setMaxStack(int maxStack) {
+		aMaxStack = maxStack;
+	}
+
 	/**
 	 * This method sets the address of the code. The line number table will be relocated as well.
 	 * 
@@ -151,6 +192,17 @@ public class MethodInClass extends MethodOrField {
 		return aLineNumbers.toArray(new LineNumber[aLineNumbers.size()]);
 	}
 
+	/**
+	 * This method replaces all line number info - to be used when the code has been changed by
+	 * code optimisation, see {@link #setCode(byte[])}
+	 * 
+	 * @param lineNumbers The new line number info
+	 */
+	public void setLineNumberTable(List<LineNumber> lineNumbers) {
+		aLineNumbers.clear();
+		aLineNumbers.addAll(lineNumbers);
+	}
+
 	/**
 	 * This class pairs a source file line number with a program counter value
 	 * 
@@ -290,6 +342,25 @@ public class MethodInClass extends MethodOrField {
 		return aClassDepencies.toArray(new ClassReference[aClassDepencies.size()]);
 	}
 
+	/**
+	 * This method adds a class instantiated by this method (by 'new' or 'anewarray'). The class
+	 * shall also be added as a class dependency.
+	 * 
+	 * @param classReference The reference to the instantiated class
+	 */
+	public void addInstantiatedClass(ClassReference classReference) {
+		aInstantiatedClasses.add(classReference);
+	}
+
+	/**
+	 * This method returns all classes instantiated by this method
+	 * 
+	 * @return All classes instantiated by this method
+	 */
+	public ClassReference[] getAllInstantiatedClasses() {
+		return aInstantiatedClasses.toArray(new ClassReference[aInstantiatedClasses.size()]);
+	}
+
 	/**
 	 * This method adds a simple array type dependency to this method
 	 * 
@@ -353,5 +424,7 @@ public class MethodInClass extends MethodOrField {
 	 */
 	public void setCode(byte[] code) {
 		aCode = code;
+		aInstructions = null;
+		aMaxStack = -1;
 	}
 }
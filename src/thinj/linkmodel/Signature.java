@@ -13,15 +13,26 @@ public class Signature implements Comparable<Signature> {
 	private final String aDescriptor;
 	private final boolean aMethod;
 
+	// The symbols of the name and the descriptor packed into a long; identifies the signature
+	// within the link model:
+	private final long aKey;
+
 	/**
+	 * Constructor. Signatures are usually created by the link model, see
+	 * {@link LinkModel#createSignature(String, String)}; a signature created with another symbol
+	 * table never equals the signatures of the model.
 	 * 
+	 * @param symbols The symbol table of the link model
 	 * @param name The name of the method
 	 * @param descriptor
 	 */
-	public Signature(String name, String descriptor) {
-		aName = name;
-		aDescriptor = descriptor;
+	public Signature(SymbolTable symbols, String name, String descriptor) {
+		int nameSymbol = symbols.intern(name);
+		int descriptorSymbol = symbols.intern(descriptor);
+		aName = symbols.getString(nameSymbol);
+		aDescriptor = symbols.getString(descriptorSymbol);
 		aMethod = aDescriptor.charAt(0) == '(';
+		aKey = SymbolTable.pack(nameSymbol, descriptorSymbol);
 	}
 
 	public boolean isMethod() {
@@ -36,6 +47,16 @@ public class Signature implements Comparable<Signature> {
 		return aDescriptor;
 	}
 
+	/**
+	 * This method returns the key of this signature: The symbols of the name and the descriptor
+	 * packed into a long. Equal signatures of the same link model have equal keys
+	 * 
+	 * @return The key of this signature
+	 */
+	long getKey() {
+		return aKey;
+	}
+
 	@Override
 	public String toString() {
 		return "Signature [" + (aMethod ? "Method" : "Field") 
@@ -47,11 +68,7 @@ public class Signature implements Comparable<Signature> {
 
 	@Override
 	public int hashCode() {
-		final int prime = 31;
-		int result = 1;
-		result = prime * result + ((aName == null) ? 0 : aName.hashCode());
-		result = prime * result + ((aDescriptor == null) ? 0 : aDescriptor.hashCode());
-		return result;
+		return (int) (aKey ^ (aKey >>> 32));
 	}
 
 	@Override
@@ -63,17 +80,7 @@ public class Signature implements Comparable<Signature> {
 		if (getClass() != obj.getClass())
 			return false;
 		Signature other = (Signature) obj;
-		if (aName == null) {
-			if (other.aName != null)
-				return false;
-		} else if (!aName.equals(other.aName))
-			return false;
-		if (aDescriptor == null) {
-			if (other.aDescriptor != null)
-				return false;
-		} else if (!aDescriptor.equals(other.aDescriptor))
-			return false;
-		return true;
+		return aKey == other.aKey;
 	}
 
 	@Override
@@ -0,0 +1,108 @@
+package thinj.linkmodel;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import thinj.LinkException;
+
+/**
+ * This class interns the names and descriptors of a link model. Each distinct string is given a
+ * symbol - a small int - and is kept once only, so equal names in different classes share the same
+ * String instance.<br/>
+ * <br/>
+ * The symbols of a member are packed into a long, see {@link #pack(int, int)} and
+ * {@link #pack(int, int, int)}, which is used when hashing and comparing members and signatures.
+ * The symbols are only meaningful within the link model owning the table. Not thread safe.
+ */
+public class SymbolTable {
+	// The number of bits of a symbol in a packed key:
+	private static final int SYMBOL_BITS = 21;
+
+	// The largest number of symbols:
+	private static final int MAX_SYMBOLS = 1 << SYMBOL_BITS;
+
+	// The symbol of each string:
+	private final HashMap<String, Integer> aSymbols;
+
+	// The string of each symbol - indexed by symbol:
+	private final ArrayList<String> aStrings;
+
+	/**
+	 * Constructor
+	 */
+	public SymbolTable() {
+		aSymbols = new HashMap<String, Integer>();
+		aStrings = new ArrayList<String>();
+	}
+
+	/**
+	 * This method returns the symbol of a string; if the string has not been seen before, it is
+	 * given a new symbol
+	 * 
+	 * @param s The string
+	 * @return The symbol of 's'
+	 */
+	int intern(String s) {
+		Integer symbol = aSymbols.get(s);
+		if (symbol == null) {
+			if (aStrings.size() == MAX_SYMBOLS) {
+				throw new LinkException("Too many names and descriptors; max is " + MAX_SYMBOLS);
+			}
+			symbol = aStrings.size();
+			aSymbols.put(s, symbol);
+			aStrings.add(s);
+		}
+		return symbol;
+	}
+
+	/**
+	 * This method returns the symbol of a string without interning it
+	 * 
+	 * @param s The string
+	 * @return The symbol of 's' or -1, if 's' has not been interned
+	 */
+	int lookup(String s) {
+		Integer symbol = aSymbols.get(s);
+		return symbol != null ? symbol : -1;
+	}
+
+	/**
+	 * This method returns the string of a symbol
+	 * 
+	 * @param symbol The symbol
+	 * @return The interned string
+	 */
+	String getString(int symbol) {
+		return aStrings.get(symbol);
+	}
+
+	/**
+	 * @return The number of symbols
+	 */
+	int size() {
+		return aStrings.size();
+	}
+
+	/**
+	 * This method packs the symbols of a signature into a key
+	 * 
+	 * @param nameSymbol The symbol of the name
+	 * @param descriptorSymbol The symbol of the descriptor
+	 * @return The key of the signature
+	 */
+	static long pack(int nameSymbol, int descriptorSymbol) {
+		return ((long) nameSymbol << SYMBOL_BITS) | descriptorSymbol;
+	}
+
+	/**
+	 * This method packs the symbols of a member into a key
+	 * 
+	 * @param classSymbol The symbol of the class name
+	 * @param nameSymbol The symbol of the name
+	 * @param descriptorSymbol The symbol of the descriptor
+	 * @return The key of the member
+	 */
+	static long pack(int classSymbol, int nameSymbol, int descriptorSymbol) {
+		return ((long) classSymbol << (2 * SYMBOL_BITS)) | pack(nameSymbol, descriptorSymbol);
+	}
+}
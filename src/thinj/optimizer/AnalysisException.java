@@ -0,0 +1,21 @@
+package thinj.optimizer;
+
+import thinj.LinkException;
+
+/**
+ * This exception is thrown when the code of a method cannot be analysed: The control flow or the
+ * types of the values are inconsistent, e.g. a stack underflow or a branch into the middle of an
+ * instruction. The optimizer leaves such a method as it is.
+ */
+public class AnalysisException extends LinkException {
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param message Describes what is wrong
+	 */
+	public AnalysisException(String message) {
+		super(message);
+	}
+}
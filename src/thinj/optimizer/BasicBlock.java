@@ -0,0 +1,132 @@
+package thinj.optimizer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class holds a basic block of a {@link ControlFlowGraph}: A sequence of instructions that
+ * is only entered at the first instruction. A branch is always the last instruction of a block.
+ * If the last instruction is not an unconditional branch, a return or athrow, the block falls
+ * through to the next block of the graph.
+ */
+public class BasicBlock {
+	// The position of the block in the graph:
+	private int aIndex;
+
+	// The instructions; may be changed by the passes:
+	private final ArrayList<Instruction> aInstructions;
+
+	// The types at the entry of the block; null if the block is unreachable or not analysed:
+	private Frame aEntryFrame;
+
+	// The address of the first instruction; the original address until the graph is encoded:
+	private int aAddress;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param index The position of the block in the graph
+	 * @param address The address of the first instruction
+	 */
+	BasicBlock(int index, int address) {
+		aIndex = index;
+		aAddress = address;
+		aInstructions = new ArrayList<Instruction>();
+	}
+
+	/**
+	 * @return The position of the block in the graph
+	 */
+	public int getIndex() {
+		return aIndex;
+	}
+
+	/**
+	 * @param index The position of the block in the graph
+	 */
+	void setIndex(int index) {
+		aIndex = index;
+	}
+
+	/**
+	 * This method returns the instructions of the block. The list may be changed, but a branch
+	 * shall only be the last instruction.
+	 * 
+	 * @return The instructions of the block
+	 */
+	public List<Instruction> getInstructions() {
+		return aInstructions;
+	}
+
+	/**
+	 * @return The last instruction of the block; null if the block is empty
+	 */
+	public Instruction getLastInstruction() {
+		return aInstructions.isEmpty() ? null : aInstructions.get(aInstructions.size() - 1);
+	}
+
+	/**
+	 * @return true, if the block may continue with the next block of the graph
+	 */
+	public boolean fallsThrough() {
+		Instruction last = getLastInstruction();
+		return last == null || !Opcodes.isUnconditional(last.getOpcode());
+	}
+
+	/**
+	 * @return The block branched to by the last instruction; null, if the last instruction is not
+	 *         a branch
+	 */
+	public BasicBlock getBranchTarget() {
+		Instruction last = getLastInstruction();
+		return last != null ? last.getTarget() : null;
+	}
+
+	/**
+	 * This method returns the types at the entry of the block, as found by
+	 * {@link ControlFlowGraph#analyze(thinj.linkmodel.LinkModel)}
+	 * 
+	 * @return The types at the entry; null, if the block is unreachable
+	 */
+	public Frame getEntryFrame() {
+		return aEntryFrame;
+	}
+
+	/**
+	 * @param entryFrame The types at the entry of the block
+	 */
+	void setEntryFrame(Frame entryFrame) {
+		aEntryFrame = entryFrame;
+	}
+
+	/**
+	 * @return The address of the first instruction. Until the graph is encoded, this is the
+	 *         original address
+	 */
+	public int getAddress() {
+		return aAddress;
+	}
+
+	/**
+	 * @param address The address of the first instruction
+	 */
+	void setAddress(int address) {
+		aAddress = address;
+	}
+
+	/**
+	 * @return The number of bytes in the instructions of the block
+	 */
+	public int getSize() {
+		int size = 0;
+		for (Instruction ins : aInstructions) {
+			size += ins.getSize();
+		}
+		return size;
+	}
+
+	@Override
+	public String toString() {
+		return "B" + aIndex + "@" + aAddress + " " + aInstructions;
+	}
+}
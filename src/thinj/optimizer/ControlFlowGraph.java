@@ -0,0 +1,444 @@
+package thinj.optimizer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+import thinj.instructions.AbstractInstruction;
+import thinj.instructions.InstructionList;
+import thinj.linkmodel.ExceptionHandler;
+import thinj.linkmodel.LinkModel;
+import thinj.linkmodel.MethodInClass;
+
+/**
+ * This class holds the code of a single method as basic blocks, see {@link BasicBlock}. The
+ * blocks are kept in the order of the code; a block falling through continues with the next block
+ * in the list. The exception handlers protect whole blocks, see {@link ExceptionRange}.<br/>
+ * <br/>
+ * The graph is built from the code of a method before it is linked, i.e. while the addresses of
+ * the code, the line number table and the exception handlers are relative to the start of the
+ * method. The types of the local variables and of the stack at the entry of each block are found
+ * by {@link #analyze(LinkModel)}. When the passes have changed the graph, the code, the line
+ * number table and the exception handlers of the method are replaced by {@link #encode()}.
+ */
+public class ControlFlowGraph {
+	// The method:
+	private final MethodInClass aMethod;
+
+	// The id of the class containing the method:
+	private final int aClassId;
+
+	// The length of the code the graph was built from:
+	private final int aOriginalLength;
+
+	// The blocks in the order of the code:
+	private final ArrayList<BasicBlock> aBlocks;
+
+	// The exception handlers in the order they are searched:
+	private final LinkedList<ExceptionRange> aExceptionRanges;
+
+	// The largest number of stack slots used; found by analyze():
+	private int aMaxStack;
+
+	/**
+	 * Constructor. Builds the graph from the code of a method. If the code has a branch or an
+	 * exception handler outside the code or into the middle of an instruction, an
+	 * {@link AnalysisException} is thrown.
+	 * 
+	 * @param method The method; shall have code
+	 * @param classId The id of the class containing the method
+	 */
+	public ControlFlowGraph(MethodInClass method, int classId) {
+		aMethod = method;
+		aClassId = classId;
+		aBlocks = new ArrayList<BasicBlock>();
+		aExceptionRanges = new LinkedList<ExceptionRange>();
+
+		byte[] code = method.getCode();
+		InstructionList instructions = method.getInstructions();
+		aOriginalLength = code.length;
+
+		// Find the first instruction of each block:
+		boolean[] isInstruction = new boolean[code.length + 1];
+		for (int i = 0; i < instructions.size(); i++) {
+			isInstruction[instructions.getAddress(i)] = true;
+		}
+		isInstruction[code.length] = true;
+		boolean[] isLeader = new boolean[code.length + 1];
+		isLeader[0] = true;
+		for (int i = 0; i < instructions.size(); i++) {
+			int address = instructions.getAddress(i);
+			AbstractInstruction ins = instructions.get(i);
+			int next = address + ins.getSize();
+			if (Opcodes.isBranch(ins.getOpcode())) {
+				isLeader[checkAddress(isInstruction, getBranchTarget(code, address), false)] = true;
+			}
+			if (Opcodes.isBranch(ins.getOpcode()) || Opcodes.isUnconditional(ins.getOpcode())) {
+				isLeader[next] = true;
+			}
+		}
+		for (ExceptionHandler handler : method.getExceptionHandlers()) {
+			isLeader[checkAddress(isInstruction, handler.getStartPC(), false)] = true;
+			isLeader[checkAddress(isInstruction, handler.getEndPC(), true)] = true;
+			isLeader[checkAddress(isInstruction, handler.getExceptionHandlerPC(), false)] = true;
+		}
+
+		// Create the blocks:
+		BasicBlock[] blockAt = new BasicBlock[code.length + 1];
+		BasicBlock block = null;
+		for (int i = 0; i < instructions.size(); i++) {
+			int address = instructions.getAddress(i);
+			if (isLeader[address]) {
+				block = new BasicBlock(aBlocks.size(), address);
+				aBlocks.add(block);
+				blockAt[address] = block;
+			}
+			int size = instructions.get(i).getSize();
+			block.getInstructions().add(
+					new Instruction(code[address] & 0xff, Arrays.copyOfRange(code, address + 1,
+							address + size), address));
+		}
+
+		// Resolve the branches:
+		for (BasicBlock b : aBlocks) {
+			Instruction last = b.getLastInstruction();
+			if (last.isBranch()) {
+				last.setTarget(blockAt[getBranchTarget(code, last.getOriginalAddress())]);
+			}
+		}
+
+		for (ExceptionHandler handler : method.getExceptionHandlers()) {
+			aExceptionRanges.add(new ExceptionRange(blockAt[handler.getStartPC()],
+					blockAt[handler.getEndPC()], blockAt[handler.getExceptionHandlerPC()], handler
+							.getExceptionConstantPoolIndex(), handler.getClassId()));
+		}
+	}
+
+	/**
+	 * This method finds the target of a branch
+	 * 
+	 * @param code The code
+	 * @param address The address of the branch
+	 * @return The address branched to
+	 */
+	private static int getBranchTarget(byte[] code, int address) {
+		return address + (short) (((code[address + 1] & 0xff) << 8) | (code[address + 2] & 0xff));
+	}
+
+	/**
+	 * This method checks that an address is the address of an instruction
+	 * 
+	 * @param isInstruction Tells the addresses of the instructions
+	 * @param address The address
+	 * @param endAllowed If true, the address may be the end of the code
+	 * @return The address
+	 */
+	private static int checkAddress(boolean[] isInstruction, int address, boolean endAllowed) {
+		int length = isInstruction.length - 1;
+		if (address < 0 || address > length || (address == length && !endAllowed)
+				|| !isInstruction[address]) {
+			throw new AnalysisException("Not the address of an instruction: " + address);
+		}
+		return address;
+	}
+
+	/**
+	 * @return The method
+	 */
+	public MethodInClass getMethod() {
+		return aMethod;
+	}
+
+	/**
+	 * @return The id of the class containing the method
+	 */
+	public int getClassId() {
+		return aClassId;
+	}
+
+	/**
+	 * This method returns the blocks in the order of the code. Blocks shall be removed by
+	 * {@link #removeBlock(BasicBlock)}.
+	 * 
+	 * @return The blocks
+	 */
+	public List<BasicBlock> getBlocks() {
+		return aBlocks;
+	}
+
+	/**
+	 * @return The exception handlers in the order they are searched
+	 */
+	public List<ExceptionRange> getExceptionRanges() {
+		return aExceptionRanges;
+	}
+
+	/**
+	 * This method returns the exception handlers protecting a block
+	 * 
+	 * @param block The block
+	 * @return The handlers in the order they are searched
+	 */
+	public List<ExceptionRange> getHandlers(BasicBlock block) {
+		List<ExceptionRange> handlers = new ArrayList<ExceptionRange>();
+		for (ExceptionRange range : aExceptionRanges) {
+			if (range.covers(block)) {
+				handlers.add(range);
+			}
+		}
+		return handlers;
+	}
+
+	/**
+	 * @param block A block
+	 * @return The block after 'block' in the order of the code; null for the last block
+	 */
+	public BasicBlock getNextBlock(BasicBlock block) {
+		int next = block.getIndex() + 1;
+		return next < aBlocks.size() ? aBlocks.get(next) : null;
+	}
+
+	/**
+	 * This method returns the blocks that may follow a block, not counting exception handlers: The
+	 * target of the branch ending the block, and the next block if the block falls through
+	 * 
+	 * @param block The block
+	 * @return The blocks that may follow 'block'
+	 */
+	public List<BasicBlock> getSuccessors(BasicBlock block) {
+		List<BasicBlock> successors = new ArrayList<BasicBlock>(2);
+		BasicBlock next = getNextBlock(block);
+		if (block.fallsThrough() && next != null) {
+			successors.add(next);
+		}
+		BasicBlock target = block.getBranchTarget();
+		if (target != null && !successors.contains(target)) {
+			successors.add(target);
+		}
+		return successors;
+	}
+
+	/**
+	 * This method removes a block. No branch shall go to the block. The exception handlers are
+	 * adjusted: A range starting or ending at the block now starts or ends at the next block, and
+	 * a handler starting at the block is removed - as is a range protecting no blocks.
+	 * 
+	 * @param block The block to remove
+	 */
+	public void removeBlock(BasicBlock block) {
+		BasicBlock next = getNextBlock(block);
+		aBlocks.remove(block.getIndex());
+		for (Iterator<ExceptionRange> it = aExceptionRanges.iterator(); it.hasNext();) {
+			ExceptionRange range = it.next();
+			if (range.getStart() == block) {
+				range.setStart(next);
+			}
+			if (range.getEnd() == block) {
+				range.setEnd(next);
+			}
+			if (range.getHandler() == block || range.getStart() == null || range.isEmpty()) {
+				it.remove();
+			}
+		}
+		renumber();
+	}
+
+	/**
+	 * This method updates the index of each block
+	 */
+	private void renumber() {
+		for (int i = 0; i < aBlocks.size(); i++) {
+			aBlocks.get(i).setIndex(i);
+		}
+	}
+
+	/**
+	 * @return The number of bytes in the code
+	 */
+	public int getCodeSize() {
+		int size = 0;
+		for (BasicBlock block : aBlocks) {
+			size += block.getSize();
+		}
+		return size;
+	}
+
+	/**
+	 * @return The number of instructions in the code
+	 */
+	public int getInstructionCount() {
+		int count = 0;
+		for (BasicBlock block : aBlocks) {
+			count += block.getInstructions().size();
+		}
+		return count;
+	}
+
+	/**
+	 * @return The largest number of stack slots used, as found by {@link #analyze(LinkModel)}
+	 */
+	public int getMaxStack() {
+		return aMaxStack;
+	}
+
+	/**
+	 * This method finds the types at the entry of each reachable block by data flow analysis: The
+	 * instructions are executed on types from the entry of the method along all paths - including
+	 * the paths into the exception handlers - until the types at the entry of the blocks do not
+	 * change. The entry frame of an unreachable block is null. If the types are inconsistent or
+	 * the code falls off its end, an {@link AnalysisException} is thrown.
+	 * 
+	 * @param linkModel The link model holding the references of the code
+	 */
+	public void analyze(LinkModel linkModel) {
+		renumber();
+		FrameInterpreter interpreter = new FrameInterpreter(linkModel, aClassId, aMethod);
+		for (BasicBlock block : aBlocks) {
+			block.setEntryFrame(null);
+		}
+		aMaxStack = 0;
+
+		LinkedList<BasicBlock> workList = new LinkedList<BasicBlock>();
+		boolean[] queued = new boolean[aBlocks.size()];
+		mergeInto(aBlocks.get(0), interpreter.createEntryFrame(), workList, queued);
+		while (!workList.isEmpty()) {
+			BasicBlock block = workList.removeFirst();
+			queued[block.getIndex()] = false;
+
+			List<ExceptionRange> handlers = getHandlers(block);
+			Frame frame = block.getEntryFrame().copy();
+			// The entry of a handler holds the exception, even if its first instruction pops it:
+			aMaxStack = Math.max(aMaxStack, frame.getStackSize());
+			for (Instruction ins : block.getInstructions()) {
+				for (ExceptionRange range : handlers) {
+					mergeInto(range.getHandler(), frame.toHandlerFrame(), workList, queued);
+				}
+				try {
+					interpreter.execute(frame, ins);
+				} catch (AnalysisException e) {
+					throw new AnalysisException(e.getMessage() + " at " + ins + " in block "
+							+ block.getIndex());
+				}
+				aMaxStack = Math.max(aMaxStack, frame.getStackSize());
+			}
+
+			if (block.fallsThrough()) {
+				BasicBlock next = getNextBlock(block);
+				if (next == null) {
+					throw new AnalysisException("The code falls off its end");
+				}
+				mergeInto(next, frame, workList, queued);
+			}
+			BasicBlock target = block.getBranchTarget();
+			if (target != null) {
+				mergeInto(target, frame, workList, queued);
+			}
+		}
+	}
+
+	/**
+	 * This method merges a frame into the entry frame of a block. If the entry frame changes, the
+	 * block is queued for analysis.
+	 * 
+	 * @param block The block
+	 * @param frame The frame at the end of a predecessor
+	 * @param workList The blocks to analyse
+	 * @param queued Tells the blocks in 'workList' - index is the index of the block
+	 */
+	private void mergeInto(BasicBlock block, Frame frame, LinkedList<BasicBlock> workList,
+			boolean[] queued) {
+		boolean changed;
+		if (block.getEntryFrame() == null) {
+			block.setEntryFrame(frame.copy());
+			aMaxStack = Math.max(aMaxStack, frame.getStackSize());
+			changed = true;
+		} else {
+			changed = block.getEntryFrame().merge(frame);
+		}
+		if (changed && !queued[block.getIndex()]) {
+			queued[block.getIndex()] = true;
+			workList.addLast(block);
+		}
+	}
+
+	/**
+	 * This method replaces the code, the line number table and the exception handlers of the
+	 * method by those of the graph. The offsets of the branches are computed again. A line number
+	 * is moved to the first instruction kept at or after its original address; a line number with
+	 * no instructions left is removed. An exception handler protecting no instructions is removed.
+	 */
+	public void encode() {
+		int address = 0;
+		for (BasicBlock block : aBlocks) {
+			block.setAddress(address);
+			address += block.getSize();
+		}
+		byte[] code = new byte[address];
+
+		// The new address of each original address; an instruction removed maps to the next
+		// instruction kept:
+		int[] relocation = new int[aOriginalLength + 1];
+		Arrays.fill(relocation, -1);
+		address = 0;
+		for (BasicBlock block : aBlocks) {
+			for (Instruction ins : block.getInstructions()) {
+				ins.encode(code, address);
+				if (ins.getOriginalAddress() >= 0) {
+					relocation[ins.getOriginalAddress()] = address;
+				}
+				address += ins.getSize();
+			}
+		}
+		relocation[aOriginalLength] = code.length;
+		for (int i = aOriginalLength - 1; i >= 0; i--) {
+			if (relocation[i] < 0) {
+				relocation[i] = relocation[i + 1];
+			}
+		}
+
+		// Relocate the line number table. Where several lines start at the same address, the
+		// lines with no instructions left are removed:
+		MethodInClass.LineNumber[] lineNumbers = aMethod.getLineNumberTable();
+		int[] lastOriginal = new int[code.length + 1];
+		Arrays.fill(lastOriginal, -1);
+		for (MethodInClass.LineNumber ln : lineNumbers) {
+			if (ln.getStartPC() < aOriginalLength) {
+				int newAddress = relocation[ln.getStartPC()];
+				lastOriginal[newAddress] = Math.max(lastOriginal[newAddress], ln.getStartPC());
+			}
+		}
+		List<MethodInClass.LineNumber> relocated = new ArrayList<MethodInClass.LineNumber>();
+		for (MethodInClass.LineNumber ln : lineNumbers) {
+			int newAddress = ln.getStartPC() < aOriginalLength ? relocation[ln.getStartPC()]
+					: code.length;
+			if (newAddress < code.length && lastOriginal[newAddress] == ln.getStartPC()) {
+				relocated.add(new MethodInClass.LineNumber(ln.getLineNumber(), newAddress));
+			}
+		}
+
+		List<ExceptionHandler> handlers = aMethod.getExceptionHandlers();
+		handlers.clear();
+		for (ExceptionRange range : aExceptionRanges) {
+			int startPC = range.getStart().getAddress();
+			int endPC = range.getEnd() != null ? range.getEnd().getAddress() : code.length;
+			if (startPC < endPC) {
+				handlers.add(new ExceptionHandler(range.getClassId(), startPC, endPC, range
+						.getHandler().getAddress(), range.getExceptionConstantPoolIndex()));
+			}
+		}
+
+		aMethod.setCode(code);
+		aMethod.setLineNumberTable(relocated);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder(aMethod.getMember().format());
+		for (BasicBlock block : aBlocks) {
+			sb.append("\n  ").append(block);
+		}
+		return sb.toString();
+	}
+}
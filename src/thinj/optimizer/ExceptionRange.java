@@ -0,0 +1,110 @@
+package thinj.optimizer;
+
+/**
+ * This class holds an exception handler of a {@link ControlFlowGraph}. The range protected by the
+ * handler is a sequence of whole blocks, so the range follows the instructions when they are
+ * removed or inserted.
+ */
+public class ExceptionRange {
+	// The first block protected:
+	private BasicBlock aStart;
+
+	// The block after the last block protected; null if the range extends to the end of the code:
+	private BasicBlock aEnd;
+
+	// The first block of the handler:
+	private final BasicBlock aHandler;
+
+	// The constant pool index of the exception handled; 0 for any exception:
+	private final int aExceptionConstantPoolIndex;
+
+	// The id of the class containing the code:
+	private final int aClassId;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param start The first block protected
+	 * @param end The block after the last block protected; null if the range extends to the end
+	 *            of the code
+	 * @param handler The first block of the handler
+	 * @param exceptionConstantPoolIndex The constant pool index of the exception handled; 0 for
+	 *            any exception
+	 * @param classId The id of the class containing the code
+	 */
+	ExceptionRange(BasicBlock start, BasicBlock end, BasicBlock handler,
+			int exceptionConstantPoolIndex, int classId) {
+		aStart = start;
+		aEnd = end;
+		aHandler = handler;
+		aExceptionConstantPoolIndex = exceptionConstantPoolIndex;
+		aClassId = classId;
+	}
+
+	/**
+	 * @return The first block protected
+	 */
+	public BasicBlock getStart() {
+		return aStart;
+	}
+
+	/**
+	 * @param start The first block protected
+	 */
+	void setStart(BasicBlock start) {
+		aStart = start;
+	}
+
+	/**
+	 * @return The block after the last block protected; null if the range extends to the end of
+	 *         the code
+	 */
+	public BasicBlock getEnd() {
+		return aEnd;
+	}
+
+	/**
+	 * @param end The block after the last block protected; null if the range extends to the end
+	 *            of the code
+	 */
+	void setEnd(BasicBlock end) {
+		aEnd = end;
+	}
+
+	/**
+	 * @return The first block of the handler
+	 */
+	public BasicBlock getHandler() {
+		return aHandler;
+	}
+
+	/**
+	 * @return The constant pool index of the exception handled; 0 for any exception
+	 */
+	public int getExceptionConstantPoolIndex() {
+		return aExceptionConstantPoolIndex;
+	}
+
+	/**
+	 * @return The id of the class containing the code
+	 */
+	public int getClassId() {
+		return aClassId;
+	}
+
+	/**
+	 * @param block A block of the graph
+	 * @return true, if 'block' is protected by this handler
+	 */
+	public boolean covers(BasicBlock block) {
+		return block.getIndex() >= aStart.getIndex()
+				&& (aEnd == null || block.getIndex() < aEnd.getIndex());
+	}
+
+	/**
+	 * @return true, if no block is protected
+	 */
+	public boolean isEmpty() {
+		return aStart == aEnd;
+	}
+}
@@ -0,0 +1,230 @@
+package thinj.optimizer;
+
+import java.util.Arrays;
+
+/**
+ * This class holds the types of the local variables and of the operand stack at a point in the
+ * code of a method. A long or a double takes two slots, see {@link ValueType}.
+ */
+public class Frame {
+	// The types of the local variables - index is the local variable:
+	private final ValueType[] aLocals;
+
+	// The types on the operand stack - index 0 is the bottom of the stack:
+	private ValueType[] aStack;
+
+	// The number of slots on the operand stack:
+	private int aStackSize;
+
+	/**
+	 * Constructor. All local variables are unassigned, and the stack is empty.
+	 * 
+	 * @param maxLocals The number of local variables
+	 */
+	public Frame(int maxLocals) {
+		aLocals = new ValueType[maxLocals];
+		Arrays.fill(aLocals, ValueType.Top);
+		aStack = new ValueType[8];
+		aStackSize = 0;
+	}
+
+	/**
+	 * Copy constructor
+	 * 
+	 * @param frame The frame to copy
+	 */
+	private Frame(Frame frame) {
+		aLocals = frame.aLocals.clone();
+		aStack = frame.aStack.clone();
+		aStackSize = frame.aStackSize;
+	}
+
+	/**
+	 * @return A copy of this frame
+	 */
+	public Frame copy() {
+		return new Frame(this);
+	}
+
+	/**
+	 * This method returns the frame entering an exception handler from this frame: The same
+	 * local variables, and the exception on the stack
+	 * 
+	 * @return The frame entering an exception handler
+	 */
+	public Frame toHandlerFrame() {
+		Frame handlerFrame = copy();
+		handlerFrame.aStackSize = 0;
+		handlerFrame.push(ValueType.Reference);
+		return handlerFrame;
+	}
+
+	/**
+	 * @return The number of local variables
+	 */
+	public int getMaxLocals() {
+		return aLocals.length;
+	}
+
+	/**
+	 * This method returns the type of a local variable
+	 * 
+	 * @param index The local variable
+	 * @return The type; the second slot of a long or a double is {@link ValueType#Top}
+	 */
+	public ValueType getLocal(int index) {
+		checkLocal(index);
+		return aLocals[index];
+	}
+
+	/**
+	 * This method assigns a local variable. A long or a double assigns two local variables. A
+	 * long or a double partly overwritten becomes unusable.
+	 * 
+	 * @param index The local variable
+	 * @param type The type of the value assigned
+	 */
+	public void setLocal(int index, ValueType type) {
+		checkLocal(index);
+		if (type.isWide()) {
+			checkLocal(index + 1);
+		}
+		if (index > 0 && aLocals[index - 1].isWide()) {
+			aLocals[index - 1] = ValueType.Top;
+		}
+		aLocals[index] = type;
+		if (type.isWide()) {
+			aLocals[index + 1] = ValueType.Top;
+		}
+	}
+
+	/**
+	 * @param index A local variable
+	 */
+	private void checkLocal(int index) {
+		if (index < 0 || index >= aLocals.length) {
+			throw new AnalysisException("Local variable out of range: " + index);
+		}
+	}
+
+	/**
+	 * @return The number of slots on the operand stack
+	 */
+	public int getStackSize() {
+		return aStackSize;
+	}
+
+	/**
+	 * This method returns the type of a slot on the operand stack
+	 * 
+	 * @param depth The depth of the slot; 0 is the top of the stack
+	 * @return The type; the top slot of a long or a double is {@link ValueType#Top}
+	 */
+	public ValueType peek(int depth) {
+		if (depth >= aStackSize) {
+			throw new AnalysisException("Stack underflow");
+		}
+		return aStack[aStackSize - 1 - depth];
+	}
+
+	/**
+	 * This method pushes a value. A long or a double takes two slots.
+	 * 
+	 * @param type The type of the value
+	 */
+	public void push(ValueType type) {
+		pushSlot(type);
+		if (type.isWide()) {
+			pushSlot(ValueType.Top);
+		}
+	}
+
+	/**
+	 * This method pushes a single slot
+	 * 
+	 * @param type The type of the slot
+	 */
+	void pushSlot(ValueType type) {
+		if (aStackSize == aStack.length) {
+			aStack = Arrays.copyOf(aStack, aStack.length * 2);
+		}
+		aStack[aStackSize++] = type;
+	}
+
+	/**
+	 * This method pops a single slot
+	 * 
+	 * @return The type of the slot
+	 */
+	ValueType popSlot() {
+		if (aStackSize == 0) {
+			throw new AnalysisException("Stack underflow");
+		}
+		return aStack[--aStackSize];
+	}
+
+	/**
+	 * This method pops a value of a known type. A long or a double takes two slots.
+	 * 
+	 * @param type The type expected
+	 */
+	public void pop(ValueType type) {
+		if (type.isWide() && popSlot() != ValueType.Top) {
+			throw new AnalysisException("Expected " + type + " on the stack");
+		}
+		ValueType actual = popSlot();
+		if (actual != type) {
+			throw new AnalysisException("Expected " + type + " on the stack; found " + actual);
+		}
+	}
+
+	/**
+	 * This method pops a single slot value - not a long or a double
+	 * 
+	 * @return The type of the value
+	 */
+	public ValueType popCategory1() {
+		ValueType type = popSlot();
+		if (type == ValueType.Top) {
+			throw new AnalysisException("Expected a single slot value on the stack");
+		}
+		return type;
+	}
+
+	/**
+	 * This method merges another frame into this one, where two paths of the code join. A local
+	 * variable of different types becomes unusable; the stacks shall be the same.
+	 * 
+	 * @param other The other frame
+	 * @return true, if this frame was changed
+	 */
+	public boolean merge(Frame other) {
+		if (other.aLocals.length != aLocals.length) {
+			throw new AnalysisException("Different number of local variables");
+		}
+		if (other.aStackSize != aStackSize) {
+			throw new AnalysisException("Different stack heights where paths join: " + aStackSize
+					+ " and " + other.aStackSize);
+		}
+		for (int i = 0; i < aStackSize; i++) {
+			if (aStack[i] != other.aStack[i]) {
+				throw new AnalysisException("Different stack types where paths join: " + aStack[i]
+						+ " and " + other.aStack[i]);
+			}
+		}
+		boolean changed = false;
+		for (int i = 0; i < aLocals.length; i++) {
+			if (aLocals[i] != other.aLocals[i] && aLocals[i] != ValueType.Top) {
+				aLocals[i] = ValueType.Top;
+				changed = true;
+			}
+		}
+		return changed;
+	}
+
+	@Override
+	public String toString() {
+		return "Frame [locals=" + Arrays.toString(aLocals) + ", stack="
+				+ Arrays.toString(Arrays.copyOf(aStack, aStackSize)) + "]";
+	}
+}
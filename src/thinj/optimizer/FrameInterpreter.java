@@ -0,0 +1,509 @@
+package thinj.optimizer;
+
+import thinj.linkmodel.ClassReference;
+import thinj.linkmodel.ConstantPoolReference;
+import thinj.linkmodel.ConstantReference;
+import thinj.linkmodel.LinkModel;
+import thinj.linkmodel.MethodInClass;
+
+/**
+ * This class executes instructions on the types of a {@link Frame}: Each instruction pops the
+ * types it uses - checking that they are the types expected - and pushes the type of its result.
+ * The types of the constants, fields and methods referenced are looked up in the link model.
+ */
+public class FrameInterpreter {
+	// The link model holding the references of the code:
+	private final LinkModel aLinkModel;
+
+	// The id of the class containing the code:
+	private final int aClassId;
+
+	// The method containing the code:
+	private final MethodInClass aMethod;
+
+	// The type returned by the method; null for void:
+	private final ValueType aReturnType;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param linkModel The link model holding the references of the code
+	 * @param classId The id of the class containing the code
+	 * @param method The method containing the code
+	 */
+	public FrameInterpreter(LinkModel linkModel, int classId, MethodInClass method) {
+		aLinkModel = linkModel;
+		aClassId = classId;
+		aMethod = method;
+		String descriptor = method.getMember().getSignature().getDescriptor();
+		int returnIndex = descriptor.indexOf(')') + 1;
+		aReturnType = descriptor.charAt(returnIndex) == 'V' ? null : ValueType.fromDescriptor(
+				descriptor, returnIndex);
+	}
+
+	/**
+	 * This method creates the frame at the entry of the method: 'this' - unless static - and the
+	 * arguments are in the first local variables, and the stack is empty
+	 * 
+	 * @return The frame at the entry of the method
+	 */
+	public Frame createEntryFrame() {
+		Frame frame = new Frame(aMethod.getNumberOfLocalVariables());
+		int local = 0;
+		if (!aMethod.isStatic()) {
+			frame.setLocal(local++, ValueType.Reference);
+		}
+		String descriptor = aMethod.getMember().getSignature().getDescriptor();
+		int index = 1;
+		while (descriptor.charAt(index) != ')') {
+			ValueType type = ValueType.fromDescriptor(descriptor, index);
+			frame.setLocal(local, type);
+			local += type.isWide() ? 2 : 1;
+			index = ValueType.skipType(descriptor, index);
+		}
+		return frame;
+	}
+
+	/**
+	 * This method finds the local variable used by a load, a store or iinc
+	 * 
+	 * @param ins The instruction
+	 * @param shortForm The opcode of the form with the local variable as operand, e.g. iload
+	 * @param form0 The opcode of the form using local variable 0, e.g. iload_0
+	 * @return The local variable
+	 */
+	public static int getLocalIndex(Instruction ins, int shortForm, int form0) {
+		return ins.getOpcode() == shortForm ? ins.getUnsignedByte(0) : ins.getOpcode() - form0;
+	}
+
+	/**
+	 * This method executes an instruction on the types of a frame. If the frame holds other types
+	 * than expected by the instruction, an {@link AnalysisException} is thrown.
+	 * 
+	 * @param frame The frame before the instruction; is changed to the frame after it
+	 * @param ins The instruction
+	 */
+	public void execute(Frame frame, Instruction ins) {
+		int opcode = ins.getOpcode();
+		switch (opcode) {
+		case Opcodes.NOP:
+		case Opcodes.GOTO:
+			break;
+		case Opcodes.ACONST_NULL:
+		case Opcodes.NEW:
+			frame.push(ValueType.Reference);
+			break;
+		case Opcodes.ICONST_M1:
+		case Opcodes.ICONST_0:
+		case Opcodes.ICONST_1:
+		case Opcodes.ICONST_2:
+		case Opcodes.ICONST_3:
+		case Opcodes.ICONST_4:
+		case Opcodes.ICONST_5:
+		case Opcodes.BIPUSH:
+		case Opcodes.SIPUSH:
+			frame.push(ValueType.Int);
+			break;
+		case Opcodes.LCONST_0:
+		case Opcodes.LCONST_1:
+			frame.push(ValueType.Long);
+			break;
+		case Opcodes.LDC:
+			frame.push(getConstantType(ins.getUnsignedByte(0)));
+			break;
+		case Opcodes.LDC_W:
+		case Opcodes.LDC2_W:
+			frame.push(getConstantType(ins.getUnsignedShort(0)));
+			break;
+		case Opcodes.ILOAD:
+		case Opcodes.ILOAD_0:
+		case Opcodes.ILOAD_0 + 1:
+		case Opcodes.ILOAD_0 + 2:
+		case Opcodes.ILOAD_0 + 3:
+			load(frame, getLocalIndex(ins, Opcodes.ILOAD, Opcodes.ILOAD_0), ValueType.Int);
+			break;
+		case Opcodes.LLOAD:
+		case Opcodes.LLOAD_0:
+		case Opcodes.LLOAD_0 + 1:
+		case Opcodes.LLOAD_0 + 2:
+		case Opcodes.LLOAD_0 + 3:
+			load(frame, getLocalIndex(ins, Opcodes.LLOAD, Opcodes.LLOAD_0), ValueType.Long);
+			break;
+		case Opcodes.ALOAD:
+		case Opcodes.ALOAD_0:
+		case Opcodes.ALOAD_0 + 1:
+		case Opcodes.ALOAD_0 + 2:
+		case Opcodes.ALOAD_0 + 3:
+			load(frame, getLocalIndex(ins, Opcodes.ALOAD, Opcodes.ALOAD_0), ValueType.Reference);
+			break;
+		case Opcodes.IALOAD:
+		case Opcodes.BALOAD:
+		case Opcodes.CALOAD:
+			arrayLoad(frame, ValueType.Int);
+			break;
+		case Opcodes.LALOAD:
+			arrayLoad(frame, ValueType.Long);
+			break;
+		case Opcodes.AALOAD:
+			arrayLoad(frame, ValueType.Reference);
+			break;
+		case Opcodes.ISTORE:
+		case Opcodes.ISTORE_0:
+		case Opcodes.ISTORE_0 + 1:
+		case Opcodes.ISTORE_0 + 2:
+		case Opcodes.ISTORE_0 + 3:
+			store(frame, getLocalIndex(ins, Opcodes.ISTORE, Opcodes.ISTORE_0), ValueType.Int);
+			break;
+		case Opcodes.LSTORE:
+		case Opcodes.LSTORE_0:
+		case Opcodes.LSTORE_0 + 1:
+		case Opcodes.LSTORE_0 + 2:
+		case Opcodes.LSTORE_0 + 3:
+			store(frame, getLocalIndex(ins, Opcodes.LSTORE, Opcodes.LSTORE_0), ValueType.Long);
+			break;
+		case Opcodes.ASTORE:
+		case Opcodes.ASTORE_0:
+		case Opcodes.ASTORE_0 + 1:
+		case Opcodes.ASTORE_0 + 2:
+		case Opcodes.ASTORE_0 + 3:
+			store(frame, getLocalIndex(ins, Opcodes.ASTORE, Opcodes.ASTORE_0),
+					ValueType.Reference);
+			break;
+		case Opcodes.IASTORE:
+		case Opcodes.BASTORE:
+		case Opcodes.CASTORE:
+			arrayStore(frame, ValueType.Int);
+			break;
+		case Opcodes.LASTORE:
+			arrayStore(frame, ValueType.Long);
+			break;
+		case Opcodes.AASTORE:
+			arrayStore(frame, ValueType.Reference);
+			break;
+		case Opcodes.POP:
+			frame.popCategory1();
+			break;
+		case Opcodes.POP2:
+			frame.popSlot();
+			frame.popSlot();
+			break;
+		case Opcodes.DUP: {
+			ValueType value = frame.popCategory1();
+			frame.pushSlot(value);
+			frame.pushSlot(value);
+			break;
+		}
+		case Opcodes.DUP_X1: {
+			ValueType value1 = frame.popCategory1();
+			ValueType value2 = frame.popCategory1();
+			frame.pushSlot(value1);
+			frame.pushSlot(value2);
+			frame.pushSlot(value1);
+			break;
+		}
+		case Opcodes.DUP2: {
+			ValueType slot1 = frame.popSlot();
+			ValueType slot2 = frame.popSlot();
+			frame.pushSlot(slot2);
+			frame.pushSlot(slot1);
+			frame.pushSlot(slot2);
+			frame.pushSlot(slot1);
+			break;
+		}
+		case Opcodes.DUP2_X1: {
+			ValueType slot1 = frame.popSlot();
+			ValueType slot2 = frame.popSlot();
+			ValueType value3 = frame.popCategory1();
+			frame.pushSlot(slot2);
+			frame.pushSlot(slot1);
+			frame.pushSlot(value3);
+			frame.pushSlot(slot2);
+			frame.pushSlot(slot1);
+			break;
+		}
+		case Opcodes.IADD:
+		case Opcodes.ISUB:
+		case Opcodes.IMUL:
+		case Opcodes.IDIV:
+		case Opcodes.IREM:
+		case Opcodes.ISHL:
+		case Opcodes.ISHR:
+		case Opcodes.IAND:
+		case Opcodes.IOR:
+		case Opcodes.IXOR:
+			binary(frame, ValueType.Int, ValueType.Int);
+			break;
+		case Opcodes.LADD:
+		case Opcodes.LSUB:
+		case Opcodes.LMUL:
+		case Opcodes.LDIV:
+		case Opcodes.LREM:
+		case Opcodes.LAND:
+		case Opcodes.LOR:
+		case Opcodes.LXOR:
+			binary(frame, ValueType.Long, ValueType.Long);
+			break;
+		case Opcodes.LSHL:
+		case Opcodes.LSHR:
+		case Opcodes.LUSHR:
+			binary(frame, ValueType.Int, ValueType.Long);
+			break;
+		case Opcodes.INEG:
+		case Opcodes.I2B:
+		case Opcodes.I2C:
+			unary(frame, ValueType.Int, ValueType.Int);
+			break;
+		case Opcodes.LNEG:
+			unary(frame, ValueType.Long, ValueType.Long);
+			break;
+		case Opcodes.I2L:
+			unary(frame, ValueType.Int, ValueType.Long);
+			break;
+		case Opcodes.L2I:
+			unary(frame, ValueType.Long, ValueType.Int);
+			break;
+		case Opcodes.LCMP:
+			frame.pop(ValueType.Long);
+			frame.pop(ValueType.Long);
+			frame.push(ValueType.Int);
+			break;
+		case Opcodes.IINC:
+			load(frame, ins.getUnsignedByte(0), ValueType.Int);
+			frame.pop(ValueType.Int);
+			break;
+		case Opcodes.IFEQ:
+		case Opcodes.IFNE:
+		case Opcodes.IFLT:
+		case Opcodes.IFGE:
+		case Opcodes.IFGT:
+		case Opcodes.IFLE:
+			frame.pop(ValueType.Int);
+			break;
+		case Opcodes.IF_ICMPEQ:
+		case Opcodes.IF_ICMPNE:
+		case Opcodes.IF_ICMPLT:
+		case Opcodes.IF_ICMPGE:
+		case Opcodes.IF_ICMPGT:
+		case Opcodes.IF_ICMPLE:
+			frame.pop(ValueType.Int);
+			frame.pop(ValueType.Int);
+			break;
+		case Opcodes.IF_ACMPEQ:
+		case Opcodes.IF_ACMPNE:
+			frame.pop(ValueType.Reference);
+			frame.pop(ValueType.Reference);
+			break;
+		case Opcodes.IFNULL:
+		case Opcodes.IFNONNULL:
+		case Opcodes.ATHROW:
+		case Opcodes.MONITORENTER:
+		case Opcodes.MONITOREXIT:
+			frame.pop(ValueType.Reference);
+			break;
+		case Opcodes.IRETURN:
+			doReturn(frame, ValueType.Int);
+			break;
+		case Opcodes.LRETURN:
+			doReturn(frame, ValueType.Long);
+			break;
+		case Opcodes.ARETURN:
+			doReturn(frame, ValueType.Reference);
+			break;
+		case Opcodes.VRETURN:
+			doReturn(frame, null);
+			break;
+		case Opcodes.GETSTATIC:
+			frame.push(getFieldType(ins));
+			break;
+		case Opcodes.PUTSTATIC:
+			frame.pop(getFieldType(ins));
+			break;
+		case Opcodes.GETFIELD:
+			unary(frame, ValueType.Reference, getFieldType(ins));
+			break;
+		case Opcodes.PUTFIELD:
+			frame.pop(getFieldType(ins));
+			frame.pop(ValueType.Reference);
+			break;
+		case Opcodes.INVOKEVIRTUAL:
+		case Opcodes.INVOKESPECIAL:
+		case Opcodes.INVOKESTATIC:
+		case Opcodes.INVOKEINTERFACE:
+			invoke(frame, ins);
+			break;
+		case Opcodes.NEWARRAY:
+		case Opcodes.ANEWARRAY:
+			unary(frame, ValueType.Int, ValueType.Reference);
+			break;
+		case Opcodes.ARRAYLENGTH:
+		case Opcodes.INSTANCEOF:
+			unary(frame, ValueType.Reference, ValueType.Int);
+			break;
+		case Opcodes.CHECKCAST:
+			unary(frame, ValueType.Reference, ValueType.Reference);
+			break;
+		default:
+			throw new AnalysisException("Instruction not handled: " + ins);
+		}
+	}
+
+	/**
+	 * This method pushes the value of a local variable
+	 * 
+	 * @param frame The frame
+	 * @param index The local variable
+	 * @param type The type expected
+	 */
+	private static void load(Frame frame, int index, ValueType type) {
+		if (frame.getLocal(index) != type) {
+			throw new AnalysisException("Expected " + type + " in local variable " + index
+					+ "; found " + frame.getLocal(index));
+		}
+		frame.push(type);
+	}
+
+	/**
+	 * This method pops a value into a local variable
+	 * 
+	 * @param frame The frame
+	 * @param index The local variable
+	 * @param type The type expected
+	 */
+	private static void store(Frame frame, int index, ValueType type) {
+		frame.pop(type);
+		frame.setLocal(index, type);
+	}
+
+	/**
+	 * This method executes an array load: array, index -> element
+	 * 
+	 * @param frame The frame
+	 * @param elementType The type of the element
+	 */
+	private static void arrayLoad(Frame frame, ValueType elementType) {
+		frame.pop(ValueType.Int);
+		frame.pop(ValueType.Reference);
+		frame.push(elementType);
+	}
+
+	/**
+	 * This method executes an array store: array, index, element ->
+	 * 
+	 * @param frame The frame
+	 * @param elementType The type of the element
+	 */
+	private static void arrayStore(Frame frame, ValueType elementType) {
+		frame.pop(elementType);
+		frame.pop(ValueType.Int);
+		frame.pop(ValueType.Reference);
+	}
+
+	/**
+	 * This method executes an instruction with a single operand
+	 * 
+	 * @param frame The frame
+	 * @param operandType The type of the operand
+	 * @param resultType The type of the result
+	 */
+	private static void unary(Frame frame, ValueType operandType, ValueType resultType) {
+		frame.pop(operandType);
+		frame.push(resultType);
+	}
+
+	/**
+	 * This method executes an instruction with two operands of the same type as the result -
+	 * except for the shift count of a long shift
+	 * 
+	 * @param frame The frame
+	 * @param operand2Type The type of the operand on the top of the stack
+	 * @param resultType The type of the other operand and of the result
+	 */
+	private static void binary(Frame frame, ValueType operand2Type, ValueType resultType) {
+		frame.pop(operand2Type);
+		frame.pop(resultType);
+		frame.push(resultType);
+	}
+
+	/**
+	 * This method executes a return instruction
+	 * 
+	 * @param frame The frame
+	 * @param type The type returned by the instruction; null for void
+	 */
+	private void doReturn(Frame frame, ValueType type) {
+		if (type != aReturnType) {
+			throw new AnalysisException("Return of " + type + " from a method returning "
+					+ aReturnType);
+		}
+		if (type != null) {
+			frame.pop(type);
+		}
+	}
+
+	/**
+	 * This method executes an invoke instruction: The arguments - and the object, unless static -
+	 * are popped, and the result is pushed
+	 * 
+	 * @param frame The frame
+	 * @param ins The invoke instruction
+	 */
+	private void invoke(Frame frame, Instruction ins) {
+		String descriptor = aLinkModel.getMemberReference(aClassId, ins.getUnsignedShort(0))
+				.getSignature().getDescriptor();
+		int argumentCount = 0;
+		ValueType[] arguments = new ValueType[descriptor.length()];
+		int index = 1;
+		while (descriptor.charAt(index) != ')') {
+			arguments[argumentCount++] = ValueType.fromDescriptor(descriptor, index);
+			index = ValueType.skipType(descriptor, index);
+		}
+		for (int i = argumentCount - 1; i >= 0; i--) {
+			frame.pop(arguments[i]);
+		}
+		if (ins.getOpcode() != Opcodes.INVOKESTATIC) {
+			frame.pop(ValueType.Reference);
+		}
+		if (descriptor.charAt(index + 1) != 'V') {
+			frame.push(ValueType.fromDescriptor(descriptor, index + 1));
+		}
+	}
+
+	/**
+	 * This method finds the type of the field referenced by an instruction
+	 * 
+	 * @param ins The field instruction
+	 * @return The type of the field
+	 */
+	private ValueType getFieldType(Instruction ins) {
+		String descriptor = aLinkModel.getMemberReference(aClassId, ins.getUnsignedShort(0))
+				.getSignature().getDescriptor();
+		return ValueType.fromDescriptor(descriptor, 0);
+	}
+
+	/**
+	 * This method finds the type of the constant loaded by an ldc - instruction
+	 * 
+	 * @param constantPoolIndex The constant pool index of the constant
+	 * @return The type of the constant
+	 */
+	private ValueType getConstantType(int constantPoolIndex) {
+		ConstantPoolReference ref = aLinkModel.getLoadableReference(aClassId, constantPoolIndex);
+		if (ref instanceof ClassReference) {
+			return ValueType.Reference;
+		}
+		Object value = ref instanceof ConstantReference<?> ? ((ConstantReference<?>) ref)
+				.getValue() : null;
+		if (value instanceof Integer) {
+			return ValueType.Int;
+		} else if (value instanceof Float) {
+			return ValueType.Float;
+		} else if (value instanceof Long) {
+			return ValueType.Long;
+		} else if (value instanceof Double) {
+			return ValueType.Double;
+		} else if (value instanceof String) {
+			return ValueType.Reference;
+		}
+		throw new AnalysisException("Unable to resolve constant: " + constantPoolIndex);
+	}
+}
@@ -0,0 +1,208 @@
+package thinj.optimizer;
+
+import thinj.instructions.AbstractInstruction;
+
+/**
+ * This class holds a single instruction of a {@link ControlFlowGraph}. Unlike the instructions of
+ * {@link thinj.instructions.InstructionList}, an instance is not bound to the code of a method:
+ * The operands are a copy, and the target of a branch is a {@link BasicBlock} rather than an
+ * offset, so instructions may be removed, replaced and inserted without breaking the branches.
+ * The offsets of the branches are computed again by {@link ControlFlowGraph#encode()}.
+ */
+public class Instruction {
+	private final int aOpcode;
+
+	// The bytes following the opcode; for a branch the offset, which is not kept up to date:
+	private final byte[] aOperands;
+
+	// The target of a branch; null for any other instruction:
+	private BasicBlock aTarget;
+
+	// The address of the instruction in the code decoded; -1 for an instruction created by a
+	// pass. Is used for relocating the line number table:
+	private final int aOriginalAddress;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param opcode The VM SPEC'ed opcode
+	 * @param operands The bytes following the opcode. Is not copied.
+	 * @param originalAddress The address of the instruction in the code decoded; -1 for a new
+	 *            instruction
+	 */
+	Instruction(int opcode, byte[] operands, int originalAddress) {
+		if (AbstractInstruction.getLength(opcode) != operands.length + 1) {
+			throw new AnalysisException("Wrong number of operands for opcode: "
+					+ String.format("0x%02x", opcode));
+		}
+		aOpcode = opcode;
+		aOperands = operands;
+		aOriginalAddress = originalAddress;
+	}
+
+	/**
+	 * Constructor for a new instruction
+	 * 
+	 * @param opcode The VM SPEC'ed opcode
+	 * @param operands The bytes following the opcode. Is not copied.
+	 */
+	public Instruction(int opcode, byte... operands) {
+		this(opcode, operands, -1);
+	}
+
+	/**
+	 * Constructor for an instruction replacing another. The new instruction takes over the place
+	 * of the replaced one in the line number table.
+	 * 
+	 * @param opcode The VM SPEC'ed opcode
+	 * @param replaced The instruction replaced
+	 * @param operands The bytes following the opcode. Is not copied.
+	 */
+	public Instruction(int opcode, Instruction replaced, byte... operands) {
+		this(opcode, operands, replaced.aOriginalAddress);
+	}
+
+	/**
+	 * Constructor for a branch
+	 * 
+	 * @param opcode The VM SPEC'ed opcode of the branch
+	 * @param target The target of the branch
+	 * @param replaced The instruction replaced by the branch; null, if the branch is not
+	 *            replacing any instruction
+	 */
+	public Instruction(int opcode, BasicBlock target, Instruction replaced) {
+		this(opcode, new byte[2], replaced != null ? replaced.aOriginalAddress : -1);
+		if (!Opcodes.isBranch(opcode)) {
+			throw new AnalysisException("Not a branch: " + String.format("0x%02x", opcode));
+		}
+		aTarget = target;
+	}
+
+	/**
+	 * @return The VM SPEC'ed opcode
+	 */
+	public int getOpcode() {
+		return aOpcode;
+	}
+
+	/**
+	 * @return The number of bytes in this instruction - including the opcode
+	 */
+	public int getSize() {
+		return aOperands.length + 1;
+	}
+
+	/**
+	 * This method returns an operand byte
+	 * 
+	 * @param index The index of the byte after the opcode; 0 is the first
+	 * @return The byte, unsigned
+	 */
+	public int getUnsignedByte(int index) {
+		return aOperands[index] & 0xff;
+	}
+
+	/**
+	 * This method returns an operand byte
+	 * 
+	 * @param index The index of the byte after the opcode; 0 is the first
+	 * @return The byte, signed
+	 */
+	public int getSignedByte(int index) {
+		return aOperands[index];
+	}
+
+	/**
+	 * This method returns two operand bytes, e.g. a constant pool index
+	 * 
+	 * @param index The index of the most significant byte after the opcode; 0 is the first
+	 * @return The two bytes as an unsigned value
+	 */
+	public int getUnsignedShort(int index) {
+		return (getUnsignedByte(index) << 8) | getUnsignedByte(index + 1);
+	}
+
+	/**
+	 * This method returns two operand bytes, e.g. the operand of sipush
+	 * 
+	 * @param index The index of the most significant byte after the opcode; 0 is the first
+	 * @return The two bytes as a signed value
+	 */
+	public int getSignedShort(int index) {
+		return (short) getUnsignedShort(index);
+	}
+
+	/**
+	 * @return A copy of the bytes following the opcode
+	 */
+	public byte[] getOperands() {
+		return aOperands.clone();
+	}
+
+	/**
+	 * @return true, if this instruction is a conditional or unconditional branch
+	 */
+	public boolean isBranch() {
+		return Opcodes.isBranch(aOpcode);
+	}
+
+	/**
+	 * @return The target of this branch; null if this instruction is not a branch
+	 */
+	public BasicBlock getTarget() {
+		return aTarget;
+	}
+
+	/**
+	 * This method changes the target of this branch
+	 * 
+	 * @param target The new target
+	 */
+	public void setTarget(BasicBlock target) {
+		if (!isBranch()) {
+			throw new AnalysisException("Not a branch: " + this);
+		}
+		aTarget = target;
+	}
+
+	/**
+	 * @return The address of the instruction in the code decoded; -1 for an instruction created
+	 *         by a pass
+	 */
+	public int getOriginalAddress() {
+		return aOriginalAddress;
+	}
+
+	/**
+	 * This method writes this instruction into some code
+	 * 
+	 * @param code The code
+	 * @param address The address of this instruction in 'code'
+	 */
+	void encode(byte[] code, int address) {
+		code[address] = (byte) aOpcode;
+		if (aTarget != null) {
+			int offset = aTarget.getAddress() - address;
+			if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) {
+				throw new AnalysisException("Branch offset out of range: " + offset);
+			}
+			code[address + 1] = (byte) (offset >> 8);
+			code[address + 2] = (byte) offset;
+		} else {
+			System.arraycopy(aOperands, 0, code, address + 1, aOperands.length);
+		}
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder(AbstractInstruction.lookup(aOpcode).getShortForm());
+		if (aTarget != null) {
+			sb.append(" B").append(aTarget.getIndex());
+		} else {
+			for (byte operand : aOperands) {
+				sb.append(' ').append(operand & 0xff);
+			}
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,143 @@
+package thinj.optimizer;
+
+/**
+ * This class holds the VM SPEC'ed opcodes of the instructions handled by the optimizer, see the
+ * opcode table of {@link thinj.instructions.AbstractInstruction}.
+ */
+public final class Opcodes {
+	public static final int NOP = 0x00;
+	public static final int ACONST_NULL = 0x01;
+	public static final int ICONST_M1 = 0x02;
+	public static final int ICONST_0 = 0x03;
+	public static final int ICONST_1 = 0x04;
+	public static final int ICONST_2 = 0x05;
+	public static final int ICONST_3 = 0x06;
+	public static final int ICONST_4 = 0x07;
+	public static final int ICONST_5 = 0x08;
+	public static final int LCONST_0 = 0x09;
+	public static final int LCONST_1 = 0x0a;
+	public static final int BIPUSH = 0x10;
+	public static final int SIPUSH = 0x11;
+	public static final int LDC = 0x12;
+	public static final int LDC_W = 0x13;
+	public static final int LDC2_W = 0x14;
+	public static final int ILOAD = 0x15;
+	public static final int LLOAD = 0x16;
+	public static final int ALOAD = 0x19;
+	public static final int ILOAD_0 = 0x1a;
+	public static final int LLOAD_0 = 0x1e;
+	public static final int ALOAD_0 = 0x2a;
+	public static final int IALOAD = 0x2e;
+	public static final int LALOAD = 0x2f;
+	public static final int AALOAD = 0x32;
+	public static final int BALOAD = 0x33;
+	public static final int CALOAD = 0x34;
+	public static final int ISTORE = 0x36;
+	public static final int LSTORE = 0x37;
+	public static final int ASTORE = 0x3a;
+	public static final int ISTORE_0 = 0x3b;
+	public static final int LSTORE_0 = 0x3f;
+	public static final int ASTORE_0 = 0x4b;
+	public static final int IASTORE = 0x4f;
+	public static final int LASTORE = 0x50;
+	public static final int AASTORE = 0x53;
+	public static final int BASTORE = 0x54;
+	public static final int CASTORE = 0x55;
+	public static final int POP = 0x57;
+	public static final int POP2 = 0x58;
+	public static final int DUP = 0x59;
+	public static final int DUP_X1 = 0x5a;
+	public static final int DUP2 = 0x5c;
+	public static final int DUP2_X1 = 0x5d;
+	public static final int IADD = 0x60;
+	public static final int LADD = 0x61;
+	public static final int ISUB = 0x64;
+	public static final int LSUB = 0x65;
+	public static final int IMUL = 0x68;
+	public static final int LMUL = 0x69;
+	public static final int IDIV = 0x6c;
+	public static final int LDIV = 0x6d;
+	public static final int IREM = 0x70;
+	public static final int LREM = 0x71;
+	public static final int INEG = 0x74;
+	public static final int LNEG = 0x75;
+	public static final int ISHL = 0x78;
+	public static final int LSHL = 0x79;
+	public static final int ISHR = 0x7a;
+	public static final int LSHR = 0x7b;
+	public static final int LUSHR = 0x7d;
+	public static final int IAND = 0x7e;
+	public static final int LAND = 0x7f;
+	public static final int IOR = 0x80;
+	public static final int LOR = 0x81;
+	public static final int IXOR = 0x82;
+	public static final int LXOR = 0x83;
+	public static final int IINC = 0x84;
+	public static final int I2L = 0x85;
+	public static final int L2I = 0x88;
+	public static final int I2B = 0x91;
+	public static final int I2C = 0x92;
+	public static final int LCMP = 0x94;
+	public static final int IFEQ = 0x99;
+	public static final int IFNE = 0x9a;
+	public static final int IFLT = 0x9b;
+	public static final int IFGE = 0x9c;
+	public static final int IFGT = 0x9d;
+	public static final int IFLE = 0x9e;
+	public static final int IF_ICMPEQ = 0x9f;
+	public static final int IF_ICMPNE = 0xa0;
+	public static final int IF_ICMPLT = 0xa1;
+	public static final int IF_ICMPGE = 0xa2;
+	public static final int IF_ICMPGT = 0xa3;
+	public static final int IF_ICMPLE = 0xa4;
+	public static final int IF_ACMPEQ = 0xa5;
+	public static final int IF_ACMPNE = 0xa6;
+	public static final int GOTO = 0xa7;
+	public static final int IRETURN = 0xac;
+	public static final int LRETURN = 0xad;
+	public static final int ARETURN = 0xb0;
+	public static final int VRETURN = 0xb1;
+	public static final int GETSTATIC = 0xb2;
+	public static final int PUTSTATIC = 0xb3;
+	public static final int GETFIELD = 0xb4;
+	public static final int PUTFIELD = 0xb5;
+	public static final int INVOKEVIRTUAL = 0xb6;
+	public static final int INVOKESPECIAL = 0xb7;
+	public static final int INVOKESTATIC = 0xb8;
+	public static final int INVOKEINTERFACE = 0xb9;
+	public static final int NEW = 0xbb;
+	public static final int NEWARRAY = 0xbc;
+	public static final int ANEWARRAY = 0xbd;
+	public static final int ARRAYLENGTH = 0xbe;
+	public static final int ATHROW = 0xbf;
+	public static final int CHECKCAST = 0xc0;
+	public static final int INSTANCEOF = 0xc1;
+	public static final int MONITORENTER = 0xc2;
+	public static final int MONITOREXIT = 0xc3;
+	public static final int IFNULL = 0xc6;
+	public static final int IFNONNULL = 0xc7;
+
+	/**
+	 * No instances
+	 */
+	private Opcodes() {
+	}
+
+	/**
+	 * @param opcode An opcode
+	 * @return true, if the instruction is a conditional or unconditional branch with a two-byte
+	 *         offset
+	 */
+	public static boolean isBranch(int opcode) {
+		return (opcode >= IFEQ && opcode <= GOTO) || opcode == IFNULL || opcode == IFNONNULL;
+	}
+
+	/**
+	 * @param opcode An opcode
+	 * @return true, if the instruction never continues with the next instruction: goto, the
+	 *         return instructions and athrow
+	 */
+	public static boolean isUnconditional(int opcode) {
+		return opcode == GOTO || (opcode >= IRETURN && opcode <= VRETURN) || opcode == ATHROW;
+	}
+}
@@ -0,0 +1,24 @@
+package thinj.optimizer;
+
+/**
+ * This interface is implemented by the passes run by the {@link PassManager}. A pass optimises
+ * the code of one method at a time.
+ */
+public interface OptimizationPass {
+	/**
+	 * @return The name of the pass, as given in the option 'passes'
+	 */
+	String getName();
+
+	/**
+	 * This method optimises the code of a single method. When called, the types at the entry of
+	 * each block are up to date, see {@link BasicBlock#getEntryFrame()}. A pass may remove,
+	 * replace and insert instructions and remove blocks, but shall keep the order of the
+	 * instructions kept. The bytes and instructions saved are counted by the pass manager.
+	 * 
+	 * @param cfg The code of the method
+	 * @param statistics Receives the counts of the pass, e.g. of each pattern found
+	 * @return true, if the code was changed
+	 */
+	boolean optimize(ControlFlowGraph cfg, PassStatistics statistics);
+}
@@ -0,0 +1,159 @@
+package thinj.optimizer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import thinj.LinkException;
+import thinj.linkmodel.LinkModel;
+import thinj.linkmodel.MethodInClass;
+
+/**
+ * This class runs an ordered list of optimization passes over the code of each referenced method.
+ * The code of a method is converted to a {@link ControlFlowGraph} and analysed once; the passes
+ * are run in order, each on the result of the previous one, and the graph is analysed again after
+ * each pass changing it. Finally the code, the line number table and the exception handlers of
+ * the method are replaced, if any pass changed the code.<br/>
+ * <br/>
+ * The passes are run after the reachability analysis, while the addresses of the code are still
+ * relative to each method, i.e. before {@link LinkModel#link()}. A method that cannot be analysed
+ * is left as it is.
+ */
+public class PassManager {
+	// The link model holding the methods:
+	private final LinkModel aLinkModel;
+
+	// The passes in the order they are run:
+	private final List<OptimizationPass> aPasses;
+
+	// The counts of each pass - index is the index of the pass:
+	private final List<PassStatistics> aStatistics;
+
+	// The number of methods changed by any pass:
+	private int aMethodsChanged;
+
+	// The number of methods that could not be analysed:
+	private int aMethodsSkipped;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param linkModel The link model holding the methods
+	 * @param passNames The names of the passes in the order they are run, see
+	 *            {@link #createPass(String)}
+	 * @throws LinkException If a pass is unknown
+	 */
+	public PassManager(LinkModel linkModel, String[] passNames) throws LinkException {
+		aLinkModel = linkModel;
+		aPasses = new ArrayList<OptimizationPass>();
+		aStatistics = new ArrayList<PassStatistics>();
+		for (String name : passNames) {
+			addPass(createPass(name));
+		}
+	}
+
+	/**
+	 * This method creates a pass from its name
+	 * 
+	 * @param name The name of the pass: 'unreachable' or 'peephole'
+	 * @return The pass
+	 * @throws LinkException If the pass is unknown
+	 */
+	public static OptimizationPass createPass(String name) throws LinkException {
+		if (name.equals(UnreachableCodePass.NAME)) {
+			return new UnreachableCodePass();
+		} else if (name.equals(PeepholePass.NAME)) {
+			return new PeepholePass();
+		}
+		throw new LinkException("Unknown optimization pass: " + name);
+	}
+
+	/**
+	 * This method adds a pass after the passes already added
+	 * 
+	 * @param pass The pass to add
+	 */
+	public void addPass(OptimizationPass pass) {
+		aPasses.add(pass);
+		aStatistics.add(new PassStatistics(pass.getName()));
+	}
+
+	/**
+	 * This method runs the passes over all referenced methods having code. The init method
+	 * generated by the linker is left out: It invokes main() without pushing the arguments, so it
+	 * does not type check.
+	 */
+	public void run() {
+		for (MethodInClass mic : aLinkModel.getAllMethods()) {
+			if (mic.isReferenced() && mic.getCode().length > 0
+					&& mic.getType() != MethodInClass.Type.AbstractMethod
+					&& mic.getType() != MethodInClass.Type.NativeMethod
+					&& !mic.getMember().getSignature().getName().equals("<jvminit>")) {
+				optimize(mic);
+			}
+		}
+	}
+
+	/**
+	 * This method runs the passes over a single method
+	 * 
+	 * @param mic The method
+	 */
+	private void optimize(MethodInClass mic) {
+		ControlFlowGraph cfg;
+		try {
+			cfg = new ControlFlowGraph(mic, aLinkModel.getClassIdByName(mic.getMember()
+					.getClassName()));
+			cfg.analyze(aLinkModel);
+		} catch (AnalysisException e) {
+			System.err.println("Not optimized: " + mic.getMember().format() + ": "
+					+ e.getMessage());
+			aMethodsSkipped++;
+			return;
+		}
+
+		boolean changed = false;
+		for (int i = 0; i < aPasses.size(); i++) {
+			OptimizationPass pass = aPasses.get(i);
+			int size = cfg.getCodeSize();
+			int count = cfg.getInstructionCount();
+			if (pass.optimize(cfg, aStatistics.get(i))) {
+				aStatistics.get(i).methodChanged(size - cfg.getCodeSize(), count
+						- cfg.getInstructionCount());
+				changed = true;
+				try {
+					cfg.analyze(aLinkModel);
+				} catch (AnalysisException e) {
+					throw new LinkException("Internal error: Pass " + pass.getName()
+							+ " broke the code of " + mic.getMember().format() + ": "
+							+ e.getMessage() + "\n" + cfg, e);
+				}
+			}
+		}
+
+		if (changed) {
+			cfg.encode();
+			aMethodsChanged++;
+		}
+	}
+
+	/**
+	 * @return The counts of each pass, in the order the passes are run
+	 */
+	public List<PassStatistics> getStatistics() {
+		return aStatistics;
+	}
+
+	/**
+	 * @return The number of methods changed by any pass
+	 */
+	public int getMethodsChanged() {
+		return aMethodsChanged;
+	}
+
+	/**
+	 * @return The number of methods that could not be analysed, and hence were not optimized
+	 */
+	public int getMethodsSkipped() {
+		return aMethodsSkipped;
+	}
+}
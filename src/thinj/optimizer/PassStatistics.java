@@ -0,0 +1,104 @@
+package thinj.optimizer;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * This class holds the counts of a single optimization pass over all methods: The methods
+ * changed, the bytes and instructions saved, and any counts of the pass itself.
+ */
+public class PassStatistics {
+	// The name of the pass:
+	private final String aName;
+
+	// The number of methods changed by the pass:
+	private int aMethodsChanged;
+
+	// The number of bytes saved by the pass:
+	private long aBytesSaved;
+
+	// The number of instructions saved by the pass:
+	private long aInstructionsSaved;
+
+	// The counts of the pass itself - key is the name of the item counted:
+	private final LinkedHashMap<String, Long> aCounts;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param name The name of the pass
+	 */
+	public PassStatistics(String name) {
+		aName = name;
+		aCounts = new LinkedHashMap<String, Long>();
+	}
+
+	/**
+	 * @return The name of the pass
+	 */
+	public String getName() {
+		return aName;
+	}
+
+	/**
+	 * This method registers that the pass has changed a method
+	 * 
+	 * @param bytesSaved The number of bytes saved
+	 * @param instructionsSaved The number of instructions saved
+	 */
+	void methodChanged(int bytesSaved, int instructionsSaved) {
+		aMethodsChanged++;
+		aBytesSaved += bytesSaved;
+		aInstructionsSaved += instructionsSaved;
+	}
+
+	/**
+	 * This method adds one to a count of the pass
+	 * 
+	 * @param name The name of the item counted, e.g. a pattern
+	 */
+	public void count(String name) {
+		Long count = aCounts.get(name);
+		aCounts.put(name, count == null ? 1 : count + 1);
+	}
+
+	/**
+	 * @return The number of methods changed by the pass
+	 */
+	public int getMethodsChanged() {
+		return aMethodsChanged;
+	}
+
+	/**
+	 * @return The number of bytes saved by the pass
+	 */
+	public long getBytesSaved() {
+		return aBytesSaved;
+	}
+
+	/**
+	 * @return The number of instructions saved by the pass
+	 */
+	public long getInstructionsSaved() {
+		return aInstructionsSaved;
+	}
+
+	/**
+	 * @return The counts of the pass itself - key is the name of the item counted
+	 */
+	public Map<String, Long> getCounts() {
+		return aCounts;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("Pass " + aName + ": " + aMethodsChanged
+				+ " methods changed; " + aBytesSaved + " bytes, " + aInstructionsSaved
+				+ " instructions saved");
+		for (Entry<String, Long> entry : aCounts.entrySet()) {
+			sb.append("; ").append(entry.getKey()).append(": ").append(entry.getValue());
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,402 @@
+package thinj.optimizer;
+
+import java.util.List;
+
+/**
+ * This pass rewrites short sequences of instructions into cheaper equivalents. The sequences are:
+ * <ul>
+ * <li>gotoNext: A goto to the next block is removed.</li>
+ * <li>gotoChain: A branch to a block holding just a goto is changed to branch to the target of
+ * the goto. A block holding just a goto is removed when no longer entered.</li>
+ * <li>compareWithZero: iconst_0 followed by if_icmp&lt;cond&gt; becomes if&lt;cond&gt;;
+ * aconst_null followed by if_acmpeq or if_acmpne becomes ifnull or ifnonnull.</li>
+ * <li>loadStore: A load followed by a store of the same local variable is removed.</li>
+ * <li>dupPop: dup followed by pop, and dup2 followed by pop2, is removed.</li>
+ * <li>multiplyByPowerOfTwo: A multiplication by a constant power of two becomes a shift left; a
+ * multiplication by 1 is removed.</li>
+ * <li>divideByPowerOfTwo: A division by 1 is removed. A division by a constant power of two
+ * becomes a shift right, if the dividend is known to be non-negative: The result of arraylength,
+ * caload or i2c. An arithmetic shift rounds a negative dividend the wrong way.</li>
+ * <li>instanceofCheckcast: A checkcast of a local variable is removed, if it is only reached from
+ * a successful instanceof of the same local variable and class, and the local variable is not
+ * stored in between.</li>
+ * </ul>
+ * The sequences are searched until none is found, as a rewrite may expose another. Blocks left
+ * empty are removed. The number of times each sequence is found is counted by the name above.
+ */
+public class PeepholePass implements OptimizationPass {
+	public static final String NAME = "peephole";
+
+	// The short form and the form using local variable 0 of each load, followed by those of the
+	// store of the same type:
+	private static final int[][] LOAD_STORE = new int[][] {
+			{ Opcodes.ILOAD, Opcodes.ILOAD_0, Opcodes.ISTORE, Opcodes.ISTORE_0 },
+			{ Opcodes.LLOAD, Opcodes.LLOAD_0, Opcodes.LSTORE, Opcodes.LSTORE_0 },
+			{ Opcodes.ALOAD, Opcodes.ALOAD_0, Opcodes.ASTORE, Opcodes.ASTORE_0 } };
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	@Override
+	public boolean optimize(ControlFlowGraph cfg, PassStatistics statistics) {
+		boolean changed = false;
+		boolean found;
+		do {
+			found = false;
+			for (BasicBlock block : cfg.getBlocks()) {
+				found |= optimizeInstructions(block, statistics);
+			}
+			found |= optimizeBranches(cfg, statistics);
+			found |= removeCheckcasts(cfg, statistics);
+			found |= removeBlocks(cfg, statistics);
+			changed |= found;
+		} while (found);
+		return changed;
+	}
+
+	/**
+	 * This method rewrites the sequences found within a single block
+	 * 
+	 * @param block The block
+	 * @param statistics Receives the count of each sequence found
+	 * @return true, if any sequence was found
+	 */
+	private boolean optimizeInstructions(BasicBlock block, PassStatistics statistics) {
+		List<Instruction> code = block.getInstructions();
+		boolean found = false;
+		int i = 0;
+		while (i + 1 < code.size()) {
+			Instruction first = code.get(i);
+			Instruction second = code.get(i + 1);
+			int opcode = second.getOpcode();
+			Integer constant = getIntConstant(first);
+			if (isLoadStore(first, second)) {
+				removeRange(code, i, 2);
+				statistics.count("loadStore");
+			} else if ((first.getOpcode() == Opcodes.DUP && opcode == Opcodes.POP)
+					|| (first.getOpcode() == Opcodes.DUP2 && opcode == Opcodes.POP2)) {
+				removeRange(code, i, 2);
+				statistics.count("dupPop");
+			} else if (first.getOpcode() == Opcodes.ICONST_0 && opcode >= Opcodes.IF_ICMPEQ
+					&& opcode <= Opcodes.IF_ICMPLE) {
+				// if_icmp<cond> and if<cond> are in the same order:
+				code.set(i + 1, new Instruction(opcode - Opcodes.IF_ICMPEQ + Opcodes.IFEQ, second
+						.getTarget(), second));
+				code.remove(i);
+				statistics.count("compareWithZero");
+			} else if (first.getOpcode() == Opcodes.ACONST_NULL
+					&& (opcode == Opcodes.IF_ACMPEQ || opcode == Opcodes.IF_ACMPNE)) {
+				code.set(i + 1, new Instruction(opcode == Opcodes.IF_ACMPEQ ? Opcodes.IFNULL
+						: Opcodes.IFNONNULL, second.getTarget(), second));
+				code.remove(i);
+				statistics.count("compareWithZero");
+			} else if (constant != null && opcode == Opcodes.IMUL && isPowerOfTwo(constant)) {
+				replaceByShift(code, i, Opcodes.ISHL, constant);
+				statistics.count("multiplyByPowerOfTwo");
+			} else if (constant != null && opcode == Opcodes.IDIV && isPowerOfTwo(constant)
+					&& (constant == 1 || (i > 0 && isNonNegative(code.get(i - 1))))) {
+				replaceByShift(code, i, Opcodes.ISHR, constant);
+				statistics.count("divideByPowerOfTwo");
+			} else {
+				i++;
+				continue;
+			}
+			found = true;
+		}
+		return found;
+	}
+
+	/**
+	 * This method rewrites the branches of a graph: A goto to the next block is removed, and a
+	 * branch to a block holding just a goto branches to the target of the goto instead
+	 * 
+	 * @param cfg The graph
+	 * @param statistics Receives the count of each sequence found
+	 * @return true, if any sequence was found
+	 */
+	private boolean optimizeBranches(ControlFlowGraph cfg, PassStatistics statistics) {
+		boolean found = false;
+		for (BasicBlock block : cfg.getBlocks()) {
+			Instruction last = block.getLastInstruction();
+			if (last == null || !last.isBranch()) {
+				continue;
+			}
+			BasicBlock target = followGotos(cfg, last.getTarget());
+			if (target != last.getTarget()) {
+				last.setTarget(target);
+				statistics.count("gotoChain");
+				found = true;
+			}
+			if (last.getOpcode() == Opcodes.GOTO && target == cfg.getNextBlock(block)) {
+				block.getInstructions().remove(block.getInstructions().size() - 1);
+				statistics.count("gotoNext");
+				found = true;
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * This method follows a chain of blocks holding just a goto
+	 * 
+	 * @param cfg The graph
+	 * @param block The first block of the chain
+	 * @return The first block of the chain not holding just a goto; 'block' if the chain is a
+	 *         loop
+	 */
+	private static BasicBlock followGotos(ControlFlowGraph cfg, BasicBlock block) {
+		boolean[] visited = new boolean[cfg.getBlocks().size()];
+		BasicBlock target = block;
+		while (isGoto(target)) {
+			visited[target.getIndex()] = true;
+			target = target.getLastInstruction().getTarget();
+			if (visited[target.getIndex()]) {
+				return block;
+			}
+		}
+		return target;
+	}
+
+	/**
+	 * This method removes the checkcasts of a local variable in a block only entered from a
+	 * successful instanceof of the same local variable and class, i.e.:
+	 * 
+	 * <pre>
+	 *     aload n
+	 *     instanceof C
+	 *     ifeq L        (or ifne S)
+	 * S:  ...           (e.g. iload m, to pass the cast as the second argument)
+	 *     aload n
+	 *     checkcast C
+	 * </pre>
+	 * 
+	 * The block is searched until the local variable is stored. As instanceof fails for null, the
+	 * checkcast cannot fail. Only the block entered is searched; a checkcast in a later block, e.g.
+	 * after a conditional expression, is kept. Note that the code is no longer accepted by the type
+	 * checking verifier of a JVM, as the type of the local variable is not narrowed; the VM does
+	 * not check the types of references.
+	 * 
+	 * @param cfg The graph
+	 * @param statistics Receives the count of each sequence found
+	 * @return true, if any sequence was found
+	 */
+	private boolean removeCheckcasts(ControlFlowGraph cfg, PassStatistics statistics) {
+		int[] entries = countEntries(cfg);
+		boolean found = false;
+		for (BasicBlock block : cfg.getBlocks()) {
+			List<Instruction> code = block.getInstructions();
+			int n = code.size();
+			if (n < 3) {
+				continue;
+			}
+			Instruction test = code.get(n - 2);
+			Instruction branch = code.get(n - 1);
+			int local = getLocal(code.get(n - 3), Opcodes.ALOAD, Opcodes.ALOAD_0);
+			if (local < 0 || test.getOpcode() != Opcodes.INSTANCEOF
+					|| (branch.getOpcode() != Opcodes.IFEQ && branch.getOpcode() != Opcodes.IFNE)) {
+				continue;
+			}
+
+			BasicBlock success = branch.getOpcode() == Opcodes.IFEQ ? cfg.getNextBlock(block)
+					: branch.getTarget();
+			if (success == null || entries[success.getIndex()] != 1) {
+				continue;
+			}
+			List<Instruction> successCode = success.getInstructions();
+			for (int i = 0; i + 1 < successCode.size(); i++) {
+				Instruction load = successCode.get(i);
+				Instruction cast = successCode.get(i + 1);
+				if (getLocal(load, Opcodes.ASTORE, Opcodes.ASTORE_0) == local) {
+					break;
+				}
+				if (getLocal(load, Opcodes.ALOAD, Opcodes.ALOAD_0) == local
+						&& cast.getOpcode() == Opcodes.CHECKCAST
+						&& cast.getUnsignedShort(0) == test.getUnsignedShort(0)) {
+					successCode.remove(i + 1);
+					statistics.count("instanceofCheckcast");
+					found = true;
+				}
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * This method removes the blocks left empty, and the blocks holding just a goto that are no
+	 * longer entered. A branch to an empty block branches to the next block instead.
+	 * 
+	 * @param cfg The graph
+	 * @param statistics Receives the count of the blocks removed
+	 * @return true, if any block was removed
+	 */
+	private boolean removeBlocks(ControlFlowGraph cfg, PassStatistics statistics) {
+		boolean found = false;
+		int i = 0;
+		while (i < cfg.getBlocks().size()) {
+			BasicBlock block = cfg.getBlocks().get(i);
+			BasicBlock next = cfg.getNextBlock(block);
+			if (block.getInstructions().isEmpty() && next != null && !isHandler(cfg, block)) {
+				for (BasicBlock b : cfg.getBlocks()) {
+					if (b.getBranchTarget() == block) {
+						b.getLastInstruction().setTarget(next);
+					}
+				}
+			} else if (!isGoto(block) || countEntries(cfg)[i] > 0) {
+				i++;
+				continue;
+			}
+			cfg.removeBlock(block);
+			statistics.count("blocksRemoved");
+			found = true;
+		}
+		return found;
+	}
+
+	/**
+	 * This method counts the ways each block is entered: By the entry of the method, by falling
+	 * through from the previous block, by branches and by exception handlers
+	 * 
+	 * @param cfg The graph
+	 * @return The number of ways each block is entered - index is the index of the block
+	 */
+	private static int[] countEntries(ControlFlowGraph cfg) {
+		List<BasicBlock> blocks = cfg.getBlocks();
+		int[] entries = new int[blocks.size()];
+		entries[0]++;
+		for (BasicBlock block : blocks) {
+			BasicBlock next = cfg.getNextBlock(block);
+			if (next != null && block.fallsThrough()) {
+				entries[next.getIndex()]++;
+			}
+			BasicBlock target = block.getBranchTarget();
+			if (target != null) {
+				entries[target.getIndex()]++;
+			}
+		}
+		for (ExceptionRange range : cfg.getExceptionRanges()) {
+			entries[range.getHandler().getIndex()]++;
+		}
+		return entries;
+	}
+
+	/**
+	 * @param cfg The graph
+	 * @param block A block
+	 * @return true, if 'block' is the first block of an exception handler
+	 */
+	private static boolean isHandler(ControlFlowGraph cfg, BasicBlock block) {
+		for (ExceptionRange range : cfg.getExceptionRanges()) {
+			if (range.getHandler() == block) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param block A block
+	 * @return true, if 'block' holds just a goto
+	 */
+	private static boolean isGoto(BasicBlock block) {
+		return block.getInstructions().size() == 1
+				&& block.getLastInstruction().getOpcode() == Opcodes.GOTO;
+	}
+
+	/**
+	 * @param first An instruction
+	 * @param second The instruction following 'first'
+	 * @return true, if 'first' loads a local variable and 'second' stores it again
+	 */
+	private static boolean isLoadStore(Instruction first, Instruction second) {
+		for (int[] forms : LOAD_STORE) {
+			int local = getLocal(first, forms[0], forms[1]);
+			if (local >= 0 && getLocal(second, forms[2], forms[3]) == local) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * This method finds the local variable used by a load or a store of a given type
+	 * 
+	 * @param ins The instruction
+	 * @param shortForm The opcode of the form with the local variable as operand, e.g. iload
+	 * @param form0 The opcode of the form using local variable 0, e.g. iload_0
+	 * @return The local variable; -1 if 'ins' is not a form of the load or store
+	 */
+	private static int getLocal(Instruction ins, int shortForm, int form0) {
+		int opcode = ins.getOpcode();
+		if (opcode == shortForm || (opcode >= form0 && opcode <= form0 + 3)) {
+			return FrameInterpreter.getLocalIndex(ins, shortForm, form0);
+		}
+		return -1;
+	}
+
+	/**
+	 * @param ins An instruction
+	 * @return The int constant pushed by 'ins'; null if 'ins' does not push an int constant
+	 */
+	private static Integer getIntConstant(Instruction ins) {
+		int opcode = ins.getOpcode();
+		if (opcode >= Opcodes.ICONST_M1 && opcode <= Opcodes.ICONST_5) {
+			return opcode - Opcodes.ICONST_0;
+		} else if (opcode == Opcodes.BIPUSH) {
+			return ins.getSignedByte(0);
+		} else if (opcode == Opcodes.SIPUSH) {
+			return ins.getSignedShort(0);
+		}
+		return null;
+	}
+
+	/**
+	 * @param value A value
+	 * @return true, if 'value' is a positive power of two
+	 */
+	private static boolean isPowerOfTwo(int value) {
+		return value > 0 && (value & (value - 1)) == 0;
+	}
+
+	/**
+	 * @param ins An instruction
+	 * @return true, if 'ins' always pushes an int that is not negative
+	 */
+	private static boolean isNonNegative(Instruction ins) {
+		int opcode = ins.getOpcode();
+		return opcode == Opcodes.ARRAYLENGTH || opcode == Opcodes.CALOAD || opcode == Opcodes.I2C;
+	}
+
+	/**
+	 * This method replaces a constant power of two and the multiplication or division by it by a
+	 * shift. A multiplication or division by 1 is removed.
+	 * 
+	 * @param code The instructions of a block
+	 * @param index The index of the constant in 'code'
+	 * @param shift The opcode of the shift
+	 * @param constant The constant
+	 */
+	private static void replaceByShift(List<Instruction> code, int index, int shift, int constant) {
+		if (constant == 1) {
+			removeRange(code, index, 2);
+			return;
+		}
+		int distance = Integer.numberOfTrailingZeros(constant);
+		Instruction push = code.get(index);
+		code.set(index, distance <= 5 ? new Instruction(Opcodes.ICONST_0 + distance, push)
+				: new Instruction(Opcodes.BIPUSH, push, (byte) distance));
+		code.set(index + 1, new Instruction(shift, code.get(index + 1)));
+	}
+
+	/**
+	 * This method removes a number of instructions
+	 * 
+	 * @param code The instructions of a block
+	 * @param index The index of the first instruction to remove
+	 * @param count The number of instructions to remove
+	 */
+	private static void removeRange(List<Instruction> code, int index, int count) {
+		code.subList(index, index + count).clear();
+	}
+}
@@ -0,0 +1,33 @@
+package thinj.optimizer;
+
+import java.util.ArrayList;
+
+/**
+ * This pass removes the blocks that cannot be reached from the entry of the method - neither by
+ * the normal control flow nor by an exception handler. The exception handlers of the blocks
+ * removed are removed as well.
+ */
+public class UnreachableCodePass implements OptimizationPass {
+	public static final String NAME = "unreachable";
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	@Override
+	public boolean optimize(ControlFlowGraph cfg, PassStatistics statistics) {
+		ArrayList<BasicBlock> unreachable = new ArrayList<BasicBlock>();
+		for (BasicBlock block : cfg.getBlocks()) {
+			if (block.getEntryFrame() == null) {
+				unreachable.add(block);
+			}
+		}
+		for (BasicBlock block : unreachable) {
+			cfg.removeBlock(block);
+			statistics.count("blocksRemoved");
+		}
+
+		return !unreachable.isEmpty();
+	}
+}
@@ -0,0 +1,73 @@
+package thinj.optimizer;
+
+/**
+ * This enumerates the types of the values in the local variables and on the operand stack, as
+ * inferred by {@link FrameInterpreter}. A long or a double takes two slots: The first slot holds
+ * the type, the second slot holds {@link #Top}. References are not told apart by class.
+ */
+public enum ValueType {
+	Int,
+	Float,
+	Long,
+	Double,
+	Reference,
+	// Unusable; an unassigned local variable, a local variable assigned different types on
+	// different paths, or the second slot of a long or a double:
+	Top;
+
+	/**
+	 * @return true, if a value of this type takes two slots
+	 */
+	public boolean isWide() {
+		return this == Long || this == Double;
+	}
+
+	/**
+	 * This method finds the type of a value from a field descriptor, e.g. 'I' or 'Ljava/lang/Object;'
+	 * 
+	 * @param descriptor The descriptor
+	 * @param index The index of the type within 'descriptor'
+	 * @return The type of the value
+	 */
+	public static ValueType fromDescriptor(String descriptor, int index) {
+		switch (descriptor.charAt(index)) {
+		case 'Z':
+		case 'B':
+		case 'C':
+		case 'S':
+		case 'I':
+			return Int;
+		case 'F':
+			return Float;
+		case 'J':
+			return Long;
+		case 'D':
+			return Double;
+		case 'L':
+		case '[':
+			return Reference;
+		default:
+			throw new AnalysisException("Illegal descriptor: " + descriptor);
+		}
+	}
+
+	/**
+	 * This method finds the end of a type within a descriptor
+	 * 
+	 * @param descriptor The descriptor
+	 * @param index The index of the type within 'descriptor'
+	 * @return The index after the type
+	 */
+	static int skipType(String descriptor, int index) {
+		while (descriptor.charAt(index) == '[') {
+			index++;
+		}
+		if (descriptor.charAt(index) == 'L') {
+			index = descriptor.indexOf(';', index);
+			if (index < 0) {
+				throw new AnalysisException("Illegal descriptor: " + descriptor);
+			}
+		}
+		return index + 1;
+	}
+}
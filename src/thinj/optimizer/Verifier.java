@@ -0,0 +1,123 @@
+package thinj.optimizer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import thinj.linkmodel.LinkModel;
+import thinj.linkmodel.MethodInClass;
+
+/**
+ * This class verifies the code of all referenced methods at link time. The code of a method is
+ * verified, if
+ * <ul>
+ * <li>all branch targets and the addresses of the exception handlers are addresses of
+ * instructions,</li>
+ * <li>the stack height and the types of the stack and the local variables are the same on all
+ * paths to an instruction,</li>
+ * <li>each instruction finds operands of the right types, and uses local variables within the
+ * number of local variables of the method,</li>
+ * <li>the code cannot fall off its end,</li>
+ * </ul>
+ * see {@link ControlFlowGraph#analyze(LinkModel)}. Code that cannot be reached is not verified, as
+ * it is never executed. The maximum height of the operand stack of each verified method is
+ * recorded in the method, see {@link MethodInClass#getMaxStack()}.<br/>
+ * <br/>
+ * As all code of the suite is known at link time, a suite where all methods are verified is
+ * executed correctly by a VM leaving out the checks of the stack and the operands at run time.
+ */
+public class Verifier {
+	// The link model holding the methods:
+	private final LinkModel aLinkModel;
+
+	// The number of methods verified:
+	private int aMethodsVerified;
+
+	// The largest stack height of all methods verified:
+	private int aMaxStack;
+
+	// The methods not verified, each with the reason:
+	private final List<String> aFailures;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param linkModel The link model holding the methods
+	 */
+	public Verifier(LinkModel linkModel) {
+		aLinkModel = linkModel;
+		aFailures = new ArrayList<String>();
+	}
+
+	/**
+	 * This method verifies all referenced methods having code, and records the maximum stack
+	 * height of each method verified. Shall be called before {@link LinkModel#link()}, as the
+	 * addresses of the code are relative to each method.
+	 * 
+	 * @return true, if all methods were verified
+	 */
+	public boolean run() {
+		for (MethodInClass mic : aLinkModel.getAllMethods()) {
+			if (!mic.isReferenced() || mic.getCode().length == 0
+					|| mic.getType() == MethodInClass.Type.AbstractMethod
+					|| mic.getType() == MethodInClass.Type.NativeMethod) {
+				continue;
+			}
+			if (mic.getMember().getSignature().getName().equals("<jvminit>")) {
+				// Generated by the linker and trusted: It invokes main() with the arguments
+				// supplied by the VM, so the stack holds a single argument at most:
+				mic.setMaxStack(1);
+			} else {
+				verify(mic);
+			}
+			if (mic.getMaxStack() >= 0) {
+				aMaxStack = Math.max(aMaxStack, mic.getMaxStack());
+			}
+		}
+		return aFailures.isEmpty();
+	}
+
+	/**
+	 * This method verifies a single method
+	 * 
+	 * @param mic The method
+	 */
+	private void verify(MethodInClass mic) {
+		try {
+			ControlFlowGraph cfg = new ControlFlowGraph(mic, aLinkModel.getClassIdByName(mic
+					.getMember().getClassName()));
+			cfg.analyze(aLinkModel);
+			mic.setMaxStack(cfg.getMaxStack());
+			aMethodsVerified++;
+		} catch (AnalysisException e) {
+			aFailures.add(mic.getMember().format() + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * @return true, if all methods were verified by {@link #run()}
+	 */
+	public boolean isVerified() {
+		return aFailures.isEmpty();
+	}
+
+	/**
+	 * @return The number of methods verified
+	 */
+	public int getMethodsVerified() {
+		return aMethodsVerified;
+	}
+
+	/**
+	 * @return The largest stack height of all methods verified, in words
+	 */
+	public int getMaxStack() {
+		return aMaxStack;
+	}
+
+	/**
+	 * @return The methods not verified, each with the reason
+	 */
+	public List<String> getFailures() {
+		return aFailures;
+	}
+}
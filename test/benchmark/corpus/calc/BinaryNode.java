@@ -0,0 +1,57 @@
+package corpus.calc;
+
+/**
+ * An operator with two operands
+ */
+public abstract class BinaryNode extends Node {
+	private final Node aLeft;
+	private final Node aRight;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param left The left operand
+	 * @param right The right operand
+	 */
+	protected BinaryNode(Node left, Node right) {
+		aLeft = left;
+		aRight = right;
+	}
+
+	/**
+	 * @return The left operand
+	 */
+	public Node getLeft() {
+		return aLeft;
+	}
+
+	/**
+	 * @return The right operand
+	 */
+	public Node getRight() {
+		return aRight;
+	}
+
+	/**
+	 * This method applies the operator to the values of the operands
+	 * 
+	 * @param left The value of the left operand
+	 * @param right The value of the right operand
+	 * @return The result
+	 */
+	public abstract int apply(int left, int right);
+
+	/**
+	 * This method creates a node with the same operator
+	 * 
+	 * @param left The left operand
+	 * @param right The right operand
+	 * @return The new node
+	 */
+	public abstract BinaryNode create(Node left, Node right);
+
+	@Override
+	public Node accept(Visitor visitor) {
+		return visitor.visitBinary(this);
+	}
+}
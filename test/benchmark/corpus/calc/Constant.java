@@ -0,0 +1,29 @@
+package corpus.calc;
+
+/**
+ * A constant
+ */
+public class Constant extends Node {
+	private final int aValue;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param value The value of the constant
+	 */
+	public Constant(int value) {
+		aValue = value;
+	}
+
+	/**
+	 * @return The value of the constant
+	 */
+	public int getValue() {
+		return aValue;
+	}
+
+	@Override
+	public Node accept(Visitor visitor) {
+		return visitor.visitConstant(this);
+	}
+}
@@ -0,0 +1,34 @@
+package corpus.calc;
+
+/**
+ * This visitor replaces the constant parts of an expression by their values. A division by zero
+ * is left for the evaluation.
+ */
+public class ConstantFolder implements Visitor {
+	public Node visitConstant(Constant node) {
+		return node;
+	}
+
+	public Node visitVariable(Variable node) {
+		return node;
+	}
+
+	public Node visitNegate(Negate node) {
+		Node operand = node.getOperand().accept(this);
+		if (operand instanceof Constant) {
+			return new Constant(-((Constant) operand).getValue());
+		}
+		return new Negate(operand);
+	}
+
+	public Node visitBinary(BinaryNode node) {
+		Node left = node.getLeft().accept(this);
+		Node right = node.getRight().accept(this);
+		if (left instanceof Constant && right instanceof Constant
+				&& !(node instanceof Divide && ((Constant) right).getValue() == 0)) {
+			return new Constant(node.apply(((Constant) left).getValue(), ((Constant) right)
+					.getValue()));
+		}
+		return node.create(left, right);
+	}
+}
@@ -0,0 +1,31 @@
+package corpus.calc;
+
+/**
+ * The values of the variables 'a' to 'z'
+ */
+public class Environment {
+	private final int[] aValues;
+
+	/**
+	 * Constructor. All variables are 0.
+	 */
+	public Environment() {
+		aValues = new int['z' - 'a' + 1];
+	}
+
+	/**
+	 * @param name The name of a variable
+	 * @return The value of the variable
+	 */
+	public int get(char name) {
+		return aValues[name - 'a'];
+	}
+
+	/**
+	 * @param name The name of a variable
+	 * @param value The new value of the variable
+	 */
+	public void set(char name, int value) {
+		aValues[name - 'a'] = value;
+	}
+}
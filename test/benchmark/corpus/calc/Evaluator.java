@@ -0,0 +1,35 @@
+package corpus.calc;
+
+/**
+ * This visitor evaluates an expression into a {@link Constant}
+ */
+public class Evaluator implements Visitor {
+	private final Environment aEnvironment;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param environment The values of the variables
+	 */
+	public Evaluator(Environment environment) {
+		aEnvironment = environment;
+	}
+
+	public Node visitConstant(Constant node) {
+		return node;
+	}
+
+	public Node visitVariable(Variable node) {
+		return new Constant(aEnvironment.get(node.getName()));
+	}
+
+	public Node visitNegate(Negate node) {
+		return new Constant(-((Constant) node.getOperand().accept(this)).getValue());
+	}
+
+	public Node visitBinary(BinaryNode node) {
+		int left = ((Constant) node.getLeft().accept(this)).getValue();
+		int right = ((Constant) node.getRight().accept(this)).getValue();
+		return new Constant(node.apply(left, right));
+	}
+}
@@ -0,0 +1,52 @@
+package corpus.calc;
+
+/**
+ * This class splits an expression into tokens
+ */
+public class Lexer {
+	private final String aExpression;
+	private int aPosition;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param expression The expression
+	 */
+	public Lexer(String expression) {
+		aExpression = expression;
+		aPosition = 0;
+	}
+
+	/**
+	 * @return The next token; {@link Token#END} at the end of the expression
+	 * @throws ParseException If the next character is not part of any token
+	 */
+	public Token next() throws ParseException {
+		while (aPosition < aExpression.length() && aExpression.charAt(aPosition) == ' ') {
+			aPosition++;
+		}
+		if (aPosition == aExpression.length()) {
+			return new Token(Token.END, 0, aPosition);
+		}
+
+		int start = aPosition;
+		char c = aExpression.charAt(aPosition++);
+		if (c >= '0' && c <= '9') {
+			int value = c - '0';
+			while (aPosition < aExpression.length() && aExpression.charAt(aPosition) >= '0'
+					&& aExpression.charAt(aPosition) <= '9') {
+				value = 10 * value + aExpression.charAt(aPosition++) - '0';
+			}
+			return new Token(Token.NUMBER, value, start);
+		} else if (c >= 'a' && c <= 'z') {
+			return new Token(Token.VARIABLE, c, start);
+		} else if (c == '+' || c == '-' || c == '*' || c == '/') {
+			return new Token(Token.OPERATOR, c, start);
+		} else if (c == '(') {
+			return new Token(Token.LEFT, c, start);
+		} else if (c == ')') {
+			return new Token(Token.RIGHT, c, start);
+		}
+		throw new ParseException(start);
+	}
+}
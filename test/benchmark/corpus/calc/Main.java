@@ -0,0 +1,40 @@
+package corpus.calc;
+
+/**
+ * This program is a benchmark corpus, see {@link thinj.benchmark.LinkerBenchmark}: An expression
+ * calculator with a parser, a tree of node classes and visitors over the tree. It exercises
+ * virtual and interface calls across a class hierarchy, exceptions and static initializers.
+ */
+public class Main {
+	// The expressions evaluated:
+	private static final String[] EXPRESSIONS = new String[] { "1+2*3", "(a+b)*(a-b)",
+			"-(4+x)/2", "a*a+b*b-c*c", "((1))+(2*(3+(4*(5+6))))", "x/(y-y)", "1+*2" };
+
+	public static void main(String[] args) {
+		Environment environment = new Environment();
+		environment.set('a', 7);
+		environment.set('b', 3);
+		environment.set('c', 5);
+		environment.set('x', 10);
+		environment.set('y', 4);
+
+		int checksum = 0;
+		for (int i = 0; i < EXPRESSIONS.length; i++) {
+			try {
+				Node node = new Parser(new Lexer(EXPRESSIONS[i])).parse();
+				Node folded = node.accept(new ConstantFolder());
+				NodeCounter counter = new NodeCounter();
+				folded.accept(counter);
+				checksum += counter.getCount();
+				checksum += ((Constant) folded.accept(new Evaluator(environment))).getValue();
+			} catch (ParseException e) {
+				checksum -= e.getPosition();
+			} catch (ArithmeticException e) {
+				checksum--;
+			}
+		}
+		if (checksum == 0) {
+			throw new RuntimeException();
+		}
+	}
+}
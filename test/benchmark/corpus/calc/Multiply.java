@@ -0,0 +1,26 @@
+package corpus.calc;
+
+/**
+ * The multiplication of two expressions
+ */
+public class Multiply extends BinaryNode {
+	/**
+	 * Constructor
+	 * 
+	 * @param left The left operand
+	 * @param right The right operand
+	 */
+	public Multiply(Node left, Node right) {
+		super(left, right);
+	}
+
+	@Override
+	public int apply(int left, int right) {
+		return left * right;
+	}
+
+	@Override
+	public BinaryNode create(Node left, Node right) {
+		return new Multiply(left, right);
+	}
+}
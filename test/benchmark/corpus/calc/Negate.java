@@ -0,0 +1,29 @@
+package corpus.calc;
+
+/**
+ * The negation of an expression
+ */
+public class Negate extends Node {
+	private final Node aOperand;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param operand The expression negated
+	 */
+	public Negate(Node operand) {
+		aOperand = operand;
+	}
+
+	/**
+	 * @return The expression negated
+	 */
+	public Node getOperand() {
+		return aOperand;
+	}
+
+	@Override
+	public Node accept(Visitor visitor) {
+		return visitor.visitNegate(this);
+	}
+}
@@ -0,0 +1,14 @@
+package corpus.calc;
+
+/**
+ * A node in the tree of an expression
+ */
+public abstract class Node {
+	/**
+	 * This method lets a visitor visit the node
+	 * 
+	 * @param visitor The visitor
+	 * @return The result of the visitor
+	 */
+	public abstract Node accept(Visitor visitor);
+}
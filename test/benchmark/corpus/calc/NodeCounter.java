@@ -0,0 +1,38 @@
+package corpus.calc;
+
+/**
+ * This visitor counts the nodes of an expression
+ */
+public class NodeCounter implements Visitor {
+	private int aCount;
+
+	/**
+	 * @return The number of nodes visited
+	 */
+	public int getCount() {
+		return aCount;
+	}
+
+	public Node visitConstant(Constant node) {
+		aCount++;
+		return node;
+	}
+
+	public Node visitVariable(Variable node) {
+		aCount++;
+		return node;
+	}
+
+	public Node visitNegate(Negate node) {
+		aCount++;
+		node.getOperand().accept(this);
+		return node;
+	}
+
+	public Node visitBinary(BinaryNode node) {
+		aCount++;
+		node.getLeft().accept(this);
+		node.getRight().accept(this);
+		return node;
+	}
+}
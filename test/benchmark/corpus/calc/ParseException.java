@@ -0,0 +1,26 @@
+package corpus.calc;
+
+/**
+ * Thrown if an expression is malformed
+ */
+public class ParseException extends Exception {
+	private static final long serialVersionUID = 1L;
+
+	private final int aPosition;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param position The position of the error in the expression
+	 */
+	public ParseException(int position) {
+		aPosition = position;
+	}
+
+	/**
+	 * @return The position of the error in the expression
+	 */
+	public int getPosition() {
+		return aPosition;
+	}
+}
@@ -0,0 +1,88 @@
+package corpus.calc;
+
+/**
+ * This class parses an expression by recursive descent:
+ * 
+ * <pre>
+ * expression = term { ('+' | '-') term }
+ * term = factor { ('*' | '/') factor }
+ * factor = number | variable | '-' factor | '(' expression ')'
+ * </pre>
+ */
+public class Parser {
+	private final Lexer aLexer;
+	private Token aToken;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param lexer The tokens of the expression
+	 */
+	public Parser(Lexer lexer) {
+		aLexer = lexer;
+	}
+
+	/**
+	 * @return The tree of the expression
+	 * @throws ParseException If the expression is malformed
+	 */
+	public Node parse() throws ParseException {
+		aToken = aLexer.next();
+		Node node = expression();
+		expect(Token.END);
+		return node;
+	}
+
+	private Node expression() throws ParseException {
+		Node node = term();
+		while (isOperator('+') || isOperator('-')) {
+			boolean add = isOperator('+');
+			aToken = aLexer.next();
+			node = add ? new Add(node, term()) : new Subtract(node, term());
+		}
+		return node;
+	}
+
+	private Node term() throws ParseException {
+		Node node = factor();
+		while (isOperator('*') || isOperator('/')) {
+			boolean multiply = isOperator('*');
+			aToken = aLexer.next();
+			node = multiply ? new Multiply(node, factor()) : new Divide(node, factor());
+		}
+		return node;
+	}
+
+	private Node factor() throws ParseException {
+		Token token = aToken;
+		if (token.getKind() == Token.NUMBER) {
+			aToken = aLexer.next();
+			return new Constant(token.getValue());
+		} else if (token.getKind() == Token.VARIABLE) {
+			aToken = aLexer.next();
+			return new Variable((char) token.getValue());
+		} else if (token.getKind() == Token.LEFT) {
+			aToken = aLexer.next();
+			Node node = expression();
+			expect(Token.RIGHT);
+			return node;
+		} else if (isOperator('-')) {
+			aToken = aLexer.next();
+			return new Negate(factor());
+		}
+		throw new ParseException(token.getPosition());
+	}
+
+	private boolean isOperator(char operator) {
+		return aToken.getKind() == Token.OPERATOR && aToken.getValue() == operator;
+	}
+
+	private void expect(int kind) throws ParseException {
+		if (aToken.getKind() != kind) {
+			throw new ParseException(aToken.getPosition());
+		}
+		if (kind != Token.END) {
+			aToken = aLexer.next();
+		}
+	}
+}
@@ -0,0 +1,26 @@
+package corpus.calc;
+
+/**
+ * The subtraction of two expressions
+ */
+public class Subtract extends BinaryNode {
+	/**
+	 * Constructor
+	 * 
+	 * @param left The left operand
+	 * @param right The right operand
+	 */
+	public Subtract(Node left, Node right) {
+		super(left, right);
+	}
+
+	@Override
+	public int apply(int left, int right) {
+		return left - right;
+	}
+
+	@Override
+	public BinaryNode create(Node left, Node right) {
+		return new Subtract(left, right);
+	}
+}
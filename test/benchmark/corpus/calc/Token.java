@@ -0,0 +1,51 @@
+package corpus.calc;
+
+/**
+ * A token of an expression
+ */
+public class Token {
+	public static final int NUMBER = 0;
+	public static final int VARIABLE = 1;
+	public static final int OPERATOR = 2;
+	public static final int LEFT = 3;
+	public static final int RIGHT = 4;
+	public static final int END = 5;
+
+	private final int aKind;
+	private final int aValue;
+	private final int aPosition;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param kind The kind of token, e.g. {@link #NUMBER}
+	 * @param value The number, the name of the variable or the operator character
+	 * @param position The position of the token in the expression
+	 */
+	public Token(int kind, int value, int position) {
+		aKind = kind;
+		aValue = value;
+		aPosition = position;
+	}
+
+	/**
+	 * @return The kind of token, e.g. {@link #NUMBER}
+	 */
+	public int getKind() {
+		return aKind;
+	}
+
+	/**
+	 * @return The number, the name of the variable or the operator character
+	 */
+	public int getValue() {
+		return aValue;
+	}
+
+	/**
+	 * @return The position of the token in the expression
+	 */
+	public int getPosition() {
+		return aPosition;
+	}
+}
@@ -0,0 +1,29 @@
+package corpus.calc;
+
+/**
+ * A variable
+ */
+public class Variable extends Node {
+	private final char aName;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param name The name of the variable
+	 */
+	public Variable(char name) {
+		aName = name;
+	}
+
+	/**
+	 * @return The name of the variable
+	 */
+	public char getName() {
+		return aName;
+	}
+
+	@Override
+	public Node accept(Visitor visitor) {
+		return visitor.visitVariable(this);
+	}
+}
@@ -0,0 +1,15 @@
+package corpus.calc;
+
+/**
+ * A visitor of the nodes of an expression. Each method returns a node, e.g. the node itself or a
+ * simplified node.
+ */
+public interface Visitor {
+	Node visitConstant(Constant node);
+
+	Node visitVariable(Variable node);
+
+	Node visitNegate(Negate node);
+
+	Node visitBinary(BinaryNode node);
+}
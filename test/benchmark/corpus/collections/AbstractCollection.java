@@ -0,0 +1,19 @@
+package corpus.collections;
+
+/**
+ * The methods of a collection which can be implemented by the iterator
+ */
+public abstract class AbstractCollection implements Collection {
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	public boolean contains(Object element) {
+		for (Iterator it = iterator(); it.hasNext();) {
+			if (it.next() == element) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
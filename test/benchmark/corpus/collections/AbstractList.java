@@ -0,0 +1,25 @@
+package corpus.collections;
+
+/**
+ * A list iterated by index
+ */
+public abstract class AbstractList extends AbstractCollection implements List {
+	public Iterator iterator() {
+		return new IndexIterator();
+	}
+
+	/**
+	 * An iterator calling {@link List#get(int)}
+	 */
+	private class IndexIterator implements Iterator {
+		private int aIndex;
+
+		public boolean hasNext() {
+			return aIndex < size();
+		}
+
+		public Object next() {
+			return get(aIndex++);
+		}
+	}
+}
@@ -0,0 +1,47 @@
+package corpus.collections;
+
+/**
+ * A list kept in an array
+ */
+public class ArrayList extends AbstractList {
+	private Object[] aElements;
+	private int aSize;
+
+	/**
+	 * Constructor
+	 */
+	public ArrayList() {
+		aElements = new Object[8];
+	}
+
+	public int size() {
+		return aSize;
+	}
+
+	public void add(Object element) {
+		if (aSize == aElements.length) {
+			Object[] elements = new Object[2 * aSize];
+			for (int i = 0; i < aSize; i++) {
+				elements[i] = aElements[i];
+			}
+			aElements = elements;
+		}
+		aElements[aSize++] = element;
+	}
+
+	public Object get(int index) {
+		checkIndex(index);
+		return aElements[index];
+	}
+
+	public void set(int index, Object element) {
+		checkIndex(index);
+		aElements[index] = element;
+	}
+
+	private void checkIndex(int index) {
+		if (index < 0 || index >= aSize) {
+			throw new ArrayIndexOutOfBoundsException();
+		}
+	}
+}
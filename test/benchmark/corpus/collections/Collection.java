@@ -0,0 +1,16 @@
+package corpus.collections;
+
+/**
+ * A collection of elements
+ */
+public interface Collection {
+	int size();
+
+	boolean isEmpty();
+
+	boolean contains(Object element);
+
+	void add(Object element);
+
+	Iterator iterator();
+}
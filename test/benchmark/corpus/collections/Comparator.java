@@ -0,0 +1,13 @@
+package corpus.collections;
+
+/**
+ * An order of elements
+ */
+public interface Comparator {
+	/**
+	 * @param a An element
+	 * @param b Another element
+	 * @return Less than 0, 0 or greater than 0, if a is before, equal to or after b
+	 */
+	int compare(Object a, Object b);
+}
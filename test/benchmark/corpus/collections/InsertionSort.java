@@ -0,0 +1,18 @@
+package corpus.collections;
+
+/**
+ * Sorts by insertion
+ */
+public class InsertionSort implements Sorter {
+	public void sort(List list, Comparator comparator) {
+		for (int i = 1; i < list.size(); i++) {
+			Object element = list.get(i);
+			int j = i - 1;
+			while (j >= 0 && comparator.compare(list.get(j), element) > 0) {
+				list.set(j + 1, list.get(j));
+				j--;
+			}
+			list.set(j + 1, element);
+		}
+	}
+}
@@ -0,0 +1,88 @@
+package corpus.collections;
+
+/**
+ * A hash map with int keys, chaining the entries of each bucket
+ */
+public class IntHashMap {
+	private Entry[] aBuckets;
+	private int aSize;
+
+	/**
+	 * Constructor
+	 */
+	public IntHashMap() {
+		aBuckets = new Entry[16];
+	}
+
+	/**
+	 * @return The number of keys in the map
+	 */
+	public int size() {
+		return aSize;
+	}
+
+	/**
+	 * @param key A key
+	 * @return The value of the key; null if not in the map
+	 */
+	public Object get(int key) {
+		for (Entry e = aBuckets[index(key, aBuckets.length)]; e != null; e = e.aNext) {
+			if (e.aKey == key) {
+				return e.aValue;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @param key A key
+	 * @param value The new value of the key
+	 */
+	public void put(int key, Object value) {
+		int index = index(key, aBuckets.length);
+		for (Entry e = aBuckets[index]; e != null; e = e.aNext) {
+			if (e.aKey == key) {
+				e.aValue = value;
+				return;
+			}
+		}
+		aBuckets[index] = new Entry(key, value, aBuckets[index]);
+		if (++aSize > aBuckets.length) {
+			resize();
+		}
+	}
+
+	private void resize() {
+		Entry[] buckets = new Entry[2 * aBuckets.length];
+		for (int i = 0; i < aBuckets.length; i++) {
+			Entry e = aBuckets[i];
+			while (e != null) {
+				Entry next = e.aNext;
+				int index = index(e.aKey, buckets.length);
+				e.aNext = buckets[index];
+				buckets[index] = e;
+				e = next;
+			}
+		}
+		aBuckets = buckets;
+	}
+
+	private static int index(int key, int length) {
+		return (key ^ (key >> 16)) & (length - 1);
+	}
+
+	/**
+	 * An entry of a bucket
+	 */
+	private static class Entry {
+		private final int aKey;
+		private Object aValue;
+		private Entry aNext;
+
+		Entry(int key, Object value, Entry next) {
+			aKey = key;
+			aValue = value;
+			aNext = next;
+		}
+	}
+}
@@ -0,0 +1,34 @@
+package corpus.collections;
+
+/**
+ * An element of the collections
+ */
+public class Item {
+	private final int aKey;
+	private final int aValue;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param key The key of the item
+	 * @param value The value of the item
+	 */
+	public Item(int key, int value) {
+		aKey = key;
+		aValue = value;
+	}
+
+	/**
+	 * @return The key of the item
+	 */
+	public int getKey() {
+		return aKey;
+	}
+
+	/**
+	 * @return The value of the item
+	 */
+	public int getValue() {
+		return aValue;
+	}
+}
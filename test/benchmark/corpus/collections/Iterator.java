@@ -0,0 +1,10 @@
+package corpus.collections;
+
+/**
+ * An iterator over the elements of a collection
+ */
+public interface Iterator {
+	boolean hasNext();
+
+	Object next();
+}
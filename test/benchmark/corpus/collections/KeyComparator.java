@@ -0,0 +1,10 @@
+package corpus.collections;
+
+/**
+ * Orders items by their keys
+ */
+public class KeyComparator implements Comparator {
+	public int compare(Object a, Object b) {
+		return ((Item) a).getKey() - ((Item) b).getKey();
+	}
+}
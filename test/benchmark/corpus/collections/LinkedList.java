@@ -0,0 +1,73 @@
+package corpus.collections;
+
+/**
+ * A list of linked nodes. Overrides the iterator, as walking the nodes is faster than indexing.
+ */
+public class LinkedList extends AbstractList {
+	private Node aFirst;
+	private Node aLast;
+	private int aSize;
+
+	public int size() {
+		return aSize;
+	}
+
+	public void add(Object element) {
+		Node node = new Node(element);
+		if (aLast == null) {
+			aFirst = node;
+		} else {
+			aLast.aNext = node;
+		}
+		aLast = node;
+		aSize++;
+	}
+
+	public Object get(int index) {
+		return node(index).aElement;
+	}
+
+	public void set(int index, Object element) {
+		node(index).aElement = element;
+	}
+
+	@Override
+	public Iterator iterator() {
+		return new Iterator() {
+			private Node aNext = aFirst;
+
+			public boolean hasNext() {
+				return aNext != null;
+			}
+
+			public Object next() {
+				Object element = aNext.aElement;
+				aNext = aNext.aNext;
+				return element;
+			}
+		};
+	}
+
+	private Node node(int index) {
+		if (index < 0 || index >= aSize) {
+			throw new ArrayIndexOutOfBoundsException();
+		}
+		Node node = aFirst;
+		for (int i = 0; i < index; i++) {
+			node = node.aNext;
+		}
+		return node;
+	}
+
+	/**
+	 * A node of the list
+	 */
+	private static class Node {
+		private Object aElement;
+		private Node aNext;
+
+		Node(Object element) {
+			aElement = element;
+		}
+	}
+}
@@ -0,0 +1,10 @@
+package corpus.collections;
+
+/**
+ * A collection with the elements in order
+ */
+public interface List extends Collection {
+	Object get(int index);
+
+	void set(int index, Object element);
+}
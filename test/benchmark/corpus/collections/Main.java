@@ -0,0 +1,43 @@
+package corpus.collections;
+
+/**
+ * This program is a benchmark corpus, see {@link thinj.benchmark.LinkerBenchmark}: A small
+ * collection library with list implementations, a hash map, iterators and sorting strategies. It
+ * exercises interfaces implemented through abstract classes, inner classes and overriding methods
+ * which are only called through the interfaces.
+ */
+public class Main {
+	public static void main(String[] args) {
+		List[] lists = new List[] { new ArrayList(), new LinkedList() };
+		Sorter[] sorters = new Sorter[] { new InsertionSort(), new MergeSort() };
+		Comparator[] comparators = new Comparator[] { new KeyComparator(),
+				new ReverseComparator(new KeyComparator()) };
+
+		int checksum = 0;
+		for (int l = 0; l < lists.length; l++) {
+			List list = lists[l];
+			for (int i = 0; i < 100; i++) {
+				list.add(new Item((i * 37) % 101, i));
+			}
+			for (int s = 0; s < sorters.length; s++) {
+				for (int c = 0; c < comparators.length; c++) {
+					sorters[s].sort(list, comparators[c]);
+					checksum += ((Item) list.get(0)).getKey();
+				}
+			}
+
+			IntHashMap map = new IntHashMap();
+			for (Iterator it = list.iterator(); it.hasNext();) {
+				Item item = (Item) it.next();
+				map.put(item.getKey(), item);
+			}
+			checksum += map.size();
+			if (!list.contains(map.get(42)) || list.isEmpty()) {
+				throw new RuntimeException();
+			}
+		}
+		if (checksum == 0) {
+			throw new RuntimeException();
+		}
+	}
+}
@@ -0,0 +1,40 @@
+package corpus.collections;
+
+/**
+ * Sorts by merging sorted halves
+ */
+public class MergeSort implements Sorter {
+	public void sort(List list, Comparator comparator) {
+		Object[] elements = new Object[list.size()];
+		int i = 0;
+		for (Iterator it = list.iterator(); it.hasNext();) {
+			elements[i++] = it.next();
+		}
+		sort(elements, new Object[elements.length], 0, elements.length, comparator);
+		for (i = 0; i < elements.length; i++) {
+			list.set(i, elements[i]);
+		}
+	}
+
+	private void sort(Object[] elements, Object[] tmp, int from, int to, Comparator comparator) {
+		if (to - from < 2) {
+			return;
+		}
+		int middle = (from + to) / 2;
+		sort(elements, tmp, from, middle, comparator);
+		sort(elements, tmp, middle, to, comparator);
+		int left = from;
+		int right = middle;
+		for (int i = from; i < to; i++) {
+			if (right == to || (left < middle && comparator.compare(elements[left],
+					elements[right]) <= 0)) {
+				tmp[i] = elements[left++];
+			} else {
+				tmp[i] = elements[right++];
+			}
+		}
+		for (int i = from; i < to; i++) {
+			elements[i] = tmp[i];
+		}
+	}
+}
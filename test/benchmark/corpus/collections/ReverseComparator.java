@@ -0,0 +1,21 @@
+package corpus.collections;
+
+/**
+ * Reverses another order
+ */
+public class ReverseComparator implements Comparator {
+	private final Comparator aComparator;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param comparator The order to reverse
+	 */
+	public ReverseComparator(Comparator comparator) {
+		aComparator = comparator;
+	}
+
+	public int compare(Object a, Object b) {
+		return aComparator.compare(b, a);
+	}
+}
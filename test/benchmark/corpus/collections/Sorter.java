@@ -0,0 +1,14 @@
+package corpus.collections;
+
+/**
+ * A sorting algorithm
+ */
+public interface Sorter {
+	/**
+	 * This method sorts a list in place
+	 * 
+	 * @param list The list to sort
+	 * @param comparator The order
+	 */
+	void sort(List list, Comparator comparator);
+}
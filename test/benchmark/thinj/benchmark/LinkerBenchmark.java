@@ -0,0 +1,309 @@
+package thinj.benchmark;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * This class measures how the phases of the linker scale with the size of the program linked. Each
+ * program - a checked-in corpus, see {@link #CORPORA}, a corpus given on the command line or a
+ * program made by {@link SyntheticClassGenerator} - is linked a number of times, each time by a
+ * new JVM running {@link thinj.NewLinker} just like the thinj script does. The phase times are
+ * read from the metrics report of each link, see {@link thinj.LinkMetrics}, and the minimum and
+ * the median of each phase is reported.<br/>
+ * <br/>
+ * A new JVM is used for each link, since the linker is run once per JVM in real use, so each link
+ * starts cold.
+ */
+public class LinkerBenchmark {
+	// The main classes of the checked-in corpora, see test/benchmark/corpus; the classes are found
+	// on the class path of the benchmark:
+	private static final String[] CORPORA = new String[] { "corpus.calc.Main",
+			"corpus.collections.Main" };
+
+	// A phase in the metrics report - one line per phase:
+	private static final Pattern PHASE = Pattern
+			.compile("\\{\"name\": \"([^\"]*)\", \"wallNanos\": (-?[0-9]+)");
+
+	// The class reading time of a phase in the metrics report:
+	private static final Pattern CLASS_READING = Pattern
+			.compile("\"classReadingNanos\": ([0-9]+)");
+
+	// The class path with the runtime classes:
+	private final String aRuntimeClassPath;
+
+	// The number of links of each program:
+	private final int aIterations;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param runtimeClassPath The class path with the runtime classes; appended to the class path
+	 *            of each program
+	 * @param iterations The number of links of each program
+	 */
+	public LinkerBenchmark(String runtimeClassPath, int iterations) {
+		aRuntimeClassPath = runtimeClassPath;
+		aIterations = iterations;
+	}
+
+	public static void main(String[] args) throws Exception {
+		// Example:
+		// java -cp ~/workspace/thinj/bin:~/workspace/thinj/test/bin:$CLASSPATH \\
+		// -Dmycp=/home/hammer/workspace/thinjrt/bin \\
+		// -Dsynthetic=100,1000,20000 -Ddepth=4 -Dfanout=3 -Diterations=5 \\
+		// thinj.benchmark.LinkerBenchmark thinj.regression.Main@/home/hammer/workspace/regression/bin
+		String usage = "usage: java -Dmycp=<runtime class path> [-Dcorpora=false] "
+				+ "[-Dsynthetic=<n>[,<n>]*] [-Ddepth=<n>] [-Dfanout=<n>] [-Diterations=<n>] "
+				+ "LinkerBenchmark [<main class>@<class path>[@<dependency file>]]*";
+
+		// Mandatory; the thinj runtime classes
+		String runtimeClassPath = System.getProperty("mycp");
+
+		// Optional; the number of classes in each synthetic program to link, see
+		// SyntheticClassGenerator. The hierarchy depth and the call fan-out is given by -Ddepth
+		// and -Dfanout
+		String synthetic = System.getProperty("synthetic", "");
+		int depth = Integer.getInteger("depth", 4);
+		int fanOut = Integer.getInteger("fanout", 3);
+
+		// Optional; the number of links of each program
+		int iterations = Integer.getInteger("iterations", 5);
+
+		// Optional; if false, the checked-in corpora are not linked
+		boolean corpora = Boolean.parseBoolean(System.getProperty("corpora", "true"));
+
+		if (runtimeClassPath == null) {
+			System.err.println(usage);
+			System.exit(1);
+		}
+
+		LinkerBenchmark benchmark = new LinkerBenchmark(runtimeClassPath, iterations);
+
+		// The checked-in corpora:
+		if (corpora) {
+			for (String mainClassName : CORPORA) {
+				benchmark.run(mainClassName, mainClassName, System.getProperty("java.class.path"),
+						null);
+			}
+		}
+
+		// The corpora given as arguments:
+		for (String corpus : args) {
+			String[] fields = corpus.split("@");
+			if (fields.length < 2 || fields.length > 3) {
+				System.err.println(usage);
+				System.exit(1);
+			}
+			benchmark.run(corpus, fields[0], fields[1], fields.length == 3 ? fields[2] : null);
+		}
+
+		// The synthetic programs:
+		for (String classCount : synthetic.split(",")) {
+			if (classCount.length() > 0) {
+				File directory = createTempDirectory();
+				try {
+					SyntheticClassGenerator generator = new SyntheticClassGenerator(Integer
+							.parseInt(classCount.trim()), depth, fanOut);
+					String mainClassName = generator.generate(directory);
+					benchmark.run("synthetic: " + classCount.trim() + " classes, depth " + depth
+							+ ", fan-out " + fanOut, mainClassName, directory.getPath(), null);
+				} finally {
+					delete(directory);
+				}
+			}
+		}
+	}
+
+	/**
+	 * This method links a program a number of times and prints the phase times
+	 * 
+	 * @param name The name of the program, as printed
+	 * @param mainClassName The main class of the program
+	 * @param classPath The class path of the program - the runtime classes not included
+	 * @param dependencyFile The dependency file of the program; may be null
+	 * @throws IOException If unable to run the linker
+	 * @throws InterruptedException If interrupted while waiting for the linker
+	 */
+	public void run(String name, String mainClassName, String classPath, String dependencyFile)
+			throws IOException, InterruptedException {
+		// The time of each phase in each link - key is the name of the phase:
+		LinkedHashMap<String, List<Double>> phaseTimes = new LinkedHashMap<String, List<Double>>();
+		File outputDirectory = createTempDirectory();
+		try {
+			for (int i = 0; i < aIterations; i++) {
+				double total = 0;
+				for (Map.Entry<String, Double> entry : link(mainClassName, classPath,
+						dependencyFile, outputDirectory).entrySet()) {
+					add(phaseTimes, entry.getKey(), entry.getValue());
+					if (entry.getKey().startsWith("Phase ")) {
+						total += entry.getValue();
+					}
+				}
+				add(phaseTimes, "Total", total);
+			}
+		} finally {
+			delete(outputDirectory);
+		}
+
+		System.out.println(name + " (" + aIterations + " links)");
+		System.out.println(String.format("    %-28s %12s %12s", "", "min. ms", "median ms"));
+		for (Map.Entry<String, List<Double>> entry : phaseTimes.entrySet()) {
+			Double[] times = entry.getValue().toArray(new Double[entry.getValue().size()]);
+			Arrays.sort(times);
+			System.out.println(String.format("    %-28s %12.1f %12.1f", entry.getKey(), times[0],
+					times[times.length / 2]));
+		}
+		System.out.println();
+	}
+
+	/**
+	 * This method links a program once in a new JVM. The phase times are read from the metrics
+	 * report of the link. If the link fails, the output of the linker is printed and this method
+	 * exits.
+	 * 
+	 * @param mainClassName The main class of the program
+	 * @param classPath The class path of the program - the runtime classes not included
+	 * @param dependencyFile The dependency file of the program; may be null
+	 * @param outputDirectory The directory to put the generated files in
+	 * @return The time of each phase, in milliseconds - key is the name of the phase
+	 * @throws IOException If unable to run the linker
+	 * @throws InterruptedException If interrupted while waiting for the linker
+	 */
+	private LinkedHashMap<String, Double> link(String mainClassName, String classPath,
+			String dependencyFile, File outputDirectory) throws IOException, InterruptedException {
+		List<String> command = new ArrayList<String>();
+		command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator
+				+ "java");
+		// Same JVM options as this JVM - the options given below take precedence:
+		command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add("-Dmycp=" + classPath + File.pathSeparator + aRuntimeClassPath);
+		command.add("-Dout=" + new File(outputDirectory, "suite").getPath());
+		command.add("-Ddependencies=" + (dependencyFile != null ? dependencyFile : ""));
+		File metricsReport = new File(outputDirectory, "metrics.json");
+		command.add("-Dmetrics=" + metricsReport.getPath());
+		command.add("thinj.NewLinker");
+		command.add(mainClassName);
+
+		ProcessBuilder pb = new ProcessBuilder(command);
+		pb.redirectErrorStream(true);
+		Process process = pb.start();
+
+		LinkedList<String> output = new LinkedList<String>();
+		BufferedReader br = new BufferedReader(new InputStreamReader(process.getInputStream()));
+		try {
+			String line;
+			while ((line = br.readLine()) != null) {
+				output.add(line);
+			}
+		} finally {
+			br.close();
+		}
+
+		LinkedHashMap<String, Double> times = new LinkedHashMap<String, Double>();
+		if (process.waitFor() == 0 && metricsReport.isFile()) {
+			times = readMetrics(metricsReport);
+			metricsReport.delete();
+		}
+		if (times.isEmpty()) {
+			for (String line : output) {
+				System.err.println(line);
+			}
+			System.err.println("Link failed: " + command);
+			System.exit(1);
+		}
+
+		return times;
+	}
+
+	/**
+	 * This method reads the phase times from a metrics report. The report is read as written by
+	 * {@link thinj.LinkMetrics#writeJson(File)}: One line per phase.
+	 * 
+	 * @param file The metrics report
+	 * @return The time of each phase, in milliseconds - key is the name of the phase
+	 * @throws IOException If unable to read the report
+	 */
+	private static LinkedHashMap<String, Double> readMetrics(File file) throws IOException {
+		LinkedHashMap<String, Double> times = new LinkedHashMap<String, Double>();
+		long classReading = 0;
+		BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(file),
+				"UTF-8"));
+		try {
+			String line;
+			while ((line = br.readLine()) != null) {
+				Matcher m = PHASE.matcher(line);
+				if (m.find()) {
+					times.put("Phase " + m.group(1), Long.parseLong(m.group(2)) / 1e6);
+					m = CLASS_READING.matcher(line);
+					if (m.find()) {
+						classReading += Long.parseLong(m.group(1));
+					}
+				}
+			}
+		} finally {
+			br.close();
+		}
+
+		if (!times.isEmpty()) {
+			times.put("  of which class reading", classReading / 1e6);
+		}
+		return times;
+	}
+
+	/**
+	 * This method adds a value to a list in a map
+	 * 
+	 * @param map The map
+	 * @param key The key of the list. The list is created if missing.
+	 * @param value The value to add to the list
+	 */
+	private static void add(Map<String, List<Double>> map, String key, double value) {
+		List<Double> values = map.get(key);
+		if (values == null) {
+			values = new LinkedList<Double>();
+			map.put(key, values);
+		}
+		values.add(value);
+	}
+
+	/**
+	 * @return A new, empty directory for temporary files
+	 * @throws IOException If unable to create the directory
+	 */
+	private static File createTempDirectory() throws IOException {
+		File directory = File.createTempFile("thinj-benchmark", "");
+		if (!directory.delete() || !directory.mkdir()) {
+			throw new IOException("Unable to create directory: " + directory);
+		}
+		return directory;
+	}
+
+	/**
+	 * This method deletes a file or a directory with all its contents
+	 * 
+	 * @param file The file or directory to delete
+	 */
+	private static void delete(File file) {
+		File[] files = file.listFiles();
+		if (files != null) {
+			for (File f : files) {
+				delete(f);
+			}
+		}
+		file.delete();
+	}
+}
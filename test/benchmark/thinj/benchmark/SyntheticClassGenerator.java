@@ -0,0 +1,209 @@
+package thinj.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.bcel.Constants;
+import org.apache.bcel.classfile.JavaClass;
+import org.apache.bcel.generic.ArrayType;
+import org.apache.bcel.generic.ClassGen;
+import org.apache.bcel.generic.ConstantPoolGen;
+import org.apache.bcel.generic.FieldGen;
+import org.apache.bcel.generic.InstructionFactory;
+import org.apache.bcel.generic.InstructionList;
+import org.apache.bcel.generic.MethodGen;
+import org.apache.bcel.generic.PUSH;
+import org.apache.bcel.generic.Type;
+
+/**
+ * This class generates a synthetic program of any size for benchmarking the linker. The program
+ * consists of a main class and a number of classes 'C0', 'C1', ...:
+ * <ul>
+ * <li>Class 'Cn' extends 'Cn-1', unless 'n' is a multiple of the hierarchy depth; then it extends
+ * java.lang.Object. So the classes form chains of 'depth' classes.</li>
+ * <li>Each class has a static method 'run()' which increments a static field, instantiates the
+ * class, calls the virtual method 'value()' - overridden in every class - and calls 'run()' in up
+ * to 'fan-out' other classes. The static calls form a tree rooted in 'C0', so all classes are
+ * reachable from main.</li>
+ * </ul>
+ */
+public class SyntheticClassGenerator {
+	// The package of the generated classes:
+	public static final String PACKAGE = "synthetic";
+
+	// The number of classes to generate - the main class not included:
+	private final int aClassCount;
+
+	// The length of the chains of classes extending each other:
+	private final int aDepth;
+
+	// The number of classes each class calls:
+	private final int aFanOut;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param classCount The number of classes to generate - the main class not included
+	 * @param depth The length of the chains of classes extending each other; at least 1
+	 * @param fanOut The number of classes each class calls; at least 1
+	 */
+	public SyntheticClassGenerator(int classCount, int depth, int fanOut) {
+		aClassCount = classCount;
+		aDepth = depth;
+		aFanOut = fanOut;
+	}
+
+	public static void main(String[] args) throws IOException {
+		// Example:
+		// java -cp ~/workspace/thinj/bin:$CLASSPATH -Dclasses=1000 -Ddepth=4 -Dfanout=3 \\
+		// thinj.benchmark.SyntheticClassGenerator /tmp/synthetic
+		String usage = "usage: java [-Dclasses=<n>] [-Ddepth=<n>] [-Dfanout=<n>] "
+				+ "SyntheticClassGenerator <directory>";
+		if (args.length != 1) {
+			System.err.println(usage);
+			System.exit(1);
+		}
+		SyntheticClassGenerator generator = new SyntheticClassGenerator(Integer.getInteger(
+				"classes", 1000), Integer.getInteger("depth", 4), Integer.getInteger("fanout", 3));
+		System.out.println("Main class: " + generator.generate(new File(args[0])));
+	}
+
+	/**
+	 * This method generates the class files of the program
+	 * 
+	 * @param directory The root of the class path to write the class files to. Is created if
+	 *            missing.
+	 * @return The name of the main class
+	 * @throws IOException If unable to write a class file
+	 */
+	public String generate(File directory) throws IOException {
+		for (int index = 0; index < aClassCount; index++) {
+			write(directory, generateClass(index));
+		}
+		write(directory, generateMain());
+
+		return getMainClassName();
+	}
+
+	/**
+	 * @return The name of the main class
+	 */
+	public static String getMainClassName() {
+		return PACKAGE + ".Main";
+	}
+
+	/**
+	 * @param index The number of a generated class
+	 * @return The name of the class
+	 */
+	private static String getClassName(int index) {
+		return PACKAGE + ".C" + index;
+	}
+
+	/**
+	 * This method generates a single class
+	 * 
+	 * @param index The number of the class
+	 * @return The generated class
+	 */
+	private JavaClass generateClass(int index) {
+		String className = getClassName(index);
+		String superClassName = index % aDepth == 0 ? "java.lang.Object" : getClassName(index - 1);
+		ClassGen cg = new ClassGen(className, superClassName, "C" + index + ".java",
+				Constants.ACC_PUBLIC | Constants.ACC_SUPER, new String[0]);
+		ConstantPoolGen cp = cg.getConstantPool();
+		InstructionFactory factory = new InstructionFactory(cg, cp);
+
+		cg.addField(new FieldGen(Constants.ACC_PUBLIC | Constants.ACC_STATIC, Type.INT, "count",
+				cp).getField());
+		cg.addEmptyConstructor(Constants.ACC_PUBLIC);
+
+		// int value() { return <index>; }
+		InstructionList il = new InstructionList();
+		il.append(new PUSH(cp, index));
+		il.append(InstructionFactory.createReturn(Type.INT));
+		addMethod(cg, Constants.ACC_PUBLIC, Type.INT, Type.NO_ARGS, "value", il);
+
+		// static void run() { count++; new C<index>().value(); C<callee>.run(); ... }
+		il = new InstructionList();
+		il.append(factory.createFieldAccess(className, "count", Type.INT, Constants.GETSTATIC));
+		il.append(new PUSH(cp, 1));
+		il.append(InstructionFactory.createBinaryOperation("+", Type.INT));
+		il.append(factory.createFieldAccess(className, "count", Type.INT, Constants.PUTSTATIC));
+		il.append(factory.createNew(className));
+		il.append(InstructionFactory.createDup(1));
+		il.append(factory.createInvoke(className, "<init>", Type.VOID, Type.NO_ARGS,
+				Constants.INVOKESPECIAL));
+		il.append(factory.createInvoke(className, "value", Type.INT, Type.NO_ARGS,
+				Constants.INVOKEVIRTUAL));
+		il.append(InstructionFactory.createPop(1));
+		for (int k = 1; k <= aFanOut; k++) {
+			int callee = index * aFanOut + k;
+			if (callee < aClassCount) {
+				il.append(factory.createInvoke(getClassName(callee), "run", Type.VOID,
+						Type.NO_ARGS, Constants.INVOKESTATIC));
+			}
+		}
+		il.append(InstructionFactory.createReturn(Type.VOID));
+		addMethod(cg, Constants.ACC_PUBLIC | Constants.ACC_STATIC, Type.VOID, Type.NO_ARGS, "run",
+				il);
+
+		return cg.getJavaClass();
+	}
+
+	/**
+	 * This method generates the main class, which calls 'run()' in the first class
+	 * 
+	 * @return The generated class
+	 */
+	private JavaClass generateMain() {
+		ClassGen cg = new ClassGen(getMainClassName(), "java.lang.Object", "Main.java",
+				Constants.ACC_PUBLIC | Constants.ACC_SUPER, new String[0]);
+		InstructionFactory factory = new InstructionFactory(cg, cg.getConstantPool());
+		cg.addEmptyConstructor(Constants.ACC_PUBLIC);
+
+		InstructionList il = new InstructionList();
+		if (aClassCount > 0) {
+			il.append(factory.createInvoke(getClassName(0), "run", Type.VOID, Type.NO_ARGS,
+					Constants.INVOKESTATIC));
+		}
+		il.append(InstructionFactory.createReturn(Type.VOID));
+		addMethod(cg, Constants.ACC_PUBLIC | Constants.ACC_STATIC, Type.VOID,
+				new Type[] { new ArrayType(Type.STRING, 1) }, "main", il);
+
+		return cg.getJavaClass();
+	}
+
+	/**
+	 * This method adds a method to a class being generated
+	 * 
+	 * @param cg The class
+	 * @param accessFlags The access flags of the method
+	 * @param returnType The return type
+	 * @param argumentTypes The argument types
+	 * @param name The name of the method
+	 * @param il The code of the method. Is disposed.
+	 */
+	private static void addMethod(ClassGen cg, int accessFlags, Type returnType,
+			Type[] argumentTypes, String name, InstructionList il) {
+		MethodGen mg = new MethodGen(accessFlags, returnType, argumentTypes, null, name,
+				cg.getClassName(), il, cg.getConstantPool());
+		mg.setMaxStack();
+		mg.setMaxLocals();
+		cg.addMethod(mg.getMethod());
+		il.dispose();
+	}
+
+	/**
+	 * This method writes a class file
+	 * 
+	 * @param directory The root of the class path
+	 * @param javaClass The class to write
+	 * @throws IOException If unable to write the class file
+	 */
+	private static void write(File directory, JavaClass javaClass) throws IOException {
+		File file = new File(directory, javaClass.getClassName().replace('.', '/') + ".class");
+		file.getParentFile().mkdirs();
+		javaClass.dump(file);
+	}
+}
@@ -0,0 +1,13 @@
+#!/bin/sh
+#
+# Builds the regression programs and the benchmark of the linker into test/bin. Run it after
+# build.sh, from the same directory; nothing built here is packaged into thinj.jar.
+#
+
+[ -d test/bin ] && rm -rf test/bin
+
+mkdir test/bin
+
+javac -cp bin:$CLASSPATH -d test/bin `find test -name "*.java" -print` || exit 1
+
+exit 0
@@ -0,0 +1,38 @@
+#!/bin/sh
+#
+# Links each regression program of test/regression. Run it after test/build.sh, from the same
+# directory:
+#
+#   test/regression.sh <class path of the thinj runtime>
+#
+
+if [ $# -ne 1 ]; then
+    echo "usage: $0 <class path of the thinj runtime>"
+    exit 1
+fi
+
+OUT=`mktemp -d` || exit 1
+trap "rm -rf $OUT" 0
+
+# Links a program; the options of the link follow the main class:
+link() {
+    mainClass=$1
+    shift
+    java -cp bin:$CLASSPATH -Dmycp=test/bin:$RUNTIME "-Dout=$OUT/$mainClass" "$@" \
+        thinj.NewLinker $mainClass > $OUT/$mainClass.log 2>&1 || {
+        cat $OUT/$mainClass.log
+        echo "FAILED: $mainClass"
+        exit 1
+    }
+    echo "OK: $mainClass"
+}
+
+RUNTIME=$1
+
+link supertypes.Main
+
+link peephole.Main -Dpasses=peephole
+java -cp test/bin peephole.CheckSuite $OUT/peephole.Main.c || exit 1
+echo "OK: peephole.CheckSuite"
+
+exit 0
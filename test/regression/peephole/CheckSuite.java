@@ -0,0 +1,220 @@
+package peephole;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * This class checks the code generated for {@link Main} when linked with the peephole pass. The
+ * code of each method is read from the listing in the generated C - file, and compared with the
+ * code the pass shall leave. Every branch of every method shall go to an instruction of the
+ * method, which tells that the branch offsets were fixed up after the code was rewritten.
+ */
+public class CheckSuite {
+	// The class checked:
+	private static final String CLASS_NAME = "peephole/Main";
+
+	// The heading of the code of a method, e.g. '// (25) peephole/Main#main#([Ljava/lang/String;)V'
+	// - the number is the class id:
+	private static final Pattern METHOD = Pattern.compile("^    // \\(\\d+\\) ([^ ]+)$");
+
+	// An instruction, e.g. '/* 0103 */      c_ifle(0x00, 0x14)':
+	private static final Pattern INSTRUCTION = Pattern
+			.compile("^    /\\* ([0-9a-f]+) \\*/ +c_([a-z0-9_]+)\\((.*)\\)$");
+
+	// The code of each method of the class - key is name and descriptor of the method:
+	private final Map<String, List<Instruction>> aMethods;
+
+	// The number of checks failed:
+	private int aFailures;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param fileName The generated C - file
+	 * @throws IOException If unable to read the file
+	 */
+	public CheckSuite(String fileName) throws IOException {
+		aMethods = new LinkedHashMap<String, List<Instruction>>();
+		BufferedReader br = new BufferedReader(new InputStreamReader(
+				new FileInputStream(fileName), "UTF-8"));
+		try {
+			List<Instruction> code = null;
+			String line;
+			while ((line = br.readLine()) != null) {
+				Matcher m = METHOD.matcher(line);
+				if (m.matches()) {
+					code = null;
+					if (m.group(1).startsWith(CLASS_NAME + "#")) {
+						code = new ArrayList<Instruction>();
+						aMethods.put(m.group(1).substring(CLASS_NAME.length() + 1), code);
+					}
+				} else if (code != null && (m = INSTRUCTION.matcher(line)).matches()) {
+					code.add(new Instruction(Integer.parseInt(m.group(1), 16), m.group(2), m
+							.group(3)));
+				}
+			}
+		} finally {
+			br.close();
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		// Example:
+		// java -cp test/bin peephole.CheckSuite /tmp/peephole.Main.c
+		if (args.length != 1) {
+			System.err.println("usage: java peephole.CheckSuite <generated C - file>");
+			System.exit(1);
+		}
+
+		CheckSuite suite = new CheckSuite(args[0]);
+		suite.checkCode("multiplyByEight#(I)I", "iconst_3 ishl", "imul");
+		suite.checkCode("quarterOfLength#([I)I", "arraylength iconst_2 ishr", "idiv");
+		suite.checkCode("signedQuarter#(I)I", "iconst_4 idiv", "ishr");
+		suite.checkCode("branches#(I)I", "iconst_2 ishl", "imul");
+		suite.checkCode("castAfterInstanceof#(ILjava/lang/Object;)I", "instanceof", "checkcast");
+		suite.checkGotoChains("gotoChain#(I)I");
+		suite.checkBranches();
+		if (suite.aFailures > 0) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * This method checks the instructions of a method
+	 * 
+	 * @param method The name and descriptor of the method
+	 * @param expected A sequence of instructions the code shall hold, separated by spaces
+	 * @param unexpected An instruction the code shall not hold
+	 */
+	private void checkCode(String method, String expected, String unexpected) {
+		String code = " " + getNames(method) + " ";
+		if (!code.contains(" " + expected + " ")) {
+			fail(method, "'" + expected + "' not found in: " + code.trim());
+		}
+		if (code.contains(" " + unexpected + " ")) {
+			fail(method, "'" + unexpected + "' found in: " + code.trim());
+		}
+	}
+
+	/**
+	 * This method checks that no branch of a method goes to a goto
+	 * 
+	 * @param method The name and descriptor of the method
+	 */
+	private void checkGotoChains(String method) {
+		List<Instruction> code = getCode(method);
+		for (Instruction ins : code) {
+			Instruction target = ins.isBranch() ? find(code, ins.getTarget()) : null;
+			if (target != null && target.aName.equals("goto")) {
+				fail(method, ins + " goes to " + target);
+			}
+		}
+	}
+
+	/**
+	 * This method checks that every branch of every method goes to an instruction of the method
+	 */
+	private void checkBranches() {
+		for (Map.Entry<String, List<Instruction>> entry : aMethods.entrySet()) {
+			for (Instruction ins : entry.getValue()) {
+				if (ins.isBranch() && find(entry.getValue(), ins.getTarget()) == null) {
+					fail(entry.getKey(), ins + " goes to no instruction");
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param method The name and descriptor of a method
+	 * @return The code of the method; a failure is reported if the method is not found
+	 */
+	private List<Instruction> getCode(String method) {
+		List<Instruction> code = aMethods.get(method);
+		if (code == null) {
+			fail(method, "not found");
+			code = new ArrayList<Instruction>();
+		}
+		return code;
+	}
+
+	/**
+	 * @param method The name and descriptor of a method
+	 * @return The names of the instructions of the method, separated by spaces
+	 */
+	private String getNames(String method) {
+		StringBuilder sb = new StringBuilder();
+		for (Instruction ins : getCode(method)) {
+			sb.append(' ').append(ins.aName);
+		}
+		return sb.toString().trim();
+	}
+
+	/**
+	 * @param code The code of a method
+	 * @param address An address
+	 * @return The instruction at 'address'; null if none
+	 */
+	private static Instruction find(List<Instruction> code, int address) {
+		for (Instruction ins : code) {
+			if (ins.aAddress == address) {
+				return ins;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * This method reports a failed check
+	 * 
+	 * @param method The name and descriptor of the method checked
+	 * @param message What is wrong
+	 */
+	private void fail(String method, String message) {
+		System.err.println("Peephole check failed: " + CLASS_NAME + "#" + method + ": " + message);
+		aFailures++;
+	}
+
+	/**
+	 * An instruction of the listing
+	 */
+	private static class Instruction {
+		private final int aAddress;
+		private final String aName;
+		private final String aOperands;
+
+		Instruction(int address, String name, String operands) {
+			aAddress = address;
+			aName = name;
+			aOperands = operands;
+		}
+
+		/**
+		 * @return true, if this instruction is a goto or a conditional branch
+		 */
+		boolean isBranch() {
+			return aName.equals("goto") || aName.startsWith("if");
+		}
+
+		/**
+		 * @return The address branched to; the offset is the two operand bytes
+		 */
+		int getTarget() {
+			String[] bytes = aOperands.split(", ");
+			return aAddress
+					+ (short) (Integer.decode(bytes[0]) << 8 | Integer.decode(bytes[1]));
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%04x: %s(%s)", aAddress, aName, aOperands);
+		}
+	}
+}
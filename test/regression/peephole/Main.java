@@ -0,0 +1,100 @@
+package peephole;
+
+/**
+ * This program is a link regression case for the peephole pass, see
+ * {@link thinj.optimizer.PeepholePass}: Each method holds a sequence the pass rewrites - or shall
+ * leave as it is. It is linked by test/regression.sh with the pass enabled, and the generated code
+ * of each method is checked by {@link CheckSuite}. When run, the program checks the results of
+ * the methods, so a wrong rewrite fails it.
+ */
+public class Main {
+	// Not a constant, so javac does not compute the results:
+	private static int aValue = -7;
+
+	public static void main(String[] args) {
+		if (multiplyByEight(aValue) != -56) {
+			throw new RuntimeException();
+		}
+		if (quarterOfLength(new int[15]) != 3) {
+			throw new RuntimeException();
+		}
+		// A shift would give -2:
+		if (signedQuarter(aValue) != -1) {
+			throw new RuntimeException();
+		}
+		if (gotoChain(10) != 45 || gotoChain(0) != -1) {
+			throw new RuntimeException();
+		}
+		if (branches(6) != 54) {
+			throw new RuntimeException();
+		}
+		if (castAfterInstanceof(2, new Main()) != 3 || castAfterInstanceof(2, null) != -1) {
+			throw new RuntimeException();
+		}
+	}
+
+	/**
+	 * x * 8 becomes a shift left by 3
+	 */
+	static int multiplyByEight(int x) {
+		return x * 8;
+	}
+
+	/**
+	 * The length of an array is not negative, so the division becomes a shift right
+	 */
+	static int quarterOfLength(int[] a) {
+		return a.length / 4;
+	}
+
+	/**
+	 * x may be negative, so the division is kept
+	 */
+	static int signedQuarter(int x) {
+		return x / 4;
+	}
+
+	/**
+	 * The loop is left by a branch to the goto skipping the 'else'
+	 */
+	static int gotoChain(int x) {
+		int n = 0;
+		if (x > 0) {
+			for (int i = 0; i < x; i++) {
+				n += i;
+			}
+		} else {
+			n = -1;
+		}
+		return n;
+	}
+
+	/**
+	 * The rewritten multiplication is one byte shorter, and is spanned by the branch over it and
+	 * the branch back to the loop condition
+	 */
+	static int branches(int x) {
+		int n = 0;
+		for (int i = 0; i < x; i++) {
+			if (i > 2) {
+				n += i * 4;
+			}
+			n++;
+		}
+		return n;
+	}
+
+	/**
+	 * The cast is passed as the second argument, so it is not first in the block entered
+	 */
+	static int castAfterInstanceof(int i, Object o) {
+		if (o instanceof Main) {
+			return weigh(i, (Main) o);
+		}
+		return -1;
+	}
+
+	static int weigh(int i, Main m) {
+		return i + 1;
+	}
+}
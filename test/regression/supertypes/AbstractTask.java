@@ -0,0 +1,7 @@
+package supertypes;
+
+/**
+ * An abstract task leaving {@link Task#go()} to the subclasses
+ */
+public abstract class AbstractTask implements Task {
+}
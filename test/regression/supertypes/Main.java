@@ -0,0 +1,13 @@
+package supertypes;
+
+/**
+ * This program is a link regression case: The method invoked is declared by an interface
+ * implemented by an abstract super class only, so the linker looks the method up through an
+ * interface which is not referenced by the code itself. It is linked by test/regression.sh.
+ */
+public class Main {
+	public static void main(String[] args) {
+		AbstractTask t = new RealTask();
+		t.go();
+	}
+}
@@ -0,0 +1,11 @@
+package supertypes;
+
+/**
+ * A task implementing {@link Task#go()}
+ */
+public class RealTask extends AbstractTask {
+	@Override
+	public int go() {
+		return 42;
+	}
+}
@@ -0,0 +1,8 @@
+package supertypes;
+
+/**
+ * A task; implemented by {@link RealTask} through {@link AbstractTask} only
+ */
+public interface Task {
+	int go();
+}